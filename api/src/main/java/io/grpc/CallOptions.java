@@ -76,6 +76,10 @@ public final class CallOptions {
   private Integer maxInboundMessageSize;
   @Nullable
   private Integer maxOutboundMessageSize;
+  @Nullable
+  private Integer onReadyThreshold;
+  @Nullable
+  private Integer onReadyLowWatermark;
 
 
   /**
@@ -421,6 +425,53 @@ public final class CallOptions {
     return maxOutboundMessageSize;
   }
 
+  /**
+   * Sets the number of outbound bytes that may be queued in the transport before {@link
+   * ClientCall#isReady()} returns {@code false}. Equivalent to {@code
+   * withOnReadyThreshold(numBytes, numBytes)}.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public CallOptions withOnReadyThreshold(int numBytes) {
+    return withOnReadyThreshold(numBytes, numBytes);
+  }
+
+  /**
+   * Sets the onReady watermarks of the call. Once the transport has queued {@code highWatermark}
+   * outbound bytes, {@link ClientCall#isReady()} returns {@code false} until the queue drains below
+   * {@code lowWatermark}. If unset, the transport's default threshold is used for both. Transports
+   * that do not track queued bytes ignore this option.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public CallOptions withOnReadyThreshold(int lowWatermark, int highWatermark) {
+    checkArgument(lowWatermark > 0, "lowWatermark must be positive: %s", lowWatermark);
+    checkArgument(highWatermark >= lowWatermark,
+        "highWatermark %s must not be less than lowWatermark %s", highWatermark, lowWatermark);
+    CallOptions newOptions = new CallOptions(this);
+    newOptions.onReadyLowWatermark = lowWatermark;
+    newOptions.onReadyThreshold = highWatermark;
+    return newOptions;
+  }
+
+  /**
+   * Returns the number of queued bytes at which the call stops being ready, or {@code null} if
+   * the transport's default applies.
+   */
+  @Nullable
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public Integer getOnReadyThreshold() {
+    return onReadyThreshold;
+  }
+
+  /**
+   * Returns the number of queued bytes below which the call becomes ready again, or {@code null}
+   * if the transport's default applies.
+   */
+  @Nullable
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public Integer getOnReadyLowWatermark() {
+    return onReadyLowWatermark;
+  }
+
   /**
    * Copy constructor.
    */
@@ -434,6 +485,8 @@ public final class CallOptions {
     waitForReady = other.waitForReady;
     maxInboundMessageSize = other.maxInboundMessageSize;
     maxOutboundMessageSize = other.maxOutboundMessageSize;
+    onReadyThreshold = other.onReadyThreshold;
+    onReadyLowWatermark = other.onReadyLowWatermark;
     streamTracerFactories = other.streamTracerFactories;
   }
 
@@ -449,6 +502,8 @@ public final class CallOptions {
         .add("waitForReady", isWaitForReady())
         .add("maxInboundMessageSize", maxInboundMessageSize)
         .add("maxOutboundMessageSize", maxOutboundMessageSize)
+        .add("onReadyThreshold", onReadyThreshold)
+        .add("onReadyLowWatermark", onReadyLowWatermark)
         .add("streamTracerFactories", streamTracerFactories)
         .toString();
   }
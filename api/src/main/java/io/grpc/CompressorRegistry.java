@@ -30,13 +30,23 @@ import javax.annotation.concurrent.ThreadSafe;
 @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
 @ThreadSafe
 public final class CompressorRegistry {
-  private static final CompressorRegistry DEFAULT_INSTANCE = new CompressorRegistry(
-      new Codec.Gzip(),
-      Codec.Identity.NONE);
+  private static final CompressorRegistry DEFAULT_INSTANCE = newDefaultInstance();
+
+  private static CompressorRegistry newDefaultInstance() {
+    CompressorRegistry registry = new CompressorRegistry(
+        new Codec.Gzip(),
+        new Codec.Lz4(),
+        Codec.Identity.NONE);
+    for (Codec codec : OptionalCodecs.getAvailable()) {
+      registry.register(codec);
+    }
+    return registry;
+  }
 
   /**
    * Returns the default instance used by gRPC when the registry is not specified.
-   * Currently the registry just contains support for gzip.
+   * Currently the registry contains support for gzip and lz4, and for zstd when grpc-zstd is on
+   * the classpath.
    */
   public static CompressorRegistry getDefaultInstance() {
     return DEFAULT_INSTANCE;
@@ -41,10 +41,19 @@ public final class DecompressorRegistry {
     return new DecompressorRegistry();
   }
 
-  private static final DecompressorRegistry DEFAULT_INSTANCE =
-      emptyInstance()
-      .with(new Codec.Gzip(), true)
-      .with(Codec.Identity.NONE, false);
+  private static final DecompressorRegistry DEFAULT_INSTANCE = newDefaultInstance();
+
+  private static DecompressorRegistry newDefaultInstance() {
+    DecompressorRegistry registry = emptyInstance()
+        .with(new Codec.Gzip(), true)
+        // Decoded when peers send it, but not advertised until it is more widely supported.
+        .with(new Codec.Lz4(), false)
+        .with(Codec.Identity.NONE, false);
+    for (Codec codec : OptionalCodecs.getAvailable()) {
+      registry = registry.with(codec, true);
+    }
+    return registry;
+  }
 
   public static DecompressorRegistry getDefaultInstance() {
     return DEFAULT_INSTANCE;
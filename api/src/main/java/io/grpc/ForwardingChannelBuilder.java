@@ -135,6 +135,12 @@ public abstract class ForwardingChannelBuilder<T extends ForwardingChannelBuilde
     return thisT();
   }
 
+  @Override
+  public T adaptiveCompression(int minMessageSize, double maxCompressionRatio) {
+    delegate().adaptiveCompression(minMessageSize, maxCompressionRatio);
+    return thisT();
+  }
+
   @Override
   public T decompressorRegistry(DecompressorRegistry registry) {
     delegate().decompressorRegistry(registry);
@@ -127,6 +127,12 @@ public abstract class ForwardingServerBuilder<T extends ServerBuilder<T>> extend
     return thisT();
   }
 
+  @Override
+  public T adaptiveCompression(int minMessageSize, double maxCompressionRatio) {
+    delegate().adaptiveCompression(minMessageSize, maxCompressionRatio);
+    return thisT();
+  }
+
   @Override
   public T handshakeTimeout(long timeout, TimeUnit unit) {
     delegate().handshakeTimeout(timeout, unit);
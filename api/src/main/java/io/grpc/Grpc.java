@@ -56,6 +56,24 @@ public final class Grpc {
   public static final Attributes.Key<SSLSession> TRANSPORT_ATTR_SSL_SESSION =
       Attributes.Key.create("ssl-session");
 
+  /**
+   * Attribute key for the user ID of the process on the other end of a transport. Only set by
+   * transports that can get it from the operating system, like Unix domain sockets on Linux.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1710")
+  @TransportAttr
+  public static final Attributes.Key<Integer> TRANSPORT_ATTR_PEER_UID =
+      Attributes.Key.create("peer-uid");
+
+  /**
+   * Attribute key for the process ID of the process on the other end of a transport. Only set by
+   * transports that can get it from the operating system, like Unix domain sockets on Linux.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1710")
+  @TransportAttr
+  public static final Attributes.Key<Integer> TRANSPORT_ATTR_PEER_PID =
+      Attributes.Key.create("peer-pid");
+
   /**
    * Annotation for transport attributes. It follows the annotation semantics defined
    * by {@link Attributes}.
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * Extension to an {@link java.io.OutputStream} that can be written to through {@link
+ * ByteBuffer}s.
+ *
+ * <p>This can be used by a {@link Drainable} that knows its length, like a serialized message, to
+ * write straight into the buffers backing the output stream instead of going through {@link
+ * java.io.OutputStream#write(byte[], int, int)}, which needs the content in a byte array first.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+public interface HasWritableByteBuffer {
+
+  /**
+   * Gets a {@link ByteBuffer} for the next {@code length} bytes of the output stream, or {@code
+   * null} if the stream can't provide that many bytes in a single buffer, in which case the caller
+   * should write to the stream as usual. The returned buffer has exactly {@code length} bytes
+   * remaining, and the stream considers them written. The caller must fill all of them before
+   * writing anything else to the stream.
+   */
+  @Nullable
+  ByteBuffer getWritableByteBuffer(int length);
+}
@@ -0,0 +1,661 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A pure-Java implementation of the LZ4 frame format, as used by {@link Codec.Lz4}.
+ *
+ * <p>Frames are written with independent 64 KiB blocks and no checksums, since the transport
+ * already protects the data. Frames from other implementations, with any block size, linked
+ * blocks or checksums, can be read, and their checksums are verified.
+ *
+ * @see <a href="https://github.com/lz4/lz4/blob/dev/doc/lz4_Frame_format.md">LZ4 Frame Format</a>
+ */
+final class Lz4Frame {
+  private static final int MAGIC = 0x184D2204;
+  private static final int VERSION = 0x40;
+  private static final int FLAG_BLOCK_INDEPENDENCE = 0x20;
+  private static final int FLAG_BLOCK_CHECKSUM = 0x10;
+  private static final int FLAG_CONTENT_SIZE = 0x08;
+  private static final int FLAG_CONTENT_CHECKSUM = 0x04;
+  private static final int FLAG_DICTIONARY_ID = 0x01;
+  /** Set in a block's size when the block is stored uncompressed. */
+  private static final int UNCOMPRESSED_BLOCK = 0x80000000;
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+  /** The block size descriptor for {@link #BLOCK_SIZE}. */
+  private static final int BLOCK_SIZE_ID = 4;
+
+  private static final int MIN_MATCH = 4;
+  /** The last bytes of a block are always literals. */
+  private static final int LAST_LITERALS = 5;
+  /** A match can't start within this many bytes of the end of a block. */
+  private static final int MATCH_FIND_LIMIT = 12;
+  private static final int MAX_DISTANCE = 0xFFFF;
+  private static final int MAX_HASH_LOG = 12;
+  private static final int MIN_HASH_LOG = 8;
+  /** After this many failed attempts to find a match, start skipping ahead faster. */
+  private static final int SKIP_TRIGGER = 6;
+
+  private Lz4Frame() {}
+
+  static OutputStream newOutputStream(OutputStream out) throws IOException {
+    return new FrameOutputStream(out);
+  }
+
+  static InputStream newInputStream(InputStream in) {
+    return new FrameInputStream(in);
+  }
+
+  /** Returns the most bytes that compressing {@code length} bytes can produce. */
+  @VisibleForTesting
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compresses {@code src[0..length)} into {@code dst} as a single LZ4 block, returning the number
+   * of bytes written. {@code dst} must hold at least {@link #maxCompressedLength} bytes.
+   */
+  @VisibleForTesting
+  static int compressBlock(byte[] src, int length, byte[] dst, int[] hashTable) {
+    int hashLog = hashLog(length);
+    Arrays.fill(hashTable, 0, 1 << hashLog, -1);
+    int anchor = 0;
+    int op = 0;
+    int matchFindLimit = length - MATCH_FIND_LIMIT;
+    int matchLimit = length - LAST_LITERALS;
+
+    int ip = 0;
+    search:
+    while (length >= MATCH_FIND_LIMIT + 1) {
+      // Find the next match, skipping ahead faster the longer we go without one.
+      int ref;
+      int attempts = 1 << SKIP_TRIGGER;
+      while (true) {
+        if (ip > matchFindLimit) {
+          break search;
+        }
+        int h = hash(readInt(src, ip), hashLog);
+        ref = hashTable[h];
+        hashTable[h] = ip;
+        if (ref >= 0 && ip - ref <= MAX_DISTANCE && readInt(src, ref) == readInt(src, ip)) {
+          break;
+        }
+        ip += attempts++ >>> SKIP_TRIGGER;
+      }
+      while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+        ip--;
+        ref--;
+      }
+
+      int tokenPos = op++;
+      int literals = ip - anchor;
+      int token = writeLength(literals, dst, op) << 4;
+      op += extraLengthBytes(literals);
+      System.arraycopy(src, anchor, dst, op, literals);
+      op += literals;
+
+      while (true) {
+        int distance = ip - ref;
+        dst[op++] = (byte) distance;
+        dst[op++] = (byte) (distance >>> 8);
+        ip += MIN_MATCH;
+        ref += MIN_MATCH;
+        int matchLength = 0;
+        while (ip < matchLimit && src[ip] == src[ref]) {
+          ip++;
+          ref++;
+          matchLength++;
+        }
+        token |= writeLength(matchLength, dst, op);
+        op += extraLengthBytes(matchLength);
+        dst[tokenPos] = (byte) token;
+        anchor = ip;
+
+        if (ip > matchFindLimit) {
+          break search;
+        }
+        hashTable[hash(readInt(src, ip - 2), hashLog)] = ip - 2;
+        // Matches often follow each other directly, so try the next position before searching.
+        int h = hash(readInt(src, ip), hashLog);
+        ref = hashTable[h];
+        hashTable[h] = ip;
+        if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != readInt(src, ip)) {
+          ip++;
+          continue search;
+        }
+        tokenPos = op++;
+        token = 0;
+      }
+    }
+
+    int literals = length - anchor;
+    dst[op] = (byte) (writeLength(literals, dst, op + 1) << 4);
+    op += 1 + extraLengthBytes(literals);
+    System.arraycopy(src, anchor, dst, op, literals);
+    return op + literals;
+  }
+
+  /**
+   * Writes the part of {@code length} that doesn't fit in a token at {@code pos}, and returns the
+   * part that does.
+   */
+  private static int writeLength(int length, byte[] dst, int pos) {
+    if (length < 15) {
+      return length;
+    }
+    int remaining = length - 15;
+    while (remaining >= 255) {
+      dst[pos++] = (byte) 255;
+      remaining -= 255;
+    }
+    dst[pos] = (byte) remaining;
+    return 15;
+  }
+
+  private static int extraLengthBytes(int length) {
+    return length < 15 ? 0 : (length - 15) / 255 + 1;
+  }
+
+  /**
+   * Decompresses an LZ4 block into {@code dst}, starting at {@code dstStart}. Matches may refer to
+   * bytes before {@code dstStart}, which hold the end of the previous block. Returns the end of the
+   * decompressed data, or -1 if it doesn't fit in {@code dst}.
+   */
+  @VisibleForTesting
+  static int decompressBlock(byte[] src, int srcLength, byte[] dst, int dstStart)
+      throws IOException {
+    int ip = 0;
+    int op = dstStart;
+    try {
+      while (true) {
+        int token = src[ip++] & 0xFF;
+        int literals = token >>> 4;
+        if (literals == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            literals += b;
+          } while (b == 255);
+        }
+        if (literals > srcLength - ip) {
+          throw new IOException("Malformed LZ4 block");
+        }
+        if (literals > dst.length - op) {
+          return -1;
+        }
+        System.arraycopy(src, ip, dst, op, literals);
+        ip += literals;
+        op += literals;
+        if (ip == srcLength) {
+          return op;
+        }
+
+        if (srcLength - ip < 2) {
+          throw new IOException("Malformed LZ4 block");
+        }
+        int distance = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+        ip += 2;
+        int ref = op - distance;
+        if (distance == 0 || ref < 0) {
+          throw new IOException("Malformed LZ4 block");
+        }
+        int matchLength = token & 0xF;
+        if (matchLength == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            matchLength += b;
+          } while (b == 255);
+        }
+        matchLength += MIN_MATCH;
+        if (matchLength > dst.length - op) {
+          return -1;
+        }
+        if (distance >= matchLength) {
+          System.arraycopy(dst, ref, dst, op, matchLength);
+          op += matchLength;
+        } else {
+          // The match overlaps the bytes it produces.
+          for (int end = op + matchLength; op < end; ) {
+            dst[op++] = dst[ref++];
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Malformed LZ4 block", e);
+    }
+  }
+
+  private static int hashLog(int length) {
+    int log = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+    return Math.max(MIN_HASH_LOG, Math.min(MAX_HASH_LOG, log));
+  }
+
+  private static int hash(int sequence, int hashLog) {
+    return (sequence * -1640531535) >>> (32 - hashLog);
+  }
+
+  private static int readInt(byte[] buf, int pos) {
+    return (buf[pos] & 0xFF)
+        | (buf[pos + 1] & 0xFF) << 8
+        | (buf[pos + 2] & 0xFF) << 16
+        | (buf[pos + 3] & 0xFF) << 24;
+  }
+
+  private static void writeInt(byte[] buf, int pos, int value) {
+    buf[pos] = (byte) value;
+    buf[pos + 1] = (byte) (value >>> 8);
+    buf[pos + 2] = (byte) (value >>> 16);
+    buf[pos + 3] = (byte) (value >>> 24);
+  }
+
+  /** The header checksum of a frame descriptor. */
+  private static int descriptorHash(byte[] buf, int pos, int length) {
+    return (XxHash32.hash(buf, pos, length) >>> 8) & 0xFF;
+  }
+
+  /** The xxHash32 checksum, with a seed of 0, which frames use for their checksums. */
+  @VisibleForTesting
+  static final class XxHash32 {
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+    private static final int STRIPE = 16;
+
+    /** The bytes of an incomplete stripe. */
+    private final byte[] pending = new byte[STRIPE];
+    private int pendingLength;
+    private long totalLength;
+    private int v1;
+    private int v2;
+    private int v3;
+    private int v4;
+
+    XxHash32() {
+      reset();
+    }
+
+    static int hash(byte[] b, int off, int len) {
+      XxHash32 hash = new XxHash32();
+      hash.update(b, off, len);
+      return hash.digest();
+    }
+
+    void reset() {
+      v1 = PRIME1 + PRIME2;
+      v2 = PRIME2;
+      v3 = 0;
+      v4 = -PRIME1;
+      pendingLength = 0;
+      totalLength = 0;
+    }
+
+    void update(byte[] b, int off, int len) {
+      totalLength += len;
+      if (pendingLength > 0) {
+        int n = Math.min(len, STRIPE - pendingLength);
+        System.arraycopy(b, off, pending, pendingLength, n);
+        pendingLength += n;
+        off += n;
+        len -= n;
+        if (pendingLength < STRIPE) {
+          return;
+        }
+        consumeStripe(pending, 0);
+        pendingLength = 0;
+      }
+      for (; len >= STRIPE; off += STRIPE, len -= STRIPE) {
+        consumeStripe(b, off);
+      }
+      System.arraycopy(b, off, pending, 0, len);
+      pendingLength = len;
+    }
+
+    int digest() {
+      int h;
+      if (totalLength >= STRIPE) {
+        h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12)
+            + Integer.rotateLeft(v4, 18);
+      } else {
+        h = PRIME5;
+      }
+      h += (int) totalLength;
+      int pos = 0;
+      for (; pos + 4 <= pendingLength; pos += 4) {
+        h += readInt(pending, pos) * PRIME3;
+        h = Integer.rotateLeft(h, 17) * PRIME4;
+      }
+      for (; pos < pendingLength; pos++) {
+        h += (pending[pos] & 0xFF) * PRIME5;
+        h = Integer.rotateLeft(h, 11) * PRIME1;
+      }
+      h ^= h >>> 15;
+      h *= PRIME2;
+      h ^= h >>> 13;
+      h *= PRIME3;
+      h ^= h >>> 16;
+      return h;
+    }
+
+    private void consumeStripe(byte[] b, int off) {
+      v1 = round(v1, readInt(b, off));
+      v2 = round(v2, readInt(b, off + 4));
+      v3 = round(v3, readInt(b, off + 8));
+      v4 = round(v4, readInt(b, off + 12));
+    }
+
+    private static int round(int acc, int input) {
+      acc += input * PRIME2;
+      return Integer.rotateLeft(acc, 13) * PRIME1;
+    }
+  }
+
+  private static final class FrameOutputStream extends OutputStream {
+    private final OutputStream out;
+    // Sized to what's been written so far, so small messages don't pay for a whole block.
+    private byte[] buffer = new byte[256];
+    private int buffered;
+    private final byte[] blockSize = new byte[4];
+    private final byte[] singleByte = new byte[1];
+    private byte[] compressed;
+    private int[] hashTable;
+    private boolean closed;
+
+    FrameOutputStream(OutputStream out) throws IOException {
+      this.out = checkNotNull(out, "out");
+      byte[] header = new byte[7];
+      writeInt(header, 0, MAGIC);
+      header[4] = (byte) (VERSION | FLAG_BLOCK_INDEPENDENCE);
+      header[5] = (byte) (BLOCK_SIZE_ID << 4);
+      header[6] = (byte) descriptorHash(header, 4, 2);
+      out.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      singleByte[0] = (byte) b;
+      write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      while (len > 0) {
+        if (buffered == BLOCK_SIZE) {
+          writeBlock();
+        }
+        if (buffered == buffer.length) {
+          buffer = Arrays.copyOf(buffer, Math.min(BLOCK_SIZE, Math.max(buffer.length * 2, len)));
+        }
+        int n = Math.min(len, buffer.length - buffered);
+        System.arraycopy(b, off, buffer, buffered, n);
+        buffered += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    private void writeBlock() throws IOException {
+      if (buffered == 0) {
+        return;
+      }
+      int tableSize = 1 << hashLog(buffered);
+      if (hashTable == null || hashTable.length < tableSize) {
+        hashTable = new int[tableSize];
+      }
+      int bound = maxCompressedLength(buffered);
+      if (compressed == null || compressed.length < bound) {
+        compressed = new byte[bound];
+      }
+      int length = compressBlock(buffer, buffered, compressed, hashTable);
+      if (length < buffered) {
+        writeInt(blockSize, 0, length);
+        out.write(blockSize);
+        out.write(compressed, 0, length);
+      } else {
+        writeInt(blockSize, 0, buffered | UNCOMPRESSED_BLOCK);
+        out.write(blockSize);
+        out.write(buffer, 0, buffered);
+      }
+      buffered = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writeBlock();
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        writeBlock();
+        writeInt(blockSize, 0, 0);
+        // End mark
+        out.write(blockSize);
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  private static final class FrameInputStream extends InputStream {
+    private final InputStream in;
+    private final byte[] scratch = new byte[15];
+    private final byte[] singleByte = new byte[1];
+    /** Hashes each block, when the frame has block checksums. */
+    private XxHash32 blockHash;
+    /** Hashes the decoded content, when the frame has a content checksum. */
+    private XxHash32 contentHash;
+    private boolean started;
+    private boolean finished;
+    private int flags;
+    private int maxBlockSize;
+    private byte[] compressed;
+    /** Decoded bytes, preceded by up to 64 KiB of the previous block when blocks are linked. */
+    private byte[] decoded;
+    private int readPos;
+    private int decodedEnd;
+
+    FrameInputStream(InputStream in) {
+      this.in = checkNotNull(in, "in");
+    }
+
+    @Override
+    public int read() throws IOException {
+      int n = read(singleByte, 0, 1);
+      return n < 0 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      while (readPos == decodedEnd) {
+        if (finished || !readBlock()) {
+          return -1;
+        }
+      }
+      int n = Math.min(len, decodedEnd - readPos);
+      System.arraycopy(decoded, readPos, b, off, n);
+      readPos += n;
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return decodedEnd - readPos;
+    }
+
+    private void readHeader() throws IOException {
+      readFully(scratch, 0, 6);
+      if (readInt(scratch, 0) != MAGIC) {
+        throw new IOException("Not an LZ4 frame");
+      }
+      flags = scratch[4] & 0xFF;
+      if ((flags & 0xC0) != VERSION) {
+        throw new IOException("Unsupported LZ4 frame version");
+      }
+      if ((flags & FLAG_DICTIONARY_ID) != 0) {
+        throw new IOException("LZ4 dictionaries are not supported");
+      }
+      int blockSizeId = (scratch[5] >>> 4) & 0x7;
+      if (blockSizeId < 4) {
+        throw new IOException("Invalid LZ4 block size");
+      }
+      maxBlockSize = 1 << (2 * blockSizeId + 8);
+      int descriptorLength = 2;
+      if ((flags & FLAG_CONTENT_SIZE) != 0) {
+        readFully(scratch, 6, 8);
+        descriptorLength += 8;
+      }
+      readFully(scratch, 4 + descriptorLength, 1);
+      if ((scratch[4 + descriptorLength] & 0xFF) != descriptorHash(scratch, 4, descriptorLength)) {
+        throw new IOException("Corrupt LZ4 frame descriptor");
+      }
+      if ((flags & FLAG_BLOCK_CHECKSUM) != 0) {
+        blockHash = new XxHash32();
+      }
+      if ((flags & FLAG_CONTENT_CHECKSUM) != 0) {
+        contentHash = new XxHash32();
+      }
+    }
+
+    /** Decodes the next block, returning false at the end of the frame. */
+    private boolean readBlock() throws IOException {
+      if (!started) {
+        readHeader();
+        started = true;
+      }
+      readFully(scratch, 0, 4);
+      int size = readInt(scratch, 0);
+      if (size == 0) {
+        if (contentHash != null) {
+          readChecksum(contentHash.digest(), "content");
+        }
+        finished = true;
+        return false;
+      }
+      boolean uncompressed = (size & UNCOMPRESSED_BLOCK) != 0;
+      size &= ~UNCOMPRESSED_BLOCK;
+      if (size > maxBlockSize) {
+        throw new IOException("LZ4 block larger than the frame's block size");
+      }
+
+      int start = keepHistory();
+      if (uncompressed) {
+        ensureDecodedCapacity(start + size);
+        readFully(decoded, start, size);
+        decodedEnd = start + size;
+        if (blockHash != null) {
+          blockHash.update(decoded, start, size);
+        }
+      } else {
+        if (compressed == null || compressed.length < size) {
+          compressed = new byte[size];
+        }
+        readFully(compressed, 0, size);
+        if (blockHash != null) {
+          blockHash.update(compressed, 0, size);
+        }
+        // Most blocks decompress to a few times their size, so start there and grow as needed.
+        ensureDecodedCapacity(start + Math.min(maxBlockSize, Math.max(size * 4, 1024)));
+        int end;
+        while ((end = decompressBlock(compressed, size, decoded, start)) < 0) {
+          if (decoded.length - start >= maxBlockSize) {
+            throw new IOException("LZ4 block larger than the frame's block size");
+          }
+          ensureDecodedCapacity(start + Math.min(maxBlockSize, (decoded.length - start) * 2));
+        }
+        decodedEnd = end;
+      }
+      readPos = start;
+      if (blockHash != null) {
+        readChecksum(blockHash.digest(), "block");
+        blockHash.reset();
+      }
+      if (contentHash != null) {
+        contentHash.update(decoded, start, decodedEnd - start);
+      }
+      return true;
+    }
+
+    private void readChecksum(int expected, String what) throws IOException {
+      readFully(scratch, 0, 4);
+      if (readInt(scratch, 0) != expected) {
+        throw new IOException("LZ4 " + what + " checksum mismatch");
+      }
+    }
+
+    /**
+     * Moves the end of the last block to the front of {@link #decoded} when the next block may
+     * refer to it, and returns where the next block starts.
+     */
+    private int keepHistory() {
+      if ((flags & FLAG_BLOCK_INDEPENDENCE) != 0 || decoded == null) {
+        return 0;
+      }
+      int history = Math.min(decodedEnd, MAX_DISTANCE + 1);
+      System.arraycopy(decoded, decodedEnd - history, decoded, 0, history);
+      return history;
+    }
+
+    private void ensureDecodedCapacity(int capacity) {
+      if (decoded == null) {
+        decoded = new byte[capacity];
+      } else if (decoded.length < capacity) {
+        decoded = Arrays.copyOf(decoded, capacity);
+      }
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        int n = in.read(b, off, len);
+        if (n < 0) {
+          throw new EOFException("Unexpected end of LZ4 frame");
+        }
+        off += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
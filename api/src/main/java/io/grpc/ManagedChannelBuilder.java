@@ -261,6 +261,30 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Sends some outbound messages of compressed calls uncompressed, when compressing them isn't
+   * worth it. That is, messages smaller than {@code minMessageSize}, and messages of methods whose
+   * messages have been compressing to more than {@code maxCompressionRatio} of their size. Those
+   * methods still compress one message in a while, so compression comes back if their messages
+   * become compressible again. For example, {@code adaptiveCompression(64, 0.9)} skips messages
+   * under 64 bytes, and methods whose messages shrink by less than 10%.
+   *
+   * <p>By default, every message of a compressed call is compressed.
+   *
+   * @param minMessageSize messages smaller than this many bytes are sent uncompressed
+   * @param maxCompressionRatio a method's messages are sent uncompressed once their compressed size
+   *     over their uncompressed size has been above this. Must be in (0, 1]
+   * @return this
+   * @throws IllegalArgumentException if {@code minMessageSize} is negative or {@code
+   *     maxCompressionRatio} is out of range
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.43.0
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  public T adaptiveCompression(int minMessageSize, double maxCompressionRatio) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Set the decompression registry for use in the channel. This is an advanced API call and
    * shouldn't be used unless you are using custom message encoding. The default supported
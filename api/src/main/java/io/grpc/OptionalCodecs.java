@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Codecs that live in optional artifacts, like zstd which needs a native library. They join the
+ * default registries when they're on the classpath and work on this platform.
+ */
+final class OptionalCodecs {
+  private static final Logger logger = Logger.getLogger(OptionalCodecs.class.getName());
+
+  private static final List<Codec> AVAILABLE = load();
+
+  private OptionalCodecs() {}
+
+  static List<Codec> getAvailable() {
+    return AVAILABLE;
+  }
+
+  private static List<Codec> load() {
+    List<Codec> codecs = new ArrayList<>();
+    try {
+      // Class.forName(String) is used to remove the need for ProGuard configuration. Note that
+      // ProGuard does not detect usages of Class.forName(String, boolean, ClassLoader):
+      // https://sourceforge.net/p/proguard/bugs/418/
+      Class<?> zstd = Class.forName("io.grpc.zstd.ZstdCodec");
+      codecs.add((Codec) zstd.getMethod("create").invoke(null));
+    } catch (ClassNotFoundException e) {
+      logger.log(Level.FINE, "Unable to find zstd codec", e);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      logger.log(Level.FINE, "zstd codec is not available on this platform", e);
+    }
+    return Collections.unmodifiableList(codecs);
+  }
+}
@@ -43,6 +43,18 @@ abstract class PartialForwardingServerCall<ReqT, RespT> extends ServerCall<ReqT,
     return delegate().isReady();
   }
 
+  @Override
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public void setOnReadyThreshold(int numBytes) {
+    delegate().setOnReadyThreshold(numBytes);
+  }
+
+  @Override
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+    delegate().setOnReadyThreshold(lowWatermark, highWatermark);
+  }
+
   @Override
   public void close(Status status, Metadata trailers) {
     delegate().close(status, trailers);
@@ -136,6 +136,27 @@ public abstract class ServerCall<ReqT, RespT> {
    */
   public abstract void sendMessage(RespT message);
 
+  /**
+   * Sends several response messages, in order, as if by calling {@link #sendMessage} for each of
+   * them. Implementations may write them to the transport together, with a single flush, which
+   * saves a write per message when many small messages are sent.
+   *
+   * <p>This abstract class's implementation calls {@link #sendMessage} for each message. Forwarding
+   * calls don't forward this method, so that their {@link #sendMessage} still sees every message;
+   * a forwarding call that doesn't intercept messages may override it to forward the batch.
+   *
+   * @param messages response messages.
+   * @throws IllegalStateException if headers not sent or call is {@link #close}d
+   * @since 1.43.0
+   */
+  @ExperimentalApi("There is no plan to make this API stable, as transports may coalesce writes "
+      + "on their own")
+  public void sendMessages(Iterable<RespT> messages) {
+    for (RespT message : messages) {
+      sendMessage(message);
+    }
+  }
+
   /**
    * If {@code true}, indicates that the call is capable of sending additional messages
    * without requiring excessive buffering internally. This event is
@@ -152,6 +173,37 @@ public abstract class ServerCall<ReqT, RespT> {
     return true;
   }
 
+  /**
+   * Sets the number of outbound bytes that may be queued in the transport before {@link
+   * #isReady()} returns {@code false}. Equivalent to {@code setOnReadyThreshold(numBytes,
+   * numBytes)}.
+   *
+   * @param numBytes the number of queued bytes at which the call stops being ready
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public void setOnReadyThreshold(int numBytes) {
+    setOnReadyThreshold(numBytes, numBytes);
+  }
+
+  /**
+   * Sets the onReady watermarks of the call. Once the transport has queued {@code highWatermark}
+   * outbound bytes, {@link #isReady()} returns {@code false} until the queue drains below {@code
+   * lowWatermark}. Bulk transfers may want megabytes of buffering, while latency sensitive calls
+   * want little; a gap between the two watermarks avoids waking the application for every frame
+   * that is sent.
+   *
+   * <p>If unset, the transport's default threshold (32 KiB for HTTP/2) is used for both. This is
+   * just a hint and transports that do not track queued bytes ignore it. This abstract class's
+   * implementation does nothing.
+   *
+   * @param lowWatermark the number of queued bytes below which the call becomes ready again
+   * @param highWatermark the number of queued bytes at which the call stops being ready
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+    // noop
+  }
+
   /**
    * Close the call with the provided status. No further sending or receiving will occur. If {@link
    * Status#isOk} is {@code false}, then the call is said to have failed.
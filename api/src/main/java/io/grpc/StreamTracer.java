@@ -65,6 +65,21 @@ public abstract class StreamTracer {
   public void outboundMessageSent(int seqNo, long optionalWireSize, long optionalUncompressedSize) {
   }
 
+  /**
+   * The stream has decided whether to compress an outbound message. This is only called for
+   * non-empty messages of streams that have a compressor, before {@link #outboundMessageSent} for
+   * the same message. Streams may send small messages, or messages that have not been shrinking,
+   * uncompressed.
+   *
+   * @param seqNo the sequential number of the message within the stream, starting from 0.  It can
+   *              be used to correlate with {@link #outboundMessage(int)} for the same message.
+   * @param uncompressedSize the serialized size of the message
+   * @param compressedSize the compressed size of the message, without the gRPC message header. -1
+   *                       if the message was sent uncompressed
+   */
+  public void outboundMessageCompression(int seqNo, long uncompressedSize, long compressedSize) {
+  }
+
   /**
    * An inbound message has been fully read from the transport.
    *
@@ -133,6 +133,27 @@ public class CallOptionsTest {
     assertThat(options2.getExecutor()).isNull();
   }
 
+  @Test
+  public void withOnReadyThreshold() {
+    assertThat(CallOptions.DEFAULT.getOnReadyThreshold()).isNull();
+    assertThat(CallOptions.DEFAULT.getOnReadyLowWatermark()).isNull();
+
+    CallOptions options1 = CallOptions.DEFAULT.withOnReadyThreshold(1024);
+    assertThat(options1.getOnReadyThreshold()).isEqualTo(1024);
+    assertThat(options1.getOnReadyLowWatermark()).isEqualTo(1024);
+
+    CallOptions options2 = options1.withOnReadyThreshold(256, 4096);
+    assertThat(options1.getOnReadyThreshold()).isEqualTo(1024);
+    assertThat(options2.getOnReadyThreshold()).isEqualTo(4096);
+    assertThat(options2.getOnReadyLowWatermark()).isEqualTo(256);
+    assertThat(options2.withAuthority("authority").getOnReadyThreshold()).isEqualTo(4096);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void withOnReadyThreshold_highBelowLow() {
+    CallOptions.DEFAULT.withOnReadyThreshold(4096, 256);
+  }
+
   @Test
   public void withDeadlineAfter() {
     Deadline actual = CallOptions.DEFAULT.withDeadlineAfter(1, MINUTES).getDeadline();
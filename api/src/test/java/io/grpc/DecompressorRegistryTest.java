@@ -45,6 +45,8 @@ public class DecompressorRegistryTest {
         DecompressorRegistry.getDefaultInstance().lookupDecompressor("identity"));
     assertNotNull("Expected gzip to be registered",
         DecompressorRegistry.getDefaultInstance().lookupDecompressor("gzip"));
+    assertNotNull("Expected lz4 to be registered",
+        DecompressorRegistry.getDefaultInstance().lookupDecompressor("lz4"));
   }
 
   @Test
@@ -52,11 +54,18 @@ public class DecompressorRegistryTest {
     Set<String> knownEncodings = new HashSet<>();
     knownEncodings.add("identity");
     knownEncodings.add("gzip");
+    knownEncodings.add("lz4");
 
     assertEquals(knownEncodings,
         DecompressorRegistry.getDefaultInstance().getKnownMessageEncodings());
   }
 
+  @Test
+  public void getAdvertisedMessageEncodings_defaultDoesNotAdvertiseLz4() {
+    assertFalse(DecompressorRegistry.getDefaultInstance().getAdvertisedMessageEncodings()
+        .contains("lz4"));
+  }
+
   /*
    * This test will likely change once encoders are advertised
    */
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Lz4Frame}. */
+@RunWith(JUnit4.class)
+public class Lz4FrameTest {
+  private final Codec codec = new Codec.Lz4();
+
+  @Test
+  public void roundTrip_empty() throws IOException {
+    assertArrayEquals(new byte[0], roundTrip(new byte[0]));
+  }
+
+  @Test
+  public void roundTrip_tooShortToMatch() throws IOException {
+    byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(data, roundTrip(data));
+  }
+
+  @Test
+  public void roundTrip_repetitiveDataShrinks() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("{\"name\": \"item-").append(i % 37).append("\", \"enabled\": true}\n");
+    }
+    byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    byte[] compressed = compress(data);
+
+    assertTrue(compressed.length < data.length / 4);
+    assertArrayEquals(data, decompress(compressed));
+  }
+
+  @Test
+  public void roundTrip_randomDataIsStoredUncompressed() throws IOException {
+    byte[] data = new byte[10000];
+    new Random(1).nextBytes(data);
+
+    byte[] compressed = compress(data);
+
+    // Header, one block size, the data, and the end mark.
+    assertEquals(7 + 4 + data.length + 4, compressed.length);
+    assertArrayEquals(data, decompress(compressed));
+  }
+
+  @Test
+  public void roundTrip_multipleBlocks() throws IOException {
+    byte[] data = new byte[300 * 1024];
+    Random random = new Random(2);
+    for (int i = 0; i < data.length; i++) {
+      // Compressible, but not trivially.
+      data[i] = (byte) ('a' + random.nextInt(4));
+    }
+    assertArrayEquals(data, roundTrip(data));
+  }
+
+  @Test
+  public void roundTrip_writtenByteByByte() throws IOException {
+    byte[] data = "abcabcabcabcabcabcabcabc-xyzxyzxyzxyz".getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream os = codec.compress(out);
+    for (byte b : data) {
+      os.write(b);
+    }
+    os.close();
+
+    InputStream is = codec.decompress(new ByteArrayInputStream(out.toByteArray()));
+    ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+    int b;
+    while ((b = is.read()) != -1) {
+      decompressed.write(b);
+    }
+    assertArrayEquals(data, decompressed.toByteArray());
+  }
+
+  @Test
+  public void decompressBlock_overlappingMatch() throws IOException {
+    byte[] block = {
+        // One literal, then a match of 19 bytes one byte back.
+        0x1F, 'a', 1, 0, 0,
+        // Five literals to end the block.
+        0x50, 'b', 'b', 'b', 'b', 'b'};
+    byte[] dst = new byte[25];
+
+    assertEquals(25, Lz4Frame.decompressBlock(block, block.length, dst, 0));
+
+    byte[] expected = new byte[25];
+    Arrays.fill(expected, 0, 20, (byte) 'a');
+    Arrays.fill(expected, 20, 25, (byte) 'b');
+    assertArrayEquals(expected, dst);
+  }
+
+  @Test
+  public void decompressBlock_reportsWhenOutputDoesNotFit() throws IOException {
+    byte[] block = {0x1F, 'a', 1, 0, 0, 0x50, 'b', 'b', 'b', 'b', 'b'};
+    assertEquals(-1, Lz4Frame.decompressBlock(block, block.length, new byte[10], 0));
+  }
+
+  @Test
+  public void decompressBlock_rejectsMatchBeforeStart() {
+    byte[] block = {0x10, 'a', 2, 0, 0x50, 'b', 'b', 'b', 'b', 'b'};
+    try {
+      Lz4Frame.decompressBlock(block, block.length, new byte[32], 0);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void decompress_truncatedFrame() throws IOException {
+    byte[] compressed = compress(new byte[1000]);
+    try {
+      decompress(Arrays.copyOf(compressed, compressed.length - 6));
+      fail("Expected exception");
+    } catch (EOFException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void decompress_corruptDescriptor() throws IOException {
+    byte[] compressed = compress(new byte[1000]);
+    compressed[5] ^= 0x10;
+    try {
+      decompress(compressed);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void xxHash32_knownValues() {
+    assertEquals(0x02CC5D05, xxHash32(""));
+    assertEquals(0x550D7456, xxHash32("a"));
+    assertEquals(0x32D153FF, xxHash32("abc"));
+    assertEquals(0xE2293B2F, xxHash32("Nobody inspects the spammish repetition"));
+  }
+
+  @Test
+  public void xxHash32_incrementalUpdates() {
+    byte[] data = new byte[1000];
+    new Random(3).nextBytes(data);
+    Lz4Frame.XxHash32 hash = new Lz4Frame.XxHash32();
+    for (int off = 0, len = 1; off < data.length; off += len, len = len * 2 % 37 + 1) {
+      hash.update(data, off, Math.min(len, data.length - off));
+    }
+    assertEquals(Lz4Frame.XxHash32.hash(data, 0, data.length), hash.digest());
+  }
+
+  @Test
+  public void decompress_verifiesChecksums() throws IOException {
+    byte[] content = "hello, checksummed world".getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(content, decompress(frameWithChecksums(content)));
+  }
+
+  @Test
+  public void decompress_corruptBlockChecksum() throws IOException {
+    byte[] frame = frameWithChecksums("hello".getBytes(StandardCharsets.UTF_8));
+    // The block checksum follows the header, block size and 5 bytes of data.
+    frame[7 + 4 + 5] ^= 1;
+    try {
+      decompress(frame);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      assertEquals("LZ4 block checksum mismatch", expected.getMessage());
+    }
+  }
+
+  @Test
+  public void decompress_corruptContentChecksum() throws IOException {
+    byte[] frame = frameWithChecksums("hello".getBytes(StandardCharsets.UTF_8));
+    frame[frame.length - 1] ^= 1;
+    try {
+      decompress(frame);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      assertEquals("LZ4 content checksum mismatch", expected.getMessage());
+    }
+  }
+
+  /** Builds a frame with block and content checksums, holding one uncompressed block. */
+  private static byte[] frameWithChecksums(byte[] content) {
+    ByteBuffer frame = ByteBuffer.allocate(7 + 4 + content.length + 4 + 4 + 4)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    // Magic, then version 1 with independent blocks and both checksums, and 64 KiB blocks.
+    frame.putInt(0x184D2204).put((byte) 0x74).put((byte) 0x40);
+    frame.put((byte) (Lz4Frame.XxHash32.hash(frame.array(), 4, 2) >>> 8));
+    frame.putInt(content.length | 0x80000000).put(content);
+    frame.putInt(Lz4Frame.XxHash32.hash(content, 0, content.length));
+    frame.putInt(0);
+    frame.putInt(Lz4Frame.XxHash32.hash(content, 0, content.length));
+    return frame.array();
+  }
+
+  private static int xxHash32(String s) {
+    byte[] data = s.getBytes(StandardCharsets.UTF_8);
+    return Lz4Frame.XxHash32.hash(data, 0, data.length);
+  }
+
+  private byte[] roundTrip(byte[] data) throws IOException {
+    return decompress(compress(data));
+  }
+
+  private byte[] compress(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream os = codec.compress(out);
+    os.write(data);
+    os.close();
+    return out.toByteArray();
+  }
+
+  private byte[] decompress(byte[] data) throws IOException {
+    return ByteStreams.toByteArray(codec.decompress(new ByteArrayInputStream(data)));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.benchmarks.proto.Control;
+import io.grpc.benchmarks.proto.Payloads;
+import io.grpc.zstd.ZstdCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the CPU cost and compression ratio of the message codecs, on protobuf messages with
+ * the mix of strings, enums and small numbers typical of RPCs.
+ *
+ * <p>The ratio can be read from the {@code uncompressedBytes} and {@code compressedBytes} counters
+ * reported for {@link #compress}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+  /** The codec's message encoding, or "zstd-dict" for zstd with a trained dictionary. */
+  @Param({"gzip", "lz4", "zstd", "zstd-dict"})
+  public String codec;
+
+  /** How many scenarios the message holds, from a small request to a large response. */
+  @Param({"1", "100"})
+  public int scenarios;
+
+  private Codec codecImpl;
+  private byte[] uncompressed;
+  private byte[] compressed;
+  private final ByteArrayOutputStream compressOut = new ByteArrayOutputStream();
+  private final byte[] decompressBuffer = new byte[8192];
+
+  @Setup
+  public void setUp() throws IOException {
+    if ("zstd-dict".equals(codec)) {
+      // Trained on messages like, but not the same as, those being compressed.
+      ZstdDictTrainer trainer = new ZstdDictTrainer(4 * 1024 * 1024, 32 * 1024);
+      Random random = new Random(1);
+      for (int i = 0; i < 2000; i++) {
+        trainer.addSample(newScenarios(random, 1).toByteArray());
+      }
+      codecImpl = ZstdCodec.withDictionary(trainer.trainSamples());
+    } else {
+      codecImpl = (Codec) CompressorRegistry.getDefaultInstance().lookupCompressor(codec);
+      if (codecImpl == null) {
+        throw new IllegalArgumentException("Unknown codec: " + codec);
+      }
+    }
+    uncompressed = newScenarios(new Random(2), scenarios).toByteArray();
+    compressMessage();
+    compressed = compressOut.toByteArray();
+  }
+
+  private static Control.Scenarios newScenarios(Random random, int count) {
+    Control.Scenarios.Builder builder = Control.Scenarios.newBuilder();
+    for (int i = 0; i < count; i++) {
+      Control.RpcType rpcType = random.nextBoolean()
+          ? Control.RpcType.UNARY : Control.RpcType.STREAMING;
+      int payloadSize = 1 << random.nextInt(16);
+      Control.ClientConfig.Builder clientConfig = Control.ClientConfig.newBuilder()
+          .setClientType(Control.ClientType.ASYNC_CLIENT)
+          .setRpcType(rpcType)
+          .setOutstandingRpcsPerChannel(1 + random.nextInt(100))
+          .setClientChannels(1 + random.nextInt(64))
+          .setAsyncClientThreads(random.nextInt(16))
+          .setPayloadConfig(Payloads.PayloadConfig.newBuilder()
+              .setSimpleParams(Payloads.SimpleProtoParams.newBuilder()
+                  .setReqSize(payloadSize)
+                  .setRespSize(payloadSize)));
+      for (int j = 0; j < 1 + random.nextInt(4); j++) {
+        clientConfig.addServerTargets(
+            "10.0." + random.nextInt(256) + "." + random.nextInt(256) + ":" + (10000 + j));
+      }
+      builder.addScenarios(Control.Scenario.newBuilder()
+          .setName("java_protobuf_async_" + rpcType.name().toLowerCase(Locale.ROOT) + "_"
+              + payloadSize + "b_" + random.nextInt(1000))
+          .setClientConfig(clientConfig)
+          .setServerConfig(Control.ServerConfig.newBuilder()
+              .setServerType(Control.ServerType.ASYNC_SERVER)
+              .setAsyncServerThreads(random.nextInt(16)))
+          .setNumClients(1 + random.nextInt(8))
+          .setNumServers(1)
+          .setWarmupSeconds(5)
+          .setBenchmarkSeconds(30));
+    }
+    return builder.build();
+  }
+
+  private int compressMessage() throws IOException {
+    compressOut.reset();
+    OutputStream os = codecImpl.compress(compressOut);
+    os.write(uncompressed);
+    os.close();
+    return compressOut.size();
+  }
+
+  /** Counts bytes before and after compression, to report the ratio alongside the speed. */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class CompressedSize {
+    public long uncompressedBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      uncompressedBytes = 0;
+      compressedBytes = 0;
+    }
+  }
+
+  /** Compresses a message. */
+  @Benchmark
+  public int compress(CompressedSize size) throws IOException {
+    int compressedLength = compressMessage();
+    size.uncompressedBytes += uncompressed.length;
+    size.compressedBytes += compressedLength;
+    return compressedLength;
+  }
+
+  /** Decompresses a message. */
+  @Benchmark
+  public long decompress() throws IOException {
+    InputStream is = codecImpl.decompress(new ByteArrayInputStream(compressed));
+    long total = 0;
+    int read;
+    while ((read = is.read(decompressBuffer)) != -1) {
+      total += read;
+    }
+    is.close();
+    return total;
+  }
+}
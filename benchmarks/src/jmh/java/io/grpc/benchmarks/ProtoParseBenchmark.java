@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import com.google.protobuf.ByteString;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.benchmarks.proto.Messages;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.protobuf.lite.ParseBufferPool;
+import io.grpc.protobuf.lite.ProtoLiteUtils;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures parsing received messages with the protobuf marshallers, from the buffers a transport
+ * hands out, to the parsed message.
+ *
+ * <p>Run with {@code -prof gc}: {@code gc.alloc.rate.norm} is the bytes allocated per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProtoParseBenchmark {
+  /**
+   * "copy" parses with the default marshaller, which copies {@code bytes} fields out of its pooled
+   * array. "aliasing" shares the array with the message, and releases it once parsed, as the
+   * releasing interceptor would once the handler is done.
+   */
+  @Param({"copy", "aliasing"})
+  public String mode;
+
+  /** Size of the request's payload. */
+  @Param({"100", "8192", "1048576"})
+  public int payloadSize;
+
+  private ParseBufferPool pool;
+  private Marshaller<Messages.SimpleRequest> marshaller;
+  private boolean aliasing;
+  private byte[] serialized;
+
+  @Setup
+  public void setUp() {
+    pool = ParseBufferPool.create(16 * 1024 * 1024);
+    if ("copy".equals(mode)) {
+      marshaller = ProtoLiteUtils.marshaller(Messages.SimpleRequest.getDefaultInstance(), pool);
+    } else if ("aliasing".equals(mode)) {
+      marshaller =
+          ProtoLiteUtils.aliasingMarshaller(Messages.SimpleRequest.getDefaultInstance(), pool);
+      aliasing = true;
+    } else {
+      throw new IllegalArgumentException("Unknown mode: " + mode);
+    }
+    serialized = Messages.SimpleRequest.newBuilder()
+        .setResponseSize(payloadSize)
+        .setPayload(Messages.Payload.newBuilder()
+            .setBody(ByteString.copyFrom(new byte[payloadSize])))
+        .build()
+        .toByteArray();
+  }
+
+  /** Parses a request. */
+  @Benchmark
+  public Messages.SimpleRequest parse() {
+    Messages.SimpleRequest request =
+        marshaller.parse(ReadableBuffers.openStream(ReadableBuffers.wrap(serialized), true));
+    if (aliasing) {
+      pool.release(request);
+    }
+    return request;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.benchmarks.qps.AsyncServer;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.okhttp.OkHttpServerBuilder;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures how long it takes to build, start and shut down a server, which dominates the cost of
+ * short-lived processes such as sidecars.
+ */
+@State(Scope.Benchmark)
+public class ServerStartupBenchmark {
+  public enum Transport {
+    NETTY, OKHTTP
+  }
+
+  @Param({"NETTY", "OKHTTP"})
+  public Transport transport;
+
+  /** Builds, starts and shuts down a server with a single service. */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Server startAndShutdown() throws Exception {
+    InetSocketAddress address = new InetSocketAddress("localhost", 0);
+    ServerBuilder<?> serverBuilder;
+    switch (transport) {
+      case NETTY:
+        serverBuilder = NettyServerBuilder.forAddress(address, InsecureServerCredentials.create());
+        break;
+      case OKHTTP:
+        serverBuilder = OkHttpServerBuilder.forAddress(address, InsecureServerCredentials.create());
+        break;
+      default:
+        throw new Exception("Unknown transport: " + transport);
+    }
+    Server server = serverBuilder
+        .addService(new AsyncServer.BenchmarkServiceImpl())
+        .build()
+        .start();
+    server.shutdown();
+    if (!server.awaitTermination(5, TimeUnit.SECONDS)) {
+      throw new Exception("failed to shut down server");
+    }
+    return server;
+  }
+}
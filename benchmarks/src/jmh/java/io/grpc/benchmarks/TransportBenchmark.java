@@ -16,16 +16,7 @@
 
 package io.grpc.benchmarks;
 
-import static io.grpc.benchmarks.Utils.pickUnusedPort;
-
 import com.google.protobuf.ByteString;
-import io.grpc.InsecureChannelCredentials;
-import io.grpc.InsecureServerCredentials;
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
-import io.grpc.Server;
-import io.grpc.ServerBuilder;
-import io.grpc.ServerCredentials;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.benchmarks.proto.BenchmarkServiceGrpc;
@@ -33,23 +24,8 @@ import io.grpc.benchmarks.proto.Messages.Payload;
 import io.grpc.benchmarks.proto.Messages.SimpleRequest;
 import io.grpc.benchmarks.proto.Messages.SimpleResponse;
 import io.grpc.benchmarks.qps.AsyncServer;
-import io.grpc.inprocess.InProcessChannelBuilder;
-import io.grpc.inprocess.InProcessServerBuilder;
-import io.grpc.netty.NegotiationType;
-import io.grpc.netty.NettyChannelBuilder;
-import io.grpc.netty.NettyServerBuilder;
-import io.grpc.okhttp.OkHttpChannelBuilder;
 import io.grpc.stub.StreamObserver;
-import io.netty.channel.Channel;
-import io.netty.channel.DefaultEventLoopGroup;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.ServerChannel;
-import io.netty.channel.local.LocalAddress;
-import io.netty.channel.local.LocalChannel;
-import io.netty.channel.local.LocalServerChannel;
-import java.net.InetSocketAddress;
 import java.util.Iterator;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -67,131 +43,31 @@ import org.openjdk.jmh.annotations.Threads;
 @State(Scope.Benchmark)
 public class TransportBenchmark {
   public enum Transport {
-    INPROCESS, NETTY, NETTY_LOCAL, NETTY_EPOLL, OKHTTP
+    INPROCESS, NETTY, NETTY_LOCAL, NETTY_EPOLL, NETTY_UDS, OKHTTP, OKHTTP_SERVER, SHM
   }
 
-  @Param({"INPROCESS", "NETTY", "OKHTTP"})
+  @Param({"INPROCESS", "NETTY", "OKHTTP", "OKHTTP_SERVER"})
   public Transport transport;
   @Param({"true", "false"})
   public boolean direct;
 
-  private ManagedChannel channel;
-  private Server server;
+  private TransportFixture fixture;
   private BenchmarkServiceGrpc.BenchmarkServiceBlockingStub stub;
   private BenchmarkServiceGrpc.BenchmarkServiceStub asyncStub;
-  private EventLoopGroup groupToShutdown;
 
   @Setup
   public void setUp() throws Exception {
-    ServerCredentials serverCreds = InsecureServerCredentials.create();
-    ServerBuilder<?> serverBuilder;
-    ManagedChannelBuilder<?> channelBuilder;
-    switch (transport) {
-      case INPROCESS:
-      {
-        String name = "bench" + Math.random();
-        serverBuilder = InProcessServerBuilder.forName(name);
-        channelBuilder = InProcessChannelBuilder.forName(name);
-        break;
-      }
-      case NETTY:
-      {
-        InetSocketAddress address = new InetSocketAddress("localhost", pickUnusedPort());
-        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds);
-        channelBuilder = NettyChannelBuilder.forAddress(address)
-            .negotiationType(NegotiationType.PLAINTEXT);
-        break;
-      }
-      case NETTY_LOCAL:
-      {
-        String name = "bench" + Math.random();
-        LocalAddress address = new LocalAddress(name);
-        EventLoopGroup group = new DefaultEventLoopGroup();
-        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds)
-            .bossEventLoopGroup(group)
-            .workerEventLoopGroup(group)
-            .channelType(LocalServerChannel.class);
-        channelBuilder = NettyChannelBuilder.forAddress(address)
-            .eventLoopGroup(group)
-            .channelType(LocalChannel.class)
-            .negotiationType(NegotiationType.PLAINTEXT);
-        groupToShutdown = group;
-        break;
-      }
-      case NETTY_EPOLL:
-      {
-        InetSocketAddress address = new InetSocketAddress("localhost", pickUnusedPort());
-
-        // Reflection used since they are only available on linux.
-        Class<?> groupClass = Class.forName("io.netty.channel.epoll.EpollEventLoopGroup");
-        EventLoopGroup group = (EventLoopGroup) groupClass.getConstructor().newInstance();
-
-        Class<? extends ServerChannel> serverChannelClass =
-            Class.forName("io.netty.channel.epoll.EpollServerSocketChannel")
-              .asSubclass(ServerChannel.class);
-        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds)
-            .bossEventLoopGroup(group)
-            .workerEventLoopGroup(group)
-            .channelType(serverChannelClass);
-        Class<? extends Channel> channelClass =
-            Class.forName("io.netty.channel.epoll.EpollSocketChannel")
-              .asSubclass(Channel.class);
-        channelBuilder = NettyChannelBuilder.forAddress(address)
-            .eventLoopGroup(group)
-            .channelType(channelClass)
-            .negotiationType(NegotiationType.PLAINTEXT);
-        groupToShutdown = group;
-        break;
-      }
-      case OKHTTP:
-      {
-        int port = pickUnusedPort();
-        InetSocketAddress address = new InetSocketAddress("localhost", port);
-        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds);
-        channelBuilder = OkHttpChannelBuilder
-            .forAddress("localhost", port, InsecureChannelCredentials.create());
-        break;
-      }
-      default:
-        throw new Exception("Unknown transport: " + transport);
-    }
-
-    if (direct) {
-      serverBuilder.directExecutor();
-      // Because blocking stubs avoid the executor, this doesn't do much.
-      channelBuilder.directExecutor();
-    }
-
-    server = serverBuilder
-        .addService(new AsyncServer.BenchmarkServiceImpl())
-        .build();
-    server.start();
-    channel = channelBuilder.build();
-    stub = BenchmarkServiceGrpc.newBlockingStub(channel);
-    asyncStub = BenchmarkServiceGrpc.newStub(channel);
+    fixture = TransportFixture.start(
+        transport, direct, new AsyncServer.BenchmarkServiceImpl().bindService());
+    stub = BenchmarkServiceGrpc.newBlockingStub(fixture.channel);
+    asyncStub = BenchmarkServiceGrpc.newStub(fixture.channel);
     // Wait for channel to start
     stub.unaryCall(SimpleRequest.getDefaultInstance());
   }
 
   @TearDown
   public void tearDown() throws Exception {
-    channel.shutdown();
-    server.shutdown();
-    channel.awaitTermination(1, TimeUnit.SECONDS);
-    server.awaitTermination(1, TimeUnit.SECONDS);
-    if (!channel.isTerminated()) {
-      throw new Exception("failed to shut down channel");
-    }
-    if (!server.isTerminated()) {
-      throw new Exception("failed to shut down server");
-    }
-    if (groupToShutdown != null) {
-      Future<?> unused = groupToShutdown.shutdownGracefully(0, 1, TimeUnit.SECONDS);
-      groupToShutdown.awaitTermination(1, TimeUnit.SECONDS);
-      if (!groupToShutdown.isTerminated()) {
-        throw new Exception("failed to shut down event loop group.");
-      }
-    }
+    fixture.shutdown();
   }
 
   private static final SimpleRequest UNARY_CALL_1024_REQUEST = SimpleRequest.newBuilder()
@@ -219,6 +95,30 @@ public class TransportBenchmark {
     return stub.unaryCall(BYTE_THROUGHPUT_REQUEST);
   }
 
+  @State(Scope.Benchmark)
+  public static class PayloadState {
+    @Param({"65536", "1048576"})
+    public int payloadSize;
+
+    private SimpleRequest request;
+
+    @Setup
+    public void setUp() {
+      request = SimpleRequest.newBuilder()
+          .setResponseSize(payloadSize)
+          .setPayload(Payload.newBuilder().setBody(ByteString.copyFrom(new byte[payloadSize])))
+          .build();
+    }
+  }
+
+  /** Sends and receives {@code payloadSize} bytes in each call. */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Threads(10)
+  public SimpleResponse unaryCallsLargePayloadThroughput(PayloadState state) {
+    return stub.unaryCall(state.request);
+  }
+
   private static final Throwable OK_THROWABLE = new RuntimeException("OK");
 
   @State(Scope.Thread)
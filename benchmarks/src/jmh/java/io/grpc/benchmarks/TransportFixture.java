@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import static io.grpc.benchmarks.Utils.pickUnusedPort;
+
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerCredentials;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.benchmarks.TransportBenchmark.Transport;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NegotiationType;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+import io.grpc.okhttp.OkHttpServerBuilder;
+import io.grpc.shm.SharedMemoryChannelBuilder;
+import io.grpc.shm.SharedMemoryServerBuilder;
+import io.netty.channel.Channel;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A running server and a channel to it, over one of the {@link Transport}s. Benchmarks that
+ * compare transports share this, so supporting another transport only takes a new case here.
+ */
+final class TransportFixture {
+  final ManagedChannel channel;
+  private final Server server;
+  @Nullable
+  private final EventLoopGroup groupToShutdown;
+
+  private TransportFixture(
+      ManagedChannel channel, Server server, @Nullable EventLoopGroup groupToShutdown) {
+    this.channel = channel;
+    this.server = server;
+    this.groupToShutdown = groupToShutdown;
+  }
+
+  /** Starts a server running {@code service}, and builds a channel to it. */
+  static TransportFixture start(
+      Transport transport, boolean direct, ServerServiceDefinition service) throws Exception {
+    ServerCredentials serverCreds = InsecureServerCredentials.create();
+    ServerBuilder<?> serverBuilder;
+    ManagedChannelBuilder<?> channelBuilder;
+    EventLoopGroup groupToShutdown = null;
+    switch (transport) {
+      case INPROCESS:
+      {
+        String name = "bench" + Math.random();
+        serverBuilder = InProcessServerBuilder.forName(name);
+        channelBuilder = InProcessChannelBuilder.forName(name);
+        break;
+      }
+      case NETTY:
+      {
+        InetSocketAddress address = new InetSocketAddress("localhost", pickUnusedPort());
+        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds);
+        channelBuilder = NettyChannelBuilder.forAddress(address)
+            .negotiationType(NegotiationType.PLAINTEXT);
+        break;
+      }
+      case NETTY_LOCAL:
+      {
+        String name = "bench" + Math.random();
+        LocalAddress address = new LocalAddress(name);
+        EventLoopGroup group = new DefaultEventLoopGroup();
+        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds)
+            .bossEventLoopGroup(group)
+            .workerEventLoopGroup(group)
+            .channelType(LocalServerChannel.class);
+        channelBuilder = NettyChannelBuilder.forAddress(address)
+            .eventLoopGroup(group)
+            .channelType(LocalChannel.class)
+            .negotiationType(NegotiationType.PLAINTEXT);
+        groupToShutdown = group;
+        break;
+      }
+      case NETTY_EPOLL:
+      {
+        InetSocketAddress address = new InetSocketAddress("localhost", pickUnusedPort());
+
+        // Reflection used since they are only available on linux.
+        Class<?> groupClass = Class.forName("io.netty.channel.epoll.EpollEventLoopGroup");
+        EventLoopGroup group = (EventLoopGroup) groupClass.getConstructor().newInstance();
+
+        Class<? extends ServerChannel> serverChannelClass =
+            Class.forName("io.netty.channel.epoll.EpollServerSocketChannel")
+              .asSubclass(ServerChannel.class);
+        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds)
+            .bossEventLoopGroup(group)
+            .workerEventLoopGroup(group)
+            .channelType(serverChannelClass);
+        Class<? extends Channel> channelClass =
+            Class.forName("io.netty.channel.epoll.EpollSocketChannel")
+              .asSubclass(Channel.class);
+        channelBuilder = NettyChannelBuilder.forAddress(address)
+            .eventLoopGroup(group)
+            .channelType(channelClass)
+            .negotiationType(NegotiationType.PLAINTEXT);
+        groupToShutdown = group;
+        break;
+      }
+      case NETTY_UDS:
+      {
+        DomainSocketAddress address = new DomainSocketAddress(unusedSocketPath());
+
+        // Reflection used since they are only available on linux.
+        Class<?> groupClass = Class.forName("io.netty.channel.epoll.EpollEventLoopGroup");
+        EventLoopGroup group = (EventLoopGroup) groupClass.getConstructor().newInstance();
+
+        Class<? extends ServerChannel> serverChannelClass =
+            Class.forName("io.netty.channel.epoll.EpollServerDomainSocketChannel")
+              .asSubclass(ServerChannel.class);
+        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds)
+            .bossEventLoopGroup(group)
+            .workerEventLoopGroup(group)
+            .channelType(serverChannelClass);
+        Class<? extends Channel> channelClass =
+            Class.forName("io.netty.channel.epoll.EpollDomainSocketChannel")
+              .asSubclass(Channel.class);
+        channelBuilder = NettyChannelBuilder.forAddress(address)
+            .eventLoopGroup(group)
+            .channelType(channelClass)
+            .negotiationType(NegotiationType.PLAINTEXT);
+        groupToShutdown = group;
+        break;
+      }
+      case SHM:
+      {
+        String path = unusedSocketPath();
+        serverBuilder = SharedMemoryServerBuilder.forPath(path);
+        channelBuilder = SharedMemoryChannelBuilder.forPath(path);
+        break;
+      }
+      case OKHTTP:
+      {
+        int port = pickUnusedPort();
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+        serverBuilder = NettyServerBuilder.forAddress(address, serverCreds);
+        channelBuilder = OkHttpChannelBuilder
+            .forAddress("localhost", port, InsecureChannelCredentials.create());
+        break;
+      }
+      case OKHTTP_SERVER:
+      {
+        int port = pickUnusedPort();
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+        serverBuilder = OkHttpServerBuilder.forAddress(address, serverCreds);
+        channelBuilder = OkHttpChannelBuilder
+            .forAddress("localhost", port, InsecureChannelCredentials.create());
+        break;
+      }
+      default:
+        throw new Exception("Unknown transport: " + transport);
+    }
+
+    if (direct) {
+      serverBuilder.directExecutor();
+      // Because blocking stubs avoid the executor, this doesn't do much.
+      channelBuilder.directExecutor();
+    }
+
+    Server server = serverBuilder
+        .addService(service)
+        .build();
+    server.start();
+    return new TransportFixture(channelBuilder.build(), server, groupToShutdown);
+  }
+
+  private static String unusedSocketPath() throws IOException {
+    File file = File.createTempFile("grpc-bench", ".sock");
+    if (!file.delete()) {
+      throw new IOException("Failed to delete " + file);
+    }
+    return file.getAbsolutePath();
+  }
+
+  void shutdown() throws Exception {
+    channel.shutdown();
+    server.shutdown();
+    channel.awaitTermination(1, TimeUnit.SECONDS);
+    server.awaitTermination(1, TimeUnit.SECONDS);
+    if (!channel.isTerminated()) {
+      throw new Exception("failed to shut down channel");
+    }
+    if (!server.isTerminated()) {
+      throw new Exception("failed to shut down server");
+    }
+    if (groupToShutdown != null) {
+      Future<?> unused = groupToShutdown.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+      groupToShutdown.awaitTermination(1, TimeUnit.SECONDS);
+      if (!groupToShutdown.isTerminated()) {
+        throw new Exception("failed to shut down event loop group.");
+      }
+    }
+  }
+}
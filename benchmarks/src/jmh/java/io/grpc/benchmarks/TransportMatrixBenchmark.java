@@ -0,0 +1,223 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.benchmarks.TransportBenchmark.Transport;
+import io.grpc.benchmarks.proto.BenchmarkServiceGrpc;
+import io.grpc.benchmarks.proto.Messages.Payload;
+import io.grpc.benchmarks.proto.Messages.SimpleRequest;
+import io.grpc.benchmarks.proto.Messages.SimpleResponse;
+import io.grpc.benchmarks.qps.AsyncServer;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Runs the same calls over each combination of transport, payload size, concurrency and
+ * compression, so transports can be compared with each other and with earlier runs.
+ *
+ * <p>Each operation is one round of {@code concurrency} calls (or messages, when streaming) that
+ * are all in flight at once. Any dimension can be changed with JMH's {@code -p}. The transports
+ * that need native epoll are left out by default, and can be run with, for example, {@code -p
+ * transport=NETTY,NETTY_EPOLL,NETTY_UDS}. The build writes results as JSON, which {@link
+ * BenchmarkComparison} can diff against the results of another run.
+ *
+ * <p>Each benchmark thread has its own channel and streams, so rounds on different threads don't
+ * share responses.
+ */
+@State(Scope.Thread)
+public class TransportMatrixBenchmark {
+  private static final long ROUND_TIMEOUT_SECONDS = 60;
+
+  @Param({"INPROCESS", "NETTY", "OKHTTP"})
+  public Transport transport;
+  @Param({"0", "1024", "65536"})
+  public int payloadSize;
+  @Param({"1", "16"})
+  public int concurrency;
+  @Param({"identity", "gzip"})
+  public String compression;
+
+  private TransportFixture fixture;
+  private BenchmarkServiceGrpc.BenchmarkServiceStub asyncStub;
+  private SimpleRequest request;
+  private final List<StreamObserver<SimpleRequest>> streams =
+      new ArrayList<StreamObserver<SimpleRequest>>();
+  /**
+   * The round waiting on {@link #streams}. Sending on the streams publishes it to the threads
+   * that deliver the replies.
+   */
+  private Round currentRound;
+
+  @Setup
+  public void setUp() throws Exception {
+    fixture = TransportFixture.start(
+        transport,
+        false,
+        ServerInterceptors.intercept(
+            new AsyncServer.BenchmarkServiceImpl(), new CompressResponses(compression)));
+    asyncStub = BenchmarkServiceGrpc.newStub(fixture.channel).withCompression(compression);
+    request = SimpleRequest.newBuilder()
+        .setResponseSize(payloadSize)
+        .setPayload(Payload.newBuilder().setBody(ByteString.copyFrom(new byte[payloadSize])))
+        .build();
+    // Wait for channel to start
+    BenchmarkServiceGrpc.newBlockingStub(fixture.channel)
+        .unaryCall(SimpleRequest.getDefaultInstance());
+
+    StreamObserver<SimpleResponse> responseObserver = new PingPongObserver();
+    for (int i = 0; i < concurrency; i++) {
+      streams.add(asyncStub.streamingCall(responseObserver));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    Round round = new Round(streams.size());
+    currentRound = round;
+    for (StreamObserver<SimpleRequest> stream : streams) {
+      stream.onCompleted();
+    }
+    streams.clear();
+    round.await();
+    fixture.shutdown();
+  }
+
+  /** Starts {@code concurrency} unary calls, and waits for all of them to complete. */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void unary() throws Exception {
+    Round round = new Round(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      asyncStub.unaryCall(request, round);
+    }
+    round.await();
+  }
+
+  /**
+   * Sends a message on each of {@code concurrency} open streams, and waits for all of the replies.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void streamingPingPong() throws Exception {
+    Round round = new Round(concurrency);
+    currentRound = round;
+    for (StreamObserver<SimpleRequest> stream : streams) {
+      stream.onNext(request);
+    }
+    round.await();
+  }
+
+  /**
+   * Completes once it has seen a number of responses, or completed calls when used as the observer
+   * of unary calls.
+   */
+  private static final class Round implements StreamObserver<SimpleResponse> {
+    private final CountDownLatch latch;
+    private volatile Throwable error;
+
+    Round(int count) {
+      latch = new CountDownLatch(count);
+    }
+
+    void countDown() {
+      latch.countDown();
+    }
+
+    void fail(Throwable t) {
+      error = t;
+      while (latch.getCount() > 0) {
+        latch.countDown();
+      }
+    }
+
+    void await() throws Exception {
+      if (!latch.await(ROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        throw new Exception("Timed out waiting for " + latch.getCount() + " responses");
+      }
+      if (error != null) {
+        throw new Exception("Call failed", error);
+      }
+    }
+
+    @Override
+    public void onNext(SimpleResponse value) {}
+
+    @Override
+    public void onError(Throwable t) {
+      fail(t);
+    }
+
+    @Override
+    public void onCompleted() {
+      countDown();
+    }
+  }
+
+  /** Reports each reply, and each stream closing, to the current round. */
+  private final class PingPongObserver implements StreamObserver<SimpleResponse> {
+    @Override
+    public void onNext(SimpleResponse value) {
+      currentRound.countDown();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      currentRound.fail(t);
+    }
+
+    @Override
+    public void onCompleted() {
+      currentRound.countDown();
+    }
+  }
+
+  /** Compresses responses the same way as requests, so both directions are measured. */
+  private static final class CompressResponses implements ServerInterceptor {
+    private final String compression;
+
+    CompressResponses(String compression) {
+      this.compression = compression;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      call.setCompression(compression);
+      return next.startCall(call, headers);
+    }
+  }
+}
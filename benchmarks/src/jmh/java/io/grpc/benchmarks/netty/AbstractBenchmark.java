@@ -38,13 +38,19 @@ import io.grpc.stub.ClientCalls;
 import io.grpc.stub.StreamObserver;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
 import io.netty.channel.local.LocalServerChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
@@ -114,7 +120,9 @@ public abstract class AbstractBenchmark {
    * Support channel types.
    */
   public enum ChannelType {
-    NIO, LOCAL;
+    NIO, LOCAL,
+    /** Unix domain socket, which requires epoll. */
+    UDS;
   }
 
   private static final CallOptions CALL_OPTIONS = CallOptions.DEFAULT;
@@ -206,6 +214,14 @@ public abstract class AbstractBenchmark {
       serverBuilder.channelType(LocalServerChannel.class);
       channelBuilder = NettyChannelBuilder.forAddress(address);
       channelBuilder.channelType(LocalChannel.class);
+    } else if (channelType == ChannelType.UDS) {
+      File socket = File.createTempFile("netty-e2e-benchmark", ".sock");
+      socket.delete();
+      DomainSocketAddress address = new DomainSocketAddress(socket);
+      serverBuilder = NettyServerBuilder.forAddress(address, serverCreds)
+          .channelType(EpollServerDomainSocketChannel.class);
+      channelBuilder = NettyChannelBuilder.forAddress(address)
+          .channelType(EpollDomainSocketChannel.class);
     } else {
       ServerSocket sock = new ServerSocket();
       // Pick a port using an ephemeral socket.
@@ -226,8 +242,8 @@ public abstract class AbstractBenchmark {
 
     // Always use a different worker group from the client.
     ThreadFactory serverThreadFactory = new DefaultThreadFactory("STF pool", true /* daemon */);
-    serverBuilder.workerEventLoopGroup(new NioEventLoopGroup(0, serverThreadFactory));
-    serverBuilder.bossEventLoopGroup(new NioEventLoopGroup(1, serverThreadFactory));
+    serverBuilder.workerEventLoopGroup(newEventLoopGroup(channelType, 0, serverThreadFactory));
+    serverBuilder.bossEventLoopGroup(newEventLoopGroup(channelType, 1, serverThreadFactory));
 
     // Always set connection and stream window size to same value
     serverBuilder.flowControlWindow(windowSize.bytes());
@@ -386,11 +402,19 @@ public abstract class AbstractBenchmark {
     for (int i = 0; i < channelCount; i++) {
       // Use a dedicated event-loop for each channel
       channels[i] = channelBuilder
-          .eventLoopGroup(new NioEventLoopGroup(1, clientThreadFactory))
+          .eventLoopGroup(newEventLoopGroup(channelType, 1, clientThreadFactory))
           .build();
     }
   }
 
+  private static EventLoopGroup newEventLoopGroup(
+      ChannelType channelType, int threads, ThreadFactory threadFactory) {
+    if (channelType == ChannelType.UDS) {
+      return new EpollEventLoopGroup(threads, threadFactory);
+    }
+    return new NioEventLoopGroup(threads, threadFactory);
+  }
+
   /**
    * Start a continuously executing set of unary calls that will terminate when
    * {@code done.get()} is true. Each completed call will increment the counter by the specified
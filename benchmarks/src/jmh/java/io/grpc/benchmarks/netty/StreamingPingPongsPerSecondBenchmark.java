@@ -47,6 +47,9 @@ public class StreamingPingPongsPerSecondBenchmark extends AbstractBenchmark {
   @Param({"1", "10", "100", "1000"})
   public int maxConcurrentStreams = 1;
 
+  @Param({"NIO"})
+  public ChannelType channelType = ChannelType.NIO;
+
   private static AtomicLong callCounter;
   private AtomicBoolean completed;
   private AtomicBoolean record;
@@ -80,7 +83,7 @@ public class StreamingPingPongsPerSecondBenchmark extends AbstractBenchmark {
         MessageSize.SMALL,
         MessageSize.SMALL,
         FlowWindowSize.MEDIUM,
-        ChannelType.NIO,
+        channelType,
         maxConcurrentStreams,
         channelCount);
     callCounter = new AtomicLong();
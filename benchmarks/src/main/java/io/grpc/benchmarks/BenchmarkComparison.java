@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.grpc.internal.JsonParser;
+import io.grpc.internal.JsonUtil;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two runs of JMH benchmarks, given their results in JSON format (JMH's {@code -rf
+ * json}), and reports each benchmark whose score changed by more than a threshold. A change only
+ * counts when it is also larger than the error margins of both scores, so noisy benchmarks don't
+ * get reported.
+ *
+ * <p>Exits with a non-zero status when any benchmark got worse, so it can be used to gate changes.
+ */
+public final class BenchmarkComparison {
+  static final double DEFAULT_THRESHOLD = 0.05;
+
+  private BenchmarkComparison() {}
+
+  /**
+   * Usage: {@code benchmark_compare [--threshold=FRACTION] BASELINE.json CURRENT.json}.
+   */
+  public static void main(String... args) throws Exception {
+    double threshold = DEFAULT_THRESHOLD;
+    List<String> files = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--threshold=")) {
+        threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+      } else {
+        files.add(arg);
+      }
+    }
+    if (files.size() != 2) {
+      System.err.println(
+          "Usage: benchmark_compare [--threshold=FRACTION] BASELINE.json CURRENT.json");
+      System.exit(2);
+    }
+    Map<String, Result> baseline = parse(readFile(files.get(0)));
+    Map<String, Result> current = parse(readFile(files.get(1)));
+
+    boolean regressed = false;
+    for (Change change : compare(baseline, current, threshold)) {
+      System.out.println(change);
+      regressed |= change.isRegression();
+    }
+    for (String key : baseline.keySet()) {
+      if (!current.containsKey(key)) {
+        System.out.println("MISSING     " + key);
+      }
+    }
+    if (regressed) {
+      System.exit(1);
+    }
+  }
+
+  private static String readFile(String path) throws IOException {
+    return Files.asCharSource(new File(path), Charsets.UTF_8).read();
+  }
+
+  /**
+   * Parses JMH's JSON results, keyed by the benchmark and its parameters so that the same
+   * benchmark from different runs has the same key.
+   */
+  static Map<String, Result> parse(String json) throws IOException {
+    Map<String, Result> results = new LinkedHashMap<>();
+    for (Map<String, ?> entry : JsonUtil.checkObjectList((List<?>) JsonParser.parse(json))) {
+      StringBuilder key = new StringBuilder(JsonUtil.getString(entry, "benchmark"));
+      Map<String, ?> params = JsonUtil.getObject(entry, "params");
+      if (params != null) {
+        key.append(new TreeMap<String, Object>(params));
+      }
+      String mode = JsonUtil.getString(entry, "mode");
+      key.append(' ').append(mode);
+      Map<String, ?> metric = JsonUtil.getObject(entry, "primaryMetric");
+      results.put(
+          key.toString(),
+          new Result(
+              mode,
+              toDouble(metric.get("score")),
+              toDouble(metric.get("scoreError")),
+              JsonUtil.getString(metric, "scoreUnit")));
+    }
+    return results;
+  }
+
+  /** JMH writes "NaN" as a string, when there weren't enough iterations to estimate error. */
+  private static double toDouble(Object value) {
+    double d = value instanceof Double ? (Double) value : Double.parseDouble((String) value);
+    return Double.isNaN(d) ? 0 : d;
+  }
+
+  /**
+   * Returns the changes in benchmarks present in both runs, leaving out those whose score moved by
+   * less than {@code threshold}, as a fraction of the baseline score.
+   */
+  static List<Change> compare(
+      Map<String, Result> baseline, Map<String, Result> current, double threshold) {
+    List<Change> changes = new ArrayList<>();
+    for (Map.Entry<String, Result> entry : current.entrySet()) {
+      Result before = baseline.get(entry.getKey());
+      if (before == null) {
+        continue;
+      }
+      Result after = entry.getValue();
+      double delta = after.score - before.score;
+      if (Math.abs(delta) <= Math.abs(before.score) * threshold
+          || Math.abs(delta) <= before.error + after.error) {
+        continue;
+      }
+      changes.add(new Change(entry.getKey(), before, after));
+    }
+    return changes;
+  }
+
+  static final class Result {
+    final String mode;
+    final double score;
+    final double error;
+    final String unit;
+
+    Result(String mode, double score, double error, String unit) {
+      this.mode = mode;
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+    }
+
+    /** Throughput is in operations per unit of time, and every other mode in time per operation. */
+    boolean higherIsBetter() {
+      return "thrpt".equals(mode);
+    }
+  }
+
+  static final class Change {
+    final String key;
+    final Result before;
+    final Result after;
+
+    Change(String key, Result before, Result after) {
+      this.key = key;
+      this.before = before;
+      this.after = after;
+    }
+
+    boolean isRegression() {
+      return (after.score > before.score) != before.higherIsBetter();
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.ROOT,
+          "%-11s %s: %.3f -> %.3f %s (%+.1f%%)",
+          isRegression() ? "REGRESSION" : "IMPROVEMENT",
+          key,
+          before.score,
+          after.score,
+          after.unit,
+          (after.score - before.score) / before.score * 100);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.benchmarks.BenchmarkComparison.Change;
+import io.grpc.benchmarks.BenchmarkComparison.Result;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link BenchmarkComparison}.
+ */
+@RunWith(JUnit4.class)
+public class BenchmarkComparisonTest {
+  private static final String UNARY = "io.grpc.benchmarks.TransportMatrixBenchmark.unary";
+
+  @Test
+  public void parse_keysByBenchmarkParamsAndMode() throws Exception {
+    Map<String, Result> results = BenchmarkComparison.parse("["
+        + result(UNARY, "thrpt", "NETTY", 1000, "10")
+        + "," + result(UNARY, "thrpt", "OKHTTP", 900, "\"NaN\"")
+        + "]");
+
+    assertEquals(2, results.size());
+    Result netty = results.get(UNARY + "{concurrency=1, transport=NETTY} thrpt");
+    assertEquals(1000, netty.score, 0);
+    assertEquals(10, netty.error, 0);
+    assertEquals("ops/s", netty.unit);
+    Result okhttp = results.get(UNARY + "{concurrency=1, transport=OKHTTP} thrpt");
+    assertEquals(0, okhttp.error, 0);
+  }
+
+  @Test
+  public void compare_reportsChangesBeyondThreshold() throws Exception {
+    Map<String, Result> baseline = BenchmarkComparison.parse("["
+        + result(UNARY, "thrpt", "NETTY", 1000, "10")
+        + "," + result(UNARY, "thrpt", "OKHTTP", 1000, "10")
+        + "," + result(UNARY, "thrpt", "INPROCESS", 1000, "10")
+        + "]");
+    Map<String, Result> current = BenchmarkComparison.parse("["
+        + result(UNARY, "thrpt", "NETTY", 800, "10")
+        + "," + result(UNARY, "thrpt", "OKHTTP", 1020, "10")
+        + "," + result(UNARY, "thrpt", "INPROCESS", 1200, "10")
+        + "]");
+
+    List<Change> changes = BenchmarkComparison.compare(baseline, current, 0.05);
+
+    assertEquals(2, changes.size());
+    assertTrue(changes.get(0).key.contains("NETTY"));
+    assertTrue(changes.get(0).isRegression());
+    assertTrue(changes.get(1).key.contains("INPROCESS"));
+    assertFalse(changes.get(1).isRegression());
+  }
+
+  @Test
+  public void compare_ignoresChangesWithinErrorMargins() throws Exception {
+    Map<String, Result> baseline =
+        BenchmarkComparison.parse("[" + result(UNARY, "thrpt", "NETTY", 1000, "150") + "]");
+    Map<String, Result> current =
+        BenchmarkComparison.parse("[" + result(UNARY, "thrpt", "NETTY", 800, "100") + "]");
+
+    assertTrue(BenchmarkComparison.compare(baseline, current, 0.05).isEmpty());
+  }
+
+  @Test
+  public void compare_lowerIsBetterForTimeModes() throws Exception {
+    Map<String, Result> baseline =
+        BenchmarkComparison.parse("[" + result(UNARY, "sample", "NETTY", 1000, "10") + "]");
+    Map<String, Result> current =
+        BenchmarkComparison.parse("[" + result(UNARY, "sample", "NETTY", 1500, "10") + "]");
+
+    List<Change> changes = BenchmarkComparison.compare(baseline, current, 0.05);
+
+    assertEquals(1, changes.size());
+    assertTrue(changes.get(0).isRegression());
+  }
+
+  private static String result(
+      String benchmark, String mode, String transport, double score, String scoreError) {
+    return "{\"benchmark\": \"" + benchmark + "\", \"mode\": \"" + mode + "\", "
+        + "\"params\": {\"transport\": \"" + transport + "\", \"concurrency\": \"1\"}, "
+        + "\"primaryMetric\": {\"score\": " + score + ", \"scoreError\": " + scoreError + ", "
+        + "\"scoreUnit\": \"" + ("thrpt".equals(mode) ? "ops/s" : "ns/op") + "\"}}";
+  }
+}
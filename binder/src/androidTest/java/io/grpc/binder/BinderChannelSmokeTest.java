@@ -33,6 +33,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.grpc.CallOptions;
+import io.grpc.KnownLength;
 import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
@@ -85,6 +86,14 @@ public final class BinderChannelSmokeTest {
           .setType(MethodDescriptor.MethodType.BIDI_STREAMING)
           .build();
 
+  // Messages of known length can be batched, or passed in shared memory.
+  final MethodDescriptor<String, String> knownLengthBidiMethod =
+      MethodDescriptor.newBuilder(
+              KnownLengthStringMarshaller.INSTANCE, KnownLengthStringMarshaller.INSTANCE)
+          .setFullMethodName("test/knownLengthBidiMethod")
+          .setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+          .build();
+
   AndroidComponentAddress serverAddress;
   ManagedChannel channel;
   AtomicReference<Metadata> headersCapture = new AtomicReference<>();
@@ -114,6 +123,7 @@ public final class BinderChannelSmokeTest {
                 .addMethod(method, callHandler)
                 .addMethod(singleLargeResultMethod, singleLargeResultCallHandler)
                 .addMethod(bidiMethod, bidiCallHandler)
+                .addMethod(knownLengthBidiMethod, bidiCallHandler)
                 .build(),
             TestUtils.recordRequestHeadersInterceptor(headersCapture));
 
@@ -192,6 +202,37 @@ public final class BinderChannelSmokeTest {
     assertThat(headersCapture.get().get(GrpcUtil.TIMEOUT_KEY)).isGreaterThan(0);
   }
 
+  @Test
+  public void testManySmallKnownLengthMessages() throws Exception {
+    ArrayList<String> messages = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      messages.add("Hello " + i);
+    }
+    assertThat(doKnownLengthStreamingCall(messages)).containsExactlyElementsIn(messages).inOrder();
+  }
+
+  @Test
+  public void testLargeKnownLengthMessages() throws Exception {
+    ArrayList<String> messages = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      messages.add(i + createLargeString(100000));
+    }
+    assertThat(doKnownLengthStreamingCall(messages)).containsExactlyElementsIn(messages).inOrder();
+  }
+
+  private Iterable<String> doKnownLengthStreamingCall(Iterable<String> messages)
+      throws Exception {
+    QueueingStreamObserver<String> responseStreamObserver = new QueueingStreamObserver<>();
+    StreamObserver<String> streamObserver =
+        ClientCalls.asyncBidiStreamingCall(
+            channel.newCall(knownLengthBidiMethod, CallOptions.DEFAULT), responseStreamObserver);
+    for (String message : messages) {
+      streamObserver.onNext(message);
+    }
+    streamObserver.onCompleted();
+    return withTestTimeout(responseStreamObserver.getAllStreamElements()).get();
+  }
+
   private static String createLargeString(int size) {
     StringBuilder sb = new StringBuilder();
     while (sb.length() < size) {
@@ -223,6 +264,28 @@ public final class BinderChannelSmokeTest {
     }
   }
 
+  private static class KnownLengthStringMarshaller
+      implements MethodDescriptor.Marshaller<String> {
+    public static final KnownLengthStringMarshaller INSTANCE = new KnownLengthStringMarshaller();
+
+    @Override
+    public InputStream stream(String value) {
+      return new KnownLengthInputStream(value.getBytes(UTF_8));
+    }
+
+    @Override
+    public String parse(InputStream stream) {
+      return StringMarshaller.INSTANCE.parse(stream);
+    }
+  }
+
+  private static class KnownLengthInputStream extends ByteArrayInputStream
+      implements KnownLength {
+    KnownLengthInputStream(byte[] buf) {
+      super(buf);
+    }
+  }
+
   private static class QueueingStreamObserver<V> implements StreamObserver<V> {
     private final ArrayList<V> elements = new ArrayList<>();
     private final SettableFuture<Iterable<V>> result = SettableFuture.create();
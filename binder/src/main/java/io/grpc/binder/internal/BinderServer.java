@@ -141,6 +141,7 @@ public final class BinderServer implements InternalServer, LeakSafeOneWayBinder.
       // but specify the older version which we support.
       if (version >= BinderTransport.EARLIEST_SUPPORTED_WIRE_FORMAT_VERSION) {
         IBinder callbackBinder = parcel.readStrongBinder();
+        int peerFeatures = BinderTransport.readFeatures(parcel);
         if (callbackBinder != null) {
           int callingUid = Binder.getCallingUid();
           Attributes.Builder attrsBuilder =
@@ -155,6 +156,7 @@ public final class BinderServer implements InternalServer, LeakSafeOneWayBinder.
           BinderTransport.BinderServerTransport transport =
               new BinderTransport.BinderServerTransport(
                   executorServicePool, attrsBuilder.build(), streamTracerFactories, callbackBinder);
+          transport.setPeerFeatures(peerFeatures);
           transport.setServerTransportListener(listener.transportCreated(transport));
           return true;
         }
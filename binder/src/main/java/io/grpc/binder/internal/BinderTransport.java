@@ -22,12 +22,14 @@ import static com.google.common.util.concurrent.Futures.immediateFuture;
 
 import android.content.Context;
 import android.os.Binder;
+import android.os.Build;
 import android.os.DeadObjectException;
 import android.os.IBinder;
 import android.os.Parcel;
 import android.os.Process;
 import android.os.RemoteException;
 import android.os.TransactionTooLargeException;
+import androidx.annotation.RequiresApi;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.grpc.Attributes;
@@ -35,6 +37,7 @@ import io.grpc.CallOptions;
 import io.grpc.ClientStreamTracer;
 import io.grpc.Grpc;
 import io.grpc.Internal;
+import io.grpc.InternalChannelz.SocketOptions;
 import io.grpc.InternalChannelz.SocketStats;
 import io.grpc.InternalLogId;
 import io.grpc.Metadata;
@@ -59,6 +62,7 @@ import io.grpc.internal.ServerTransport;
 import io.grpc.internal.ServerTransportListener;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TimeProvider;
+import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -132,6 +136,19 @@ public abstract class BinderTransport
   @Internal
   public static final int EARLIEST_SUPPORTED_WIRE_FORMAT_VERSION = 1;
 
+  /**
+   * Optional wire format features, which we advertise as a bit set after our binder in the
+   * SETUP_TRANSPORT transaction. Earlier implementations neither send nor read the bit set, so a
+   * feature is only used if both sides advertised it.
+   */
+  static final int FEATURE_BATCHED_MESSAGES = 0x1;
+
+  static final int FEATURE_SHARED_MEMORY = 0x2;
+
+  /** The features this implementation supports. */
+  private static final int SUPPORTED_FEATURES =
+      FEATURE_BATCHED_MESSAGES | (Build.VERSION.SDK_INT >= 27 ? FEATURE_SHARED_MEMORY : 0);
+
   /** The max number of "in-flight" bytes before we start buffering transactions. */
   private static final int TRANSACTION_BYTES_WINDOW = 128 * 1024;
 
@@ -141,7 +158,7 @@ public abstract class BinderTransport
   /**
    * Sent from the client to host service binder to initiate a new transport, and from the host to
    * the binder. and from the host s Followed by: int wire_protocol_version IBinder
-   * client_transports_callback_binder
+   * client_transports_callback_binder, and optionally int supported_features.
    */
   @Internal
   public static final int SETUP_TRANSPORT = IBinder.FIRST_CALL_TRANSACTION;
@@ -206,6 +223,15 @@ public abstract class BinderTransport
   /** The number of incoming bytes we've told our peer we've received. */
   private long acknowledgedIncomingBytes;
 
+  /** The features supported by both us and our peer. Set during transport setup. */
+  private volatile int enabledFeatures;
+
+  /** The regions of our shared memory messages, or null before API 27. */
+  @Nullable private final SharedMemoryMessages sharedMemoryMessages;
+
+  /** The number of bytes received in shared memory since our last acknowledgement. */
+  private final AtomicLong unacknowledgedSharedMemoryBytes;
+
   private BinderTransport(
       ObjectPool<ScheduledExecutorService> executorServicePool,
       Attributes attributes,
@@ -218,6 +244,8 @@ public abstract class BinderTransport
     ongoingCalls = new ConcurrentHashMap<>();
     flowController = new FlowController(TRANSACTION_BYTES_WINDOW);
     numIncomingBytes = new AtomicLong();
+    sharedMemoryMessages = Build.VERSION.SDK_INT >= 27 ? new SharedMemoryMessages() : null;
+    unacknowledgedSharedMemoryBytes = new AtomicLong();
   }
 
   // Override in child class.
@@ -227,7 +255,28 @@ public abstract class BinderTransport
 
   // Override in child class.
   public final ListenableFuture<SocketStats> getStats() {
-    return immediateFuture(null);
+    Attributes attributes = getAttributes();
+    SocketAddress localAddress = attributes.get(Grpc.TRANSPORT_ATTR_LOCAL_ADDR);
+    if (localAddress == null) {
+      return immediateFuture(null);
+    }
+    // The block pool is shared by all transports in the process, so its stats are too.
+    BlockPool.Stats blockPoolStats = BlockPool.getStats();
+    SocketOptions socketOptions =
+        new SocketOptions.Builder()
+            .addOption("BLOCK_POOL_HITS", String.valueOf(blockPoolStats.hits))
+            .addOption("BLOCK_POOL_MISSES", String.valueOf(blockPoolStats.misses))
+            .addOption("BLOCK_POOL_EVICTIONS", String.valueOf(blockPoolStats.evictions))
+            .addOption("BLOCK_POOL_BYTES", blockPoolStats.pooledBytes)
+            .addOption("BLOCK_POOL_SIZES", blockPoolStats.sizes.toString())
+            .build();
+    return immediateFuture(
+        new SocketStats(
+            null,
+            localAddress,
+            attributes.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR),
+            socketOptions,
+            null));
   }
 
   // Override in child class.
@@ -248,6 +297,47 @@ public abstract class BinderTransport
     return !flowController.isTransmitWindowFull();
   }
 
+  /**
+   * Returns whether both sides support the given wire format feature. Intentionally unsynchronized
+   * since this will be called while Outbound is held.
+   */
+  final boolean isFeatureEnabled(int feature) {
+    return (enabledFeatures & feature) != 0;
+  }
+
+  /** Records the features our peer advertised in its SETUP_TRANSPORT transaction. */
+  final void setPeerFeatures(int peerFeatures) {
+    enabledFeatures = peerFeatures & SUPPORTED_FEATURES;
+  }
+
+  /** Returns the regions for our shared memory messages. */
+  @RequiresApi(api = 27)
+  final SharedMemoryMessages getSharedMemoryMessages() {
+    return checkNotNull(sharedMemoryMessages);
+  }
+
+  /**
+   * Records that a transaction holding a shared memory message was sent, so its region is reused
+   * once our peer acknowledges the transaction.
+   */
+  @RequiresApi(api = 27)
+  final void onSharedMemoryMessageSent(SharedMemoryMessages.Region region) {
+    getSharedMemoryMessages().onSent(region, flowController.getTotalBytesSent());
+  }
+
+  /**
+   * Records a message received in shared memory. Such messages count towards acknowledging early,
+   * since our peer reuses the region once we do.
+   */
+  final void onSharedMemoryMessageReceived(int numBytes) {
+    unacknowledgedSharedMemoryBytes.addAndGet(numBytes);
+  }
+
+  /** Reads the features advertised at the end of a SETUP_TRANSPORT transaction, if any. */
+  static int readFeatures(Parcel parcel) {
+    return parcel.dataAvail() >= 4 ? parcel.readInt() : 0;
+  }
+
   abstract void notifyShutdown(Status shutdownStatus);
 
   abstract void notifyTerminated();
@@ -311,6 +401,9 @@ public abstract class BinderTransport
             }
             notifyTerminated();
             releaseExecutors();
+            if (Build.VERSION.SDK_INT >= 27 && sharedMemoryMessages != null) {
+              sharedMemoryMessages.close();
+            }
           });
     }
   }
@@ -325,6 +418,7 @@ public abstract class BinderTransport
     Parcel parcel = Parcel.obtain();
     parcel.writeInt(WIRE_FORMAT_VERSION);
     parcel.writeStrongBinder(incomingBinder);
+    parcel.writeInt(SUPPORTED_FEATURES);
     try {
       if (!iBinder.transact(SETUP_TRANSPORT, parcel, null, IBinder.FLAG_ONEWAY)) {
         shutdownInternal(
@@ -467,7 +561,8 @@ public abstract class BinderTransport
         inbound.handleTransaction(parcel);
       }
       long nib = numIncomingBytes.addAndGet(size);
-      if ((nib - acknowledgedIncomingBytes) > TRANSACTION_BYTES_WINDOW_FORCE_ACK) {
+      if ((nib - acknowledgedIncomingBytes) + unacknowledgedSharedMemoryBytes.get()
+          > TRANSACTION_BYTES_WINDOW_FORCE_ACK) {
         synchronized (this) {
           sendAcknowledgeBytes(checkNotNull(outgoingBinder));
         }
@@ -504,6 +599,7 @@ public abstract class BinderTransport
     // Send a transaction to acknowledge reception of incoming data.
     long n = numIncomingBytes.get();
     acknowledgedIncomingBytes = n;
+    unacknowledgedSharedMemoryBytes.set(0);
     Parcel parcel = Parcel.obtain();
     parcel.writeLong(n);
     try {
@@ -519,6 +615,9 @@ public abstract class BinderTransport
 
   @GuardedBy("this")
   final void handleAcknowledgedBytes(long numBytes) {
+    if (Build.VERSION.SDK_INT >= 27 && sharedMemoryMessages != null) {
+      sharedMemoryMessages.onAcknowledged(numBytes);
+    }
     if (flowController.handleAcknowledgedBytes(numBytes)) {
       logger.log(
           Level.FINE,
@@ -695,6 +794,7 @@ public abstract class BinderTransport
       if (inState(TransportState.SETUP)) {
         int version = parcel.readInt();
         IBinder binder = parcel.readStrongBinder();
+        setPeerFeatures(readFeatures(parcel));
         if (version != WIRE_FORMAT_VERSION) {
           shutdownInternal(
               Status.UNAVAILABLE.withDescription("Wire format version mismatch"), true);
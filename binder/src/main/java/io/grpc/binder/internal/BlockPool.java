@@ -16,9 +16,16 @@
 
 package io.grpc.binder.internal;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.grpc.internal.GrpcUtil;
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
 
 /**
  * Manages a pool of byte-array blocks.
@@ -32,8 +39,10 @@ import java.util.concurrent.LinkedBlockingQueue;
  * block.
  *
  * <p>This class maintains a pool of blocks of standard size, but also provides smaller blocks when
- * requested. Currently, blocks of standard size are retained in the pool, when released, but we
- * could chose to change this strategy.
+ * requested. Since those have to be of exactly the requested size, we also watch the sizes being
+ * asked for, and once a size comes up often (as with a stream of same-sized messages), we start
+ * pooling blocks of that size too. The sizes pooled this way adapt as the traffic changes, and all
+ * of them share a single budget of retained bytes.
  */
 final class BlockPool {
 
@@ -44,37 +53,257 @@ final class BlockPool {
   private static final int BLOCK_SIZE = Math.max(16 * 1024, GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE);
 
   /**
-   * Maximum number of blocks to keep around. (Max 128k). This limit is a judgement call. 128k is
+   * Maximum number of bytes to keep around. (Max 128k). This limit is a judgement call. 128k is
    * small enough that it shouldn't significantly affect the memory usage of a large app, but large
    * enough that it should to reduce allocation churn while gRPC is in use.
    */
-  private static final int BLOCK_POOL_SIZE = 128 * 1024 / BLOCK_SIZE;
+  private static final int MAX_POOLED_BYTES = 128 * 1024;
 
-  /** A pool of byte arrays of standard size. We don't use any blocking methods of this instance. */
-  private static final Queue<byte[]> blockPool = new LinkedBlockingQueue<>(BLOCK_POOL_SIZE);
+  /** Blocks smaller than this are cheap enough to allocate that we never pool them. */
+  private static final int MIN_POOLED_SIZE = 1024;
 
-  private BlockPool() {}
+  /** The most sizes, other than the standard block size, we'll pool at once. */
+  private static final int MAX_SIZE_CLASSES = 4;
+
+  /** The number of requests for a size, roughly in a row, before we start pooling it. */
+  private static final int SIZE_CLASS_THRESHOLD = 8;
+
+  /** The number of sizes we track requests for while deciding which to pool. */
+  private static final int NUM_CANDIDATES = 16;
+
+  private static final BlockPool INSTANCE = new BlockPool();
+
+  private final SizeClass standardBlocks = new SizeClass(BLOCK_SIZE);
+
+  /** Pooled sizes other than the standard block size, each slot possibly empty. */
+  private final AtomicReferenceArray<SizeClass> sizeClasses =
+      new AtomicReferenceArray<>(MAX_SIZE_CLASSES);
+
+  // Approximate counts of recent requests for sizes we don't pool yet, indexed by a hash of the
+  // size. Two sizes sharing a slot just reset each other's count.
+  private final AtomicIntegerArray candidateSizes = new AtomicIntegerArray(NUM_CANDIDATES);
+  private final AtomicIntegerArray candidateCounts = new AtomicIntegerArray(NUM_CANDIDATES);
+
+  /** The number of bytes in pooled blocks, across all sizes. */
+  private final AtomicInteger pooledBytes = new AtomicInteger();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  @VisibleForTesting
+  BlockPool() {}
 
   /** Acquire a block of standard size. */
   static byte[] acquireBlock() {
-    return acquireBlock(BLOCK_SIZE);
+    return INSTANCE.acquire(BLOCK_SIZE);
   }
 
   /** Acquire a block of the specified size. */
   static byte[] acquireBlock(int size) {
-    if (size == BLOCK_SIZE) {
-      byte[] block = blockPool.poll();
+    return INSTANCE.acquire(size);
+  }
+
+  /** Release a now-unused block. */
+  static void releaseBlock(byte[] block) {
+    INSTANCE.release(block);
+  }
+
+  /** Returns the statistics of the process-wide pool. */
+  static Stats getStats() {
+    return INSTANCE.stats();
+  }
+
+  @VisibleForTesting
+  byte[] acquire(int size) {
+    SizeClass sizeClass = findSizeClass(size);
+    if (sizeClass == null) {
+      if (size >= MIN_POOLED_SIZE && size < BLOCK_SIZE) {
+        onUnpooledSize(size);
+      }
+    } else {
+      sizeClass.uses.incrementAndGet();
+      byte[] block = sizeClass.blocks.pop();
       if (block != null) {
+        pooledBytes.addAndGet(-size);
+        hits.incrementAndGet();
         return block;
       }
     }
+    misses.incrementAndGet();
     return new byte[size];
   }
 
-  /** Release a now-unused block. */
-  static void releaseBlock(byte[] block) {
-    if (block.length == BLOCK_SIZE) {
-      blockPool.offer(block);
+  @VisibleForTesting
+  void release(byte[] block) {
+    SizeClass sizeClass = findSizeClass(block.length);
+    if (sizeClass == null) {
+      return;
+    }
+    if (!reserve(block.length)) {
+      evictions.incrementAndGet();
+      return;
+    }
+    sizeClass.blocks.push(block);
+    if (sizeClass.retired) {
+      // The size stopped being pooled while we were adding to it.
+      drain(sizeClass);
+    }
+  }
+
+  @VisibleForTesting
+  Stats stats() {
+    List<Integer> sizes = new ArrayList<>(MAX_SIZE_CLASSES + 1);
+    sizes.add(BLOCK_SIZE);
+    for (int i = 0; i < MAX_SIZE_CLASSES; i++) {
+      SizeClass sizeClass = sizeClasses.get(i);
+      if (sizeClass != null) {
+        sizes.add(sizeClass.size);
+      }
+    }
+    return new Stats(hits.get(), misses.get(), evictions.get(), pooledBytes.get(), sizes);
+  }
+
+  @Nullable
+  private SizeClass findSizeClass(int size) {
+    if (size == BLOCK_SIZE) {
+      return standardBlocks;
+    }
+    for (int i = 0; i < MAX_SIZE_CLASSES; i++) {
+      SizeClass sizeClass = sizeClasses.get(i);
+      if (sizeClass != null && sizeClass.size == size) {
+        return sizeClass;
+      }
+    }
+    return null;
+  }
+
+  private boolean reserve(int size) {
+    while (true) {
+      int current = pooledBytes.get();
+      if (current + size > MAX_POOLED_BYTES) {
+        return false;
+      }
+      if (pooledBytes.compareAndSet(current, current + size)) {
+        return true;
+      }
+    }
+  }
+
+  private void onUnpooledSize(int size) {
+    int slot = (size ^ (size >>> 7)) & (NUM_CANDIDATES - 1);
+    if (candidateSizes.get(slot) != size) {
+      candidateSizes.set(slot, size);
+      candidateCounts.set(slot, 1);
+    } else if (candidateCounts.incrementAndGet(slot) == SIZE_CLASS_THRESHOLD) {
+      candidateSizes.set(slot, 0);
+      addSizeClass(size);
+    }
+  }
+
+  /** Starts pooling {@code size}, replacing the least used size if we're already at the limit. */
+  private void addSizeClass(int size) {
+    SizeClass newClass = new SizeClass(size);
+    int leastUsed = 0;
+    int leastUses = Integer.MAX_VALUE;
+    for (int i = 0; i < MAX_SIZE_CLASSES; i++) {
+      SizeClass sizeClass = sizeClasses.get(i);
+      if (sizeClass == null) {
+        if (sizeClasses.compareAndSet(i, null, newClass)) {
+          return;
+        }
+        sizeClass = sizeClasses.get(i);
+      }
+      if (sizeClass.size == size) {
+        return; // Someone else beat us to it.
+      }
+      // Halve the count as we go, so that the sizes we keep reflect recent traffic.
+      int uses = sizeClass.uses.get();
+      sizeClass.uses.compareAndSet(uses, uses / 2);
+      if (uses < leastUses) {
+        leastUsed = i;
+        leastUses = uses;
+      }
+    }
+    SizeClass replaced = sizeClasses.getAndSet(leastUsed, newClass);
+    if (replaced != null) {
+      replaced.retired = true;
+      drain(replaced);
+    }
+  }
+
+  private void drain(SizeClass sizeClass) {
+    while (sizeClass.blocks.pop() != null) {
+      pooledBytes.addAndGet(-sizeClass.size);
+      evictions.incrementAndGet();
+    }
+  }
+
+  /** Blocks of a single size, in a lock-free stack. */
+  private static final class SizeClass {
+    final int size;
+    final BlockStack blocks = new BlockStack();
+    final AtomicInteger uses = new AtomicInteger();
+    volatile boolean retired;
+
+    SizeClass(int size) {
+      this.size = size;
+    }
+  }
+
+  /** A Treiber stack of blocks. */
+  private static final class BlockStack {
+    private final AtomicReference<Node> head = new AtomicReference<>();
+
+    void push(byte[] block) {
+      Node node = new Node(block);
+      do {
+        node.next = head.get();
+      } while (!head.compareAndSet(node.next, node));
+    }
+
+    @Nullable
+    byte[] pop() {
+      while (true) {
+        Node node = head.get();
+        if (node == null) {
+          return null;
+        }
+        if (head.compareAndSet(node, node.next)) {
+          return node.block;
+        }
+      }
+    }
+  }
+
+  private static final class Node {
+    final byte[] block;
+    Node next;
+
+    Node(byte[] block) {
+      this.block = block;
+    }
+  }
+
+  /** A snapshot of the pool's statistics. */
+  static final class Stats {
+    /** Number of blocks handed out from the pool. */
+    final long hits;
+    /** Number of blocks we had to allocate. */
+    final long misses;
+    /** Number of released blocks we dropped, because the pool was full or stopped their size. */
+    final long evictions;
+    /** Number of bytes held in the pool. */
+    final int pooledBytes;
+    /** The block sizes being pooled. */
+    final List<Integer> sizes;
+
+    Stats(long hits, long misses, long evictions, int pooledBytes, List<Integer> sizes) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.pooledBytes = pooledBytes;
+      this.sizes = sizes;
     }
   }
 }
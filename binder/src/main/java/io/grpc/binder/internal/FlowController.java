@@ -62,6 +62,11 @@ final class FlowController {
     return false;
   }
 
+  /** Returns the total number of bytes ever sent, modulo 2^64. */
+  public synchronized long getTotalBytesSent() {
+    return totalBytesSent;
+  }
+
   /**
    * Processes an acknowledgement from our peer.
    *
@@ -19,6 +19,7 @@ package io.grpc.binder.internal;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import android.os.Build;
 import android.os.Parcel;
 import io.grpc.Attributes;
 import io.grpc.Metadata;
@@ -31,6 +32,7 @@ import io.grpc.internal.ServerStream;
 import io.grpc.internal.ServerStreamListener;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.StreamListener;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import javax.annotation.Nullable;
@@ -352,7 +354,11 @@ abstract class Inbound<L extends StreamListener> implements StreamListener.Messa
         onDeliveryState(State.PREFIX_DELIVERED);
       }
       if (hasMessageData) {
-        handleMessageData(flags, index, parcel);
+        if (TransactionUtils.hasFlag(flags, TransactionUtils.FLAG_MESSAGE_DATA_IS_BATCH)) {
+          index = handleMessageBatch(index, parcel);
+        } else {
+          handleMessageData(flags, index, parcel);
+        }
       }
       if (hasSuffix) {
         handleSuffix(flags, parcel);
@@ -382,6 +388,28 @@ abstract class Inbound<L extends StreamListener> implements StreamListener.Messa
   @GuardedBy("this")
   abstract void handleSuffix(int flags, Parcel parcel) throws StatusException;
 
+  /**
+   * Handles a batch of complete messages, each taking up one transaction index from {@code index}
+   * on. Returns the index of the last message, which any suffix in the transaction shares.
+   */
+  @GuardedBy("this")
+  private int handleMessageBatch(int index, Parcel parcel) throws StatusException {
+    int count = parcel.readInt();
+    if (count <= 0) {
+      throw Status.INTERNAL.withDescription("Empty message batch").asException();
+    }
+    for (int i = 1; i < count; i++) {
+      handleMessageData(0, index, parcel);
+      if (index == firstQueuedTransactionIndex && queuedTransactionData == null) {
+        // As for a transaction of its own, the message was in order and taken directly.
+        firstQueuedTransactionIndex += 1;
+      }
+      index++;
+    }
+    handleMessageData(0, index, parcel);
+    return index;
+  }
+
   @GuardedBy("this")
   private void handleMessageData(int flags, int index, Parcel parcel) throws StatusException {
     InputStream stream = null;
@@ -398,6 +426,19 @@ abstract class Inbound<L extends StreamListener> implements StreamListener.Messa
       int startPos = parcel.dataPosition();
       stream = ParcelableInputStream.readFromParcel(parcel, getClass().getClassLoader());
       numBytes = parcel.dataPosition() - startPos;
+    } else if ((flags & TransactionUtils.FLAG_MESSAGE_DATA_IS_SHARED_MEMORY) != 0) {
+      if (Build.VERSION.SDK_INT < 27) {
+        throw Status.INTERNAL
+            .withDescription("Shared memory messages not supported")
+            .asException();
+      }
+      try {
+        block = SharedMemoryMessages.readMessage(parcel);
+      } catch (IOException e) {
+        throw Status.INTERNAL.withCause(e).asException();
+      }
+      numBytes = block.length;
+      transport.onSharedMemoryMessageReceived(numBytes);
     } else {
       numBytes = parcel.readInt();
       block = BlockPool.acquireBlock(numBytes);
@@ -21,8 +21,10 @@ import static com.google.common.base.Preconditions.checkState;
 import static io.grpc.internal.GrpcUtil.TIMEOUT_KEY;
 import static java.lang.Math.max;
 
+import android.os.Build;
 import android.os.Parcel;
 import io.grpc.Deadline;
+import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
@@ -30,6 +32,7 @@ import io.grpc.StatusException;
 import io.grpc.internal.StatsTraceContext;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
@@ -40,7 +43,8 @@ import javax.annotation.concurrent.GuardedBy;
  * Sends the set of outbound transactions for a single BinderStream (rpc).
  *
  * <p>Handles buffering internally for flow control, and splitting large messages into multiple
- * transactions where necessary.
+ * transactions where necessary. If the peer supports it, small messages which queued up are sent
+ * together in a single transaction, and large messages are passed in shared memory instead.
  *
  * <p>Also handles reporting to the {@link StatsTraceContext}.
  *
@@ -56,6 +60,12 @@ import javax.annotation.concurrent.GuardedBy;
  */
 abstract class Outbound {
 
+  /** The most message bytes we'll put in a single batch transaction. */
+  private static final int MAX_BATCH_SIZE = 16 * 1024;
+
+  /** Messages at least this large are sent in shared memory, when the peer supports it. */
+  private static final int MIN_SHARED_MEMORY_MESSAGE_SIZE = 64 * 1024;
+
   private final BinderTransport transport;
   private final int callId;
   private final StatsTraceContext statsTraceContext;
@@ -97,6 +107,11 @@ abstract class Outbound {
   @GuardedBy("this")
   private int transactionIndex;
 
+  /** The shared memory region holding the message in the transaction being written, if any. */
+  @Nullable
+  @GuardedBy("this")
+  private SharedMemoryMessages.Region sharedMemoryRegion;
+
   // ----------------------------------
   // For reporting to StatsTraceContext.
   private int numDeliveredMessages;
@@ -168,6 +183,22 @@ abstract class Outbound {
     return null;
   }
 
+  /** Returns the message queued after the next one, if any. */
+  @Nullable
+  @GuardedBy("this")
+  private final InputStream peekMessageAfterNext() {
+    if (messageQueue == null) {
+      return null;
+    } else if (numDeliveredMessages == 0) {
+      return messageQueue.peek();
+    }
+    Iterator<InputStream> iterator = messageQueue.iterator();
+    if (iterator.hasNext()) {
+      iterator.next();
+    }
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
   @GuardedBy("this")
   private final boolean canSend() {
     switch (outboundState) {
@@ -260,11 +291,20 @@ abstract class Outbound {
       }
       TransactionUtils.fillInFlags(parcel, flags);
       transport.sendTransaction(callId, parcel);
+      if (Build.VERSION.SDK_INT >= 27 && sharedMemoryRegion != null) {
+        transport.onSharedMemoryMessageSent(sharedMemoryRegion);
+        sharedMemoryRegion = null;
+      }
       statsTraceContext.outboundWireSize(parcel.dataSize());
       statsTraceContext.outboundUncompressedSize(parcel.dataSize());
     } catch (IOException e) {
       throw Status.INTERNAL.withCause(e).asException();
     } finally {
+      if (Build.VERSION.SDK_INT >= 27 && sharedMemoryRegion != null) {
+        // The transaction wasn't sent, so nobody else has the region.
+        SharedMemoryMessages.discard(sharedMemoryRegion);
+        sharedMemoryRegion = null;
+      }
       parcel.recycle();
     }
   }
@@ -303,6 +343,23 @@ abstract class Outbound {
 
   @GuardedBy("this")
   private final int writeMessageData(Parcel parcel, InputStream stream) throws IOException {
+    if (messageSize == 0) {
+      // We're at the start of a message, so it may be possible to send it another way.
+      int length = knownLength(stream);
+      if (length >= MIN_SHARED_MEMORY_MESSAGE_SIZE
+          && Build.VERSION.SDK_INT >= 27
+          && transport.isFeatureEnabled(BinderTransport.FEATURE_SHARED_MEMORY)) {
+        sharedMemoryRegion =
+            transport.getSharedMemoryMessages().writeMessage(parcel, stream, length);
+        messageSize = length;
+        onMessageWritten(stream);
+        return TransactionUtils.FLAG_MESSAGE_DATA_IS_SHARED_MEMORY;
+      }
+      if (length >= 0 && canBatchWith(length, peekMessageAfterNext())) {
+        writeMessageBatch(parcel);
+        return TransactionUtils.FLAG_MESSAGE_DATA_IS_BATCH;
+      }
+    }
     int flags = 0;
     boolean dataRemaining = false;
     if (stream instanceof ParcelableInputStream) {
@@ -328,18 +385,96 @@ abstract class Outbound {
       }
     }
     if (!dataRemaining) {
-      stream.close();
-      int index = numDeliveredMessages++;
-      if (index > 0) {
-        checkNotNull(messageQueue).poll();
-      }
-      statsTraceContext.outboundMessage(index);
-      statsTraceContext.outboundMessageSent(index, messageSize, messageSize);
-      messageSize = 0;
+      onMessageWritten(stream);
     }
     return flags;
   }
 
+  /**
+   * Writes a batch of complete messages, each of which takes up one transaction index, for as long
+   * as they fit in {@link #MAX_BATCH_SIZE}.
+   */
+  @GuardedBy("this")
+  private final void writeMessageBatch(Parcel parcel) throws IOException {
+    int countPos = parcel.dataPosition();
+    parcel.writeInt(0); // Placeholder for the message count. Will be filled in below.
+    int count = 0;
+    int batchSize = 0;
+    byte[] block = BlockPool.acquireBlock();
+    try {
+      InputStream stream = peekNextMessage();
+      while (stream != null) {
+        int size = readFully(stream, block, knownLength(stream));
+        parcel.writeInt(size);
+        if (size > 0) {
+          parcel.writeByteArray(block, 0, size);
+        }
+        messageSize = size;
+        batchSize += size;
+        count++;
+        onMessageWritten(stream);
+        stream = messageAvailable() ? peekNextMessage() : null;
+        if (stream != null && !canBatchWith(batchSize, stream)) {
+          break;
+        }
+      }
+    } finally {
+      BlockPool.releaseBlock(block);
+    }
+    int endPos = parcel.dataPosition();
+    parcel.setDataPosition(countPos);
+    parcel.writeInt(count);
+    parcel.setDataPosition(endPos);
+    // The first message used the index written at the start of the transaction.
+    transactionIndex += count - 1;
+  }
+
+  /**
+   * Returns whether {@code next} can go in the same batch transaction as messages totalling {@code
+   * batchSize} bytes.
+   */
+  @GuardedBy("this")
+  private final boolean canBatchWith(int batchSize, @Nullable InputStream next)
+      throws IOException {
+    if (next == null || !transport.isFeatureEnabled(BinderTransport.FEATURE_BATCHED_MESSAGES)) {
+      return false;
+    }
+    int length = knownLength(next);
+    return length >= 0 && batchSize + length <= MAX_BATCH_SIZE;
+  }
+
+  @GuardedBy("this")
+  private final void onMessageWritten(InputStream stream) throws IOException {
+    stream.close();
+    int index = numDeliveredMessages++;
+    if (index > 0) {
+      checkNotNull(messageQueue).poll();
+    }
+    statsTraceContext.outboundMessage(index);
+    statsTraceContext.outboundMessageSent(index, messageSize, messageSize);
+    messageSize = 0;
+  }
+
+  /** Returns the number of bytes in the stream, or -1 if it isn't known up front. */
+  private static int knownLength(InputStream stream) throws IOException {
+    if (stream instanceof KnownLength) {
+      return stream.available();
+    }
+    return -1;
+  }
+
+  private static int readFully(InputStream stream, byte[] buffer, int length) throws IOException {
+    int total = 0;
+    while (total < length) {
+      int read = stream.read(buffer, total, length - total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
   // ======================================
   // Client-side outbound transactions.
   static final class ClientOutbound extends Outbound {
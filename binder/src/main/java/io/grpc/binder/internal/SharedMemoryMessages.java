@@ -0,0 +1,235 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.binder.internal;
+
+import android.os.Parcel;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+import androidx.annotation.RequiresApi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Passes large messages in a {@link SharedMemory} region rather than in the transaction itself.
+ *
+ * <p>This takes a single transaction for the whole message, where it would otherwise be split into
+ * one transaction per block, and keeps large messages out of the process's limited binder
+ * transaction buffer. Only the file descriptor of the region goes in the parcel.
+ *
+ * <p>Each transport has its own instance, which reuses the regions of its outgoing messages.
+ * Creating and mapping a region costs several system calls, so once our peer has acknowledged the
+ * transaction holding a message, which it only does after copying the message out, the region is
+ * kept for a later message. Our peer can only map regions read-only, while we keep the writable
+ * mapping we made when creating the region.
+ */
+@RequiresApi(api = 27)
+final class SharedMemoryMessages {
+
+  private static final String REGION_NAME = "grpc-binder-message";
+
+  /** The most unused regions we keep for reuse. */
+  private static final int MAX_FREE_REGIONS = 4;
+
+  /** Regions not in use, each of a power of two size. */
+  @GuardedBy("this")
+  private final List<Region> freeRegions = new ArrayList<>();
+
+  /** Regions sent to our peer, and not yet known to be read. */
+  @GuardedBy("this")
+  private final List<Region> sentRegions = new ArrayList<>();
+
+  @GuardedBy("this")
+  private boolean closed;
+
+  /** A region, with our writable mapping of it. */
+  static final class Region {
+    private final SharedMemory memory;
+    private final ByteBuffer buffer;
+
+    /** Bytes sent on the transport, up to and including the transaction holding this region. */
+    private long sentBytesMark;
+
+    private Region(SharedMemory memory, ByteBuffer buffer) {
+      this.memory = memory;
+      this.buffer = buffer;
+    }
+
+    int size() {
+      return buffer.capacity();
+    }
+  }
+
+  /**
+   * Copies the next {@code length} bytes of {@code stream} into a region, and writes the region to
+   * {@code parcel}. The region must then be passed to {@link #onSent} or {@link #discard}.
+   */
+  Region writeMessage(Parcel parcel, InputStream stream, int length) throws IOException {
+    Region region = acquireRegion(length);
+    boolean written = false;
+    try {
+      ByteBuffer buffer = region.buffer;
+      buffer.clear();
+      buffer.limit(length);
+      byte[] block = BlockPool.acquireBlock();
+      try {
+        while (buffer.hasRemaining()) {
+          int read = stream.read(block, 0, Math.min(block.length, buffer.remaining()));
+          if (read < 0) {
+            throw new IOException("Message shorter than its known length");
+          }
+          buffer.put(block, 0, read);
+        }
+      } finally {
+        BlockPool.releaseBlock(block);
+      }
+      parcel.writeInt(length);
+      region.memory.writeToParcel(parcel, 0);
+      written = true;
+      return region;
+    } finally {
+      if (!written) {
+        discard(region);
+      }
+    }
+  }
+
+  /**
+   * Records that the transaction holding {@code region} was sent, once {@code totalBytesSent}
+   * bytes had been sent on the transport.
+   */
+  synchronized void onSent(Region region, long totalBytesSent) {
+    if (closed) {
+      discard(region);
+      return;
+    }
+    region.sentBytesMark = totalBytesSent;
+    sentRegions.add(region);
+  }
+
+  /**
+   * Reclaims the regions of every transaction our peer has acknowledged.
+   *
+   * @param totalBytesAcked the total number of bytes our peer has received, as reported to {@link
+   *     FlowController#handleAcknowledgedBytes}
+   */
+  synchronized void onAcknowledged(long totalBytesAcked) {
+    Iterator<Region> iterator = sentRegions.iterator();
+    while (iterator.hasNext()) {
+      Region region = iterator.next();
+      if (totalBytesAcked - region.sentBytesMark >= 0) {
+        iterator.remove();
+        releaseRegion(region);
+      }
+    }
+  }
+
+  /** Releases every region. Regions our peer still holds stay valid for it. */
+  synchronized void close() {
+    closed = true;
+    for (Region region : freeRegions) {
+      discard(region);
+    }
+    freeRegions.clear();
+    for (Region region : sentRegions) {
+      discard(region);
+    }
+    sentRegions.clear();
+  }
+
+  /** Frees a region which won't be reused. */
+  static void discard(Region region) {
+    SharedMemory.unmap(region.buffer);
+    region.memory.close();
+  }
+
+  private Region acquireRegion(int length) throws IOException {
+    int size = regionSize(length);
+    synchronized (this) {
+      Iterator<Region> iterator = freeRegions.iterator();
+      while (iterator.hasNext()) {
+        Region region = iterator.next();
+        if (region.size() == size) {
+          iterator.remove();
+          return region;
+        }
+      }
+    }
+    SharedMemory memory;
+    try {
+      memory = SharedMemory.create(REGION_NAME, size);
+    } catch (ErrnoException e) {
+      throw new IOException(e);
+    }
+    ByteBuffer buffer;
+    try {
+      buffer = memory.mapReadWrite();
+    } catch (ErrnoException e) {
+      memory.close();
+      throw new IOException(e);
+    }
+    // Any mapping made from now on, including our peer's, is read-only. Ours stays writable.
+    if (!memory.setProtect(OsConstants.PROT_READ)) {
+      SharedMemory.unmap(buffer);
+      memory.close();
+      throw new IOException("Failed to protect shared memory");
+    }
+    return new Region(memory, buffer);
+  }
+
+  private synchronized void releaseRegion(Region region) {
+    if (!closed && freeRegions.size() < MAX_FREE_REGIONS) {
+      freeRegions.add(region);
+    } else {
+      discard(region);
+    }
+  }
+
+  /** Rounds up to a power of two, so regions can be reused for messages of similar sizes. */
+  static int regionSize(int length) {
+    int size = Integer.highestOneBit(length);
+    return size == length || size == 1 << 30 ? length : size << 1;
+  }
+
+  /** Reads a message written by {@link #writeMessage}. */
+  static byte[] readMessage(Parcel parcel) throws IOException {
+    int length = parcel.readInt();
+    SharedMemory memory = SharedMemory.CREATOR.createFromParcel(parcel);
+    try {
+      if (length < 0 || length > memory.getSize()) {
+        throw new IOException("Message length " + length + " exceeds its shared memory region");
+      }
+      ByteBuffer buffer = memory.mapReadOnly();
+      try {
+        byte[] message = new byte[length];
+        buffer.get(message);
+        return message;
+      } finally {
+        SharedMemory.unmap(buffer);
+      }
+    } catch (ErrnoException e) {
+      throw new IOException(e);
+    } finally {
+      memory.close();
+    }
+  }
+}
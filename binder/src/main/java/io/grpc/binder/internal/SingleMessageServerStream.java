@@ -171,4 +171,9 @@ final class SingleMessageServerStream implements ServerStream {
   public int streamId() {
     return -1;
   }
+
+  @Override
+  public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+    // Readiness is governed by the binder transport's own flow control.
+  }
 }
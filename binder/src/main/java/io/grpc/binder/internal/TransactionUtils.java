@@ -51,6 +51,20 @@ final class TransactionUtils {
    */
   static final int FLAG_MESSAGE_DATA_IS_PARTIAL = 0x80;
 
+  /**
+   * When a transaction contains message data, this will be set if it holds a batch of complete
+   * messages, each taking up one transaction index. Only sent to peers which advertised {@link
+   * BinderTransport#FEATURE_BATCHED_MESSAGES}.
+   */
+  static final int FLAG_MESSAGE_DATA_IS_BATCH = 0x100;
+
+  /**
+   * When a transaction contains message data, this will be set if the message was passed in a
+   * shared memory region rather than in the transaction itself. Only sent to peers which advertised
+   * {@link BinderTransport#FEATURE_SHARED_MEMORY}.
+   */
+  static final int FLAG_MESSAGE_DATA_IS_SHARED_MEMORY = 0x200;
+
   static final int STATUS_CODE_SHIFT = 16;
   static final int STATUS_CODE_MASK = 0xff0000;
 
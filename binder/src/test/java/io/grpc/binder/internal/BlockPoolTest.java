@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.binder.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BlockPoolTest {
+
+  private static final int BLOCK_SIZE = 16 * 1024;
+
+  private final BlockPool pool = new BlockPool();
+
+  @Test
+  public void standardBlockIsReused() {
+    byte[] block = pool.acquire(BLOCK_SIZE);
+    pool.release(block);
+    assertThat(pool.acquire(BLOCK_SIZE)).isSameInstanceAs(block);
+
+    BlockPool.Stats stats = pool.stats();
+    assertThat(stats.hits).isEqualTo(1);
+    assertThat(stats.misses).isEqualTo(1);
+    assertThat(stats.pooledBytes).isEqualTo(0);
+  }
+
+  @Test
+  public void occasionalSizeIsNotPooled() {
+    byte[] block = pool.acquire(4096);
+    pool.release(block);
+    assertThat(pool.acquire(4096)).isNotSameInstanceAs(block);
+    assertThat(pool.stats().sizes).containsExactly(BLOCK_SIZE);
+  }
+
+  @Test
+  public void repeatedSizeIsPooled() {
+    byte[] block = null;
+    for (int i = 0; i < 8; i++) {
+      block = pool.acquire(4096);
+      pool.release(block);
+    }
+    assertThat(pool.stats().sizes).containsExactly(BLOCK_SIZE, 4096);
+
+    pool.release(block);
+    assertThat(pool.acquire(4096)).isSameInstanceAs(block);
+    assertThat(pool.stats().hits).isEqualTo(1);
+  }
+
+  @Test
+  public void smallSizeIsNeverPooled() {
+    for (int i = 0; i < 100; i++) {
+      pool.release(pool.acquire(100));
+    }
+    assertThat(pool.stats().sizes).containsExactly(BLOCK_SIZE);
+    assertThat(pool.stats().pooledBytes).isEqualTo(0);
+  }
+
+  @Test
+  public void pooledBytesAreBounded() {
+    for (int i = 0; i < 9; i++) {
+      pool.release(new byte[BLOCK_SIZE]);
+    }
+    BlockPool.Stats stats = pool.stats();
+    assertThat(stats.pooledBytes).isEqualTo(128 * 1024);
+    assertThat(stats.evictions).isEqualTo(1);
+  }
+
+  @Test
+  public void leastUsedSizeIsReplaced() {
+    for (int size = 2000; size <= 5000; size += 1000) {
+      for (int i = 0; i < 8; i++) {
+        pool.acquire(size);
+      }
+    }
+    // Keep the first size busy.
+    for (int i = 0; i < 8; i++) {
+      pool.acquire(2000);
+    }
+    for (int size = 3000; size <= 5000; size += 1000) {
+      pool.acquire(size);
+    }
+
+    for (int i = 0; i < 8; i++) {
+      pool.acquire(7000);
+    }
+    BlockPool.Stats stats = pool.stats();
+    assertThat(stats.sizes).containsExactly(BLOCK_SIZE, 2000, 7000, 4000, 5000);
+  }
+
+  @Test
+  public void replacedSizeReleasesItsBlocks() {
+    for (int size = 2000; size <= 5000; size += 1000) {
+      for (int i = 0; i < 8; i++) {
+        pool.acquire(size);
+      }
+    }
+    pool.release(new byte[5000]);
+    for (int size = 2000; size <= 4000; size += 1000) {
+      for (int i = 0; i < 8; i++) {
+        pool.acquire(size);
+      }
+    }
+    assertThat(pool.stats().pooledBytes).isEqualTo(5000);
+
+    for (int i = 0; i < 8; i++) {
+      pool.acquire(6000);
+    }
+    BlockPool.Stats stats = pool.stats();
+    assertThat(stats.sizes).doesNotContain(5000);
+    assertThat(stats.pooledBytes).isEqualTo(0);
+    assertThat(stats.evictions).isEqualTo(1);
+  }
+}
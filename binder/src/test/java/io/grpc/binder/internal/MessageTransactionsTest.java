@@ -0,0 +1,335 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.binder.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.robolectric.annotation.LooperMode.Mode.PAUSED;
+
+import android.os.IBinder;
+import android.os.Parcel;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.testing.TestingExecutors;
+import io.grpc.Attributes;
+import io.grpc.KnownLength;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.FixedObjectPool;
+import io.grpc.internal.ServerStream;
+import io.grpc.internal.ServerStreamListener;
+import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.StatsTraceContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+/**
+ * Tests how Outbound splits messages into transactions and Inbound reassembles them, with and
+ * without the optional wire format features. Transactions are sent by one server transport and
+ * handed, possibly reordered, to another.
+ */
+@LooperMode(PAUSED)
+@RunWith(RobolectricTestRunner.class)
+public final class MessageTransactionsTest {
+
+  private static final int CALL_ID = IBinder.FIRST_CALL_TRANSACTION + 1000;
+
+  private static final MethodDescriptor.Marshaller<Void> VOID_MARSHALLER =
+      new MethodDescriptor.Marshaller<Void>() {
+        @Override
+        public InputStream stream(Void value) {
+          return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public Void parse(InputStream stream) {
+          return null;
+        }
+      };
+
+  private static final MethodDescriptor<Void, Void> METHOD =
+      MethodDescriptor.<Void, Void>newBuilder()
+          .setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+          .setFullMethodName("service/method")
+          .setRequestMarshaller(VOID_MARSHALLER)
+          .setResponseMarshaller(VOID_MARSHALLER)
+          .build();
+
+  @Rule public MockitoRule mocks = MockitoJUnit.rule();
+
+  private final ScheduledExecutorService executorService =
+      TestingExecutors.sameThreadScheduledExecutor();
+  private final List<Parcel> sentTransactions = new ArrayList<>();
+  private final TestStreamListener streamListener = new TestStreamListener();
+
+  @Mock IBinder senderCallbackBinder;
+  @Mock IBinder receiverCallbackBinder;
+
+  private BinderTransport.BinderServerTransport sender;
+  private BinderTransport.BinderServerTransport receiver;
+
+  @Before
+  public void setUp() throws Exception {
+    when(senderCallbackBinder.transact(anyInt(), any(Parcel.class), isNull(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              if ((int) invocation.getArgument(0) == CALL_ID) {
+                // The transport recycles the parcel once sent, so keep a copy.
+                Parcel parcel = invocation.getArgument(1);
+                Parcel copy = Parcel.obtain();
+                copy.appendFrom(parcel, 0, parcel.dataSize());
+                sentTransactions.add(copy);
+              }
+              return true;
+            });
+    when(receiverCallbackBinder.transact(anyInt(), any(Parcel.class), isNull(), anyInt()))
+        .thenReturn(true);
+    sender =
+        new BinderTransport.BinderServerTransport(
+            new FixedObjectPool<>(executorService),
+            Attributes.EMPTY,
+            ImmutableList.of(),
+            senderCallbackBinder);
+    receiver =
+        new BinderTransport.BinderServerTransport(
+            new FixedObjectPool<>(executorService),
+            Attributes.EMPTY,
+            ImmutableList.of(),
+            receiverCallbackBinder);
+    receiver.setServerTransportListener(new TestTransportListener());
+  }
+
+  @Test
+  public void readFeatures_fromOlderPeer() {
+    Parcel parcel = Parcel.obtain();
+    parcel.writeInt(BinderTransport.WIRE_FORMAT_VERSION);
+    parcel.setDataPosition(0);
+    assertThat(parcel.readInt()).isEqualTo(BinderTransport.WIRE_FORMAT_VERSION);
+
+    assertThat(BinderTransport.readFeatures(parcel)).isEqualTo(0);
+    parcel.recycle();
+  }
+
+  @Test
+  public void readFeatures_fromNewerPeer() {
+    Parcel parcel = Parcel.obtain();
+    parcel.writeInt(BinderTransport.WIRE_FORMAT_VERSION);
+    parcel.writeInt(BinderTransport.FEATURE_BATCHED_MESSAGES | 0x1000);
+    parcel.setDataPosition(0);
+    parcel.readInt();
+
+    int features = BinderTransport.readFeatures(parcel);
+    sender.setPeerFeatures(features);
+
+    assertThat(sender.isFeatureEnabled(BinderTransport.FEATURE_BATCHED_MESSAGES)).isTrue();
+    // Features we don't know of are ignored.
+    assertThat(sender.isFeatureEnabled(0x1000)).isFalse();
+    parcel.recycle();
+  }
+
+  @Test
+  public void withoutFeatures_sendsOneTransactionPerMessage() throws Exception {
+    send(knownLength("a"), knownLength("b"), knownLength("c"));
+
+    assertThat(sentTransactions).hasSize(3);
+    receiveInOrder();
+    assertThat(streamListener.messages).containsExactly("a", "b", "c").inOrder();
+    assertThat(streamListener.halfClosed).isTrue();
+  }
+
+  @Test
+  public void batchedMessages_sentInOneTransaction() throws Exception {
+    sender.setPeerFeatures(BinderTransport.FEATURE_BATCHED_MESSAGES);
+
+    send(knownLength("a"), knownLength("b"), knownLength("c"));
+
+    assertThat(sentTransactions).hasSize(1);
+    receiveInOrder();
+    assertThat(streamListener.messages).containsExactly("a", "b", "c").inOrder();
+    assertThat(streamListener.halfClosed).isTrue();
+  }
+
+  @Test
+  public void batchedMessages_takeOneTransactionIndexEach() throws Exception {
+    sender.setPeerFeatures(BinderTransport.FEATURE_BATCHED_MESSAGES);
+
+    // Messages of unknown length are never batched.
+    send(unknownLength("a"), knownLength("b"), knownLength("c"), knownLength("d"),
+        unknownLength("e"));
+
+    assertThat(sentTransactions).hasSize(3);
+    assertThat(transactionIndex(sentTransactions.get(0))).isEqualTo(0);
+    assertThat(transactionIndex(sentTransactions.get(1))).isEqualTo(1);
+    assertThat(transactionIndex(sentTransactions.get(2))).isEqualTo(4);
+  }
+
+  @Test
+  public void batchedMessages_reassembledOutOfOrder() throws Exception {
+    sender.setPeerFeatures(BinderTransport.FEATURE_BATCHED_MESSAGES);
+    send(unknownLength("a"), knownLength("b"), knownLength("c"), knownLength("d"),
+        unknownLength("e"));
+
+    receive(0, 2, 1);
+
+    assertThat(streamListener.messages).containsExactly("a", "b", "c", "d", "e").inOrder();
+    assertThat(streamListener.halfClosed).isTrue();
+  }
+
+  @Test
+  public void batchedMessages_splitByMaxBatchSize() throws Exception {
+    sender.setPeerFeatures(BinderTransport.FEATURE_BATCHED_MESSAGES);
+    String large = repeat('x', 10 * 1024);
+
+    send(knownLength(large), knownLength(large), knownLength("a"));
+
+    assertThat(sentTransactions).hasSize(2);
+    receiveInOrder();
+    assertThat(streamListener.messages).containsExactly(large, large, "a").inOrder();
+  }
+
+  @Test
+  @Config(sdk = 28)
+  public void sharedMemoryMessage() throws Exception {
+    sender.setPeerFeatures(BinderTransport.FEATURE_SHARED_MEMORY);
+    String large = repeat('x', 100 * 1024);
+
+    send(knownLength(large), knownLength("a"));
+
+    // Without shared memory, the large message would take seven transactions.
+    assertThat(sentTransactions).hasSize(2);
+    receiveInOrder();
+    assertThat(streamListener.messages).containsExactly(large, "a").inOrder();
+    assertThat(streamListener.halfClosed).isTrue();
+  }
+
+  private void send(InputStream... messages) throws Exception {
+    Outbound.ClientOutbound outbound =
+        new Outbound.ClientOutbound(
+            sender, CALL_ID, METHOD, new Metadata(), StatsTraceContext.NOOP);
+    synchronized (outbound) {
+      for (InputStream message : messages) {
+        outbound.addMessage(message);
+      }
+      outbound.sendHalfClose();
+    }
+  }
+
+  private void receiveInOrder() {
+    for (Parcel parcel : sentTransactions) {
+      parcel.setDataPosition(0);
+      receiver.handleTransaction(CALL_ID, parcel);
+    }
+  }
+
+  private void receive(int... order) {
+    for (int i : order) {
+      Parcel parcel = sentTransactions.get(i);
+      parcel.setDataPosition(0);
+      receiver.handleTransaction(CALL_ID, parcel);
+    }
+  }
+
+  private static int transactionIndex(Parcel parcel) {
+    parcel.setDataPosition(4); // Skip the flags.
+    return parcel.readInt();
+  }
+
+  private static InputStream knownLength(String message) {
+    return new KnownLengthInputStream(message.getBytes(UTF_8));
+  }
+
+  private static InputStream unknownLength(String message) {
+    return new ByteArrayInputStream(message.getBytes(UTF_8));
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
+  private static final class KnownLengthInputStream extends ByteArrayInputStream
+      implements KnownLength {
+    KnownLengthInputStream(byte[] buf) {
+      super(buf);
+    }
+  }
+
+  private final class TestTransportListener implements ServerTransportListener {
+    @Override
+    public void streamCreated(ServerStream stream, String method, Metadata headers) {
+      stream.setListener(streamListener);
+      stream.request(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Attributes transportReady(Attributes attributes) {
+      return attributes;
+    }
+
+    @Override
+    public void transportTerminated() {}
+  }
+
+  private static final class TestStreamListener implements ServerStreamListener {
+    final List<String> messages = new ArrayList<>();
+    boolean halfClosed;
+
+    @Override
+    public void messagesAvailable(MessageProducer producer) {
+      InputStream message;
+      while ((message = producer.next()) != null) {
+        try {
+          messages.add(new String(ByteStreams.toByteArray(message), UTF_8));
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      }
+    }
+
+    @Override
+    public void halfClosed() {
+      halfClosed = true;
+    }
+
+    @Override
+    public void closed(Status status) {}
+
+    @Override
+    public void onReady() {}
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.binder.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import android.os.Parcel;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public final class SharedMemoryMessagesTest {
+
+  private final SharedMemoryMessages messages = new SharedMemoryMessages();
+
+  @After
+  public void tearDown() {
+    messages.close();
+  }
+
+  @Test
+  public void regionSize_roundsUpToPowerOfTwo() {
+    assertThat(SharedMemoryMessages.regionSize(64 * 1024)).isEqualTo(64 * 1024);
+    assertThat(SharedMemoryMessages.regionSize(64 * 1024 + 1)).isEqualTo(128 * 1024);
+    assertThat(SharedMemoryMessages.regionSize(100 * 1024)).isEqualTo(128 * 1024);
+  }
+
+  @Test
+  public void writeAndReadMessage() throws Exception {
+    byte[] message = randomBytes(100 * 1024);
+    Parcel parcel = Parcel.obtain();
+
+    SharedMemoryMessages.Region region = write(parcel, message);
+    parcel.setDataPosition(0);
+
+    assertThat(region.size()).isEqualTo(128 * 1024);
+    assertThat(SharedMemoryMessages.readMessage(parcel)).isEqualTo(message);
+    parcel.recycle();
+  }
+
+  @Test
+  public void writeMessage_shorterThanLength() throws Exception {
+    Parcel parcel = Parcel.obtain();
+    try {
+      messages.writeMessage(parcel, new ByteArrayInputStream(new byte[10]), 64 * 1024);
+      fail();
+    } catch (IOException expected) {
+      // Expected.
+    }
+    parcel.recycle();
+  }
+
+  @Test
+  public void regionReusedOnceAcknowledged() throws Exception {
+    Parcel parcel = Parcel.obtain();
+    SharedMemoryMessages.Region first = write(parcel, randomBytes(100 * 1024));
+    messages.onSent(first, 1000);
+
+    SharedMemoryMessages.Region second = write(parcel, randomBytes(100 * 1024));
+    assertThat(second).isNotSameInstanceAs(first);
+    messages.onSent(second, 2000);
+
+    messages.onAcknowledged(999);
+    assertThat(write(parcel, randomBytes(100 * 1024))).isNotSameInstanceAs(first);
+
+    messages.onAcknowledged(1000);
+    assertThat(write(parcel, randomBytes(100 * 1024))).isSameInstanceAs(first);
+    parcel.recycle();
+  }
+
+  @Test
+  public void regionReusedOnlyForSameSize() throws Exception {
+    Parcel parcel = Parcel.obtain();
+    SharedMemoryMessages.Region region = write(parcel, randomBytes(100 * 1024));
+    messages.onSent(region, 1000);
+    messages.onAcknowledged(1000);
+
+    assertThat(write(parcel, randomBytes(200 * 1024))).isNotSameInstanceAs(region);
+    assertThat(write(parcel, randomBytes(70 * 1024))).isSameInstanceAs(region);
+    parcel.recycle();
+  }
+
+  @Test
+  public void reusedRegion_holdsNewMessage() throws Exception {
+    Parcel parcel = Parcel.obtain();
+    SharedMemoryMessages.Region region = write(parcel, randomBytes(100 * 1024));
+    messages.onSent(region, 1000);
+    messages.onAcknowledged(1000);
+    byte[] message = randomBytes(80 * 1024);
+    parcel.setDataPosition(0);
+
+    assertThat(write(parcel, message)).isSameInstanceAs(region);
+    parcel.setDataPosition(0);
+    assertThat(SharedMemoryMessages.readMessage(parcel)).isEqualTo(message);
+    parcel.recycle();
+  }
+
+  @Test
+  public void noReuseAfterClose() throws Exception {
+    Parcel parcel = Parcel.obtain();
+    SharedMemoryMessages.Region region = write(parcel, randomBytes(100 * 1024));
+    messages.onSent(region, 1000);
+    messages.close();
+    messages.onAcknowledged(1000);
+
+    assertThat(write(parcel, randomBytes(100 * 1024))).isNotSameInstanceAs(region);
+    parcel.recycle();
+  }
+
+  private SharedMemoryMessages.Region write(Parcel parcel, byte[] message) throws IOException {
+    return messages.writeMessage(parcel, new ByteArrayInputStream(message), message.length);
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -90,8 +90,12 @@ LOCAL_MVN_TEMP=$(mktemp -d)
 if [[ -z "${ALL_ARTIFACTS:-}" ]]; then
   if [[ $ARCH == "aarch_64" ]]; then
     GRADLE_FLAGS+=" -x grpc-compiler:generateTestProto -x grpc-compiler:generateTestLiteProto"
+    GRADLE_FLAGS+=" -x grpc-compiler:generateTestSpecializedProto"
+    GRADLE_FLAGS+=" -x grpc-compiler:generateTestCompletionStageProto"
     GRADLE_FLAGS+=" -x grpc-compiler:testGolden -x grpc-compiler:testLiteGolden"
     GRADLE_FLAGS+=" -x grpc-compiler:testDeprecatedGolden -x grpc-compiler:testDeprecatedLiteGolden"
+    GRADLE_FLAGS+=" -x grpc-compiler:testSpecializedGolden"
+    GRADLE_FLAGS+=" -x grpc-compiler:testCompletionStageGolden"
   fi
   ./gradlew grpc-compiler:build grpc-compiler:publish $GRADLE_FLAGS \
     -Dorg.gradle.parallel=false -PrepositoryDir=$LOCAL_MVN_TEMP
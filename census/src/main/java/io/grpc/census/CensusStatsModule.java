@@ -79,6 +79,27 @@ final class CensusStatsModule {
   private static final Logger logger = Logger.getLogger(CensusStatsModule.class.getName());
   private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
 
+  @VisibleForTesting
+  static final MeasureLong CLIENT_COMPRESSION_SKIPPED_MESSAGES_PER_METHOD =
+      Measure.MeasureLong.create(
+          "grpc.io/client/compression_skipped_messages_per_method",
+          "Number of messages sent uncompressed although the RPC had a compressor", "1");
+  @VisibleForTesting
+  static final MeasureDouble CLIENT_COMPRESSION_RATIO_PER_METHOD =
+      Measure.MeasureDouble.create(
+          "grpc.io/client/compression_ratio_per_method",
+          "Compressed size over uncompressed size of each compressed message", "1");
+  @VisibleForTesting
+  static final MeasureLong SERVER_COMPRESSION_SKIPPED_MESSAGES_PER_METHOD =
+      Measure.MeasureLong.create(
+          "grpc.io/server/compression_skipped_messages_per_method",
+          "Number of messages sent uncompressed although the RPC had a compressor", "1");
+  @VisibleForTesting
+  static final MeasureDouble SERVER_COMPRESSION_RATIO_PER_METHOD =
+      Measure.MeasureDouble.create(
+          "grpc.io/server/compression_ratio_per_method",
+          "Compressed size over uncompressed size of each compressed message", "1");
+
   private final Tagger tagger;
   private final StatsRecorder statsRecorder;
   private final Supplier<Stopwatch> stopwatchSupplier;
@@ -176,6 +197,16 @@ final class CensusStatsModule {
     }
   }
 
+  private void recordCompression(
+      TagContext ctx, MeasureLong skippedMeasure, MeasureDouble ratioMeasure,
+      long uncompressedSize, long compressedSize) {
+    if (compressedSize < 0) {
+      recordRealTimeMetric(ctx, skippedMeasure, 1);
+    } else if (uncompressedSize > 0) {
+      recordRealTimeMetric(ctx, ratioMeasure, (double) compressedSize / uncompressedSize);
+    }
+  }
+
   private static final class ClientTracer extends ClientStreamTracer {
     @Nullable private static final AtomicLongFieldUpdater<ClientTracer> outboundMessageCountUpdater;
     @Nullable private static final AtomicLongFieldUpdater<ClientTracer> inboundMessageCountUpdater;
@@ -340,6 +371,13 @@ final class CensusStatsModule {
           startCtx, RpcMeasureConstants.GRPC_CLIENT_SENT_MESSAGES_PER_METHOD, 1);
     }
 
+    @Override
+    public void outboundMessageCompression(int seqNo, long uncompressedSize, long compressedSize) {
+      module.recordCompression(
+          startCtx, CLIENT_COMPRESSION_SKIPPED_MESSAGES_PER_METHOD,
+          CLIENT_COMPRESSION_RATIO_PER_METHOD, uncompressedSize, compressedSize);
+    }
+
     @Override
     public void streamClosed(Status status) {
       attemptsState.attemptEnded();
@@ -699,6 +737,13 @@ final class CensusStatsModule {
           parentCtx, RpcMeasureConstants.GRPC_SERVER_SENT_MESSAGES_PER_METHOD, 1);
     }
 
+    @Override
+    public void outboundMessageCompression(int seqNo, long uncompressedSize, long compressedSize) {
+      module.recordCompression(
+          parentCtx, SERVER_COMPRESSION_SKIPPED_MESSAGES_PER_METHOD,
+          SERVER_COMPRESSION_RATIO_PER_METHOD, uncompressedSize, compressedSize);
+    }
+
     /**
      * Record a finished stream and mark the current time as the end time.
      *
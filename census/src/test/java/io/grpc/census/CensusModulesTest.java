@@ -1163,6 +1163,46 @@ public class CensusModulesTest {
     subtestServerBasicStatsNoHeaders(true, true, true);
   }
 
+  @Test
+  public void compressionStats_realTime() {
+    CensusStatsModule localCensusStats =
+        new CensusStatsModule(
+            tagger, tagCtxSerializer, statsRecorder, fakeClock.getStopwatchSupplier(),
+            true, false, false, true, true);
+    ClientStreamTracer clientTracer =
+        new CensusStatsModule.CallAttemptsTracerFactory(
+            localCensusStats, tagger.empty(), method.getFullMethodName())
+            .newClientStreamTracer(STREAM_INFO, new Metadata());
+    ServerStreamTracer serverTracer =
+        localCensusStats.getServerTracerFactory()
+            .newServerStreamTracer(method.getFullMethodName(), new Metadata());
+
+    clientTracer.outboundMessageCompression(0, 1000, 250);
+    StatsTestUtils.MetricsRecord record = statsRecorder.pollRecord();
+    assertEquals(
+        method.getFullMethodName(),
+        record.tags.get(RpcMeasureConstants.GRPC_CLIENT_METHOD).asString());
+    assertThat(record.getMetric(CensusStatsModule.CLIENT_COMPRESSION_RATIO_PER_METHOD))
+        .isEqualTo(0.25);
+
+    clientTracer.outboundMessageCompression(1, 40, -1);
+    assertRealTimeMetric(
+        CensusStatsModule.CLIENT_COMPRESSION_SKIPPED_MESSAGES_PER_METHOD, 1, true, true);
+
+    serverTracer.outboundMessageCompression(0, 1000, 500);
+    record = statsRecorder.pollRecord();
+    assertEquals(
+        method.getFullMethodName(),
+        record.tags.get(RpcMeasureConstants.GRPC_SERVER_METHOD).asString());
+    assertThat(record.getMetric(CensusStatsModule.SERVER_COMPRESSION_RATIO_PER_METHOD))
+        .isEqualTo(0.5);
+
+    serverTracer.outboundMessageCompression(1, 40, -1);
+    assertRealTimeMetric(
+        CensusStatsModule.SERVER_COMPRESSION_SKIPPED_MESSAGES_PER_METHOD, 1, true, false);
+    assertNull(statsRecorder.pollRecord());
+  }
+
   private void subtestServerBasicStatsNoHeaders(
       boolean recordStarts, boolean recordFinishes, boolean recordRealTime) {
     CensusStatsModule localCensusStats =
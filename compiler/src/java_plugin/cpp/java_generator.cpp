@@ -165,6 +165,12 @@ static inline std::string MethodIdFieldName(const MethodDescriptor* method) {
   return "METHODID_" + ToAllUpperCase(method->name());
 }
 
+static inline std::string MethodHandlerClassName(const MethodDescriptor* method) {
+  std::string name = MixedLower(method->name() + "_method_handler");
+  name[0] = toupper(name[0]);
+  return name;
+}
+
 static inline std::string MessageFullJavaName(const Descriptor* desc) {
   return protobuf::compiler::java::ClassName(desc);
 }
@@ -371,9 +377,53 @@ void GrpcWriteMethodDocComment(Printer* printer,
   printer->Print(" */\n");
 }
 
+// Prints the builder of a method's descriptor, from newBuilder() to build(),
+// with the first line indented by $builder_indent$ and the others by
+// $builder_chain_indent$.
+static void PrintMethodDescriptorBuilder(
+    const ServiceDescriptor* service, const MethodDescriptor* method,
+    std::map<std::string, std::string>* vars, Printer* p, ProtoFlavor flavor) {
+  p->Print(
+      *vars,
+      "$builder_indent$$MethodDescriptor$.<$input_type$, $output_type$>newBuilder()\n"
+      "$builder_chain_indent$.setType($MethodType$.$method_type$)\n"
+      "$builder_chain_indent$.setFullMethodName(generateFullMethodName(SERVICE_NAME, \"$method_name$\"))\n");
+
+  bool safe = method->options().idempotency_level()
+      == protobuf::MethodOptions_IdempotencyLevel_NO_SIDE_EFFECTS;
+  if (safe) {
+    p->Print(*vars, "$builder_chain_indent$.setSafe(true)\n");
+  } else {
+    bool idempotent = method->options().idempotency_level()
+        == protobuf::MethodOptions_IdempotencyLevel_IDEMPOTENT;
+    if (idempotent) {
+      p->Print(*vars, "$builder_chain_indent$.setIdempotent(true)\n");
+    }
+  }
+
+  p->Print(
+      *vars,
+      "$builder_chain_indent$.setSampledToLocalTracing(true)\n"
+      "$builder_chain_indent$.setRequestMarshaller($ProtoUtils$.marshaller(\n"
+      "$builder_chain_indent$    $input_type$.getDefaultInstance()))\n"
+      "$builder_chain_indent$.setResponseMarshaller($ProtoUtils$.marshaller(\n"
+      "$builder_chain_indent$    $output_type$.getDefaultInstance()))\n");
+
+  (*vars)["proto_method_descriptor_supplier"] = service->name() + "MethodDescriptorSupplier";
+  if (flavor == ProtoFlavor::NORMAL) {
+    p->Print(
+        *vars,
+      "$builder_chain_indent$.setSchemaDescriptor(new $proto_method_descriptor_supplier$(\"$method_name$\"))\n");
+  }
+
+  p->Print(
+      *vars,
+      "$builder_chain_indent$.build();\n");
+}
+
 static void PrintMethodFields(
     const ServiceDescriptor* service, std::map<std::string, std::string>* vars,
-    Printer* p, ProtoFlavor flavor) {
+    Printer* p, ProtoFlavor flavor, bool specialized_handlers) {
   p->Print("// Static method descriptors that strictly reflect the proto.\n");
   (*vars)["service_name"] = service->name();
   for (int i = 0; i < service->method_count(); ++i) {
@@ -407,6 +457,32 @@ static void PrintMethodFields(
     } else {
       (*vars)["ProtoUtils"] = "io.grpc.protobuf.ProtoUtils";
     }
+
+    if (specialized_handlers) {
+      // Built when the class is initialized, so that getters need no locking.
+      (*vars)["builder_indent"] = "    ";
+      (*vars)["builder_chain_indent"] = "        ";
+      p->Print(
+          *vars,
+          "private static final $MethodDescriptor$<$input_type$,\n"
+          "    $output_type$> $method_field_name$ =\n");
+      PrintMethodDescriptorBuilder(service, method, vars, p, flavor);
+      p->Print(
+          *vars,
+          "\n"
+          "@$RpcMethod$(\n"
+          "    fullMethodName = SERVICE_NAME + '/' + \"$method_name$\",\n"
+          "    requestType = $input_type$.class,\n"
+          "    responseType = $output_type$.class,\n"
+          "    methodType = $MethodType$.$method_type$)\n"
+          "public static $MethodDescriptor$<$input_type$,\n"
+          "    $output_type$> $method_method_name$() {\n"
+          "  return $method_field_name$;\n"
+          "}\n"
+          "\n");
+      continue;
+    }
+
     p->Print(
         *vars,
         "private static volatile $MethodDescriptor$<$input_type$,\n"
@@ -423,41 +499,10 @@ static void PrintMethodFields(
         "  if (($method_new_field_name$ = $service_class_name$.$method_new_field_name$) == null) {\n"
         "    synchronized ($service_class_name$.class) {\n"
         "      if (($method_new_field_name$ = $service_class_name$.$method_new_field_name$) == null) {\n"
-        "        $service_class_name$.$method_new_field_name$ = $method_new_field_name$ =\n"
-        "            $MethodDescriptor$.<$input_type$, $output_type$>newBuilder()\n"
-        "            .setType($MethodType$.$method_type$)\n"
-        "            .setFullMethodName(generateFullMethodName(SERVICE_NAME, \"$method_name$\"))\n");
-        
-    bool safe = method->options().idempotency_level()
-        == protobuf::MethodOptions_IdempotencyLevel_NO_SIDE_EFFECTS;
-    if (safe) {
-      p->Print(*vars, "            .setSafe(true)\n");
-    } else {
-      bool idempotent = method->options().idempotency_level()
-          == protobuf::MethodOptions_IdempotencyLevel_IDEMPOTENT;
-      if (idempotent) {
-        p->Print(*vars, "            .setIdempotent(true)\n");
-      }
-    }
-        
-    p->Print(
-        *vars,
-        "            .setSampledToLocalTracing(true)\n"
-        "            .setRequestMarshaller($ProtoUtils$.marshaller(\n"
-        "                $input_type$.getDefaultInstance()))\n"
-        "            .setResponseMarshaller($ProtoUtils$.marshaller(\n"
-        "                $output_type$.getDefaultInstance()))\n");
-
-    (*vars)["proto_method_descriptor_supplier"] = service->name() + "MethodDescriptorSupplier";
-    if (flavor == ProtoFlavor::NORMAL) {
-      p->Print(
-          *vars,
-        "            .setSchemaDescriptor(new $proto_method_descriptor_supplier$(\"$method_name$\"))\n");
-    }
-
-    p->Print(
-        *vars,
-        "            .build();\n");
+        "        $service_class_name$.$method_new_field_name$ = $method_new_field_name$ =\n");
+    (*vars)["builder_indent"] = "            ";
+    (*vars)["builder_chain_indent"] = "            ";
+    PrintMethodDescriptorBuilder(service, method, vars, p, flavor);
     p->Print(*vars,
         "      }\n"
         "    }\n"
@@ -477,6 +522,8 @@ enum StubType {
   BLOCKING_CLIENT_IMPL = 5,
   FUTURE_CLIENT_IMPL = 6,
   ABSTRACT_CLASS = 7,
+  FLOW_CLIENT_IMPL = 8,
+  COMPLETION_STAGE_CLIENT_IMPL = 9,
 };
 
 enum CallType {
@@ -487,7 +534,8 @@ enum CallType {
 
 static void PrintBindServiceMethodBody(const ServiceDescriptor* service,
                                    std::map<std::string, std::string>* vars,
-                                   Printer* p);
+                                   Printer* p,
+                                   bool specialized_handlers);
 
 // Prints a StubFactory for given service / stub type.
 static void PrintStubFactory(
@@ -505,6 +553,12 @@ static void PrintStubFactory(
     case BLOCKING_CLIENT_IMPL:
       stub_type_name = "Blocking";
       break;
+    case FLOW_CLIENT_IMPL:
+      stub_type_name = "Flow";
+      break;
+    case COMPLETION_STAGE_CLIENT_IMPL:
+      stub_type_name = "CompletionStage";
+      break;
     default:
       GRPC_CODEGEN_FAIL << "Cannot generate StubFactory for StubType: " << type;
   }
@@ -524,7 +578,7 @@ static void PrintStubFactory(
 static void PrintStub(
     const ServiceDescriptor* service,
     std::map<std::string, std::string>* vars,
-    Printer* p, StubType type) {
+    Printer* p, StubType type, bool specialized_handlers) {
   const std::string service_name = service->name();
   (*vars)["service_name"] = service_name;
   (*vars)["abstract_name"] = service_name + "ImplBase";
@@ -789,7 +843,7 @@ static void PrintStub(
         *vars,
         "@$Override$ public final $ServerServiceDefinition$ bindService() {\n");
     (*vars)["instance"] = "this";
-    PrintBindServiceMethodBody(service, vars, p);
+    PrintBindServiceMethodBody(service, vars, p, specialized_handlers);
     p->Print("}\n");
   }
 
@@ -911,10 +965,69 @@ static void PrintMethodHandlerClass(const ServiceDescriptor* service,
   p->Print("}\n\n");
 }
 
+// Prints a final handler class per method, which calls the service
+// implementation without going through a switch or casts.
+static void PrintSpecializedMethodHandlerClasses(const ServiceDescriptor* service,
+                                   std::map<std::string, std::string>* vars,
+                                   Printer* p) {
+  (*vars)["service_name"] = service->name() + "ImplBase";
+  for (int i = 0; i < service->method_count(); ++i) {
+    const MethodDescriptor* method = service->method(i);
+    (*vars)["lower_method_name"] = LowerMethodName(method);
+    (*vars)["method_handler_name"] = MethodHandlerClassName(method);
+    (*vars)["input_type"] = MessageFullJavaName(method->input_type());
+    (*vars)["output_type"] = MessageFullJavaName(method->output_type());
+    bool client_streaming = method->client_streaming();
+    bool server_streaming = method->server_streaming();
+    if (client_streaming) {
+      if (server_streaming) {
+        (*vars)["handler_interface"] = "io.grpc.stub.ServerCalls.BidiStreamingMethod";
+      } else {
+        (*vars)["handler_interface"] = "io.grpc.stub.ServerCalls.ClientStreamingMethod";
+      }
+    } else {
+      if (server_streaming) {
+        (*vars)["handler_interface"] = "io.grpc.stub.ServerCalls.ServerStreamingMethod";
+      } else {
+        (*vars)["handler_interface"] = "io.grpc.stub.ServerCalls.UnaryMethod";
+      }
+    }
+    p->Print(
+        *vars,
+        "private static final class $method_handler_name$ implements\n"
+        "    $handler_interface$<$input_type$, $output_type$> {\n"
+        "  private final $service_name$ serviceImpl;\n"
+        "\n"
+        "  $method_handler_name$($service_name$ serviceImpl) {\n"
+        "    this.serviceImpl = serviceImpl;\n"
+        "  }\n"
+        "\n");
+    if (client_streaming) {
+      p->Print(
+          *vars,
+          "  @$Override$\n"
+          "  public $StreamObserver$<$input_type$> invoke(\n"
+          "      $StreamObserver$<$output_type$> responseObserver) {\n"
+          "    return serviceImpl.$lower_method_name$(responseObserver);\n"
+          "  }\n");
+    } else {
+      p->Print(
+          *vars,
+          "  @$Override$\n"
+          "  public void invoke($input_type$ request,\n"
+          "      $StreamObserver$<$output_type$> responseObserver) {\n"
+          "    serviceImpl.$lower_method_name$(request, responseObserver);\n"
+          "  }\n");
+    }
+    p->Print("}\n\n");
+  }
+}
+
 static void PrintGetServiceDescriptorMethod(const ServiceDescriptor* service,
                                    std::map<std::string, std::string>* vars,
                                    Printer* p,
-                                   ProtoFlavor flavor) {
+                                   ProtoFlavor flavor,
+                                   bool specialized_handlers) {
   (*vars)["service_name"] = service->name();
 
 
@@ -961,6 +1074,39 @@ static void PrintGetServiceDescriptorMethod(const ServiceDescriptor* service,
         "}\n\n");
   }
 
+  if (specialized_handlers) {
+    // Declared after the method descriptors, so that they are initialized first.
+    p->Print(
+        *vars,
+        "private static final $ServiceDescriptor$ serviceDescriptor =\n"
+        "    $ServiceDescriptor$.newBuilder(SERVICE_NAME)");
+    p->Indent();
+    p->Indent();
+    p->Indent();
+    p->Indent();
+    if (flavor == ProtoFlavor::NORMAL) {
+      p->Print(
+          *vars,
+          "\n.setSchemaDescriptor(new $proto_file_descriptor_supplier$())");
+    }
+    for (int i = 0; i < service->method_count(); ++i) {
+      const MethodDescriptor* method = service->method(i);
+      (*vars)["method_field_name"] = MethodPropertiesFieldName(method);
+      p->Print(*vars, "\n.addMethod($method_field_name$)");
+    }
+    p->Print("\n.build();\n\n");
+    p->Outdent();
+    p->Outdent();
+    p->Outdent();
+    p->Outdent();
+    p->Print(
+        *vars,
+        "public static $ServiceDescriptor$ getServiceDescriptor() {\n"
+        "  return serviceDescriptor;\n"
+        "}\n");
+    return;
+  }
+
   p->Print(
       *vars,
       "private static volatile $ServiceDescriptor$ serviceDescriptor;\n\n");
@@ -1014,7 +1160,8 @@ static void PrintGetServiceDescriptorMethod(const ServiceDescriptor* service,
 
 static void PrintBindServiceMethodBody(const ServiceDescriptor* service,
                                    std::map<std::string, std::string>* vars,
-                                   Printer* p) {
+                                   Printer* p,
+                                   bool specialized_handlers) {
   (*vars)["service_name"] = service->name();
   p->Indent();
   p->Print(*vars,
@@ -1051,12 +1198,19 @@ static void PrintBindServiceMethodBody(const ServiceDescriptor* service,
         "$method_method_name$(),\n"
         "$calls_method$(\n");
     p->Indent();
-    p->Print(
-        *vars,
-        "new MethodHandlers<\n"
-        "  $input_type$,\n"
-        "  $output_type$>(\n"
-        "    $instance$, $method_id_name$)))\n");
+    if (specialized_handlers) {
+      (*vars)["method_handler_name"] = MethodHandlerClassName(method);
+      p->Print(
+          *vars,
+          "new $method_handler_name$($instance$)))\n");
+    } else {
+      p->Print(
+          *vars,
+          "new MethodHandlers<\n"
+          "  $input_type$,\n"
+          "  $output_type$>(\n"
+          "    $instance$, $method_id_name$)))\n");
+    }
     p->Outdent();
     p->Outdent();
   }
@@ -1066,11 +1220,209 @@ static void PrintBindServiceMethodBody(const ServiceDescriptor* service,
   p->Outdent();
 }
 
+// Prints the client stub or the abstract service class whose methods take and
+// return java.util.concurrent.Flow.Publishers. These need Java 9 and grpc-flow.
+static void PrintFlowStub(const ServiceDescriptor* service,
+                          std::map<std::string, std::string>* vars,
+                          Printer* p,
+                          bool impl_base) {
+  const std::string service_name = service->name();
+  (*vars)["service_name"] = service_name;
+  (*vars)["stub_name"] = service_name + (impl_base ? "FlowImplBase" : "FlowStub");
+
+  // Class head
+  GrpcWriteServiceDocComment(p, service);
+  if (service->options().deprecated()) {
+    p->Print(*vars, "@$Deprecated$\n");
+  }
+  if (impl_base) {
+    p->Print(
+        *vars,
+        "public static abstract class $stub_name$"
+        " implements $BindableService$ {\n");
+  } else {
+    p->Print(
+        *vars,
+        "public static final class $stub_name$"
+        " extends $AbstractStub$<$stub_name$> {\n");
+  }
+  p->Indent();
+
+  // Constructor and build() method
+  if (!impl_base) {
+    p->Print(
+        *vars,
+        "private $stub_name$(\n"
+        "    $Channel$ channel, $CallOptions$ callOptions) {\n"
+        "  super(channel, callOptions);\n"
+        "}\n\n"
+        "@$Override$\n"
+        "protected $stub_name$ build(\n"
+        "    $Channel$ channel, $CallOptions$ callOptions) {\n"
+        "  return new $stub_name$(channel, callOptions);\n"
+        "}\n");
+  }
+
+  // RPC methods
+  for (int i = 0; i < service->method_count(); ++i) {
+    const MethodDescriptor* method = service->method(i);
+    (*vars)["input_type"] = MessageFullJavaName(method->input_type());
+    (*vars)["output_type"] = MessageFullJavaName(method->output_type());
+    (*vars)["lower_method_name"] = LowerMethodName(method);
+    (*vars)["method_method_name"] = MethodPropertiesGetterName(method);
+    bool client_streaming = method->client_streaming();
+    bool server_streaming = method->server_streaming();
+    if (client_streaming) {
+      (*vars)["params_decl"] = (*vars)["FlowPublisher"] + "<" + (*vars)["input_type"] + "> requests";
+      (*vars)["params"] = "requests";
+      (*vars)["calls_method"] = server_streaming
+          ? "io.grpc.flow.FlowClientCalls.bidiStreamingCall"
+          : "io.grpc.flow.FlowClientCalls.clientStreamingCall";
+    } else {
+      (*vars)["params_decl"] = (*vars)["input_type"] + " request";
+      (*vars)["params"] = "request";
+      (*vars)["calls_method"] = server_streaming
+          ? "io.grpc.flow.FlowClientCalls.serverStreamingCall"
+          : "io.grpc.flow.FlowClientCalls.unaryCall";
+    }
+
+    p->Print("\n");
+    GrpcWriteMethodDocComment(p, method);
+    if (method->options().deprecated()) {
+      p->Print(*vars, "@$Deprecated$\n");
+    }
+    p->Print(
+        *vars,
+        "public $FlowPublisher$<$output_type$> $lower_method_name$(\n"
+        "    $params_decl$) {\n");
+    p->Indent();
+    if (impl_base) {
+      p->Print(
+          *vars,
+          "return io.grpc.flow.FlowServerCalls.unimplemented($method_method_name$());\n");
+    } else {
+      p->Print(
+          *vars,
+          "return $calls_method$(\n"
+          "    getChannel(), $method_method_name$(), getCallOptions(), $params$);\n");
+    }
+    p->Outdent();
+    p->Print("}\n");
+  }
+
+  if (impl_base) {
+    p->Print(
+        *vars,
+        "\n"
+        "@$Override$ public final $ServerServiceDefinition$ bindService() {\n");
+    p->Indent();
+    p->Print(
+        *vars,
+        "return $ServerServiceDefinition$.builder(getServiceDescriptor())\n");
+    p->Indent();
+    p->Indent();
+    for (int i = 0; i < service->method_count(); ++i) {
+      const MethodDescriptor* method = service->method(i);
+      (*vars)["lower_method_name"] = LowerMethodName(method);
+      (*vars)["method_method_name"] = MethodPropertiesGetterName(method);
+      bool client_streaming = method->client_streaming();
+      bool server_streaming = method->server_streaming();
+      if (client_streaming) {
+        (*vars)["calls_method"] = server_streaming
+            ? "io.grpc.flow.FlowServerCalls.bidiStreamingCall"
+            : "io.grpc.flow.FlowServerCalls.clientStreamingCall";
+      } else {
+        (*vars)["calls_method"] = server_streaming
+            ? "io.grpc.flow.FlowServerCalls.serverStreamingCall"
+            : "io.grpc.flow.FlowServerCalls.unaryCall";
+      }
+      p->Print(
+          *vars,
+          ".addMethod(\n"
+          "  $method_method_name$(),\n"
+          "  $calls_method$(this::$lower_method_name$))\n");
+    }
+    p->Print(".build();\n");
+    p->Outdent();
+    p->Outdent();
+    p->Outdent();
+    p->Print("}\n");
+  }
+
+  p->Outdent();
+  p->Print("}\n\n");
+}
+
+// Prints the client stub whose unary methods return
+// java.util.concurrent.CompletionStages. These need grpc-completionstage.
+static void PrintCompletionStageStub(const ServiceDescriptor* service,
+                                     std::map<std::string, std::string>* vars,
+                                     Printer* p) {
+  const std::string service_name = service->name();
+  (*vars)["service_name"] = service_name;
+  (*vars)["stub_name"] = service_name + "CompletionStageStub";
+
+  // Class head
+  GrpcWriteServiceDocComment(p, service);
+  if (service->options().deprecated()) {
+    p->Print(*vars, "@$Deprecated$\n");
+  }
+  p->Print(
+      *vars,
+      "public static final class $stub_name$"
+      " extends $AbstractStub$<$stub_name$> {\n");
+  p->Indent();
+
+  // Constructor and build() method
+  p->Print(
+      *vars,
+      "private $stub_name$(\n"
+      "    $Channel$ channel, $CallOptions$ callOptions) {\n"
+      "  super(channel, callOptions);\n"
+      "}\n\n"
+      "@$Override$\n"
+      "protected $stub_name$ build(\n"
+      "    $Channel$ channel, $CallOptions$ callOptions) {\n"
+      "  return new $stub_name$(channel, callOptions);\n"
+      "}\n");
+
+  // RPC methods, only unary ones like the future stub
+  for (int i = 0; i < service->method_count(); ++i) {
+    const MethodDescriptor* method = service->method(i);
+    if (method->client_streaming() || method->server_streaming()) {
+      continue;
+    }
+    (*vars)["input_type"] = MessageFullJavaName(method->input_type());
+    (*vars)["output_type"] = MessageFullJavaName(method->output_type());
+    (*vars)["lower_method_name"] = LowerMethodName(method);
+    (*vars)["method_method_name"] = MethodPropertiesGetterName(method);
+
+    p->Print("\n");
+    GrpcWriteMethodDocComment(p, method);
+    if (method->options().deprecated()) {
+      p->Print(*vars, "@$Deprecated$\n");
+    }
+    p->Print(
+        *vars,
+        "public $CompletionStage$<$output_type$> $lower_method_name$(\n"
+        "    $input_type$ request) {\n"
+        "  return io.grpc.completionstage.CompletionStageClientCalls.unaryCall(\n"
+        "      getChannel().newCall($method_method_name$(), getCallOptions()), request);\n"
+        "}\n");
+  }
+
+  p->Outdent();
+  p->Print("}\n\n");
+}
+
 static void PrintService(const ServiceDescriptor* service,
                          std::map<std::string, std::string>* vars,
                          Printer* p,
                          ProtoFlavor flavor,
-                         bool disable_version) {
+                         bool disable_version,
+                         bool specialized_handlers,
+                         bool flow_stubs,
+                         bool completion_stage_stubs) {
   (*vars)["service_name"] = service->name();
   (*vars)["file_name"] = service->file()->name();
   (*vars)["service_class_name"] = ServiceClassName(service);
@@ -1106,7 +1458,7 @@ static void PrintService(const ServiceDescriptor* service,
       "public static final String SERVICE_NAME = "
       "\"$Package$$service_name$\";\n\n");
 
-  PrintMethodFields(service, vars, p, flavor);
+  PrintMethodFields(service, vars, p, flavor, specialized_handlers);
 
   // TODO(nmittler): Replace with WriteDocComment once included by protobuf distro.
   GrpcWriteDocComment(p, " Creates a new async stub that supports all call types for the service");
@@ -1149,13 +1501,56 @@ static void PrintService(const ServiceDescriptor* service,
   p->Outdent();
   p->Print("}\n\n");
 
-  PrintStub(service, vars, p, ABSTRACT_CLASS);
-  PrintStub(service, vars, p, ASYNC_CLIENT_IMPL);
-  PrintStub(service, vars, p, BLOCKING_CLIENT_IMPL);
-  PrintStub(service, vars, p, FUTURE_CLIENT_IMPL);
+  if (flow_stubs) {
+    GrpcWriteDocComment(p, " Creates a new Flow.Publisher-style stub that supports all call "
+                           "types for the service");
+    p->Print(
+        *vars,
+        "public static $service_name$FlowStub newFlowStub(\n"
+        "    $Channel$ channel) {\n");
+    p->Indent();
+    PrintStubFactory(service, vars, p, FLOW_CLIENT_IMPL);
+    p->Print(
+        *vars,
+        "return $service_name$FlowStub.newStub(factory, channel);\n");
+    p->Outdent();
+    p->Print("}\n\n");
+  }
 
-  PrintMethodHandlerClass(service, vars, p);
-  PrintGetServiceDescriptorMethod(service, vars, p, flavor);
+  if (completion_stage_stubs) {
+    GrpcWriteDocComment(p, " Creates a new CompletionStage-style stub that supports unary calls "
+                           "on the service");
+    p->Print(
+        *vars,
+        "public static $service_name$CompletionStageStub newCompletionStageStub(\n"
+        "    $Channel$ channel) {\n");
+    p->Indent();
+    PrintStubFactory(service, vars, p, COMPLETION_STAGE_CLIENT_IMPL);
+    p->Print(
+        *vars,
+        "return $service_name$CompletionStageStub.newStub(factory, channel);\n");
+    p->Outdent();
+    p->Print("}\n\n");
+  }
+
+  PrintStub(service, vars, p, ABSTRACT_CLASS, specialized_handlers);
+  PrintStub(service, vars, p, ASYNC_CLIENT_IMPL, specialized_handlers);
+  PrintStub(service, vars, p, BLOCKING_CLIENT_IMPL, specialized_handlers);
+  PrintStub(service, vars, p, FUTURE_CLIENT_IMPL, specialized_handlers);
+  if (flow_stubs) {
+    PrintFlowStub(service, vars, p, true);
+    PrintFlowStub(service, vars, p, false);
+  }
+  if (completion_stage_stubs) {
+    PrintCompletionStageStub(service, vars, p);
+  }
+
+  if (specialized_handlers) {
+    PrintSpecializedMethodHandlerClasses(service, vars, p);
+  } else {
+    PrintMethodHandlerClass(service, vars, p);
+  }
+  PrintGetServiceDescriptorMethod(service, vars, p, flavor, specialized_handlers);
   p->Outdent();
   p->Print("}\n");
 }
@@ -1169,7 +1564,10 @@ void PrintImports(Printer* p) {
 void GenerateService(const ServiceDescriptor* service,
                      protobuf::io::ZeroCopyOutputStream* out,
                      ProtoFlavor flavor,
-                     bool disable_version) {
+                     bool disable_version,
+                     bool specialized_handlers,
+                     bool flow_stubs,
+                     bool completion_stage_stubs) {
   // All non-generated classes must be referred by fully qualified names to
   // avoid collision with generated classes.
   std::map<std::string, std::string> vars;
@@ -1205,6 +1603,8 @@ void GenerateService(const ServiceDescriptor* service,
   vars["GrpcGenerated"] = "io.grpc.stub.annotations.GrpcGenerated";
   vars["ListenableFuture"] =
       "com.google.common.util.concurrent.ListenableFuture";
+  vars["FlowPublisher"] = "java.util.concurrent.Flow.Publisher";
+  vars["CompletionStage"] = "java.util.concurrent.CompletionStage";
 
   Printer printer(out, '$');
   std::string package_name = ServiceJavaPackage(service->file());
@@ -1220,7 +1620,9 @@ void GenerateService(const ServiceDescriptor* service,
   if (!vars["Package"].empty()) {
     vars["Package"].append(".");
   }
-  PrintService(service, &vars, &printer, flavor, disable_version);
+  PrintService(
+      service, &vars, &printer, flavor, disable_version, specialized_handlers, flow_stubs,
+      completion_stage_stubs);
 }
 
 std::string ServiceJavaPackage(const FileDescriptor* file) {
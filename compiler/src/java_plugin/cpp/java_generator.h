@@ -64,11 +64,20 @@ std::string ServiceJavaPackage(const impl::protobuf::FileDescriptor* file);
 // the given service.
 std::string ServiceClassName(const impl::protobuf::ServiceDescriptor* service);
 
-// Writes the generated service interface into the given ZeroCopyOutputStream
+// Writes the generated service interface into the given ZeroCopyOutputStream.
+// With specialized_handlers, method descriptors are built eagerly and each
+// method gets its own handler class, instead of sharing one that switches on a
+// method id. With flow_stubs, a client stub and a service base class using
+// java.util.concurrent.Flow.Publisher are generated as well. With
+// completion_stage_stubs, so is a client stub whose unary methods return
+// java.util.concurrent.CompletionStage.
 void GenerateService(const impl::protobuf::ServiceDescriptor* service,
                      impl::protobuf::io::ZeroCopyOutputStream* out,
                      ProtoFlavor flavor,
-                     bool disable_version);
+                     bool disable_version,
+                     bool specialized_handlers,
+                     bool flow_stubs,
+                     bool completion_stage_stubs);
 
 }  // namespace java_grpc_generator
 
@@ -60,11 +60,20 @@ class JavaGrpcGenerator : public protobuf::compiler::CodeGenerator {
         java_grpc_generator::ProtoFlavor::NORMAL;
 
     bool disable_version = false;
+    bool specialized_handlers = false;
+    bool flow_stubs = false;
+    bool completion_stage_stubs = false;
     for (size_t i = 0; i < options.size(); i++) {
       if (options[i].first == "lite") {
         flavor = java_grpc_generator::ProtoFlavor::LITE;
       } else if (options[i].first == "noversion") {
         disable_version = true;
+      } else if (options[i].first == "specialized_handlers") {
+        specialized_handlers = true;
+      } else if (options[i].first == "flow") {
+        flow_stubs = true;
+      } else if (options[i].first == "completion_stage") {
+        completion_stage_stubs = true;
       }
     }
 
@@ -77,7 +86,8 @@ class JavaGrpcGenerator : public protobuf::compiler::CodeGenerator {
       std::unique_ptr<protobuf::io::ZeroCopyOutputStream> output(
           context->Open(filename));
       java_grpc_generator::GenerateService(
-          service, output.get(), flavor, disable_version);
+          service, output.get(), flavor, disable_version, specialized_handlers,
+          flow_stubs, completion_stage_stubs);
     }
     return true;
   }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.completionstage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Utility functions for unary calls returning a {@link CompletionStage}, as used by generated
+ * {@code CompletionStage} stubs.
+ *
+ * <p>The returned stage is completed straight from {@link ClientCall.Listener#onClose}, so it
+ * completes on the call's executor, i.e. the one set with {@link CallOptions#withExecutor} or
+ * else the channel's. Dependent stages added without an {@code Async} variant run on that executor
+ * too, unless the stage is already complete when they are added. Cancelling the stage's
+ * {@link CompletionStage#toCompletableFuture CompletableFuture} cancels the call.
+ */
+@ExperimentalApi("There is no plan to make this API stable while CompletionStage stubs are opt-in")
+public final class CompletionStageClientCalls {
+  private static final Logger logger =
+      Logger.getLogger(CompletionStageClientCalls.class.getName());
+
+  // Prevent instantiation
+  private CompletionStageClientCalls() {}
+
+  /**
+   * Executes a unary call and returns a {@link CompletionStage} of the response.  The {@code call}
+   * should not be already started.  After calling this method, {@code call} should no longer be
+   * used.
+   *
+   * @return a stage completed with the single response message, or with a
+   *     {@link io.grpc.StatusRuntimeException} on error.
+   */
+  public static <ReqT, RespT> CompletionStage<RespT> unaryCall(
+      ClientCall<ReqT, RespT> call, ReqT req) {
+    checkNotNull(call, "call");
+    UnaryCallFuture<RespT> responseFuture = new UnaryCallFuture<>(call);
+    call.start(new UnaryCallListener<>(responseFuture), new Metadata());
+    try {
+      // Ask for 2 responses so that a misbehaving server sending more than 1 is caught.
+      call.request(2);
+      call.sendMessage(req);
+      call.halfClose();
+    } catch (RuntimeException e) {
+      throw cancelThrow(call, e);
+    } catch (Error e) {
+      throw cancelThrow(call, e);
+    }
+    return responseFuture;
+  }
+
+  /**
+   * Executes a unary call on a new call of {@code channel} and returns a {@link CompletionStage} of
+   * the response.
+   *
+   * @return a stage completed with the single response message, or with a
+   *     {@link io.grpc.StatusRuntimeException} on error.
+   */
+  public static <ReqT, RespT> CompletionStage<RespT> unaryCall(
+      Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, ReqT req) {
+    return unaryCall(channel.newCall(method, callOptions), req);
+  }
+
+  /**
+   * Cancels a call, and throws the exception.
+   *
+   * @param t must be a RuntimeException or Error
+   */
+  private static RuntimeException cancelThrow(ClientCall<?, ?> call, Throwable t) {
+    try {
+      call.cancel(null, t);
+    } catch (Throwable e) {
+      assert e instanceof RuntimeException || e instanceof Error;
+      logger.log(Level.SEVERE, "RuntimeException encountered while closing call", e);
+    }
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+    // should be impossible
+    throw new AssertionError(t);
+  }
+
+  private static final class UnaryCallFuture<RespT> extends CompletableFuture<RespT> {
+    private final ClientCall<?, RespT> call;
+
+    UnaryCallFuture(ClientCall<?, RespT> call) {
+      this.call = call;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        call.cancel("CompletableFuture was cancelled", null);
+      }
+      return cancelled;
+    }
+  }
+
+  private static final class UnaryCallListener<RespT> extends ClientCall.Listener<RespT> {
+    private final UnaryCallFuture<RespT> responseFuture;
+    private RespT value;
+
+    UnaryCallListener(UnaryCallFuture<RespT> responseFuture) {
+      this.responseFuture = responseFuture;
+    }
+
+    @Override
+    public void onMessage(RespT value) {
+      if (this.value != null) {
+        throw Status.INTERNAL.withDescription("More than one value received for unary call")
+            .asRuntimeException();
+      }
+      this.value = value;
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+      if (!status.isOk()) {
+        responseFuture.completeExceptionally(status.asRuntimeException(trailers));
+      } else if (value == null) {
+        // No value received so mark the future as an error
+        responseFuture.completeExceptionally(
+            Status.INTERNAL.withDescription("No value received for unary call")
+                .asRuntimeException(trailers));
+      } else {
+        responseFuture.complete(value);
+      }
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.completionstage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.StringMarshaller;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.internal.NoopClientCall;
+import io.grpc.testing.GrpcCleanupRule;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CompletionStageClientCalls}. */
+@RunWith(JUnit4.class)
+public class CompletionStageClientCallsTest {
+  private static final MethodDescriptor<String, String> METHOD =
+      MethodDescriptor.<String, String>newBuilder()
+          .setType(MethodType.UNARY)
+          .setFullMethodName("service/method")
+          .setRequestMarshaller(StringMarshaller.INSTANCE)
+          .setResponseMarshaller(StringMarshaller.INSTANCE)
+          .build();
+
+  @Rule
+  public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @Test
+  public void unaryCall() throws Exception {
+    ManagedChannel channel = startServer(new ServerCallHandler<String, String>() {
+      @Override
+      public ServerCall.Listener<String> startCall(
+          final ServerCall<String, String> call, Metadata headers) {
+        call.request(1);
+        return new ServerCall.Listener<String>() {
+          @Override
+          public void onMessage(String message) {
+            call.sendHeaders(new Metadata());
+            call.sendMessage(message + "!");
+            call.close(Status.OK, new Metadata());
+          }
+        };
+      }
+    });
+
+    CompletionStage<String> response =
+        CompletionStageClientCalls.unaryCall(channel, METHOD, CallOptions.DEFAULT, "hello");
+
+    assertThat(response.toCompletableFuture().get()).isEqualTo("hello!");
+  }
+
+  @Test
+  public void unaryCall_completesOnCallExecutor() throws Exception {
+    ManagedChannel channel = startServer(new ServerCallHandler<String, String>() {
+      @Override
+      public ServerCall.Listener<String> startCall(
+          ServerCall<String, String> call, Metadata headers) {
+        call.sendHeaders(new Metadata());
+        call.sendMessage("response");
+        call.close(Status.OK, new Metadata());
+        return new ServerCall.Listener<String>() {};
+      }
+    });
+    QueueingExecutor executor = new QueueingExecutor();
+    final AtomicBoolean dependentRanInExecutor = new AtomicBoolean();
+
+    CompletableFuture<String> response = CompletionStageClientCalls.unaryCall(
+        channel, METHOD, CallOptions.DEFAULT.withExecutor(executor), "hello")
+        .thenApply(new Function<String, String>() {
+          @Override
+          public String apply(String value) {
+            dependentRanInExecutor.set(executor.running);
+            return value;
+          }
+        })
+        .toCompletableFuture();
+    assertThat(response.isDone()).isFalse();
+
+    executor.runAll();
+    assertThat(response.get()).isEqualTo("response");
+    assertThat(dependentRanInExecutor.get()).isTrue();
+  }
+
+  @Test
+  public void unaryCall_error() throws Exception {
+    ManagedChannel channel = startServer(new ServerCallHandler<String, String>() {
+      @Override
+      public ServerCall.Listener<String> startCall(
+          ServerCall<String, String> call, Metadata headers) {
+        call.close(Status.NOT_FOUND.withDescription("nope"), new Metadata());
+        return new ServerCall.Listener<String>() {};
+      }
+    });
+
+    CompletionStage<String> response =
+        CompletionStageClientCalls.unaryCall(channel, METHOD, CallOptions.DEFAULT, "hello");
+
+    try {
+      response.toCompletableFuture().get();
+      fail("Should fail");
+    } catch (ExecutionException e) {
+      Status status = ((StatusRuntimeException) e.getCause()).getStatus();
+      assertThat(status.getCode()).isEqualTo(Status.Code.NOT_FOUND);
+      assertThat(status.getDescription()).isEqualTo("nope");
+    }
+  }
+
+  @Test
+  public void unaryCall_noResponse() throws Exception {
+    // Servers don't close unary calls successfully without a response, so fake the client call.
+    NoopClientCall<String, String> call = new NoopClientCall<String, String>() {
+      @Override
+      public void start(ClientCall.Listener<String> listener, Metadata headers) {
+        listener.onClose(Status.OK, new Metadata());
+      }
+    };
+
+    CompletionStage<String> response = CompletionStageClientCalls.unaryCall(call, "hello");
+
+    try {
+      response.toCompletableFuture().get();
+      fail("Should fail");
+    } catch (ExecutionException e) {
+      Status status = ((StatusRuntimeException) e.getCause()).getStatus();
+      assertThat(status.getCode()).isEqualTo(Status.Code.INTERNAL);
+      assertThat(status.getDescription()).isEqualTo("No value received for unary call");
+    }
+  }
+
+  @Test
+  public void unaryCall_cancelCancelsCall() throws Exception {
+    final AtomicBoolean serverCancelled = new AtomicBoolean();
+    ManagedChannel channel = startServer(new ServerCallHandler<String, String>() {
+      @Override
+      public ServerCall.Listener<String> startCall(
+          ServerCall<String, String> call, Metadata headers) {
+        return new ServerCall.Listener<String>() {
+          @Override
+          public void onCancel() {
+            serverCancelled.set(true);
+          }
+        };
+      }
+    });
+
+    CompletableFuture<String> response = CompletionStageClientCalls.unaryCall(
+        channel, METHOD, CallOptions.DEFAULT, "hello").toCompletableFuture();
+    assertThat(response.isDone()).isFalse();
+
+    assertThat(response.cancel(true)).isTrue();
+    assertThat(response.isCancelled()).isTrue();
+    assertThat(serverCancelled.get()).isTrue();
+  }
+
+  private ManagedChannel startServer(ServerCallHandler<String, String> handler) throws Exception {
+    String name = InProcessServerBuilder.generateName();
+    grpcCleanup.register(InProcessServerBuilder.forName(name)
+        .directExecutor()
+        .addService(ServerServiceDefinition.builder("service")
+            .addMethod(METHOD, handler)
+            .build())
+        .build()
+        .start());
+    return grpcCleanup.register(InProcessChannelBuilder.forName(name).directExecutor().build());
+  }
+
+  /** Runs the tasks it is given once asked to, noting while it does. */
+  private static final class QueueingExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    boolean running;
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    void runAll() {
+      running = true;
+      try {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+          task.run();
+        }
+      } finally {
+        running = false;
+      }
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.inprocess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Marshaller that lets an in-process transport hand the message object itself to the receiver.
+ * {@link #stream} produces a {@link RefStream} carrying the message, and {@link #parse} returns
+ * that message as-is when it was produced with the same underlying marshaller. Any other consumer
+ * simply reads the stream, which serializes lazily, so a peer that does not pass by reference
+ * still interoperates.
+ */
+final class ByReferenceMarshaller<T> implements MethodDescriptor.Marshaller<T> {
+  private final MethodDescriptor.Marshaller<T> delegate;
+  private final CopyOnSendPolicy policy;
+
+  private ByReferenceMarshaller(MethodDescriptor.Marshaller<T> delegate, CopyOnSendPolicy policy) {
+    this.delegate = checkNotNull(delegate, "delegate");
+    this.policy = checkNotNull(policy, "policy");
+  }
+
+  static <T> MethodDescriptor.Marshaller<T> wrap(
+      MethodDescriptor.Marshaller<T> marshaller, CopyOnSendPolicy policy) {
+    if (marshaller instanceof ByReferenceMarshaller) {
+      return marshaller;
+    }
+    return new ByReferenceMarshaller<>(marshaller, policy);
+  }
+
+  static <ReqT, RespT> MethodDescriptor<ReqT, RespT> wrap(
+      MethodDescriptor<ReqT, RespT> method, CopyOnSendPolicy policy) {
+    return method.toBuilder(
+        wrap(method.getRequestMarshaller(), policy), wrap(method.getResponseMarshaller(), policy))
+        .build();
+  }
+
+  /**
+   * Returns a copy of {@code service} whose methods pass messages by reference. Handlers are
+   * unchanged, since the message types are.
+   */
+  static ServerServiceDefinition wrap(ServerServiceDefinition service, CopyOnSendPolicy policy) {
+    List<ServerMethodDefinition<?, ?>> wrappedMethods = new ArrayList<>();
+    ServiceDescriptor.Builder serviceDescriptorBuilder =
+        ServiceDescriptor.newBuilder(service.getServiceDescriptor().getName())
+            .setSchemaDescriptor(service.getServiceDescriptor().getSchemaDescriptor());
+    for (ServerMethodDefinition<?, ?> definition : service.getMethods()) {
+      ServerMethodDefinition<?, ?> wrapped = wrap(definition, policy);
+      serviceDescriptorBuilder.addMethod(wrapped.getMethodDescriptor());
+      wrappedMethods.add(wrapped);
+    }
+    ServerServiceDefinition.Builder serviceBuilder =
+        ServerServiceDefinition.builder(serviceDescriptorBuilder.build());
+    for (ServerMethodDefinition<?, ?> definition : wrappedMethods) {
+      serviceBuilder.addMethod(definition);
+    }
+    return serviceBuilder.build();
+  }
+
+  private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> wrap(
+      ServerMethodDefinition<ReqT, RespT> definition, CopyOnSendPolicy policy) {
+    return ServerMethodDefinition.create(
+        wrap(definition.getMethodDescriptor(), policy), definition.getServerCallHandler());
+  }
+
+  @Override
+  public InputStream stream(T value) {
+    return new RefStream<>(delegate, policy.copy(delegate, value));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T parse(InputStream stream) {
+    if (stream instanceof RefStream) {
+      RefStream<?> ref = (RefStream<?>) stream;
+      if (ref.marshaller == delegate && ref.serialized == null) {
+        return (T) ref.message;
+      }
+    }
+    return delegate.parse(stream);
+  }
+
+  /** Client interceptor that makes every call on the channel pass messages by reference. */
+  static final class ClientInterceptorImpl implements ClientInterceptor {
+    private final CopyOnSendPolicy policy;
+    /**
+     * The wrapped descriptor per method name. Stubs use one descriptor per method, so this is
+     * normally built once. Keying by name bounds the map even if descriptors are created per call.
+     */
+    private final ConcurrentMap<String, WrappedMethod<?, ?>> wrappedMethods =
+        new ConcurrentHashMap<>();
+
+    ClientInterceptorImpl(CopyOnSendPolicy policy) {
+      this.policy = checkNotNull(policy, "policy");
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      return next.newCall(wrapCached(method), callOptions);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <ReqT, RespT> MethodDescriptor<ReqT, RespT> wrapCached(
+        MethodDescriptor<ReqT, RespT> method) {
+      WrappedMethod<?, ?> cached = wrappedMethods.get(method.getFullMethodName());
+      if (cached != null && cached.original == method) {
+        return (MethodDescriptor<ReqT, RespT>) cached.wrapped;
+      }
+      MethodDescriptor<ReqT, RespT> wrapped = wrap(method, policy);
+      wrappedMethods.put(method.getFullMethodName(), new WrappedMethod<>(method, wrapped));
+      return wrapped;
+    }
+  }
+
+  private static final class WrappedMethod<ReqT, RespT> {
+    final MethodDescriptor<ReqT, RespT> original;
+    final MethodDescriptor<ReqT, RespT> wrapped;
+
+    WrappedMethod(MethodDescriptor<ReqT, RespT> original, MethodDescriptor<ReqT, RespT> wrapped) {
+      this.original = original;
+      this.wrapped = wrapped;
+    }
+  }
+
+  /**
+   * Carries a message from sender to receiver. It is only serialized if something actually reads
+   * from it, for example a receiver using a different marshaller.
+   */
+  static final class RefStream<T> extends InputStream {
+    final MethodDescriptor.Marshaller<T> marshaller;
+    final T message;
+    private InputStream serialized;
+
+    RefStream(MethodDescriptor.Marshaller<T> marshaller, T message) {
+      this.marshaller = marshaller;
+      this.message = message;
+    }
+
+    private InputStream serialized() {
+      if (serialized == null) {
+        serialized = marshaller.stream(message);
+      }
+      return serialized;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return serialized().read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return serialized().read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      return serialized().skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+      return serialized().available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (serialized != null) {
+        serialized.close();
+      }
+    }
+  }
+}
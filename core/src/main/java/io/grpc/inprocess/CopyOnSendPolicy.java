@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.inprocess;
+
+import io.grpc.ExperimentalApi;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Decides what is handed to the receiver when an in-process transport passes messages by
+ * reference. The policy is applied once to each message as it is sent, so the receiver never
+ * observes later changes the sender makes to its own instance.
+ *
+ * @see InProcessChannelBuilder#passMessagesByReference
+ * @see InProcessServerBuilder#passMessagesByReference
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1783")
+public abstract class CopyOnSendPolicy {
+  private static final CopyOnSendPolicy IMMUTABLE = new CopyOnSendPolicy() {
+    @Override
+    public <T> T copy(MethodDescriptor.Marshaller<T> marshaller, T message) {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      return "CopyOnSendPolicy.immutable()";
+    }
+  };
+
+  /**
+   * Returns a policy that hands the sender's instance to the receiver unchanged. Only safe when
+   * messages are immutable, as is the case for protobuf messages.
+   */
+  public static CopyOnSendPolicy immutable() {
+    return IMMUTABLE;
+  }
+
+  /**
+   * Returns the instance the receiver will observe in place of {@code message}. Implementations
+   * for mutable types should return a deep copy. Called on the sending thread.
+   *
+   * @param marshaller the marshaller the sender would have used to serialize {@code message}
+   * @param message the message being sent
+   */
+  public abstract <T> T copy(MethodDescriptor.Marshaller<T> marshaller, T message);
+}
@@ -202,6 +202,27 @@ public final class InProcessChannelBuilder extends
     return this;
   }
 
+  /**
+   * Passes messages to the server as object references instead of serializing them, when the
+   * server uses the same {@link io.grpc.MethodDescriptor.Marshaller Marshaller} for the method.
+   * This is normally the case when both sides use the same generated stubs. Responses are
+   * likewise received by reference if the server was built with {@link
+   * InProcessServerBuilder#passMessagesByReference}. Otherwise messages are serialized as usual.
+   *
+   * <p>The policy is applied to every message before it is sent. Use {@link
+   * CopyOnSendPolicy#immutable()} when messages are immutable.
+   *
+   * <p>Metadata is always passed by reference. It is only serialized to enforce {@link
+   * #maxInboundMetadataSize}, which is disabled by default.
+   *
+   * @param policy decides what the receiver observes for each message sent
+   * @return this
+   */
+  public InProcessChannelBuilder passMessagesByReference(CopyOnSendPolicy policy) {
+    managedChannelImplBuilder.intercept(new ByReferenceMarshaller.ClientInterceptorImpl(policy));
+    return this;
+  }
+
   ClientTransportFactory buildTransportFactory() {
     return new InProcessClientTransportFactory(
         name, scheduledExecutorService, maxInboundMetadataSize, transportIncludeStatusCause);
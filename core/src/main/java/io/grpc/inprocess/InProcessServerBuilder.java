@@ -20,10 +20,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Preconditions;
 import com.google.errorprone.annotations.DoNotCall;
+import io.grpc.BindableService;
 import io.grpc.Deadline;
 import io.grpc.ExperimentalApi;
 import io.grpc.Internal;
+import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.ServerStreamTracer;
 import io.grpc.internal.AbstractServerImplBuilder;
 import io.grpc.internal.FixedObjectPool;
@@ -34,10 +37,12 @@ import io.grpc.internal.ServerImplBuilder;
 import io.grpc.internal.ServerImplBuilder.ClientTransportServersBuilder;
 import io.grpc.internal.SharedResourcePool;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Builder for a server that services in-process requests. Clients identify the in-process server by
@@ -104,6 +109,10 @@ public final class InProcessServerBuilder extends
   int maxInboundMetadataSize = Integer.MAX_VALUE;
   ObjectPool<ScheduledExecutorService> schedulerPool =
       SharedResourcePool.forResource(GrpcUtil.TIMER_SERVICE);
+  /** Services are held until {@link #build} so they can be wrapped for pass-by-reference. */
+  private final List<ServerServiceDefinition> services = new ArrayList<>();
+  @Nullable
+  private CopyOnSendPolicy copyOnSendPolicy;
 
   private InProcessServerBuilder(String name) {
     this.name = Preconditions.checkNotNull(name, "name");
@@ -188,6 +197,49 @@ public final class InProcessServerBuilder extends
     return this;
   }
 
+  @Override
+  public InProcessServerBuilder addService(ServerServiceDefinition service) {
+    services.add(checkNotNull(service, "service"));
+    return this;
+  }
+
+  @Override
+  public InProcessServerBuilder addService(BindableService bindableService) {
+    return addService(checkNotNull(bindableService, "bindableService").bindService());
+  }
+
+  /**
+   * Passes messages to clients as object references instead of serializing them, when the client
+   * uses the same {@link io.grpc.MethodDescriptor.Marshaller Marshaller} for the method. This is
+   * normally the case when both sides use the same generated stubs. Requests are likewise
+   * received by reference if the channel was built with {@link
+   * InProcessChannelBuilder#passMessagesByReference}. Otherwise messages are serialized as usual.
+   *
+   * <p>The policy is applied to every message before it is sent. Use {@link
+   * CopyOnSendPolicy#immutable()} when messages are immutable. It applies to all services added
+   * with {@link #addService}, but not to those found through the {@link #fallbackHandlerRegistry}.
+   *
+   * @param policy decides what the receiver observes for each message sent
+   * @return this
+   */
+  public InProcessServerBuilder passMessagesByReference(CopyOnSendPolicy policy) {
+    this.copyOnSendPolicy = checkNotNull(policy, "policy");
+    return this;
+  }
+
+  @Override
+  public Server build() {
+    // The services are kept so that later builds get them too. Adding them again replaces the
+    // earlier registration, since the registry holds one service per name.
+    for (ServerServiceDefinition service : services) {
+      if (copyOnSendPolicy != null) {
+        service = ByReferenceMarshaller.wrap(service, copyOnSendPolicy);
+      }
+      serverImplBuilder.addService(service);
+    }
+    return super.build();
+  }
+
   InProcessServer buildTransportServers(
       List<? extends ServerStreamTracer.Factory> streamTracerFactories) {
     return new InProcessServer(this, streamTracerFactories);
@@ -656,6 +656,11 @@ final class InProcessTransport implements ServerTransport, ConnectionClientTrans
       public int streamId() {
         return -1;
       }
+
+      @Override
+      public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+        // Readiness is based on the number of requested messages, not on queued bytes.
+      }
     }
 
     private class InProcessClientStream implements ClientStream {
@@ -95,6 +95,10 @@ public abstract class AbstractClientStream extends AbstractStream
   private boolean shouldBeCountedForInUse;
   private boolean useGet;
   private Metadata headers;
+  @Nullable
+  private final Integer onReadyThreshold;
+  @Nullable
+  private final Integer onReadyLowWatermark;
   /**
    * Whether cancel() has been called. This is not strictly necessary, but removes the delay between
    * cancel() being called and isReady() beginning to return false, since cancel is commonly
@@ -113,6 +117,8 @@ public abstract class AbstractClientStream extends AbstractStream
     this.transportTracer = checkNotNull(transportTracer, "transportTracer");
     this.shouldBeCountedForInUse = GrpcUtil.shouldBeCountedForInUse(callOptions);
     this.useGet = useGet;
+    this.onReadyThreshold = callOptions.getOnReadyThreshold();
+    this.onReadyLowWatermark = callOptions.getOnReadyLowWatermark();
     if (!useGet) {
       framer = new MessageFramer(this, bufferAllocator, statsTraceCtx);
       this.headers = headers;
@@ -155,6 +161,9 @@ public abstract class AbstractClientStream extends AbstractStream
   @Override
   public final void start(ClientStreamListener listener) {
     transportState().setListener(listener);
+    if (onReadyThreshold != null) {
+      setOnReadyThreshold(onReadyLowWatermark, onReadyThreshold);
+    }
     if (!useGet) {
       abstractClientStreamSink().writeHeaders(headers, null);
       headers = null;
@@ -150,6 +150,12 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public T adaptiveCompression(int minMessageSize, double maxCompressionRatio) {
+    delegate().adaptiveCompression(minMessageSize, maxCompressionRatio);
+    return thisT();
+  }
+
   @Override
   public T decompressorRegistry(DecompressorRegistry registry) {
     delegate().decompressorRegistry(registry);
@@ -140,6 +140,12 @@ public abstract class AbstractServerImplBuilder
     return thisT();
   }
 
+  @Override
+  public T adaptiveCompression(int minMessageSize, double maxCompressionRatio) {
+    delegate().adaptiveCompression(minMessageSize, maxCompressionRatio);
+    return thisT();
+  }
+
   @Override
   public T handshakeTimeout(long timeout, TimeUnit unit) {
     delegate().handshakeTimeout(timeout, unit);
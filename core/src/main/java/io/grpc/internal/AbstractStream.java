@@ -16,6 +16,7 @@
 
 package io.grpc.internal;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
@@ -104,6 +105,15 @@ public abstract class AbstractStream implements Stream {
     transportState().onSendingBytes(numBytes);
   }
 
+  /**
+   * Sets the number of queued bytes at which the stream stops being ready, and the number the
+   * queue must drain below before it becomes ready again. Having the low watermark below the high
+   * watermark keeps a stream writing at the limit from flapping between ready and not ready.
+   */
+  public final void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+    transportState().setOnReadyThreshold(lowWatermark, highWatermark);
+  }
+
   /**
    * Stream state as used by the transport. This should only called from the transport thread
    * (except for private interactions with {@code AbstractStream}).
@@ -112,7 +122,8 @@ public abstract class AbstractStream implements Stream {
       implements ApplicationThreadDeframer.TransportExecutor, MessageDeframer.Listener {
     /**
      * The default number of queued bytes for a given stream, below which
-     * {@link StreamListener#onReady()} will be called.
+     * {@link StreamListener#onReady()} will be called. Used as both the low and high watermark
+     * unless the stream is configured otherwise.
      */
     @VisibleForTesting
     public static final int DEFAULT_ONREADY_THRESHOLD = 32 * 1024;
@@ -125,10 +136,21 @@ public abstract class AbstractStream implements Stream {
 
     /**
      * The number of bytes currently queued, waiting to be sent. When this falls below
-     * DEFAULT_ONREADY_THRESHOLD, {@link StreamListener#onReady()} will be called.
+     * onReadyLowWatermark after having reached onReadyThreshold, {@link StreamListener#onReady()}
+     * will be called.
      */
     @GuardedBy("onReadyLock")
     private int numSentBytesQueued;
+    @GuardedBy("onReadyLock")
+    private int onReadyThreshold = DEFAULT_ONREADY_THRESHOLD;
+    @GuardedBy("onReadyLock")
+    private int onReadyLowWatermark = DEFAULT_ONREADY_THRESHOLD;
+    /**
+     * Indicates numSentBytesQueued reached onReadyThreshold and has not yet fallen below
+     * onReadyLowWatermark.
+     */
+    @GuardedBy("onReadyLock")
+    private boolean aboveThreshold;
     /**
      * Indicates the stream has been created on the connection. This implies that the stream is no
      * longer limited by MAX_CONCURRENT_STREAMS.
@@ -264,7 +286,7 @@ public abstract class AbstractStream implements Stream {
 
     private boolean isReady() {
       synchronized (onReadyLock) {
-        return allocated && numSentBytesQueued < DEFAULT_ONREADY_THRESHOLD && !deallocated;
+        return allocated && !aboveThreshold && !deallocated;
       }
     }
 
@@ -305,6 +327,39 @@ public abstract class AbstractStream implements Stream {
     private void onSendingBytes(int numBytes) {
       synchronized (onReadyLock) {
         numSentBytesQueued += numBytes;
+        if (numSentBytesQueued >= onReadyThreshold) {
+          aboveThreshold = true;
+        }
+      }
+    }
+
+    /**
+     * Changes the onReady watermarks. May be called from any thread. If the stream becomes ready as
+     * a result, the listener is notified from the transport thread.
+     */
+    private void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+      checkArgument(lowWatermark > 0, "lowWatermark must be positive: %s", lowWatermark);
+      checkArgument(highWatermark >= lowWatermark,
+          "highWatermark %s must not be less than lowWatermark %s", highWatermark, lowWatermark);
+      boolean doNotify;
+      synchronized (onReadyLock) {
+        boolean wasAboveThreshold = aboveThreshold;
+        onReadyThreshold = highWatermark;
+        onReadyLowWatermark = lowWatermark;
+        if (numSentBytesQueued >= highWatermark) {
+          aboveThreshold = true;
+        } else if (numSentBytesQueued < lowWatermark) {
+          aboveThreshold = false;
+        }
+        doNotify = wasAboveThreshold && !aboveThreshold;
+      }
+      if (doNotify) {
+        runOnTransportThread(new Runnable() {
+          @Override
+          public void run() {
+            notifyIfReady();
+          }
+        });
       }
     }
 
@@ -321,10 +376,11 @@ public abstract class AbstractStream implements Stream {
       synchronized (onReadyLock) {
         checkState(allocated,
             "onStreamAllocated was not called, but it seems the stream is active");
-        boolean belowThresholdBefore = numSentBytesQueued < DEFAULT_ONREADY_THRESHOLD;
         numSentBytesQueued -= numBytes;
-        boolean belowThresholdAfter = numSentBytesQueued < DEFAULT_ONREADY_THRESHOLD;
-        doNotify = !belowThresholdBefore && belowThresholdAfter;
+        doNotify = aboveThreshold && numSentBytesQueued < onReadyLowWatermark;
+        if (doNotify) {
+          aboveThreshold = false;
+        }
       }
       if (doNotify) {
         notifyIfReady();
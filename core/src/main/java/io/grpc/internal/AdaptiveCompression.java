@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.Codec;
+import io.grpc.Compressor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides, per method, which outbound messages are worth compressing. A channel or a server that
+ * enabled it keeps one instance, and wraps the compressor of each call with {@link #forMethod}.
+ * The {@link MessageFramer} then sends messages uncompressed when they are smaller than the
+ * minimum message size, or when the method's messages have been compressing to more than the
+ * maximum ratio of their size. The per-message compressed flag lets compressed and uncompressed
+ * messages mix in a stream.
+ *
+ * <p>Messages of a method whose compression has been turned off are still compressed once in a
+ * while, so that compression comes back if the messages change.
+ */
+final class AdaptiveCompression {
+  /** Compressed messages sampled before a method's ratio is trusted. */
+  @VisibleForTesting
+  static final int MIN_SAMPLES = 8;
+  /** While compression is off, one message in this many is compressed to sample the ratio. */
+  @VisibleForTesting
+  static final int PROBE_INTERVAL = 64;
+  /** Bounds the memory used for servers with a fallback handler registry. */
+  private static final int MAX_TRACKED_METHODS = 1000;
+
+  /** Smaller messages don't save enough to pay for the codec's framing and CPU. */
+  private final int minMessageSize;
+  /** Compressed size over uncompressed size above which compression is not worth it. */
+  private final double maxRatio;
+  private final ConcurrentMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+  AdaptiveCompression(int minMessageSize, double maxRatio) {
+    checkArgument(minMessageSize >= 0, "minMessageSize must be non-negative");
+    checkArgument(maxRatio > 0 && maxRatio <= 1, "maxRatio must be in (0, 1]");
+    this.minMessageSize = minMessageSize;
+    this.maxRatio = maxRatio;
+  }
+
+  /**
+   * Returns {@code compressor} wrapped to follow this policy for {@code fullMethodName}. The
+   * identity compressor is returned as is.
+   */
+  Compressor forMethod(String fullMethodName, Compressor compressor) {
+    checkNotNull(fullMethodName, "fullMethodName");
+    checkNotNull(compressor, "compressor");
+    if (compressor == Codec.Identity.NONE) {
+      return compressor;
+    }
+    String key = fullMethodName + ' ' + compressor.getMessageEncoding();
+    MethodStats stats = methods.get(key);
+    if (stats == null) {
+      stats = new MethodStats(maxRatio);
+      if (methods.size() < MAX_TRACKED_METHODS) {
+        MethodStats existing = methods.putIfAbsent(key, stats);
+        if (existing != null) {
+          stats = existing;
+        }
+      }
+    }
+    return new AdaptiveCompressor(compressor, minMessageSize, stats);
+  }
+
+  /**
+   * A compressor that also tells the {@link MessageFramer} which messages to compress.
+   */
+  static final class AdaptiveCompressor implements Compressor {
+    private final Compressor delegate;
+    private final int minMessageSize;
+    private final MethodStats stats;
+
+    AdaptiveCompressor(Compressor delegate, int minMessageSize, MethodStats stats) {
+      this.delegate = delegate;
+      this.minMessageSize = minMessageSize;
+      this.stats = stats;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+      return delegate.getMessageEncoding();
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+      return delegate.compress(os);
+    }
+
+    /**
+     * Returns whether a message should be compressed.
+     *
+     * @param messageLength the length of the message, or -1 if unknown
+     */
+    boolean shouldCompress(int messageLength) {
+      if (messageLength != -1 && messageLength < minMessageSize) {
+        return false;
+      }
+      return stats.shouldCompress();
+    }
+
+    /** Records the size a message compressed to, to decide about the method's next messages. */
+    void recordCompressed(long uncompressedSize, long compressedSize) {
+      if (uncompressedSize > 0) {
+        stats.record((double) compressedSize / uncompressedSize);
+      }
+    }
+  }
+
+  /**
+   * The compression ratio of a method, averaged with more weight on recent messages. Streams of
+   * the method update it concurrently without locking. A lost update only delays a decision by a
+   * message.
+   */
+  static final class MethodStats {
+    private final double maxRatio;
+    private volatile int samples;
+    private volatile double ratio;
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    MethodStats(double maxRatio) {
+      this.maxRatio = maxRatio;
+    }
+
+    boolean shouldCompress() {
+      if (samples < MIN_SAMPLES || ratio <= maxRatio) {
+        return true;
+      }
+      return skipped.incrementAndGet() % PROBE_INTERVAL == 0;
+    }
+
+    @SuppressWarnings("NonAtomicVolatileUpdate")
+    void record(double messageRatio) {
+      int n = samples;
+      if (n < MIN_SAMPLES) {
+        // A plain average until there are enough samples.
+        ratio += (messageRatio - ratio) / (n + 1);
+        samples = n + 1;
+      } else {
+        ratio += (messageRatio - ratio) / MIN_SAMPLES;
+      }
+    }
+  }
+}
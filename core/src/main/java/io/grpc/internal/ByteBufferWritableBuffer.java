@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link WritableBuffer} that can also be written to through a {@link ByteBuffer}, which lets
+ * the {@link MessageFramer} serialize messages straight into it.
+ */
+public interface ByteBufferWritableBuffer extends WritableBuffer {
+
+  /**
+   * Returns a {@link ByteBuffer} with exactly {@code length} bytes remaining, that maps the next
+   * {@code length} writable bytes of this buffer, and counts them as written. Returns {@code null}
+   * if the bytes are not contiguous in memory.
+   *
+   * @throws IndexOutOfBoundsException if {@code length} is greater than {@link #writableBytes()}
+   */
+  @Nullable
+  ByteBuffer claimByteBuffer(int length);
+}
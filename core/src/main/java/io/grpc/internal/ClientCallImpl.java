@@ -93,6 +93,8 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
   private boolean fullStreamDecompression;
   private DecompressorRegistry decompressorRegistry = DecompressorRegistry.getDefaultInstance();
   private CompressorRegistry compressorRegistry = CompressorRegistry.getDefaultInstance();
+  @Nullable
+  private AdaptiveCompression adaptiveCompression;
 
   ClientCallImpl(
       MethodDescriptor<ReqT, RespT> method, Executor executor, CallOptions callOptions,
@@ -158,6 +160,12 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
     return this;
   }
 
+  ClientCallImpl<ReqT, RespT> setAdaptiveCompression(
+      @Nullable AdaptiveCompression adaptiveCompression) {
+    this.adaptiveCompression = adaptiveCompression;
+    return this;
+  }
+
   @VisibleForTesting
   static void prepareHeaders(
       Metadata headers,
@@ -280,7 +288,11 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
     if (effectiveDeadline != null) {
       stream.setDeadline(effectiveDeadline);
     }
-    stream.setCompressor(compressor);
+    if (adaptiveCompression != null) {
+      stream.setCompressor(adaptiveCompression.forMethod(method.getFullMethodName(), compressor));
+    } else {
+      stream.setCompressor(compressor);
+    }
     if (fullStreamDecompression) {
       stream.setFullStreamDecompression(fullStreamDecompression);
     }
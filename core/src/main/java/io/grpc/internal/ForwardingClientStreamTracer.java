@@ -69,6 +69,11 @@ public abstract class ForwardingClientStreamTracer extends ClientStreamTracer {
     delegate().outboundMessageSent(seqNo, optionalWireSize, optionalUncompressedSize);
   }
 
+  @Override
+  public void outboundMessageCompression(int seqNo, long uncompressedSize, long compressedSize) {
+    delegate().outboundMessageCompression(seqNo, uncompressedSize, compressedSize);
+  }
+
   @Override
   public void inboundMessageRead(int seqNo, long optionalWireSize, long optionalUncompressedSize) {
     delegate().inboundMessageRead(seqNo, optionalWireSize, optionalUncompressedSize);
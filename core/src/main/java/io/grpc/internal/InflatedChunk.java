@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.InvalidMarkException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pooled array that {@link MessageDeframer} inflates a full-stream compressed stream into.
+ * Consecutive messages share a chunk, so that small messages don't each need an array. Each
+ * message gets a {@link #slice} of the chunk, and the array goes back to the pool once the
+ * deframer has moved on to another chunk and all slices have been closed.
+ */
+final class InflatedChunk {
+  @VisibleForTesting
+  static final int SIZE = 32 * 1024;
+  /** Caps the memory the pool keeps, across all streams. */
+  private static final int MAX_POOLED = 64;
+
+  /** Used as a stack, so that the most recently used arrays, likely still cached, go first. */
+  private static final Deque<byte[]> pool = new ConcurrentLinkedDeque<>();
+  private static final AtomicInteger pooled = new AtomicInteger();
+
+  private final byte[] array;
+  private int writeIndex;
+  /** One reference for the deframer, plus one for each open slice. */
+  private final AtomicInteger references = new AtomicInteger(1);
+
+  private InflatedChunk(byte[] array) {
+    this.array = array;
+  }
+
+  /** Returns a chunk with a pooled array if there is one, or a new array otherwise. */
+  static InflatedChunk allocate() {
+    byte[] array = pool.pollFirst();
+    if (array == null) {
+      array = new byte[SIZE];
+    } else {
+      pooled.decrementAndGet();
+    }
+    return new InflatedChunk(array);
+  }
+
+  @VisibleForTesting
+  static int pooledCount() {
+    return pooled.get();
+  }
+
+  byte[] array() {
+    return array;
+  }
+
+  int writeIndex() {
+    return writeIndex;
+  }
+
+  int writableBytes() {
+    return array.length - writeIndex;
+  }
+
+  /**
+   * Returns the {@code length} bytes that were just inflated at {@link #writeIndex} as a buffer,
+   * and moves the write index past them.
+   */
+  ReadableBuffer slice(int length) {
+    checkArgument(length >= 0 && length <= writableBytes(), "length out of range: %s", length);
+    retain();
+    Slice slice = new Slice(this, writeIndex, length);
+    writeIndex += length;
+    return slice;
+  }
+
+  /**
+   * Gives up a reference. The deframer gives up its own once it won't inflate into the chunk
+   * anymore.
+   */
+  void release() {
+    int references = this.references.decrementAndGet();
+    checkState(references >= 0, "Released too often");
+    if (references == 0) {
+      if (pooled.incrementAndGet() <= MAX_POOLED) {
+        pool.offerFirst(array);
+      } else {
+        pooled.decrementAndGet();
+      }
+    }
+  }
+
+  private void retain() {
+    references.incrementAndGet();
+  }
+
+  /** Part of a chunk, holding a reference to it until closed. */
+  private static final class Slice extends AbstractReadableBuffer {
+    private InflatedChunk chunk;
+    private final byte[] bytes;
+    private int offset;
+    private final int end;
+    private int mark = -1;
+
+    Slice(InflatedChunk chunk, int offset, int length) {
+      this.chunk = checkNotNull(chunk, "chunk");
+      this.bytes = chunk.array;
+      this.offset = offset;
+      this.end = offset + length;
+    }
+
+    @Override
+    public int readableBytes() {
+      return end - offset;
+    }
+
+    @Override
+    public void skipBytes(int length) {
+      checkReadable(length);
+      offset += length;
+    }
+
+    @Override
+    public int readUnsignedByte() {
+      checkReadable(1);
+      return bytes[offset++] & 0xFF;
+    }
+
+    @Override
+    public void readBytes(byte[] dest, int destIndex, int length) {
+      checkReadable(length);
+      System.arraycopy(bytes, offset, dest, destIndex, length);
+      offset += length;
+    }
+
+    @Override
+    public void readBytes(ByteBuffer dest) {
+      checkNotNull(dest, "dest");
+      int length = dest.remaining();
+      checkReadable(length);
+      dest.put(bytes, offset, length);
+      offset += length;
+    }
+
+    @Override
+    public void readBytes(OutputStream dest, int length) throws IOException {
+      checkReadable(length);
+      dest.write(bytes, offset, length);
+      offset += length;
+    }
+
+    @Override
+    public ReadableBuffer readBytes(int length) {
+      checkReadable(length);
+      checkState(chunk != null, "Buffer closed");
+      chunk.retain();
+      Slice slice = new Slice(chunk, offset, length);
+      offset += length;
+      return slice;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public void mark() {
+      mark = offset;
+    }
+
+    @Override
+    public void reset() {
+      if (mark == -1) {
+        throw new InvalidMarkException();
+      }
+      offset = mark;
+    }
+
+    @Override
+    public void close() {
+      if (chunk != null) {
+        offset = end;
+        chunk.release();
+        chunk = null;
+      }
+    }
+  }
+}
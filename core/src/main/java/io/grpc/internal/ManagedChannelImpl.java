@@ -191,6 +191,8 @@ final class ManagedChannelImpl extends ManagedChannel implements
 
   private final DecompressorRegistry decompressorRegistry;
   private final CompressorRegistry compressorRegistry;
+  @Nullable
+  private final AdaptiveCompression adaptiveCompression;
 
   private final Supplier<Stopwatch> stopwatchSupplier;
   /** The timout before entering idle mode. */
@@ -288,7 +290,7 @@ final class ManagedChannelImpl extends ManagedChannel implements
   private final boolean lookUpServiceConfig;
 
   // One instance per channel.
-  private final ChannelBufferMeter channelBufferUsed = new ChannelBufferMeter();
+  private final ChannelBufferMeter channelBufferUsed;
 
   private final long perRpcBufferLimit;
   private final long channelBufferLimit;
@@ -706,8 +708,12 @@ final class ManagedChannelImpl extends ManagedChannel implements
     this.fullStreamDecompression = builder.fullStreamDecompression;
     this.decompressorRegistry = checkNotNull(builder.decompressorRegistry, "decompressorRegistry");
     this.compressorRegistry = checkNotNull(builder.compressorRegistry, "compressorRegistry");
+    this.adaptiveCompression = builder.adaptiveCompression
+        ? new AdaptiveCompression(builder.minCompressedMessageSize, builder.maxCompressionRatio)
+        : null;
     this.userAgent = builder.userAgent;
 
+    this.channelBufferUsed = new ChannelBufferMeter(builder.retryBufferUsageCounter);
     this.channelBufferLimit = builder.retryBufferSize;
     this.perRpcBufferLimit = builder.perRpcBufferLimit;
     final class ChannelCallTracerFactory implements CallTracer.Factory {
@@ -956,7 +962,8 @@ final class ManagedChannelImpl extends ManagedChannel implements
             null)
             .setFullStreamDecompression(fullStreamDecompression)
             .setDecompressorRegistry(decompressorRegistry)
-            .setCompressorRegistry(compressorRegistry);
+            .setCompressorRegistry(compressorRegistry)
+            .setAdaptiveCompression(adaptiveCompression);
       }
 
       @Override
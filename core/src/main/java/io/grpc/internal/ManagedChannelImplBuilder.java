@@ -49,6 +49,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -136,12 +137,18 @@ public final class ManagedChannelImplBuilder
 
   CompressorRegistry compressorRegistry = DEFAULT_COMPRESSOR_REGISTRY;
 
+  boolean adaptiveCompression;
+  int minCompressedMessageSize;
+  double maxCompressionRatio;
+
   long idleTimeoutMillis = IDLE_MODE_DEFAULT_TIMEOUT_MILLIS;
 
   int maxRetryAttempts = 5;
   int maxHedgedAttempts = 5;
   long retryBufferSize = DEFAULT_RETRY_BUFFER_SIZE_IN_BYTES;
   long perRpcBufferLimit = DEFAULT_PER_RPC_BUFFER_LIMIT_IN_BYTES;
+  @Nullable
+  AtomicLong retryBufferUsageCounter;
   boolean retryEnabled = true;
 
   InternalChannelz channelz = InternalChannelz.instance();
@@ -377,6 +384,19 @@ public final class ManagedChannelImplBuilder
     return this;
   }
 
+  @Override
+  public ManagedChannelImplBuilder adaptiveCompression(
+      int minMessageSize, double maxCompressionRatio) {
+    checkArgument(minMessageSize >= 0, "minMessageSize must be non-negative");
+    checkArgument(
+        maxCompressionRatio > 0 && maxCompressionRatio <= 1,
+        "maxCompressionRatio must be in (0, 1]");
+    this.adaptiveCompression = true;
+    this.minCompressedMessageSize = minMessageSize;
+    this.maxCompressionRatio = maxCompressionRatio;
+    return this;
+  }
+
   @Override
   public ManagedChannelImplBuilder decompressorRegistry(DecompressorRegistry registry) {
     if (registry != null) {
@@ -589,6 +609,14 @@ public final class ManagedChannelImplBuilder
     recordRetryMetrics = value;
   }
 
+  /**
+   * Also adds the bytes that the channel buffers for retries and hedging to {@code counter}, which
+   * may be shared by several channels. The retry buffer size still limits each channel alone.
+   */
+  public void setRetryBufferUsageCounter(AtomicLong counter) {
+    retryBufferUsageCounter = Preconditions.checkNotNull(counter, "counter");
+  }
+
   /**
    * Disable or enable tracing features.  Enabled by default.
    */
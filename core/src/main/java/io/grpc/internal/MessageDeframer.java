@@ -43,7 +43,6 @@ public class MessageDeframer implements Closeable, Deframer {
   private static final int HEADER_LENGTH = 5;
   private static final int COMPRESSED_FLAG_MASK = 1;
   private static final int RESERVED_MASK = 0xFE;
-  private static final int MAX_BUFFER_SIZE = 1024 * 1024 * 2;
 
   /**
    * A listener of deframing events. These methods will be invoked from the deframing thread.
@@ -91,8 +90,7 @@ public class MessageDeframer implements Closeable, Deframer {
   private final TransportTracer transportTracer;
   private Decompressor decompressor;
   private GzipInflatingBuffer fullStreamDecompressor;
-  private byte[] inflatedBuffer;
-  private int inflatedIndex;
+  private InflatedChunk inflatedChunk;
   private State state = State.HEADER;
   private int requiredLength = HEADER_LENGTH;
   private boolean compressedFlag;
@@ -225,6 +223,7 @@ public class MessageDeframer implements Closeable, Deframer {
       if (nextFrame != null) {
         nextFrame.close();
       }
+      releaseInflatedChunk();
     } finally {
       fullStreamDecompressor = null;
       unprocessed = null;
@@ -233,6 +232,13 @@ public class MessageDeframer implements Closeable, Deframer {
     listener.deframerClosed(hasPartialMessage);
   }
 
+  private void releaseInflatedChunk() {
+    if (inflatedChunk != null) {
+      inflatedChunk.release();
+      inflatedChunk = null;
+    }
+  }
+
   /**
    * Indicates whether or not this deframer has been closed.
    */
@@ -322,20 +328,20 @@ public class MessageDeframer implements Closeable, Deframer {
       while ((missingBytes = requiredLength - nextFrame.readableBytes()) > 0) {
         if (fullStreamDecompressor != null) {
           try {
-            if (inflatedBuffer == null || inflatedIndex == inflatedBuffer.length) {
-              inflatedBuffer = new byte[Math.min(missingBytes, MAX_BUFFER_SIZE)];
-              inflatedIndex = 0;
+            if (inflatedChunk == null || inflatedChunk.writableBytes() == 0) {
+              releaseInflatedChunk();
+              inflatedChunk = InflatedChunk.allocate();
             }
-            int bytesToRead = Math.min(missingBytes, inflatedBuffer.length - inflatedIndex);
-            int n = fullStreamDecompressor.inflateBytes(inflatedBuffer, inflatedIndex, bytesToRead);
+            int bytesToRead = Math.min(missingBytes, inflatedChunk.writableBytes());
+            int n = fullStreamDecompressor.inflateBytes(
+                inflatedChunk.array(), inflatedChunk.writeIndex(), bytesToRead);
             totalBytesRead += fullStreamDecompressor.getAndResetBytesConsumed();
             deflatedBytesRead += fullStreamDecompressor.getAndResetDeflatedBytesConsumed();
             if (n == 0) {
               // No more inflated data is available.
               return false;
             }
-            nextFrame.addBuffer(ReadableBuffers.wrap(inflatedBuffer, inflatedIndex, n));
-            inflatedIndex += n;
+            nextFrame.addBuffer(inflatedChunk.slice(n));
           } catch (IOException e) {
             throw new RuntimeException(e);
           } catch (DataFormatException e) {
@@ -25,8 +25,10 @@ import com.google.common.io.ByteStreams;
 import io.grpc.Codec;
 import io.grpc.Compressor;
 import io.grpc.Drainable;
+import io.grpc.HasWritableByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Status;
+import io.grpc.internal.AdaptiveCompression.AdaptiveCompressor;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -131,10 +133,16 @@ public class MessageFramer implements Framer {
     currentMessageWireSize = 0;
     statsTraceCtx.outboundMessage(currentMessageSeqNo);
     boolean compressed = messageCompression && compressor != Codec.Identity.NONE;
+    boolean compressionSkipped = false;
     int written = -1;
     int messageLength = -2;
     try {
       messageLength = getKnownLength(message);
+      if (messageLength != 0 && compressed && compressor instanceof AdaptiveCompressor
+          && !((AdaptiveCompressor) compressor).shouldCompress(messageLength)) {
+        compressed = false;
+        compressionSkipped = true;
+      }
       if (messageLength != 0 && compressed) {
         written = writeCompressed(message, messageLength);
       } else {
@@ -159,6 +167,15 @@ public class MessageFramer implements Framer {
     }
     statsTraceCtx.outboundUncompressedSize(written);
     statsTraceCtx.outboundWireSize(currentMessageWireSize);
+    if (messageLength != 0 && compressed) {
+      if (compressor instanceof AdaptiveCompressor) {
+        ((AdaptiveCompressor) compressor).recordCompressed(written, currentMessageWireSize);
+      }
+      statsTraceCtx.outboundMessageCompression(
+          currentMessageSeqNo, written, currentMessageWireSize);
+    } else if (compressionSkipped) {
+      statsTraceCtx.outboundMessageCompression(currentMessageSeqNo, written, -1);
+    }
     statsTraceCtx.outboundMessageSent(currentMessageSeqNo, currentMessageWireSize, written);
   }
 
@@ -358,7 +375,7 @@ public class MessageFramer implements Framer {
   }
 
   /** OutputStream whose write()s are passed to the framer. */
-  private class OutputStreamAdapter extends OutputStream {
+  private class OutputStreamAdapter extends OutputStream implements HasWritableByteBuffer {
     /**
      * This is slow, don't call it.  If you care about write overhead, use a BufferedOutputStream.
      * Better yet, you can use your own single byte buffer and call
@@ -374,6 +391,19 @@ public class MessageFramer implements Framer {
     public void write(byte[] b, int off, int len) {
       writeRaw(b, off, len);
     }
+
+    /**
+     * Lets a message of known length be serialized straight into the current buffer, which was
+     * allocated for it, when the whole message fits.
+     */
+    @Nullable
+    @Override
+    public ByteBuffer getWritableByteBuffer(int length) {
+      if (!(buffer instanceof ByteBufferWritableBuffer) || buffer.writableBytes() < length) {
+        return null;
+      }
+      return ((ByteBufferWritableBuffer) buffer).claimByteBuffer(length);
+    }
   }
 
   /**
@@ -1357,9 +1357,26 @@ abstract class RetriableStream<ReqT> implements ClientStream {
    */
   static final class ChannelBufferMeter {
     private final AtomicLong bufferUsed = new AtomicLong();
+    @Nullable
+    private final AtomicLong sharedBufferUsed;
+
+    ChannelBufferMeter() {
+      this(null);
+    }
+
+    /**
+     * Creates a meter that also adds the channel's usage to {@code sharedBufferUsed}, which may be
+     * shared with other channels. Only the channel's own usage is returned.
+     */
+    ChannelBufferMeter(@Nullable AtomicLong sharedBufferUsed) {
+      this.sharedBufferUsed = sharedBufferUsed;
+    }
 
     @VisibleForTesting
     long addAndGet(long newBytesUsed) {
+      if (sharedBufferUsed != null) {
+        sharedBufferUsed.addAndGet(newBytesUsed);
+      }
       return bufferUsed.addAndGet(newBytesUsed);
     }
   }
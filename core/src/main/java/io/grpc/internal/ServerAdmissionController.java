@@ -0,0 +1,439 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.Deadline;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Decides whether {@link ServerImpl} should accept new streams, so that an overloaded server fails
+ * fast instead of queuing work it will never finish in time.
+ *
+ * <p>Three signals are considered, each of which is optional:
+ * <ul>
+ *   <li>The scheduling lag of each transport's {@link ScheduledExecutorService} (the event loop for
+ *       Netty), measured by a periodic probe.</li>
+ *   <li>The number of calls accepted by the transports but not yet picked up by the application
+ *       executor.</li>
+ *   <li>An adaptive per-method concurrency limit, adjusted with a gradient of the observed call
+ *       latency against its long-term average. Only unary methods are limited, as the lifetime of
+ *       a streaming call says nothing about the server's load, and an idle stream holds no
+ *       capacity worth limiting.</li>
+ * </ul>
+ */
+public final class ServerAdmissionController {
+  private static final double LIMIT_SMOOTHING = 0.2;
+  private static final double LONG_RTT_SMOOTHING = 0.05;
+  private static final double MIN_GRADIENT = 0.5;
+  private static final double DROP_BACKOFF = 0.9;
+  /** Methods beyond this many share the limit of unknown methods, so the table stays bounded. */
+  @VisibleForTesting
+  static final int MAX_METHOD_LIMITS = 1000;
+  private static final String UNKNOWN_METHODS_KEY = "";
+
+  private final long maxSchedulingLagNanos;
+  private final long lagProbeIntervalNanos;
+  private final int maxPendingCalls;
+  private final Status.Code rejectionCode;
+  private final boolean adaptiveLimitEnabled;
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final Deadline.Ticker ticker;
+
+  private final AtomicInteger pendingCalls = new AtomicInteger();
+  private final AtomicLong rejectedCalls = new AtomicLong();
+  private final ConcurrentMap<String, GradientLimit> limits = new ConcurrentHashMap<>();
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private final Map<ScheduledExecutorService, LagProbe> probes = new IdentityHashMap<>();
+
+  private ServerAdmissionController(Builder builder) {
+    this.maxSchedulingLagNanos = builder.maxSchedulingLagNanos;
+    this.lagProbeIntervalNanos = builder.lagProbeIntervalNanos;
+    this.maxPendingCalls = builder.maxPendingCalls;
+    this.rejectionCode = builder.rejectionCode;
+    this.adaptiveLimitEnabled = builder.adaptiveLimitEnabled;
+    this.initialLimit = builder.initialLimit;
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.ticker = builder.ticker;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Starts measuring the scheduling lag of {@code scheduler}, or joins an existing measurement if
+   * another transport shares it. Returns {@code null} if lag-based shedding is disabled. The probe
+   * must be given back with {@link #releaseLagProbe} once the transport terminates.
+   */
+  @Nullable
+  LagProbe acquireLagProbe(ScheduledExecutorService scheduler) {
+    if (maxSchedulingLagNanos == Long.MAX_VALUE) {
+      return null;
+    }
+    synchronized (lock) {
+      LagProbe probe = probes.get(scheduler);
+      if (probe == null) {
+        probe = new LagProbe(scheduler);
+        probes.put(scheduler, probe);
+        probe.schedule();
+      }
+      probe.refCount++;
+      return probe;
+    }
+  }
+
+  void releaseLagProbe(LagProbe probe) {
+    synchronized (lock) {
+      checkState(probe.refCount > 0, "probe already released");
+      if (--probe.refCount == 0) {
+        probes.remove(probe.scheduler);
+        probe.cancel();
+      }
+    }
+  }
+
+  /**
+   * Decides whether a new stream for {@code fullMethodName} should be admitted. {@code methodType}
+   * is {@code null} if the method is not known to the server; such calls share a single
+   * concurrency limit so that arbitrary method names cannot grow the limit table. Calls to known
+   * streaming methods are not subject to the adaptive limit.
+   *
+   * <p>The returned permit is never {@code null}. If it is not {@linkplain Permit#isAdmitted()
+   * admitted} the stream should be closed with {@link Permit#getRejectionStatus()}; otherwise it
+   * must be {@linkplain Permit#release released} when the stream closes.
+   */
+  Permit tryAcquire(
+      String fullMethodName, @Nullable MethodType methodType, @Nullable LagProbe lagProbe) {
+    if (lagProbe != null && lagProbe.lagNanos > maxSchedulingLagNanos) {
+      return reject(
+          "event loop scheduling lag of " + TimeUnit.NANOSECONDS.toMillis(lagProbe.lagNanos)
+          + "ms exceeds " + TimeUnit.NANOSECONDS.toMillis(maxSchedulingLagNanos) + "ms");
+    }
+    if (pendingCalls.incrementAndGet() > maxPendingCalls) {
+      pendingCalls.decrementAndGet();
+      return reject("more than " + maxPendingCalls + " calls waiting for the executor");
+    }
+    GradientLimit limit = null;
+    if (adaptiveLimitEnabled && (methodType == null || methodType == MethodType.UNARY)) {
+      limit = getLimit(methodType != null ? fullMethodName : UNKNOWN_METHODS_KEY);
+      if (!limit.tryAcquire()) {
+        pendingCalls.decrementAndGet();
+        return reject("concurrency limit of " + limit.getLimit() + " reached for "
+            + fullMethodName);
+      }
+    }
+    return new Permit(limit, ticker.nanoTime());
+  }
+
+  private GradientLimit getLimit(String key) {
+    GradientLimit limit = limits.get(key);
+    if (limit == null && limits.size() >= MAX_METHOD_LIMITS) {
+      // Registries may resolve any number of names, such as those of a proxy.
+      key = UNKNOWN_METHODS_KEY;
+      limit = limits.get(key);
+    }
+    if (limit == null) {
+      GradientLimit newLimit = new GradientLimit(initialLimit, minLimit, maxLimit);
+      limit = limits.putIfAbsent(key, newLimit);
+      if (limit == null) {
+        limit = newLimit;
+      }
+    }
+    return limit;
+  }
+
+  private Permit reject(String reason) {
+    rejectedCalls.incrementAndGet();
+    return new Permit(
+        Status.fromCode(rejectionCode).withDescription("Server overloaded: " + reason));
+  }
+
+  /** Returns the number of streams rejected since the controller was created. */
+  public long getRejectedCallCount() {
+    return rejectedCalls.get();
+  }
+
+  @VisibleForTesting
+  int getPendingCallCount() {
+    return pendingCalls.get();
+  }
+
+  @VisibleForTesting
+  int getConcurrencyLimit(String fullMethodName) {
+    GradientLimit limit = limits.get(fullMethodName);
+    return limit == null ? initialLimit : limit.getLimit();
+  }
+
+  /** The outcome of an admission decision for a single stream. */
+  final class Permit {
+    @Nullable private final Status rejectionStatus;
+    @Nullable private final GradientLimit limit;
+    private final long startNanos;
+    private final AtomicBoolean dequeued = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    Permit(Status rejectionStatus) {
+      this.rejectionStatus = rejectionStatus;
+      this.limit = null;
+      this.startNanos = 0;
+    }
+
+    Permit(@Nullable GradientLimit limit, long startNanos) {
+      this.rejectionStatus = null;
+      this.limit = limit;
+      this.startNanos = startNanos;
+    }
+
+    boolean isAdmitted() {
+      return rejectionStatus == null;
+    }
+
+    @Nullable
+    Status getRejectionStatus() {
+      return rejectionStatus;
+    }
+
+    /** Records that the application executor has started processing the call. */
+    void callDequeued() {
+      if (dequeued.compareAndSet(false, true)) {
+        pendingCalls.decrementAndGet();
+      }
+    }
+
+    /** Releases the concurrency slot held by the call. Subsequent calls are ignored. */
+    void release(Status status) {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      callDequeued();
+      if (limit != null) {
+        limit.release(ticker.nanoTime() - startNanos, isDrop(status));
+      }
+    }
+
+    private boolean isDrop(Status status) {
+      switch (status.getCode()) {
+        case DEADLINE_EXCEEDED:
+        case RESOURCE_EXHAUSTED:
+        case UNAVAILABLE:
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  /** Periodically measures how late a scheduled task runs on a transport's scheduler. */
+  final class LagProbe implements Runnable {
+    private final ScheduledExecutorService scheduler;
+    @GuardedBy("lock")
+    private int refCount;
+    @GuardedBy("lock")
+    private ScheduledFuture<?> future;
+    @GuardedBy("lock")
+    private boolean cancelled;
+    private long expectedRunNanos;
+    volatile long lagNanos;
+
+    LagProbe(ScheduledExecutorService scheduler) {
+      this.scheduler = checkNotNull(scheduler, "scheduler");
+    }
+
+    @GuardedBy("lock")
+    private void schedule() {
+      expectedRunNanos = ticker.nanoTime() + lagProbeIntervalNanos;
+      future = scheduler.schedule(this, lagProbeIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @GuardedBy("lock")
+    private void cancel() {
+      cancelled = true;
+      future.cancel(false);
+    }
+
+    @Override
+    public void run() {
+      lagNanos = Math.max(0, ticker.nanoTime() - expectedRunNanos);
+      synchronized (lock) {
+        if (!cancelled) {
+          schedule();
+        }
+      }
+    }
+  }
+
+  /**
+   * A gradient concurrency limit. The limit shrinks when the latency of recent calls rises above
+   * its long-term average, and otherwise grows by roughly the square root of the current limit.
+   */
+  @VisibleForTesting
+  static final class GradientLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    @GuardedBy("this")
+    private double limit;
+    @GuardedBy("this")
+    private double longRttNanos;
+    @GuardedBy("this")
+    private int inFlight;
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+      this.limit = initialLimit;
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+    }
+
+    synchronized boolean tryAcquire() {
+      if (inFlight >= (int) limit) {
+        return false;
+      }
+      inFlight++;
+      return true;
+    }
+
+    synchronized void release(long rttNanos, boolean dropped) {
+      int previousInFlight = inFlight--;
+      double newLimit;
+      if (dropped) {
+        newLimit = limit * DROP_BACKOFF;
+      } else {
+        if (rttNanos <= 0) {
+          return;
+        }
+        if (longRttNanos == 0) {
+          longRttNanos = rttNanos;
+        } else {
+          longRttNanos += (rttNanos - longRttNanos) * LONG_RTT_SMOOTHING;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, longRttNanos / rttNanos));
+        newLimit = limit * gradient + Math.sqrt(limit);
+        // Don't grow the limit while the application is not using it.
+        if (previousInFlight < limit / 2) {
+          newLimit = Math.min(newLimit, limit);
+        }
+      }
+      limit = limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+      limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    synchronized int getLimit() {
+      return (int) limit;
+    }
+  }
+
+  /** Builder for {@link ServerAdmissionController}. */
+  public static final class Builder {
+    private long maxSchedulingLagNanos = Long.MAX_VALUE;
+    private long lagProbeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private int maxPendingCalls = Integer.MAX_VALUE;
+    private Status.Code rejectionCode = Status.Code.UNAVAILABLE;
+    private boolean adaptiveLimitEnabled;
+    private int initialLimit = 100;
+    private int minLimit = 10;
+    private int maxLimit = 1000;
+    private Deadline.Ticker ticker = Deadline.getSystemTicker();
+
+    private Builder() {}
+
+    /**
+     * Rejects new streams while the transport's event loop runs scheduled tasks later than
+     * {@code maxLag}. Disabled by default.
+     */
+    public Builder maxSchedulingLag(long maxLag, TimeUnit unit) {
+      checkArgument(maxLag > 0, "maxLag must be positive: %s", maxLag);
+      this.maxSchedulingLagNanos = unit.toNanos(maxLag);
+      return this;
+    }
+
+    /** Sets how often the scheduling lag is sampled. Defaults to 100 milliseconds. */
+    public Builder lagProbeInterval(long interval, TimeUnit unit) {
+      checkArgument(interval > 0, "interval must be positive: %s", interval);
+      this.lagProbeIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Rejects new streams while more than {@code maxPendingCalls} calls are waiting for the
+     * application executor. Unlimited by default.
+     */
+    public Builder maxPendingCalls(int maxPendingCalls) {
+      checkArgument(maxPendingCalls > 0, "maxPendingCalls must be positive: %s", maxPendingCalls);
+      this.maxPendingCalls = maxPendingCalls;
+      return this;
+    }
+
+    /**
+     * Sets the status code used for rejected streams, either {@link Status.Code#UNAVAILABLE} (the
+     * default, which clients may transparently retry elsewhere) or
+     * {@link Status.Code#RESOURCE_EXHAUSTED}.
+     */
+    public Builder rejectionCode(Status.Code code) {
+      checkArgument(
+          code == Status.Code.UNAVAILABLE || code == Status.Code.RESOURCE_EXHAUSTED,
+          "code must be UNAVAILABLE or RESOURCE_EXHAUSTED: %s", code);
+      this.rejectionCode = code;
+      return this;
+    }
+
+    /**
+     * Enables an adaptive concurrency limit per unary method, starting at {@code initialLimit} and
+     * kept within {@code [minLimit, maxLimit]}. Disabled by default.
+     */
+    public Builder adaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+      checkArgument(minLimit > 0, "minLimit must be positive: %s", minLimit);
+      checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+          "initialLimit must be within [minLimit, maxLimit]: %s", initialLimit);
+      this.adaptiveLimitEnabled = true;
+      this.initialLimit = initialLimit;
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Deadline.Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    public ServerAdmissionController build() {
+      return new ServerAdmissionController(this);
+    }
+  }
+}
@@ -43,6 +43,7 @@ import io.perfmark.Tag;
 import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 
 final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
 
@@ -60,6 +61,8 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
   private final byte[] messageAcceptEncoding;
   private final DecompressorRegistry decompressorRegistry;
   private final CompressorRegistry compressorRegistry;
+  @Nullable
+  private final AdaptiveCompression adaptiveCompression;
   private CallTracer serverCallTracer;
 
   // state
@@ -72,13 +75,14 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
   ServerCallImpl(ServerStream stream, MethodDescriptor<ReqT, RespT> method,
       Metadata inboundHeaders, Context.CancellableContext context,
       DecompressorRegistry decompressorRegistry, CompressorRegistry compressorRegistry,
-      CallTracer serverCallTracer, Tag tag) {
+      @Nullable AdaptiveCompression adaptiveCompression, CallTracer serverCallTracer, Tag tag) {
     this.stream = stream;
     this.method = method;
     this.context = context;
     this.messageAcceptEncoding = inboundHeaders.get(MESSAGE_ACCEPT_ENCODING_KEY);
     this.decompressorRegistry = decompressorRegistry;
     this.compressorRegistry = compressorRegistry;
+    this.adaptiveCompression = adaptiveCompression;
     this.serverCallTracer = serverCallTracer;
     this.serverCallTracer.reportCallStarted();
     this.tag = tag;
@@ -129,7 +133,11 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     // Always put compressor, even if it's identity.
     headers.put(MESSAGE_ENCODING_KEY, compressor.getMessageEncoding());
 
-    stream.setCompressor(compressor);
+    if (adaptiveCompression != null) {
+      stream.setCompressor(adaptiveCompression.forMethod(method.getFullMethodName(), compressor));
+    } else {
+      stream.setCompressor(compressor);
+    }
 
     headers.discardAll(MESSAGE_ACCEPT_ENCODING_KEY);
     byte[] advertisedEncodings =
@@ -154,19 +162,59 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     }
   }
 
+  @Override
+  public void sendMessages(Iterable<RespT> messages) {
+    PerfMark.startTask("ServerCall.sendMessages", tag);
+    try {
+      for (RespT message : messages) {
+        if (!writeMessage(message)) {
+          return;
+        }
+      }
+      // A single flush for the whole batch, instead of one per message.
+      flush();
+    } finally {
+      PerfMark.stopTask("ServerCall.sendMessages", tag);
+    }
+  }
+
   private void sendMessageInternal(RespT message) {
+    if (writeMessage(message)) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes a message to the stream without flushing it. Returns {@code false} if the call was
+   * closed instead.
+   */
+  private boolean writeMessage(RespT message) {
     checkState(sendHeadersCalled, "sendHeaders has not been called");
     checkState(!closeCalled, "call is closed");
 
     if (method.getType().serverSendsOneMessage() && messageSent) {
       internalClose(Status.INTERNAL.withDescription(TOO_MANY_RESPONSES));
-      return;
+      return false;
     }
 
     messageSent = true;
     try {
       InputStream resp = method.streamResponse(message);
       stream.writeMessage(resp);
+      return true;
+    } catch (RuntimeException e) {
+      close(Status.fromThrowable(e), new Metadata());
+      return false;
+    } catch (Error e) {
+      close(
+          Status.CANCELLED.withDescription("Server sendMessage() failed with Error"),
+          new Metadata());
+      throw e;
+    }
+  }
+
+  private void flush() {
+    try {
       stream.flush();
     } catch (RuntimeException e) {
       close(Status.fromThrowable(e), new Metadata());
@@ -200,6 +248,14 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     return stream.isReady();
   }
 
+  @Override
+  public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+    checkArgument(lowWatermark > 0, "lowWatermark must be positive: %s", lowWatermark);
+    checkArgument(highWatermark >= lowWatermark,
+        "highWatermark %s must not be less than lowWatermark %s", highWatermark, lowWatermark);
+    stream.setOnReadyThreshold(lowWatermark, highWatermark);
+  }
+
   @Override
   public void close(Status status, Metadata trailers) {
     PerfMark.startTask("ServerCall.close", tag);
@@ -46,6 +46,7 @@ import io.grpc.InternalInstrumented;
 import io.grpc.InternalLogId;
 import io.grpc.InternalServerInterceptors;
 import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallExecutorSupplier;
 import io.grpc.ServerCallHandler;
@@ -73,6 +74,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -122,12 +124,16 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
 
   private final DecompressorRegistry decompressorRegistry;
   private final CompressorRegistry compressorRegistry;
+  @Nullable
+  private final AdaptiveCompression adaptiveCompression;
   private final BinaryLog binlog;
 
   private final InternalChannelz channelz;
   private final CallTracer serverCallTracer;
   private final Deadline.Ticker ticker;
   private final ServerCallExecutorSupplier executorSupplier;
+  @Nullable
+  private final ServerAdmissionController admissionController;
 
   /**
    * Construct a server.
@@ -152,6 +158,9 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     this.rootContext = Preconditions.checkNotNull(rootContext, "rootContext").fork();
     this.decompressorRegistry = builder.decompressorRegistry;
     this.compressorRegistry = builder.compressorRegistry;
+    this.adaptiveCompression = builder.adaptiveCompression
+        ? new AdaptiveCompression(builder.minCompressedMessageSize, builder.maxCompressionRatio)
+        : null;
     this.transportFilters = Collections.unmodifiableList(
         new ArrayList<>(builder.transportFilters));
     this.interceptors =
@@ -163,6 +172,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     this.ticker = checkNotNull(builder.ticker, "ticker");
     channelz.addServer(this);
     this.executorSupplier = builder.executorSupplier;
+    this.admissionController = builder.admissionController;
   }
 
   /**
@@ -407,6 +417,8 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     private final ServerTransport transport;
     private Future<?> handshakeTimeoutFuture;
     private Attributes attributes;
+    @Nullable
+    private ServerAdmissionController.LagProbe lagProbe;
 
     ServerTransportListenerImpl(ServerTransport transport) {
       this.transport = transport;
@@ -429,6 +441,9 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
         }, null);
       }
       channelz.addServerSocket(ServerImpl.this, transport);
+      if (admissionController != null) {
+        lagProbe = admissionController.acquireLagProbe(transport.getScheduledExecutorService());
+      }
     }
 
     @Override
@@ -450,6 +465,10 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
         handshakeTimeoutFuture.cancel(false);
         handshakeTimeoutFuture = null;
       }
+      if (lagProbe != null) {
+        admissionController.releaseLagProbe(lagProbe);
+        lagProbe = null;
+      }
       for (ServerTransportFilter filter : transportFilters) {
         filter.transportTerminated(attributes);
       }
@@ -468,8 +487,40 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
       }
     }
 
+    /**
+     * Looks up the method like {@code MethodLookup} does, for admission control. Returns {@code
+     * null} if the method is not found.
+     */
+    @Nullable
+    private MethodDescriptor.MethodType lookupMethodType(ServerStream stream, String methodName) {
+      ServerMethodDefinition<?, ?> method;
+      try {
+        method = registry.lookupMethod(methodName);
+        if (method == null) {
+          method = fallbackRegistry.lookupMethod(methodName, stream.getAuthority());
+        }
+      } catch (RuntimeException e) {
+        // MethodLookup fails the call with this exception.
+        return null;
+      }
+      return method == null ? null : method.getMethodDescriptor().getType();
+    }
+
     private void streamCreatedInternal(
         final ServerStream stream, final String methodName, final Metadata headers, final Tag tag) {
+      final ServerAdmissionController.Permit permit;
+      if (admissionController != null) {
+        permit = admissionController.tryAcquire(
+            methodName, lookupMethodType(stream, methodName), lagProbe);
+        if (!permit.isAdmitted()) {
+          stream.setListener(NOOP_LISTENER);
+          stream.close(permit.getRejectionStatus(), new Metadata());
+          return;
+        }
+      } else {
+        permit = null;
+      }
+
       final Executor wrappedExecutor;
       // This is a performance optimization that avoids the synchronization and queuing overhead
       // that comes with SerializingExecutor.
@@ -484,6 +535,9 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
         String encoding = headers.get(MESSAGE_ENCODING_KEY);
         Decompressor decompressor = decompressorRegistry.lookupDecompressor(encoding);
         if (decompressor == null) {
+          if (permit != null) {
+            permit.release(Status.UNIMPLEMENTED);
+          }
           stream.setListener(NOOP_LISTENER);
           stream.close(
               Status.UNIMPLEMENTED.withDescription(
@@ -504,7 +558,11 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
       final JumpToApplicationThreadServerStreamListener jumpListener
           = new JumpToApplicationThreadServerStreamListener(
                   wrappedExecutor, executor, stream, context, tag);
-      stream.setListener(jumpListener);
+      if (permit != null) {
+        stream.setListener(new PermitReleasingListener(jumpListener, permit));
+      } else {
+        stream.setListener(jumpListener);
+      }
       final SettableFuture<ServerCallParameters<?,?>> future = SettableFuture.create();
       // Run in serializing executor so jumpListener.setListener() is called before any callbacks
       // are delivered, including any errors. MethodLookup() and HandleServerCall() are proactively
@@ -524,6 +582,9 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
         public void runInContext() {
           PerfMark.startTask("ServerTransportListener$MethodLookup.startCall", tag);
           PerfMark.linkIn(link);
+          if (permit != null) {
+            permit.callDequeued();
+          }
           try {
             runInternal();
           } finally {
@@ -578,6 +639,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
                   context,
                   decompressorRegistry,
                   compressorRegistry,
+                  adaptiveCompression,
                   serverCallTracer,
                   tag);
           if (executorSupplier != null) {
@@ -952,6 +1014,39 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     }
   }
 
+  /** Returns the admission slot of a stream to its {@link ServerAdmissionController}. */
+  private static final class PermitReleasingListener implements ServerStreamListener {
+    private final ServerStreamListener delegate;
+    private final ServerAdmissionController.Permit permit;
+
+    PermitReleasingListener(
+        ServerStreamListener delegate, ServerAdmissionController.Permit permit) {
+      this.delegate = delegate;
+      this.permit = permit;
+    }
+
+    @Override
+    public void messagesAvailable(MessageProducer producer) {
+      delegate.messagesAvailable(producer);
+    }
+
+    @Override
+    public void halfClosed() {
+      delegate.halfClosed();
+    }
+
+    @Override
+    public void closed(Status status) {
+      permit.release(status);
+      delegate.closed(status);
+    }
+
+    @Override
+    public void onReady() {
+      delegate.onReady();
+    }
+  }
+
   @VisibleForTesting
   static final class ContextCloser implements Runnable {
     private final Context.CancellableContext context;
@@ -84,6 +84,9 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
   ObjectPool<? extends Executor> executorPool = DEFAULT_EXECUTOR_POOL;
   DecompressorRegistry decompressorRegistry = DEFAULT_DECOMPRESSOR_REGISTRY;
   CompressorRegistry compressorRegistry = DEFAULT_COMPRESSOR_REGISTRY;
+  boolean adaptiveCompression;
+  int minCompressedMessageSize;
+  double maxCompressionRatio;
   long handshakeTimeoutMillis = DEFAULT_HANDSHAKE_TIMEOUT_MILLIS;
   Deadline.Ticker ticker = Deadline.getSystemTicker();
   private boolean statsEnabled = true;
@@ -96,6 +99,8 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
   CallTracer.Factory callTracerFactory = CallTracer.getDefaultFactory();
   @Nullable
   ServerCallExecutorSupplier executorSupplier;
+  @Nullable
+  ServerAdmissionController admissionController;
 
   /**
    * An interface to provide to provide transport specific information for the server. This method
@@ -178,6 +183,18 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
     return this;
   }
 
+  @Override
+  public ServerImplBuilder adaptiveCompression(int minMessageSize, double maxCompressionRatio) {
+    checkArgument(minMessageSize >= 0, "minMessageSize must be non-negative");
+    checkArgument(
+        maxCompressionRatio > 0 && maxCompressionRatio <= 1,
+        "maxCompressionRatio must be in (0, 1]");
+    this.adaptiveCompression = true;
+    this.minCompressedMessageSize = minMessageSize;
+    this.maxCompressionRatio = maxCompressionRatio;
+    return this;
+  }
+
   @Override
   public ServerImplBuilder handshakeTimeout(long timeout, TimeUnit unit) {
     checkArgument(timeout > 0, "handshake timeout is %s, but must be positive", timeout);
@@ -229,6 +246,14 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
     tracingEnabled = value;
   }
 
+  /**
+   * Sets the controller that decides whether new streams are admitted while the server is
+   * overloaded. {@code null}, the default, admits every stream.
+   */
+  public void setAdmissionController(@Nullable ServerAdmissionController admissionController) {
+    this.admissionController = admissionController;
+  }
+
   /**
    * Sets a custom deadline ticker.  This should only be called from InProcessServerBuilder.
    */
@@ -96,4 +96,11 @@ public interface ServerStream extends Stream {
    * The HTTP/2 stream id, or {@code -1} if not supported.
    */
   int streamId();
+
+  /**
+   * Sets the number of queued outbound bytes at which {@link #isReady()} starts returning {@code
+   * false}, and the number the queue must drain below before it returns {@code true} again. If the
+   * transport does not track queued bytes, this may do nothing.
+   */
+  void setOnReadyThreshold(int lowWatermark, int highWatermark);
 }
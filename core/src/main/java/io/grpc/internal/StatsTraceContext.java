@@ -190,6 +190,17 @@ public final class StatsTraceContext {
     }
   }
 
+  /**
+   * See {@link StreamTracer#outboundMessageCompression}.
+   *
+   * <p>Called from {@link io.grpc.internal.Framer}.
+   */
+  public void outboundMessageCompression(int seqNo, long uncompressedSize, long compressedSize) {
+    for (StreamTracer tracer : tracers) {
+      tracer.outboundMessageCompression(seqNo, uncompressedSize, compressedSize);
+    }
+  }
+
   /**
    * See {@link StreamTracer#inboundMessageRead}.
    *
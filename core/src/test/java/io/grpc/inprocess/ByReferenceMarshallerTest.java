@@ -0,0 +1,273 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.inprocess;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for {@link ByReferenceMarshaller} and the builder options that use it.
+ */
+@RunWith(JUnit4.class)
+public class ByReferenceMarshallerTest {
+  private final CountingMarshaller marshaller = new CountingMarshaller();
+  private final MethodDescriptor<Holder, Holder> method =
+      MethodDescriptor.newBuilder(marshaller, marshaller)
+          .setType(MethodDescriptor.MethodType.UNARY)
+          .setFullMethodName("service/method")
+          .build();
+  private final AtomicReference<Holder> serverReceived = new AtomicReference<>();
+  private final String name = InProcessServerBuilder.generateName();
+  private Server server;
+  private ManagedChannel channel;
+
+  @After
+  public void tearDown() {
+    if (channel != null) {
+      channel.shutdownNow();
+    }
+    if (server != null) {
+      server.shutdownNow();
+    }
+  }
+
+  @Test
+  public void sameMarshaller_passesInstances() throws Exception {
+    startServer(InProcessServerBuilder.forName(name)
+        .passMessagesByReference(CopyOnSendPolicy.immutable()));
+    channel = InProcessChannelBuilder.forName(name)
+        .passMessagesByReference(CopyOnSendPolicy.immutable())
+        .directExecutor()
+        .build();
+
+    Holder request = new Holder("hello");
+    Holder response = ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, request);
+
+    assertThat(serverReceived.get()).isSameInstanceAs(request);
+    assertThat(response).isSameInstanceAs(request);
+    assertThat(marshaller.streamed.get()).isEqualTo(0);
+    assertThat(marshaller.parsed.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void copyOnSendPolicy_appliedToEachMessage() throws Exception {
+    final AtomicInteger copies = new AtomicInteger();
+    CopyOnSendPolicy copying = new CopyOnSendPolicy() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> T copy(MethodDescriptor.Marshaller<T> marshaller, T message) {
+        copies.incrementAndGet();
+        return (T) new Holder(((Holder) message).value);
+      }
+    };
+    startServer(InProcessServerBuilder.forName(name).passMessagesByReference(copying));
+    channel = InProcessChannelBuilder.forName(name)
+        .passMessagesByReference(copying)
+        .directExecutor()
+        .build();
+
+    Holder request = new Holder("hello");
+    Holder response = ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, request);
+
+    assertThat(serverReceived.get()).isNotSameInstanceAs(request);
+    assertThat(serverReceived.get().value).isEqualTo("hello");
+    assertThat(response).isNotSameInstanceAs(serverReceived.get());
+    assertThat(response.value).isEqualTo("hello");
+    assertThat(copies.get()).isEqualTo(2);
+    assertThat(marshaller.streamed.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void onlyClientByReference_serverSerializes() throws Exception {
+    startServer(InProcessServerBuilder.forName(name));
+    channel = InProcessChannelBuilder.forName(name)
+        .passMessagesByReference(CopyOnSendPolicy.immutable())
+        .directExecutor()
+        .build();
+
+    Holder request = new Holder("hello");
+    Holder response = ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, request);
+
+    // The server neither unwraps the request, which is then serialized on demand, nor sends the
+    // response by reference.
+    assertThat(serverReceived.get()).isNotSameInstanceAs(request);
+    assertThat(serverReceived.get().value).isEqualTo("hello");
+    assertThat(response.value).isEqualTo("hello");
+    assertThat(marshaller.streamed.get()).isEqualTo(2);
+    assertThat(marshaller.parsed.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void differentMarshaller_fallsBackToSerialization() {
+    CountingMarshaller other = new CountingMarshaller();
+    MethodDescriptor.Marshaller<Holder> sending =
+        ByReferenceMarshaller.wrap(marshaller, CopyOnSendPolicy.immutable());
+    MethodDescriptor.Marshaller<Holder> receiving =
+        ByReferenceMarshaller.wrap(other, CopyOnSendPolicy.immutable());
+
+    Holder sent = new Holder("hello");
+    Holder received = receiving.parse(sending.stream(sent));
+
+    assertThat(received).isNotSameInstanceAs(sent);
+    assertThat(received.value).isEqualTo("hello");
+    assertThat(marshaller.streamed.get()).isEqualTo(1);
+    assertThat(other.parsed.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void partiallyReadStream_notUnwrapped() throws Exception {
+    MethodDescriptor.Marshaller<Holder> wrapped =
+        ByReferenceMarshaller.wrap(marshaller, CopyOnSendPolicy.immutable());
+
+    Holder sent = new Holder("hello");
+    InputStream stream = wrapped.stream(sent);
+    assertThat(stream.read()).isEqualTo('h');
+    Holder received = wrapped.parse(stream);
+
+    assertThat(received).isNotSameInstanceAs(sent);
+    assertThat(received.value).isEqualTo("ello");
+  }
+
+  @Test
+  public void wrap_doesNotWrapTwice() {
+    MethodDescriptor.Marshaller<Holder> wrapped =
+        ByReferenceMarshaller.wrap(marshaller, CopyOnSendPolicy.immutable());
+
+    assertThat(ByReferenceMarshaller.wrap(wrapped, CopyOnSendPolicy.immutable()))
+        .isSameInstanceAs(wrapped);
+  }
+
+  @Test
+  public void serverBuilder_laterBuildKeepsServices() throws Exception {
+    InProcessServerBuilder builder = InProcessServerBuilder.forName(name)
+        .passMessagesByReference(CopyOnSendPolicy.immutable());
+    startServer(builder);
+    server.shutdownNow().awaitTermination();
+    server = builder.build().start();
+    channel = InProcessChannelBuilder.forName(name)
+        .passMessagesByReference(CopyOnSendPolicy.immutable())
+        .directExecutor()
+        .build();
+
+    Holder request = new Holder("hello");
+    Holder response = ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, request);
+
+    assertThat(serverReceived.get()).isSameInstanceAs(request);
+    assertThat(response).isSameInstanceAs(request);
+  }
+
+  @Test
+  public void clientInterceptor_reusesWrappedDescriptorPerMethod() {
+    ClientInterceptor interceptor =
+        new ByReferenceMarshaller.ClientInterceptorImpl(CopyOnSendPolicy.immutable());
+    Channel next = mock(Channel.class);
+    MethodDescriptor<Holder, Holder> sameName = method.toBuilder().build();
+
+    interceptor.interceptCall(method, CallOptions.DEFAULT, next);
+    interceptor.interceptCall(method, CallOptions.DEFAULT, next);
+    interceptor.interceptCall(sameName, CallOptions.DEFAULT, next);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<MethodDescriptor<Holder, Holder>> captor =
+        ArgumentCaptor.forClass(MethodDescriptor.class);
+    verify(next, times(3)).newCall(captor.capture(), eq(CallOptions.DEFAULT));
+    List<MethodDescriptor<Holder, Holder>> wrapped = captor.getAllValues();
+    assertThat(wrapped.get(0)).isNotSameInstanceAs(method);
+    assertThat(wrapped.get(1)).isSameInstanceAs(wrapped.get(0));
+    assertThat(wrapped.get(2)).isNotSameInstanceAs(wrapped.get(0));
+    assertThat(wrapped.get(2).getRequestMarshaller())
+        .isInstanceOf(ByReferenceMarshaller.class);
+  }
+
+  private void startServer(InProcessServerBuilder builder) throws IOException {
+    server = builder
+        .addService(ServerServiceDefinition.builder("service")
+            .addMethod(method, ServerCalls.asyncUnaryCall(
+                new ServerCalls.UnaryMethod<Holder, Holder>() {
+                  @Override
+                  public void invoke(Holder request, StreamObserver<Holder> responseObserver) {
+                    serverReceived.set(request);
+                    responseObserver.onNext(request);
+                    responseObserver.onCompleted();
+                  }
+                }))
+            .build())
+        .directExecutor()
+        .build()
+        .start();
+  }
+
+  private static final class Holder {
+    final String value;
+
+    Holder(String value) {
+      this.value = value;
+    }
+  }
+
+  private static final class CountingMarshaller implements MethodDescriptor.Marshaller<Holder> {
+    final AtomicInteger streamed = new AtomicInteger();
+    final AtomicInteger parsed = new AtomicInteger();
+
+    @Override
+    public InputStream stream(Holder value) {
+      streamed.incrementAndGet();
+      return new ByteArrayInputStream(value.value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Holder parse(InputStream stream) {
+      parsed.incrementAndGet();
+      try {
+        byte[] bytes = new byte[stream.available()];
+        int read = 0;
+        while (read < bytes.length) {
+          read += stream.read(bytes, read, bytes.length - read);
+        }
+        return new Holder(new String(bytes, StandardCharsets.UTF_8));
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+}
@@ -17,7 +17,9 @@
 package io.grpc.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.AdditionalAnswers.delegatesTo;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
@@ -41,6 +43,7 @@ import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -108,6 +111,41 @@ public class AbstractServerStreamTest {
     assertNull("no message expected", streamListenerMessageQueue.poll());
   }
 
+  @Test
+  public void onReadyThreshold_hysteresis() {
+    final AtomicInteger onReadyCount = new AtomicInteger();
+    stream.transportState().setListener(new ServerStreamListenerBase() {
+      @Override
+      public void onReady() {
+        onReadyCount.incrementAndGet();
+      }
+    });
+    stream.transportState().onStreamAllocated();
+    assertEquals(1, onReadyCount.get());
+
+    stream.setOnReadyThreshold(100, 1000);
+    stream.onSendingBytes(999);
+    assertTrue(stream.isReady());
+    stream.onSendingBytes(1);
+    assertFalse(stream.isReady());
+
+    // Draining below the high watermark is not enough.
+    stream.transportState().onSentBytes(500);
+    assertFalse(stream.isReady());
+    assertEquals(1, onReadyCount.get());
+
+    stream.transportState().onSentBytes(401);
+    assertTrue(stream.isReady());
+    assertEquals(2, onReadyCount.get());
+
+    stream.onSendingBytes(901);
+    assertFalse(stream.isReady());
+    // Raising the watermarks makes the stream ready immediately.
+    stream.setOnReadyThreshold(2000, 2000);
+    assertTrue(stream.isReady());
+    assertEquals(3, onReadyCount.get());
+  }
+
   @Test
   public void queuedBytesInDeframerShouldNotBlockComplete() throws Exception {
     final SettableFuture<Status> closedFuture = SettableFuture.create();
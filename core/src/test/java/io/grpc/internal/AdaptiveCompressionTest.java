@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static io.grpc.internal.AdaptiveCompression.MIN_SAMPLES;
+import static io.grpc.internal.AdaptiveCompression.PROBE_INTERVAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.grpc.Codec;
+import io.grpc.internal.AdaptiveCompression.AdaptiveCompressor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AdaptiveCompression}. */
+@RunWith(JUnit4.class)
+public class AdaptiveCompressionTest {
+  private static final String METHOD = "service/method";
+  private static final int MIN_MESSAGE_SIZE = 64;
+
+  private final AdaptiveCompression adaptiveCompression =
+      new AdaptiveCompression(MIN_MESSAGE_SIZE, 0.9);
+
+  @Test
+  public void identityNotWrapped() {
+    assertSame(Codec.Identity.NONE, adaptiveCompression.forMethod(METHOD, Codec.Identity.NONE));
+  }
+
+  @Test
+  public void keepsMessageEncoding() {
+    assertEquals("gzip", forMethod(METHOD).getMessageEncoding());
+  }
+
+  @Test
+  public void smallMessagesNotCompressed() {
+    AdaptiveCompressor compressor = forMethod(METHOD);
+
+    assertFalse(compressor.shouldCompress(MIN_MESSAGE_SIZE - 1));
+    assertTrue(compressor.shouldCompress(MIN_MESSAGE_SIZE));
+    assertTrue(compressor.shouldCompress(-1));
+  }
+
+  @Test
+  public void poorRatioTurnsCompressionOff() {
+    AdaptiveCompressor compressor = forMethod(METHOD);
+    for (int i = 0; i < MIN_SAMPLES - 1; i++) {
+      compressor.recordCompressed(1000, 990);
+    }
+    assertTrue(compressor.shouldCompress(1000));
+
+    compressor.recordCompressed(1000, 990);
+
+    assertEquals(1, countCompressed(compressor, PROBE_INTERVAL));
+  }
+
+  @Test
+  public void goodRatioKeepsCompressionOn() {
+    AdaptiveCompressor compressor = forMethod(METHOD);
+    for (int i = 0; i < 100; i++) {
+      compressor.recordCompressed(1000, 300);
+    }
+
+    assertEquals(PROBE_INTERVAL, countCompressed(compressor, PROBE_INTERVAL));
+  }
+
+  @Test
+  public void compressionComesBackWhenMessagesShrinkAgain() {
+    AdaptiveCompressor compressor = forMethod(METHOD);
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      compressor.recordCompressed(1000, 1010);
+    }
+    assertFalse(compressor.shouldCompress(1000));
+
+    // Only the probes are compressed, and so sampled.
+    for (int i = 0; i < 3; i++) {
+      compressor.recordCompressed(1000, 200);
+    }
+
+    assertEquals(PROBE_INTERVAL, countCompressed(compressor, PROBE_INTERVAL));
+  }
+
+  @Test
+  public void statsSharedByCallsOfMethod() {
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      forMethod(METHOD).recordCompressed(1000, 1000);
+    }
+
+    assertFalse(forMethod(METHOD).shouldCompress(1000));
+    assertTrue(forMethod("service/other").shouldCompress(1000));
+    assertTrue(
+        ((AdaptiveCompressor) adaptiveCompression.forMethod(METHOD, new Codec.Lz4()))
+            .shouldCompress(1000));
+  }
+
+  @Test
+  public void thresholdsConfigurable() {
+    AdaptiveCompression strict = new AdaptiveCompression(0, 0.5);
+    AdaptiveCompressor compressor = (AdaptiveCompressor) strict.forMethod(METHOD, new Codec.Gzip());
+    assertTrue(compressor.shouldCompress(1));
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      compressor.recordCompressed(1000, 600);
+    }
+
+    assertEquals(1, countCompressed(compressor, PROBE_INTERVAL));
+  }
+
+  @Test
+  public void invalidThresholds() {
+    try {
+      new AdaptiveCompression(-1, 0.9);
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+    try {
+      new AdaptiveCompression(64, 0);
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+    try {
+      new AdaptiveCompression(64, 1.5);
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  private AdaptiveCompressor forMethod(String fullMethodName) {
+    return (AdaptiveCompressor) adaptiveCompression.forMethod(fullMethodName, new Codec.Gzip());
+  }
+
+  private static int countCompressed(AdaptiveCompressor compressor, int messages) {
+    int compressed = 0;
+    for (int i = 0; i < messages; i++) {
+      if (compressor.shouldCompress(1000)) {
+        compressed++;
+      }
+    }
+    return compressed;
+  }
+}
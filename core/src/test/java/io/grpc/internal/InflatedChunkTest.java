@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link InflatedChunk}. */
+@RunWith(JUnit4.class)
+public class InflatedChunkTest {
+
+  @Test
+  public void slicesShareArray() {
+    InflatedChunk chunk = InflatedChunk.allocate();
+    write(chunk, 1, 2, 3, 4, 5);
+
+    ReadableBuffer first = chunk.slice(2);
+    ReadableBuffer second = chunk.slice(3);
+
+    assertEquals(5, chunk.writeIndex());
+    assertEquals(InflatedChunk.SIZE - 5, chunk.writableBytes());
+    assertEquals(2, first.readableBytes());
+    assertEquals(1, first.readUnsignedByte());
+    assertEquals(2, first.readUnsignedByte());
+    byte[] dest = new byte[3];
+    second.readBytes(dest, 0, 3);
+    assertEquals(3, dest[0]);
+    assertEquals(5, dest[2]);
+  }
+
+  @Test
+  public void arrayPooledOnceChunkAndSlicesReleased() {
+    InflatedChunk chunk = InflatedChunk.allocate();
+    byte[] array = chunk.array();
+    ReadableBuffer slice = chunk.slice(10);
+    ReadableBuffer part = slice.readBytes(4);
+
+    chunk.release();
+    slice.close();
+    assertNotSame(array, allocateAndRelease());
+
+    part.close();
+    assertSame(array, allocateAndRelease());
+  }
+
+  @Test
+  public void closeIsIdempotent() {
+    InflatedChunk chunk = InflatedChunk.allocate();
+    byte[] array = chunk.array();
+    ReadableBuffer slice = chunk.slice(10);
+    ReadableBuffer other = chunk.slice(10);
+
+    slice.close();
+    slice.close();
+    chunk.release();
+    assertNotSame(array, allocateAndRelease());
+
+    other.close();
+    assertSame(array, allocateAndRelease());
+  }
+
+  @Test
+  public void markAndReset() {
+    InflatedChunk chunk = InflatedChunk.allocate();
+    write(chunk, 7, 8, 9);
+    ReadableBuffer slice = chunk.slice(3);
+
+    slice.readUnsignedByte();
+    slice.mark();
+    assertEquals(8, slice.readUnsignedByte());
+    slice.reset();
+
+    assertEquals(8, slice.readUnsignedByte());
+    assertEquals(1, slice.readableBytes());
+  }
+
+  private static void write(InflatedChunk chunk, int... bytes) {
+    for (int i = 0; i < bytes.length; i++) {
+      chunk.array()[chunk.writeIndex() + i] = (byte) bytes[i];
+    }
+  }
+
+  /** Returns the array of a new chunk, which goes straight back to the pool. */
+  private static byte[] allocateAndRelease() {
+    InflatedChunk chunk = InflatedChunk.allocate();
+    chunk.release();
+    return chunk.array();
+  }
+}
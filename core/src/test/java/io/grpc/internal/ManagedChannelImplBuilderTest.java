@@ -238,6 +238,24 @@ public class ManagedChannelImplBuilderTest {
     assertTrue(builder.fullStreamDecompression);
   }
 
+  @Test
+  public void adaptiveCompression_default() {
+    assertFalse(builder.adaptiveCompression);
+  }
+
+  @Test
+  public void adaptiveCompression_enabled() {
+    assertEquals(builder, builder.adaptiveCompression(128, 0.8));
+    assertTrue(builder.adaptiveCompression);
+    assertEquals(128, builder.minCompressedMessageSize);
+    assertEquals(0.8, builder.maxCompressionRatio, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void adaptiveCompression_ratioOutOfRange() {
+    builder.adaptiveCompression(128, 1.1);
+  }
+
   @Test
   public void decompressorRegistry_default() {
     assertNotNull(builder.decompressorRegistry);
@@ -34,6 +34,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import com.google.common.base.Charsets;
 import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
 import io.grpc.Codec;
 import io.grpc.InternalChannelz.TransportStats;
 import io.grpc.StatusRuntimeException;
@@ -278,6 +279,22 @@ public class MessageDeframerTest {
       }
     }
 
+    @Test
+    public void messageLargerThanInflatedChunk() {
+      byte[] payload = new byte[InflatedChunk.SIZE * 5 / 2];
+      for (int i = 0; i < payload.length; i++) {
+        payload[i] = (byte) (i % 251);
+      }
+      deframer.request(2);
+      deframer.deframe(ReadableBuffers.wrap(Bytes.concat(
+          new byte[]{0}, Ints.toByteArray(payload.length), payload,
+          new byte[]{0, 0, 0, 0, 2, 3, 14})));
+      verify(listener, times(2)).messagesAvailable(producer.capture());
+      List<StreamListener.MessageProducer> streams = producer.getAllValues();
+      assertEquals(Bytes.asList(payload), bytes(streams.get(0).next()));
+      assertEquals(Bytes.asList(new byte[]{3, 14}), bytes(streams.get(1).next()));
+    }
+
     @Test
     public void endOfStreamCallbackShouldWaitForMessageDelivery() {
       fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
@@ -17,20 +17,28 @@
 package io.grpc.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import io.grpc.Codec;
+import io.grpc.Drainable;
+import io.grpc.HasWritableByteBuffer;
+import io.grpc.KnownLength;
 import io.grpc.StreamTracer;
 import io.grpc.internal.testing.TestStreamTracer.TestBaseStreamTracer;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
@@ -352,6 +360,67 @@ public class MessageFramerTest {
     checkStats(0, 0);
   }
 
+  @Test
+  public void adaptiveCompression_smallMessageNotCompressed() {
+    StreamTracer compressionTracer = mock(StreamTracer.class);
+    framer = new MessageFramer(
+        sink, allocator, new StatsTraceContext(new StreamTracer[] {tracer, compressionTracer}))
+        .setCompressor(
+            new AdaptiveCompression(64, 0.9).forMethod("service/method", new Codec.Gzip()));
+    writeKnownLength(framer, new byte[]{3, 14});
+    framer.flush();
+
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3, 14}), false, true, 1);
+    verify(compressionTracer).outboundMessageCompression(0, 2, -1);
+    checkStats(2, 2);
+  }
+
+  @Test
+  public void adaptiveCompression_largeMessageCompressed() {
+    StreamTracer compressionTracer = mock(StreamTracer.class);
+    allocator = new BytesWritableBufferAllocator(100, Integer.MAX_VALUE);
+    framer = new MessageFramer(
+        sink, allocator, new StatsTraceContext(new StreamTracer[] {tracer, compressionTracer}))
+        .setCompressor(
+            new AdaptiveCompression(64, 0.9).forMethod("service/method", new Codec.Gzip()));
+    writeKnownLength(framer, new byte[1000]);
+    framer.flush();
+
+    verify(sink).deliverFrame(frameCaptor.capture(), eq(false), eq(false), eq(0));
+    ByteWritableBuffer header = frameCaptor.getValue();
+    assertEquals(0x1, header.data[0]);
+    int length = ByteBuffer.wrap(header.data, 1, 4).getInt();
+    verify(compressionTracer).outboundMessageCompression(0, 1000, length);
+    checkStats(length, 1000);
+  }
+
+  @Test
+  public void knownLengthMessageWrittenToByteBuffer() {
+    ByteBufferDrainable message = new ByteBufferDrainable(new byte[] {3, 14});
+    framer.writePayload(message);
+    framer.flush();
+
+    assertTrue(message.wroteToByteBuffer);
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3, 14}), false, true, 1);
+    assertEquals(1, allocator.allocCount);
+    checkStats(2, 2);
+  }
+
+  @Test
+  public void knownLengthMessageNotFittingBufferWrittenToStream() {
+    allocator = new BytesWritableBufferAllocator(12, 12);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx);
+    ByteBufferDrainable message = new ByteBufferDrainable(new byte[] {3, 14, 1, 5, 9, 2, 6, 5});
+    framer.writePayload(message);
+    framer.flush();
+
+    assertFalse(message.wroteToByteBuffer);
+    verify(sink).deliverFrame(
+        toWriteBuffer(new byte[] {0, 0, 0, 0, 8, 3, 14, 1, 5, 9, 2, 6}), false, false, 1);
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {5}), false, true, 0);
+    checkStats(8, 8);
+  }
+
   private static WritableBuffer toWriteBuffer(byte[] data) {
     return toWriteBufferWithMinSize(data, 0);
   }
@@ -393,7 +462,43 @@ public class MessageFramerTest {
     assertEquals(expectedUncompressedSize, tracer.getOutboundUncompressedSize());
   }
 
-  static class ByteWritableBuffer implements WritableBuffer {
+  /** A message that writes itself to a {@link ByteBuffer} when the output stream offers one. */
+  private static final class ByteBufferDrainable extends InputStream
+      implements Drainable, KnownLength {
+    private final byte[] data;
+    boolean wroteToByteBuffer;
+
+    ByteBufferDrainable(byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      ByteBuffer buffer = target instanceof HasWritableByteBuffer
+          ? ((HasWritableByteBuffer) target).getWritableByteBuffer(data.length)
+          : null;
+      if (buffer != null) {
+        assertEquals(data.length, buffer.remaining());
+        buffer.put(data);
+        wroteToByteBuffer = true;
+      } else {
+        target.write(data);
+      }
+      return data.length;
+    }
+
+    @Override
+    public int available() {
+      return data.length;
+    }
+
+    @Override
+    public int read() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  static class ByteWritableBuffer implements ByteBufferWritableBuffer {
     byte[] data;
     private int writeIdx;
 
@@ -412,6 +517,13 @@ public class MessageFramerTest {
       data[writeIdx++] = b;
     }
 
+    @Override
+    public ByteBuffer claimByteBuffer(int length) {
+      ByteBuffer buffer = ByteBuffer.wrap(data, writeIdx, length);
+      writeIdx += length;
+      return buffer;
+    }
+
     @Override
     public int writableBytes() {
       return data.length - writeIdx;
@@ -64,6 +64,7 @@ import java.util.Random;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
 import org.junit.After;
@@ -1079,6 +1080,20 @@ public class RetriableStreamTest {
     assertEquals(0, channelBufferUsed.addAndGet(0));
   }
 
+  @Test
+  public void channelBufferMeterAddsToSharedCounter() {
+    AtomicLong shared = new AtomicLong();
+    ChannelBufferMeter meter1 = new ChannelBufferMeter(shared);
+    ChannelBufferMeter meter2 = new ChannelBufferMeter(shared);
+
+    assertEquals(100, meter1.addAndGet(100));
+    assertEquals(30, meter2.addAndGet(30));
+    assertEquals(130, shared.get());
+
+    assertEquals(0, meter1.addAndGet(-100));
+    assertEquals(30, shared.get());
+  }
+
   @Test
   public void perRpcBufferLimitExceededDuringBackoff() {
     ClientStream mockStream1 = mock(ClientStream.class);
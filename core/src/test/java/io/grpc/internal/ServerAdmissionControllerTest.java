@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import io.grpc.internal.ServerAdmissionController.GradientLimit;
+import io.grpc.internal.ServerAdmissionController.LagProbe;
+import io.grpc.internal.ServerAdmissionController.Permit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ServerAdmissionController}. */
+@RunWith(JUnit4.class)
+public class ServerAdmissionControllerTest {
+  private static final String METHOD = "service/method";
+
+  private final FakeClock fakeClock = new FakeClock();
+
+  @Test
+  public void admitsByDefault() {
+    ServerAdmissionController controller = ServerAdmissionController.newBuilder()
+        .setTicker(fakeClock.getDeadlineTicker())
+        .build();
+
+    assertNull(controller.acquireLagProbe(fakeClock.getScheduledExecutorService()));
+    Permit permit = controller.tryAcquire(METHOD, MethodType.UNARY, null);
+    assertTrue(permit.isAdmitted());
+    assertEquals(1, controller.getPendingCallCount());
+    permit.release(Status.OK);
+    assertEquals(0, controller.getPendingCallCount());
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void rejectsWhileSchedulingLagExceeded() {
+    ServerAdmissionController controller = ServerAdmissionController.newBuilder()
+        .maxSchedulingLag(50, TimeUnit.MILLISECONDS)
+        .lagProbeInterval(100, TimeUnit.MILLISECONDS)
+        .rejectionCode(Status.Code.RESOURCE_EXHAUSTED)
+        .setTicker(fakeClock.getDeadlineTicker())
+        .build();
+    LagProbe probe = controller.acquireLagProbe(fakeClock.getScheduledExecutorService());
+    assertSame(probe, controller.acquireLagProbe(fakeClock.getScheduledExecutorService()));
+    assertEquals(1, fakeClock.numPendingTasks());
+
+    fakeClock.forwardTime(100, TimeUnit.MILLISECONDS);
+    assertTrue(controller.tryAcquire(METHOD, MethodType.UNARY, probe).isAdmitted());
+
+    // The probe runs 200ms late.
+    fakeClock.forwardTime(300, TimeUnit.MILLISECONDS);
+    Permit permit = controller.tryAcquire(METHOD, MethodType.UNARY, probe);
+    assertFalse(permit.isAdmitted());
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, permit.getRejectionStatus().getCode());
+    assertThat(permit.getRejectionStatus().getDescription()).contains("scheduling lag");
+    assertEquals(1, controller.getRejectedCallCount());
+
+    fakeClock.forwardTime(100, TimeUnit.MILLISECONDS);
+    assertTrue(controller.tryAcquire(METHOD, MethodType.UNARY, probe).isAdmitted());
+
+    controller.releaseLagProbe(probe);
+    assertEquals(1, fakeClock.numPendingTasks());
+    controller.releaseLagProbe(probe);
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void rejectsWhileTooManyCallsPending() {
+    ServerAdmissionController controller = ServerAdmissionController.newBuilder()
+        .maxPendingCalls(2)
+        .setTicker(fakeClock.getDeadlineTicker())
+        .build();
+    Permit permit1 = controller.tryAcquire(METHOD, MethodType.UNARY, null);
+    Permit permit2 = controller.tryAcquire(METHOD, MethodType.UNARY, null);
+    Permit rejected = controller.tryAcquire(METHOD, MethodType.UNARY, null);
+    assertTrue(permit1.isAdmitted());
+    assertTrue(permit2.isAdmitted());
+    assertFalse(rejected.isAdmitted());
+    assertEquals(Status.Code.UNAVAILABLE, rejected.getRejectionStatus().getCode());
+    assertEquals(2, controller.getPendingCallCount());
+
+    permit1.callDequeued();
+    permit1.callDequeued();
+    assertEquals(1, controller.getPendingCallCount());
+    assertTrue(controller.tryAcquire(METHOD, MethodType.UNARY, null).isAdmitted());
+
+    permit1.release(Status.OK);
+    permit2.release(Status.OK);
+    assertEquals(1, controller.getPendingCallCount());
+  }
+
+  @Test
+  public void adaptiveLimitRejectsAboveLimit() {
+    ServerAdmissionController controller = ServerAdmissionController.newBuilder()
+        .adaptiveConcurrencyLimit(2, 1, 10)
+        .setTicker(fakeClock.getDeadlineTicker())
+        .build();
+    Permit permit = controller.tryAcquire(METHOD, MethodType.UNARY, null);
+    assertTrue(permit.isAdmitted());
+    assertTrue(controller.tryAcquire(METHOD, MethodType.UNARY, null).isAdmitted());
+    Permit rejected = controller.tryAcquire(METHOD, MethodType.UNARY, null);
+    assertFalse(rejected.isAdmitted());
+    assertThat(rejected.getRejectionStatus().getDescription()).contains("concurrency limit");
+    // Limits are per method.
+    assertTrue(controller.tryAcquire("service/other", MethodType.UNARY, null).isAdmitted());
+
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+    permit.release(Status.OK);
+    assertTrue(controller.tryAcquire(METHOD, MethodType.UNARY, null).isAdmitted());
+  }
+
+  @Test
+  public void unknownMethodsShareLimit() {
+    ServerAdmissionController controller = ServerAdmissionController.newBuilder()
+        .adaptiveConcurrencyLimit(1, 1, 10)
+        .setTicker(fakeClock.getDeadlineTicker())
+        .build();
+    assertTrue(controller.tryAcquire("unknown/a", null, null).isAdmitted());
+    assertFalse(controller.tryAcquire("unknown/b", null, null).isAdmitted());
+  }
+
+  @Test
+  public void adaptiveLimitOnlyAppliesToUnaryMethods() {
+    ServerAdmissionController controller = ServerAdmissionController.newBuilder()
+        .adaptiveConcurrencyLimit(2, 1, 10)
+        .setTicker(fakeClock.getDeadlineTicker())
+        .build();
+    List<Permit> streams = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Permit stream = controller.tryAcquire("service/watch", MethodType.SERVER_STREAMING, null);
+      assertTrue(stream.isAdmitted());
+      streams.add(stream);
+      assertTrue(controller.tryAcquire("service/chat", MethodType.BIDI_STREAMING, null)
+          .isAdmitted());
+    }
+
+    // Unary calls keep their own limit, even while the long-lived streams are open.
+    Permit unary = controller.tryAcquire(METHOD, MethodType.UNARY, null);
+    assertTrue(unary.isAdmitted());
+    assertTrue(controller.tryAcquire(METHOD, MethodType.UNARY, null).isAdmitted());
+    assertFalse(controller.tryAcquire(METHOD, MethodType.UNARY, null).isAdmitted());
+
+    // Streams lasting far longer than the unary calls don't shrink their limit.
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+    unary.release(Status.OK);
+    fakeClock.forwardTime(1, TimeUnit.HOURS);
+    for (Permit stream : streams) {
+      stream.release(Status.OK);
+    }
+    assertEquals(2, controller.getConcurrencyLimit(METHOD));
+    assertEquals(2, controller.getConcurrencyLimit("service/watch"));
+    assertTrue(controller.tryAcquire(METHOD, MethodType.UNARY, null).isAdmitted());
+  }
+
+  @Test
+  public void methodLimitsBounded() {
+    ServerAdmissionController controller = ServerAdmissionController.newBuilder()
+        .adaptiveConcurrencyLimit(1, 1, 10)
+        .setTicker(fakeClock.getDeadlineTicker())
+        .build();
+    for (int i = 0; i < ServerAdmissionController.MAX_METHOD_LIMITS; i++) {
+      assertTrue(controller.tryAcquire("service/m" + i, MethodType.UNARY, null).isAdmitted());
+    }
+
+    // Further methods share the limit of unknown methods.
+    assertTrue(controller.tryAcquire("service/extra1", MethodType.UNARY, null).isAdmitted());
+    assertFalse(controller.tryAcquire("service/extra2", MethodType.UNARY, null).isAdmitted());
+    assertFalse(controller.tryAcquire("unknown/a", null, null).isAdmitted());
+  }
+
+  @Test
+  public void gradientLimit_growsWhileLatencyStable() {
+    GradientLimit limit = new GradientLimit(10, 1, 100);
+    for (int i = 0; i < 100; i++) {
+      int acquired = limit.getLimit();
+      for (int j = 0; j < acquired; j++) {
+        assertTrue(limit.tryAcquire());
+      }
+      for (int j = 0; j < acquired; j++) {
+        limit.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+      }
+    }
+    assertEquals(100, limit.getLimit());
+  }
+
+  @Test
+  public void gradientLimit_shrinksWhenLatencyRises() {
+    GradientLimit limit = new GradientLimit(50, 1, 100);
+    for (int i = 0; i < 10; i++) {
+      runRound(limit, 30, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    int before = limit.getLimit();
+    for (int i = 0; i < 3; i++) {
+      runRound(limit, 30, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    assertThat(limit.getLimit()).isLessThan(before);
+  }
+
+  @Test
+  public void gradientLimit_backsOffOnDrop() {
+    GradientLimit limit = new GradientLimit(50, 10, 100);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(limit.tryAcquire());
+      limit.release(0, true);
+    }
+    assertEquals(10, limit.getLimit());
+  }
+
+  private static void runRound(GradientLimit limit, int calls, long rttNanos) {
+    int acquired = 0;
+    while (acquired < calls && limit.tryAcquire()) {
+      acquired++;
+    }
+    for (int i = 0; i < acquired; i++) {
+      limit.release(rttNanos, false);
+    }
+  }
+}
@@ -49,6 +49,7 @@ import io.perfmark.PerfMark;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -94,6 +95,7 @@ public class ServerCallImplTest {
     context = Context.ROOT.withCancellation();
     call = new ServerCallImpl<>(stream, UNARY_METHOD, requestHeaders, context,
         DecompressorRegistry.getDefaultInstance(), CompressorRegistry.getDefaultInstance(),
+        null,
         serverCallTracer, PerfMark.createTag());
   }
 
@@ -116,7 +118,7 @@ public class ServerCallImplTest {
     assertEquals(0, before.lastCallStartedNanos);
 
     call = new ServerCallImpl<>(stream, UNARY_METHOD, requestHeaders, context,
-        DecompressorRegistry.getDefaultInstance(), CompressorRegistry.getDefaultInstance(),
+        DecompressorRegistry.getDefaultInstance(), CompressorRegistry.getDefaultInstance(), null,
         tracer, PerfMark.createTag());
 
     // required boilerplate
@@ -190,6 +192,37 @@ public class ServerCallImplTest {
     verify(stream).flush();
   }
 
+  @Test
+  public void sendMessages_flushesOnce() {
+    ServerCallImpl<Long, Long> serverCall = new ServerCallImpl<>(
+        stream,
+        UNARY_METHOD.toBuilder().setType(MethodType.SERVER_STREAMING).build(),
+        requestHeaders,
+        context,
+        DecompressorRegistry.getDefaultInstance(),
+        CompressorRegistry.getDefaultInstance(),
+        null,
+        serverCallTracer,
+        PerfMark.createTag());
+    serverCall.sendHeaders(new Metadata());
+    serverCall.sendMessages(Arrays.asList(1L, 2L, 3L));
+
+    verify(stream, times(3)).writeMessage(isA(InputStream.class));
+    verify(stream, times(1)).flush();
+  }
+
+  @Test
+  public void sendMessages_serverSendsOne_closesWithoutFlushing() {
+    call.sendHeaders(new Metadata());
+    call.sendMessages(Arrays.asList(1L, 2L));
+
+    verify(stream, times(1)).writeMessage(isA(InputStream.class));
+    verify(stream, never()).flush();
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(stream).cancel(statusCaptor.capture());
+    assertEquals(ServerCallImpl.TOO_MANY_RESPONSES, statusCaptor.getValue().getDescription());
+  }
+
   @Test
   public void sendMessage_failsOnClosed() {
     call.sendHeaders(new Metadata());
@@ -238,6 +271,7 @@ public class ServerCallImplTest {
         context,
         DecompressorRegistry.getDefaultInstance(),
         CompressorRegistry.getDefaultInstance(),
+        null,
         serverCallTracer,
         PerfMark.createTag());
     serverCall.sendHeaders(new Metadata());
@@ -273,6 +307,7 @@ public class ServerCallImplTest {
         context,
         DecompressorRegistry.getDefaultInstance(),
         CompressorRegistry.getDefaultInstance(),
+        null,
         serverCallTracer,
         PerfMark.createTag());
     serverCall.sendHeaders(new Metadata());
@@ -311,6 +346,7 @@ public class ServerCallImplTest {
         context,
         DecompressorRegistry.getDefaultInstance(),
         CompressorRegistry.getDefaultInstance(),
+        null,
         serverCallTracer,
         PerfMark.createTag());
     serverCall.close(Status.OK, new Metadata());
@@ -101,4 +101,15 @@ public class ServerImplBuilderTest {
     List<? extends ServerStreamTracer.Factory> factories = builder.getTracerFactories();
     assertThat(factories).containsExactly(DUMMY_USER_TRACER);
   }
+
+  @Test
+  public void adaptiveCompression() {
+    assertThat(builder.adaptiveCompression).isFalse();
+
+    builder.adaptiveCompression(128, 0.8);
+
+    assertThat(builder.adaptiveCompression).isTrue();
+    assertThat(builder.minCompressedMessageSize).isEqualTo(128);
+    assertThat(builder.maxCompressionRatio).isEqualTo(0.8);
+  }
 }
@@ -607,6 +607,78 @@ public class ServerImplTest {
     verifyNoMoreInteractions(stream);
   }
 
+  @Test
+  public void admissionControllerRejectsStream() throws Exception {
+    builder.setAdmissionController(
+        ServerAdmissionController.newBuilder().maxPendingCalls(1).build());
+    createAndStartServer();
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    transportListener.transportReady(Attributes.EMPTY);
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(
+            streamTracerFactories, "Waiter/serve", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    ServerStream rejectedStream = mock(ServerStream.class);
+
+    // The first call is still waiting for the executor when the second one arrives.
+    transportListener.streamCreated(stream, "Waiter/serve", requestHeaders);
+    transportListener.streamCreated(rejectedStream, "Waiter/serve", requestHeaders);
+
+    verify(rejectedStream).setListener(isA(ServerStreamListener.class));
+    verify(rejectedStream).close(statusCaptor.capture(), any(Metadata.class));
+    Status status = statusCaptor.getValue();
+    assertEquals(Status.Code.UNAVAILABLE, status.getCode());
+    assertThat(status.getDescription()).startsWith("Server overloaded");
+    verify(rejectedStream, never()).statsTraceContext();
+
+    assertEquals(1, executor.runDueTasks());
+    verify(stream).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.UNIMPLEMENTED, statusCaptor.getValue().getCode());
+  }
+
+  @Test
+  public void admissionControllerLimitsFallbackRegistryMethodsSeparately() throws Exception {
+    builder.setAdmissionController(
+        ServerAdmissionController.newBuilder().adaptiveConcurrencyLimit(1, 1, 10).build());
+    MethodDescriptor<String, Integer> unaryMethod =
+        METHOD.toBuilder().setType(MethodDescriptor.MethodType.UNARY).build();
+    mutableFallbackRegistry.addService(
+        ServerServiceDefinition.builder(new ServiceDescriptor("Waiter", unaryMethod))
+            .addMethod(unaryMethod, new ServerCallHandler<String, Integer>() {
+              @Override
+              public ServerCall.Listener<String> startCall(
+                  ServerCall<String, Integer> call, Metadata headers) {
+                return callListener;
+              }
+            }).build());
+    createAndStartServer();
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    transportListener.transportReady(Attributes.EMPTY);
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(
+            streamTracerFactories, "Waiter/serve", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    ServerStream unknownMethodStream = mock(ServerStream.class);
+    when(unknownMethodStream.statsTraceContext()).thenReturn(statsTraceCtx);
+    ServerStream rejectedStream = mock(ServerStream.class);
+
+    transportListener.streamCreated(stream, "Waiter/serve", requestHeaders);
+    // Unknown methods don't share the limit of the method found in the fallback registry.
+    transportListener.streamCreated(unknownMethodStream, "Waiter/nonexist", requestHeaders);
+    transportListener.streamCreated(rejectedStream, "Waiter/serve", requestHeaders);
+
+    verify(stream, never()).close(any(Status.class), any(Metadata.class));
+    verify(unknownMethodStream, never()).close(any(Status.class), any(Metadata.class));
+    verify(rejectedStream).close(statusCaptor.capture(), any(Metadata.class));
+    assertThat(statusCaptor.getValue().getDescription())
+        .contains("concurrency limit of 1 reached for Waiter/serve");
+    executor.runDueTasks();
+  }
+
   @Test
   public void basicExchangeSuccessful() throws Exception {
     createAndStartServer();
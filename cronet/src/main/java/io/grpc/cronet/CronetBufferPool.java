@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.cronet;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.internal.ForwardingReadableBuffer;
+import io.grpc.internal.ReadableBuffer;
+import io.grpc.internal.ReadableBuffers;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A pool of direct {@link ByteBuffer}s for reading from and writing to Cronet streams, which
+ * otherwise would allocate a new direct buffer for every read and every outbound frame.
+ *
+ * <p>Buffers come in power-of-two size classes from {@link #MIN_SIZE} to {@link #MAX_SIZE}. Larger
+ * requests are allocated directly and never pooled.
+ */
+final class CronetBufferPool {
+  static final int MIN_SIZE = 4 * 1024;
+  static final int MAX_SIZE = 64 * 1024;
+
+  /** The most bytes we'll keep around, across all size classes. */
+  private static final int MAX_POOLED_BYTES = 256 * 1024;
+
+  private static final int NUM_SIZE_CLASSES =
+      Integer.numberOfTrailingZeros(MAX_SIZE) - Integer.numberOfTrailingZeros(MIN_SIZE) + 1;
+
+  private static final CronetBufferPool INSTANCE = new CronetBufferPool();
+
+  static CronetBufferPool getInstance() {
+    return INSTANCE;
+  }
+
+  @GuardedBy("this")
+  private final ArrayDeque<ByteBuffer>[] sizeClasses;
+  @GuardedBy("this")
+  private int pooledBytes;
+
+  private final AtomicLong allocations = new AtomicLong();
+
+  @VisibleForTesting
+  @SuppressWarnings("unchecked")
+  CronetBufferPool() {
+    sizeClasses = new ArrayDeque[NUM_SIZE_CLASSES];
+    for (int i = 0; i < NUM_SIZE_CLASSES; i++) {
+      sizeClasses[i] = new ArrayDeque<>();
+    }
+  }
+
+  /**
+   * Returns a cleared direct buffer with at least {@code size} bytes of capacity. It should be
+   * given back with {@link #release} once it's no longer used.
+   */
+  ByteBuffer acquire(int size) {
+    int sizeClass = sizeClass(size);
+    if (sizeClass < 0) {
+      allocations.incrementAndGet();
+      return ByteBuffer.allocateDirect(size);
+    }
+    synchronized (this) {
+      ByteBuffer buffer = sizeClasses[sizeClass].poll();
+      if (buffer != null) {
+        pooledBytes -= buffer.capacity();
+        return buffer;
+      }
+    }
+    allocations.incrementAndGet();
+    return ByteBuffer.allocateDirect(MIN_SIZE << sizeClass);
+  }
+
+  /**
+   * Returns a buffer to the pool. Buffers which didn't come from {@link #acquire} are ignored, as
+   * are those that don't fit in the pool.
+   */
+  void release(ByteBuffer buffer) {
+    int capacity = buffer.capacity();
+    if (!buffer.isDirect()
+        || capacity < MIN_SIZE
+        || capacity > MAX_SIZE
+        || Integer.bitCount(capacity) != 1) {
+      return;
+    }
+    int sizeClass = sizeClass(capacity);
+    ((Buffer) buffer).clear();
+    synchronized (this) {
+      if (pooledBytes + capacity <= MAX_POOLED_BYTES) {
+        sizeClasses[sizeClass].push(buffer);
+        pooledBytes += capacity;
+      }
+    }
+  }
+
+  /**
+   * Wraps the readable bytes of {@code buffer} for the deframer. The deframer hands slices of it
+   * out as messages, so the buffer is only released once it and every slice have been closed.
+   */
+  ReadableBuffer wrapForReading(ByteBuffer buffer) {
+    return new PooledReadableBuffer(ReadableBuffers.wrap(buffer), buffer, new AtomicInteger(1));
+  }
+
+  /** Returns the number of buffers allocated so far, rather than taken from the pool. */
+  long getAllocationCount() {
+    return allocations.get();
+  }
+
+  /** Returns the index of the smallest size class holding {@code size} bytes, or -1 if none. */
+  private static int sizeClass(int size) {
+    if (size > MAX_SIZE) {
+      return -1;
+    }
+    if (size <= MIN_SIZE) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_SIZE);
+  }
+
+  private final class PooledReadableBuffer extends ForwardingReadableBuffer {
+    private final ByteBuffer pooled;
+    private final AtomicInteger refCount;
+    private boolean closed;
+
+    PooledReadableBuffer(ReadableBuffer buf, ByteBuffer pooled, AtomicInteger refCount) {
+      super(buf);
+      this.pooled = pooled;
+      this.refCount = refCount;
+    }
+
+    @Override
+    public ReadableBuffer readBytes(int length) {
+      ReadableBuffer slice = super.readBytes(length);
+      refCount.incrementAndGet();
+      return new PooledReadableBuffer(slice, pooled, refCount);
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      super.close();
+      if (refCount.decrementAndGet() == 0) {
+        release(pooled);
+      }
+    }
+  }
+}
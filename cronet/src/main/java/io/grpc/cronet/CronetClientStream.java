@@ -35,7 +35,6 @@ import io.grpc.cronet.CronetChannelBuilder.StreamBuilderFactory;
 import io.grpc.internal.AbstractClientStream;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.Http2ClientStreamTransportState;
-import io.grpc.internal.ReadableBuffers;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TransportFrameUtil;
 import io.grpc.internal.TransportTracer;
@@ -62,7 +61,6 @@ import org.chromium.net.UrlResponseInfo;
  * Client stream for the cronet transport.
  */
 class CronetClientStream extends AbstractClientStream {
-  private static final int READ_BUFFER_CAPACITY = 4 * 1024;
   private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocateDirect(0);
   private static final String LOG_TAG = "grpc-java-cronet";
 
@@ -91,6 +89,7 @@ class CronetClientStream extends AbstractClientStream {
   private final Collection<Object> annotations;
   private final TransportState state;
   private final Sink sink = new Sink();
+  private final CronetBufferPool bufferPool = CronetBufferPool.getInstance();
   private StreamBuilderFactory streamFactory;
 
   CronetClientStream(
@@ -110,8 +109,8 @@ class CronetClientStream extends AbstractClientStream {
       boolean useGetForSafeMethods,
       boolean usePutForIdempotentMethods) {
     super(
-        new CronetWritableBufferAllocator(), statsTraceCtx, transportTracer, headers, callOptions,
-        useGetForSafeMethods && method.isSafe());
+        new CronetWritableBufferAllocator(CronetBufferPool.getInstance()), statsTraceCtx,
+        transportTracer, headers, callOptions, useGetForSafeMethods && method.isSafe());
     this.url = Preconditions.checkNotNull(url, "url");
     this.userAgent = Preconditions.checkNotNull(userAgent, "userAgent");
     this.statsTraceCtx = Preconditions.checkNotNull(statsTraceCtx, "statsTraceCtx");
@@ -267,6 +266,11 @@ class CronetClientStream extends AbstractClientStream {
     private boolean readClosed;
     @GuardedBy("lock")
     private boolean firstWriteComplete;
+    /**
+     * The size of the next read buffer, which follows the amount of data recent reads returned.
+     */
+    @GuardedBy("lock")
+    private int readBufferSize = CronetBufferPool.MIN_SIZE;
 
     public TransportState(
         int maxMessageSize, StatsTraceContext statsTraceCtx, Object lock,
@@ -313,10 +317,29 @@ class CronetClientStream extends AbstractClientStream {
       Preconditions.checkNotNull(stream, "stream must not be null");
       bytesPendingProcess -= processedBytes;
       if (bytesPendingProcess == 0 && !readClosed) {
-        if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
-          Log.v(LOG_TAG, "BidirectionalStream.read");
-        }
-        stream.read(ByteBuffer.allocateDirect(READ_BUFFER_CAPACITY));
+        streamRead();
+      }
+    }
+
+    @GuardedBy("lock")
+    private void streamRead() {
+      if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
+        Log.v(LOG_TAG, "BidirectionalStream.read");
+      }
+      stream.read(bufferPool.acquire(readBufferSize));
+    }
+
+    /**
+     * Grows the read buffer when reads fill it, and shrinks it when reads use only a fraction of
+     * it.
+     */
+    @GuardedBy("lock")
+    private void adaptReadBufferSize(ByteBuffer buffer) {
+      int bytesRead = buffer.remaining();
+      if (bytesRead >= buffer.capacity()) {
+        readBufferSize = Math.min(readBufferSize * 2, CronetBufferPool.MAX_SIZE);
+      } else if (bytesRead <= readBufferSize / 4) {
+        readBufferSize = Math.max(readBufferSize / 2, CronetBufferPool.MIN_SIZE);
       }
     }
 
@@ -332,13 +355,13 @@ class CronetClientStream extends AbstractClientStream {
     @GuardedBy("lock")
     private void transportDataReceived(ByteBuffer buffer, boolean endOfStream) {
       bytesPendingProcess += buffer.remaining();
-      super.transportDataReceived(ReadableBuffers.wrap(buffer), endOfStream);
+      super.transportDataReceived(bufferPool.wrapForReading(buffer), endOfStream);
     }
 
     @GuardedBy("lock")
     private void clearPendingData() {
       for (PendingData data : pendingData) {
-        data.buffer.clear();
+        bufferPool.release(data.buffer);
       }
       pendingData.clear();
     }
@@ -350,10 +373,16 @@ class CronetClientStream extends AbstractClientStream {
 
     @GuardedBy("lock")
     private void writeAllPendingData() {
+      // Everything written before the stream was ready goes out with a single flush.
+      boolean flush = false;
       for (PendingData data : pendingData) {
-        streamWrite(data.buffer, data.endOfStream, data.flush);
+        streamWrite(data.buffer, data.endOfStream, false);
+        flush |= data.flush;
       }
       pendingData.clear();
+      if (flush) {
+        streamFlush();
+      }
     }
   }
 
@@ -426,13 +455,20 @@ class CronetClientStream extends AbstractClientStream {
     }
     stream.write(buffer, endOfStream);
     if (flush) {
-      if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
-        Log.v(LOG_TAG, "BidirectionalStream.flush");
-      }
-      stream.flush();
+      streamFlush();
     }
   }
 
+  private void streamFlush() {
+    if (stream == null) {
+      return;
+    }
+    if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
+      Log.v(LOG_TAG, "BidirectionalStream.flush");
+    }
+    stream.flush();
+  }
+
   private void finishStream(Status status) {
     transport.finishStream(this, status);
   }
@@ -463,10 +499,11 @@ class CronetClientStream extends AbstractClientStream {
     public void onResponseHeadersReceived(BidirectionalStream stream, UrlResponseInfo info) {
       if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
         Log.v(LOG_TAG, "onResponseHeadersReceived. Header=" + info.getAllHeadersAsList());
-        Log.v(LOG_TAG, "BidirectionalStream.read");
       }
       reportHeaders(info.getAllHeadersAsList(), false);
-      stream.read(ByteBuffer.allocateDirect(READ_BUFFER_CAPACITY));
+      synchronized (state.lock) {
+        state.streamRead();
+      }
     }
 
     @Override
@@ -479,10 +516,13 @@ class CronetClientStream extends AbstractClientStream {
 
       synchronized (state.lock) {
         state.readClosed = endOfStream;
+        state.adaptReadBufferSize(buffer);
         // The endOfStream in gRPC has a different meaning so we always call transportDataReceived
         // with endOfStream=false.
         if (buffer.remaining() != 0) {
           state.transportDataReceived(buffer, false);
+        } else {
+          bufferPool.release(buffer);
         }
       }
       if (endOfStream && trailerList != null) {
@@ -506,6 +546,8 @@ class CronetClientStream extends AbstractClientStream {
         }
         state.onSentBytes(buffer.position());
       }
+      // Cronet is done with the buffer.
+      bufferPool.release(buffer);
     }
 
     @Override
@@ -17,14 +17,17 @@
 package io.grpc.cronet;
 
 import com.google.common.base.Preconditions;
-import io.grpc.internal.WritableBuffer;
+import io.grpc.internal.ByteBufferWritableBuffer;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
-class CronetWritableBuffer implements WritableBuffer {
+class CronetWritableBuffer implements ByteBufferWritableBuffer {
   private final ByteBuffer buffer;
+  private final CronetBufferPool pool;
 
-  public CronetWritableBuffer(ByteBuffer buffer, int capacity) {
+  public CronetWritableBuffer(ByteBuffer buffer, CronetBufferPool pool) {
     this.buffer = Preconditions.checkNotNull(buffer, "buffer");
+    this.pool = Preconditions.checkNotNull(pool, "pool");
   }
 
   @Override
@@ -37,6 +40,17 @@ class CronetWritableBuffer implements WritableBuffer {
     buffer.put(b);
   }
 
+  @Override
+  public ByteBuffer claimByteBuffer(int length) {
+    if (length > buffer.remaining()) {
+      throw new IndexOutOfBoundsException("length " + length + " > " + buffer.remaining());
+    }
+    ByteBuffer claimed = buffer.duplicate();
+    ((Buffer) claimed).limit(buffer.position() + length);
+    ((Buffer) buffer).position(buffer.position() + length);
+    return claimed;
+  }
+
   @Override
   public int writableBytes() {
     return buffer.remaining();
@@ -49,6 +63,7 @@ class CronetWritableBuffer implements WritableBuffer {
 
   @Override
   public void release() {
+    pool.release(buffer);
   }
 
   ByteBuffer buffer() {
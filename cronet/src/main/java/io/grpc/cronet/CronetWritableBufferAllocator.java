@@ -16,8 +16,10 @@
 
 package io.grpc.cronet;
 
+import com.google.common.base.Preconditions;
 import io.grpc.internal.WritableBuffer;
 import io.grpc.internal.WritableBufferAllocator;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 /**
@@ -27,15 +29,18 @@ class CronetWritableBufferAllocator implements WritableBufferAllocator {
   // Set the maximum buffer size to 1MB
   private static final int MAX_BUFFER = 1024 * 1024;
 
-  /**
-   * Construct a new instance.
-   */
-  CronetWritableBufferAllocator() {
+  private final CronetBufferPool pool;
+
+  CronetWritableBufferAllocator(CronetBufferPool pool) {
+    this.pool = Preconditions.checkNotNull(pool, "pool");
   }
 
   @Override
   public WritableBuffer allocate(int capacityHint) {
     capacityHint = Math.min(MAX_BUFFER, capacityHint);
-    return new CronetWritableBuffer(ByteBuffer.allocateDirect(capacityHint), capacityHint);
+    ByteBuffer buffer = pool.acquire(capacityHint);
+    // Pooled buffers may be larger than asked for; keep frames to the requested size.
+    ((Buffer) buffer).limit(capacityHint);
+    return new CronetWritableBuffer(buffer, pool);
   }
 }
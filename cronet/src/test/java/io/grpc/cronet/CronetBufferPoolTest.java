@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.cronet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import io.grpc.internal.ReadableBuffer;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CronetBufferPoolTest {
+  private final CronetBufferPool pool = new CronetBufferPool();
+
+  @Test
+  public void acquire_roundsUpToSizeClass() {
+    assertEquals(4096, pool.acquire(10).capacity());
+    assertEquals(8192, pool.acquire(4097).capacity());
+    assertEquals(65536, pool.acquire(65536).capacity());
+    assertEquals(65537, pool.acquire(65537).capacity());
+    assertEquals(4, pool.getAllocationCount());
+  }
+
+  @Test
+  public void release_reusesBuffer() {
+    ByteBuffer buffer = pool.acquire(5000);
+    buffer.put((byte) 1);
+    pool.release(buffer);
+
+    ByteBuffer reused = pool.acquire(6000);
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+    assertEquals(reused.capacity(), reused.limit());
+    assertEquals(1, pool.getAllocationCount());
+  }
+
+  @Test
+  public void release_ignoresForeignBuffers() {
+    pool.release(ByteBuffer.allocate(4096));
+    pool.release(ByteBuffer.allocateDirect(100));
+    pool.release(ByteBuffer.allocateDirect(5000));
+    pool.release(ByteBuffer.allocateDirect(128 * 1024));
+    pool.acquire(10);
+    assertEquals(1, pool.getAllocationCount());
+  }
+
+  @Test
+  public void release_boundsPooledBytes() {
+    ByteBuffer[] buffers = new ByteBuffer[5];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = pool.acquire(65536);
+    }
+    for (ByteBuffer buffer : buffers) {
+      pool.release(buffer);
+    }
+    for (int i = 0; i < buffers.length; i++) {
+      pool.acquire(65536);
+    }
+    // Only four fit in the pool.
+    assertEquals(6, pool.getAllocationCount());
+  }
+
+  @Test
+  public void wrapForReading_releasesOnceAllSlicesClosed() {
+    ByteBuffer buffer = pool.acquire(10);
+    buffer.put(new byte[10]);
+    buffer.flip();
+    ReadableBuffer readable = pool.wrapForReading(buffer);
+    ReadableBuffer slice = readable.readBytes(4);
+    readable.close();
+    readable.close();
+    assertNotSame(buffer, pool.acquire(10));
+
+    slice.close();
+    assertSame(buffer, pool.acquire(10));
+  }
+}
@@ -23,6 +23,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -44,6 +45,8 @@ import io.grpc.internal.TransportTracer;
 import io.grpc.internal.WritableBuffer;
 import io.grpc.testing.TestMethodDescriptors;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -63,6 +66,8 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
@@ -162,7 +167,8 @@ public final class CronetClientStreamTest {
     BidirectionalStream.Callback callback = callbackCaptor.getValue();
 
     // Create 5 frames to send.
-    CronetWritableBufferAllocator allocator = new CronetWritableBufferAllocator();
+    CronetWritableBufferAllocator allocator =
+        new CronetWritableBufferAllocator(new CronetBufferPool());
     String[] requests = new String[5];
     WritableBuffer[] buffers = new WritableBuffer[5];
     for (int i = 0; i < 5; ++i) {
@@ -181,7 +187,8 @@ public final class CronetClientStreamTest {
     verify(cronetStream, times(5)).write(isA(ByteBuffer.class), eq(false));
     ByteBuffer fakeBuffer = ByteBuffer.allocateDirect(8);
     ((Buffer) fakeBuffer).position(8);
-    verify(cronetStream, times(2)).flush();
+    // The pending writes go out with a single flush.
+    verify(cronetStream, times(1)).flush();
 
     // 5 onWriteCompleted callbacks for previous writes.
     callback.onWriteCompleted(cronetStream, null, fakeBuffer, false);
@@ -197,7 +204,7 @@ public final class CronetClientStreamTest {
     // Send end of stream. write will be immediately called since stream is ready.
     clientStream.abstractClientStreamSink().writeFrame(null, true, true, 1);
     verify(cronetStream, times(1)).write(isA(ByteBuffer.class), eq(true));
-    verify(cronetStream, times(3)).flush();
+    verify(cronetStream, times(2)).flush();
   }
 
   private static List<Map.Entry<String, String>> responseHeader(String status) {
@@ -278,6 +285,84 @@ public final class CronetClientStreamTest {
     verify(cronetStream, times(2)).read(isA(ByteBuffer.class));
   }
 
+  @Test
+  public void read_reusesBuffers() {
+    BidirectionalStream.Callback callback = startReading();
+    UrlResponseInfo info =
+        new UrlResponseInfoImpl(
+            new ArrayList<String>(), 200, "", responseHeader("200"), false, "", "");
+    CronetBufferPool pool = CronetBufferPool.getInstance();
+    long allocations = 0;
+    for (int i = 0; i < 100; i++) {
+      if (i == 2) {
+        // A message's buffer only comes back once the message is consumed, by which time the next
+        // read has started. So we need two buffers.
+        allocations = pool.getAllocationCount();
+      }
+      ByteBuffer buffer = lastReadBuffer(i + 1);
+      buffer.put(createMessageFrame(("response" + i).getBytes(Charset.forName("UTF-8"))).array());
+      callback.onReadCompleted(cronetStream, info, buffer, false);
+    }
+    verify(clientListener, times(100)).messagesAvailable(isA(MessageProducer.class));
+    assertEquals(allocations, pool.getAllocationCount());
+  }
+
+  @Test
+  public void read_adaptsBufferSize() {
+    BidirectionalStream.Callback callback = startReading();
+    UrlResponseInfo info =
+        new UrlResponseInfoImpl(
+            new ArrayList<String>(), 200, "", responseHeader("200"), false, "", "");
+    ByteBuffer buffer = lastReadBuffer(1);
+    assertEquals(4096, buffer.capacity());
+
+    // Fill the buffer with 64-byte frames.
+    while (buffer.hasRemaining()) {
+      buffer.put(createMessageFrame(new byte[59]).array());
+    }
+    callback.onReadCompleted(cronetStream, info, buffer, false);
+    buffer = lastReadBuffer(2);
+    assertEquals(8192, buffer.capacity());
+
+    buffer.put(createMessageFrame(new byte[59]).array());
+    callback.onReadCompleted(cronetStream, info, buffer, false);
+    assertEquals(4096, lastReadBuffer(3).capacity());
+  }
+
+  /** Receives response headers, and consumes every message as it arrives. */
+  private BidirectionalStream.Callback startReading() {
+    ArgumentCaptor<BidirectionalStream.Callback> callbackCaptor =
+        ArgumentCaptor.forClass(BidirectionalStream.Callback.class);
+    verify(factory)
+        .newBidirectionalStreamBuilder(
+            isA(String.class), callbackCaptor.capture(), isA(Executor.class));
+    BidirectionalStream.Callback callback = callbackCaptor.getValue();
+    Answer<Void> consumeMessages = new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws IOException {
+        MessageProducer producer = invocation.getArgument(0);
+        InputStream message;
+        while ((message = producer.next()) != null) {
+          message.close();
+        }
+        return null;
+      }
+    };
+    doAnswer(consumeMessages).when(clientListener).messagesAvailable(isA(MessageProducer.class));
+    clientStream.request(Integer.MAX_VALUE);
+    callback.onResponseHeadersReceived(
+        cronetStream,
+        new UrlResponseInfoImpl(
+            new ArrayList<String>(), 200, "", responseHeader("200"), false, "", ""));
+    return callback;
+  }
+
+  private ByteBuffer lastReadBuffer(int numReads) {
+    ArgumentCaptor<ByteBuffer> bufferCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
+    verify(cronetStream, times(numReads)).read(bufferCaptor.capture());
+    return bufferCaptor.getValue();
+  }
+
   @Test
   public void streamSucceeded() {
     ArgumentCaptor<BidirectionalStream.Callback> callbackCaptor =
@@ -290,7 +375,8 @@ public final class CronetClientStreamTest {
     callback.onStreamReady(cronetStream);
     verify(cronetStream, times(0)).write(isA(ByteBuffer.class), isA(Boolean.class));
     // Send the first data frame.
-    CronetWritableBufferAllocator allocator = new CronetWritableBufferAllocator();
+    CronetWritableBufferAllocator allocator =
+        new CronetWritableBufferAllocator(new CronetBufferPool());
     String request = new String("request");
     WritableBuffer writableBuffer = allocator.allocate(request.length());
     writableBuffer.write(request.getBytes(Charset.forName("UTF-8")), 0, request.length());
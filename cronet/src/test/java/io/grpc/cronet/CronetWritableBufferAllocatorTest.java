@@ -28,14 +28,16 @@ public final class CronetWritableBufferAllocatorTest {
 
   @Test
   public void testAllocate() throws Exception {
-    CronetWritableBufferAllocator allocator = new CronetWritableBufferAllocator();
+    CronetWritableBufferAllocator allocator =
+        new CronetWritableBufferAllocator(new CronetBufferPool());
     WritableBuffer buffer = allocator.allocate(1000);
     assertEquals(1000, buffer.writableBytes());
   }
 
   @Test
   public void testAllocateLargeBuffer() throws Exception {
-    CronetWritableBufferAllocator allocator = new CronetWritableBufferAllocator();
+    CronetWritableBufferAllocator allocator =
+        new CronetWritableBufferAllocator(new CronetBufferPool());
     // Ask for 1GB
     WritableBuffer buffer = allocator.allocate(1024 * 1024 * 1024);
     // Only get 1MB
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.flow;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.concurrent.Flow;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Utility functions for calls with {@link Flow.Publisher}s of messages, as used by generated flow
+ * stubs. The returned publishers are cold: each subscriber starts a call of its own.
+ *
+ * <p>Flow control follows the subscribers. Responses are only read from the transport once the
+ * response subscriber requested them, and requests are only requested from their publisher while
+ * the call {@link ClientCall#isReady is ready}, one at a time. A slow consumer therefore slows
+ * down its peer, instead of having messages buffered for it without bound.
+ */
+@ExperimentalApi("There is no plan to make this API stable while Flow.Publisher stubs are opt-in")
+public final class FlowClientCalls {
+
+  // Prevent instantiation
+  private FlowClientCalls() {}
+
+  /**
+   * Returns a publisher that, for each subscriber, executes a unary call and publishes its
+   * response.
+   */
+  public static <ReqT, RespT> Flow.Publisher<RespT> unaryCall(
+      Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+      ReqT request) {
+    return new CallPublisher<>(
+        channel, method, callOptions, checkNotNull(request, "request"), null);
+  }
+
+  /**
+   * Returns a publisher that, for each subscriber, executes a server-streaming call and publishes
+   * its responses.
+   */
+  public static <ReqT, RespT> Flow.Publisher<RespT> serverStreamingCall(
+      Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+      ReqT request) {
+    return new CallPublisher<>(
+        channel, method, callOptions, checkNotNull(request, "request"), null);
+  }
+
+  /**
+   * Returns a publisher that, for each subscriber, executes a client-streaming call sending the
+   * messages of a new subscription to {@code requests}, and publishes its response.
+   */
+  public static <ReqT, RespT> Flow.Publisher<RespT> clientStreamingCall(
+      Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+      Flow.Publisher<ReqT> requests) {
+    return new CallPublisher<>(
+        channel, method, callOptions, null, checkNotNull(requests, "requests"));
+  }
+
+  /**
+   * Returns a publisher that, for each subscriber, executes a bidirectional-streaming call sending
+   * the messages of a new subscription to {@code requests}, and publishes its responses.
+   */
+  public static <ReqT, RespT> Flow.Publisher<RespT> bidiStreamingCall(
+      Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+      Flow.Publisher<ReqT> requests) {
+    return new CallPublisher<>(
+        channel, method, callOptions, null, checkNotNull(requests, "requests"));
+  }
+
+  private static final class CallPublisher<ReqT, RespT> implements Flow.Publisher<RespT> {
+    private final Channel channel;
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final CallOptions callOptions;
+    @Nullable
+    private final ReqT request;
+    @Nullable
+    private final Flow.Publisher<ReqT> requests;
+
+    CallPublisher(
+        Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+        @Nullable ReqT request, @Nullable Flow.Publisher<ReqT> requests) {
+      this.channel = checkNotNull(channel, "channel");
+      this.method = checkNotNull(method, "method");
+      this.callOptions = checkNotNull(callOptions, "callOptions");
+      this.request = request;
+      this.requests = requests;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RespT> subscriber) {
+      checkNotNull(subscriber, "subscriber");
+      new CallSubscription<>(channel.newCall(method, callOptions)).start(
+          subscriber, request, requests);
+    }
+  }
+
+  private static final class CallSubscription<ReqT, RespT> extends InboundSubscription<RespT> {
+    private final ClientCall<ReqT, RespT> call;
+    private final RequestSubscriber requestSubscriber = new RequestSubscriber();
+    @GuardedBy("lock")
+    private boolean callCancelled;
+
+    CallSubscription(ClientCall<ReqT, RespT> call) {
+      this.call = call;
+    }
+
+    void start(
+        Flow.Subscriber<? super RespT> subscriber, @Nullable ReqT request,
+        @Nullable Flow.Publisher<ReqT> requests) {
+      synchronized (lock) {
+        call.start(new Listener(), new Metadata());
+        if (request != null) {
+          call.sendMessage(request);
+          call.halfClose();
+        }
+      }
+      subscribe(subscriber);
+      if (requests != null) {
+        requests.subscribe(requestSubscriber);
+      }
+    }
+
+    @Override
+    void requestMessages(int count) {
+      call.request(count);
+    }
+
+    @Override
+    void cancelCall(@Nullable Throwable cause) {
+      if (callCancelled) {
+        return;
+      }
+      callCancelled = true;
+      call.cancel(cause == null ? "Cancelled by subscriber" : "Invalid demand", cause);
+    }
+
+    private final class Listener extends ClientCall.Listener<RespT> {
+      @Override
+      public void onMessage(RespT message) {
+        CallSubscription.this.onMessage(message);
+      }
+
+      @Override
+      public void onReady() {
+        requestSubscriber.requestIfReady();
+      }
+
+      @Override
+      public void onClose(Status status, Metadata trailers) {
+        requestSubscriber.cancel();
+        CallSubscription.this.onClose(status.isOk() ? null : status.asRuntimeException(trailers));
+      }
+    }
+
+    private final class RequestSubscriber extends OutboundSubscriber<ReqT> {
+      RequestSubscriber() {
+        super(lock);
+      }
+
+      @Override
+      boolean isReady() {
+        return !callCancelled && call.isReady();
+      }
+
+      @Override
+      void send(ReqT message) {
+        if (!callCancelled) {
+          call.sendMessage(message);
+        }
+      }
+
+      @Override
+      void complete() {
+        if (!callCancelled) {
+          call.halfClose();
+        }
+      }
+
+      @Override
+      void fail(Throwable t) {
+        if (!callCancelled) {
+          callCancelled = true;
+          call.cancel("Request publisher failed", t);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.flow;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Utility functions for adapting {@link ServerCallHandler}s to service implementations with
+ * {@link Flow.Publisher}s of messages, meant to be used by the generated code.
+ *
+ * <p>Flow control follows the subscribers. Requests are only read from the transport once the
+ * subscriber to the requests requested them, and responses are only requested from their
+ * publisher while the call {@link ServerCall#isReady is ready}, one at a time.
+ */
+@ExperimentalApi("There is no plan to make this API stable while Flow.Publisher stubs are opt-in")
+public final class FlowServerCalls {
+
+  @VisibleForTesting
+  static final String TOO_MANY_REQUESTS = "Too many requests";
+  @VisibleForTesting
+  static final String MISSING_REQUEST = "Half-closed without a request";
+
+  private FlowServerCalls() {
+  }
+
+  /**
+   * Creates a {@link ServerCallHandler} for a unary call method of the service.
+   *
+   * @param method an adaptor to the actual method on the service implementation.
+   */
+  public static <ReqT, RespT> ServerCallHandler<ReqT, RespT> unaryCall(
+      UnaryMethod<ReqT, RespT> method) {
+    return new FlowServerCallHandler<>(checkNotNull(method, "method"), null);
+  }
+
+  /**
+   * Creates a {@link ServerCallHandler} for a server streaming method of the service.
+   *
+   * @param method an adaptor to the actual method on the service implementation.
+   */
+  public static <ReqT, RespT> ServerCallHandler<ReqT, RespT> serverStreamingCall(
+      ServerStreamingMethod<ReqT, RespT> method) {
+    return new FlowServerCallHandler<>(checkNotNull(method, "method"), null);
+  }
+
+  /**
+   * Creates a {@link ServerCallHandler} for a client streaming method of the service.
+   *
+   * @param method an adaptor to the actual method on the service implementation.
+   */
+  public static <ReqT, RespT> ServerCallHandler<ReqT, RespT> clientStreamingCall(
+      ClientStreamingMethod<ReqT, RespT> method) {
+    return new FlowServerCallHandler<>(null, checkNotNull(method, "method"));
+  }
+
+  /**
+   * Creates a {@link ServerCallHandler} for a bidi streaming method of the service.
+   *
+   * @param method an adaptor to the actual method on the service implementation.
+   */
+  public static <ReqT, RespT> ServerCallHandler<ReqT, RespT> bidiStreamingCall(
+      BidiStreamingMethod<ReqT, RespT> method) {
+    return new FlowServerCallHandler<>(null, checkNotNull(method, "method"));
+  }
+
+  /**
+   * Returns a publisher that fails with {@code UNIMPLEMENTED}, for the default implementations of
+   * methods in generated flow services.
+   */
+  public static <T> Flow.Publisher<T> unimplemented(MethodDescriptor<?, ?> methodDescriptor) {
+    checkNotNull(methodDescriptor, "methodDescriptor");
+    final Status status = Status.UNIMPLEMENTED
+        .withDescription(String.format("Method %s is unimplemented",
+            methodDescriptor.getFullMethodName()));
+    return new Flow.Publisher<T>() {
+      @Override
+      public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscriber.onSubscribe(NoopSubscription.INSTANCE);
+        subscriber.onError(status.asRuntimeException());
+      }
+    };
+  }
+
+  /**
+   * Adaptor to a unary call method.
+   */
+  public interface UnaryMethod<ReqT, RespT> extends UnaryRequestMethod<ReqT, RespT> {
+    @Override Flow.Publisher<RespT> invoke(ReqT request);
+  }
+
+  /**
+   * Adaptor to a server streaming method.
+   */
+  public interface ServerStreamingMethod<ReqT, RespT> extends UnaryRequestMethod<ReqT, RespT> {
+    @Override Flow.Publisher<RespT> invoke(ReqT request);
+  }
+
+  /**
+   * Adaptor to a client streaming method.
+   */
+  public interface ClientStreamingMethod<ReqT, RespT> extends StreamingRequestMethod<ReqT, RespT> {
+    @Override Flow.Publisher<RespT> invoke(Flow.Publisher<ReqT> requests);
+  }
+
+  /**
+   * Adaptor to a bidirectional streaming method.
+   */
+  public interface BidiStreamingMethod<ReqT, RespT> extends StreamingRequestMethod<ReqT, RespT> {
+    @Override Flow.Publisher<RespT> invoke(Flow.Publisher<ReqT> requests);
+  }
+
+  private interface UnaryRequestMethod<ReqT, RespT> {
+    Flow.Publisher<RespT> invoke(ReqT request);
+  }
+
+  private interface StreamingRequestMethod<ReqT, RespT> {
+    Flow.Publisher<RespT> invoke(Flow.Publisher<ReqT> requests);
+  }
+
+  private static final class FlowServerCallHandler<ReqT, RespT>
+      implements ServerCallHandler<ReqT, RespT> {
+    @Nullable
+    private final UnaryRequestMethod<ReqT, RespT> unaryRequestMethod;
+    @Nullable
+    private final StreamingRequestMethod<ReqT, RespT> streamingRequestMethod;
+
+    FlowServerCallHandler(
+        @Nullable UnaryRequestMethod<ReqT, RespT> unaryRequestMethod,
+        @Nullable StreamingRequestMethod<ReqT, RespT> streamingRequestMethod) {
+      this.unaryRequestMethod = unaryRequestMethod;
+      this.streamingRequestMethod = streamingRequestMethod;
+    }
+
+    @Override
+    public ServerCall.Listener<ReqT> startCall(ServerCall<ReqT, RespT> call, Metadata headers) {
+      FlowServerCall<ReqT, RespT> flowCall = new FlowServerCall<>(call, unaryRequestMethod);
+      if (streamingRequestMethod != null) {
+        flowCall.respond(streamingRequestMethod.invoke(flowCall.requests()));
+      } else {
+        // We expect only 1 request, but we ask for 2 requests here so that if a misbehaving client
+        // sends more than 1 requests, it can be caught.
+        flowCall.requestMessages(2);
+      }
+      return flowCall.new Listener();
+    }
+  }
+
+  private static final class FlowServerCall<ReqT, RespT> extends InboundSubscription<ReqT> {
+    private final ServerCall<ReqT, RespT> call;
+    @Nullable
+    private final UnaryRequestMethod<ReqT, RespT> unaryRequestMethod;
+    private final ResponseSubscriber responseSubscriber = new ResponseSubscriber();
+    private final AtomicBoolean requestsSubscribed = new AtomicBoolean();
+    // Only accessed from the listener.
+    @Nullable
+    private ReqT request;
+    @GuardedBy("lock")
+    private boolean headersSent;
+    @GuardedBy("lock")
+    private boolean callClosed;
+
+    FlowServerCall(
+        ServerCall<ReqT, RespT> call,
+        @Nullable UnaryRequestMethod<ReqT, RespT> unaryRequestMethod) {
+      this.call = call;
+      this.unaryRequestMethod = unaryRequestMethod;
+    }
+
+    /** Returns the publisher of the requests, which allows a single subscriber. */
+    Flow.Publisher<ReqT> requests() {
+      return new Flow.Publisher<ReqT>() {
+        @Override
+        public void subscribe(Flow.Subscriber<? super ReqT> subscriber) {
+          checkNotNull(subscriber, "subscriber");
+          if (!requestsSubscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(NoopSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("Requests were already subscribed to"));
+            return;
+          }
+          FlowServerCall.this.subscribe(subscriber);
+        }
+      };
+    }
+
+    void respond(Flow.Publisher<RespT> responses) {
+      checkNotNull(responses, "responses").subscribe(responseSubscriber);
+    }
+
+    @Override
+    void requestMessages(int count) {
+      synchronized (lock) {
+        if (!callClosed) {
+          call.request(count);
+        }
+      }
+    }
+
+    @Override
+    void cancelCall(@Nullable Throwable cause) {
+      // Without a cause, the subscriber only lost interest in further requests, which doesn't
+      // stop the responses.
+      if (cause != null) {
+        closeCall(Status.INTERNAL.withDescription("Invalid demand").withCause(cause));
+      }
+    }
+
+    @GuardedBy("lock")
+    private void closeCall(Status status) {
+      Metadata trailers = Status.trailersFromThrowable(status.getCause());
+      closeCall(status, trailers == null ? new Metadata() : trailers);
+    }
+
+    @GuardedBy("lock")
+    private void closeCall(Status status, Metadata trailers) {
+      if (!callClosed) {
+        callClosed = true;
+        call.close(status, trailers);
+      }
+    }
+
+    private final class Listener extends ServerCall.Listener<ReqT> {
+      @Override
+      public void onMessage(ReqT message) {
+        if (unaryRequestMethod == null) {
+          FlowServerCall.this.onMessage(message);
+          return;
+        }
+        if (request != null) {
+          synchronized (lock) {
+            closeCall(Status.INTERNAL.withDescription(TOO_MANY_REQUESTS), new Metadata());
+          }
+          return;
+        }
+        request = message;
+      }
+
+      @Override
+      public void onHalfClose() {
+        if (unaryRequestMethod == null) {
+          FlowServerCall.this.onClose(null);
+          return;
+        }
+        if (request == null) {
+          synchronized (lock) {
+            closeCall(Status.INTERNAL.withDescription(MISSING_REQUEST), new Metadata());
+          }
+          return;
+        }
+        respond(unaryRequestMethod.invoke(request));
+      }
+
+      @Override
+      public void onCancel() {
+        synchronized (lock) {
+          callClosed = true;
+        }
+        responseSubscriber.cancel();
+        FlowServerCall.this.onClose(
+            Status.CANCELLED.withDescription("client cancelled").asRuntimeException());
+      }
+
+      @Override
+      public void onComplete() {
+        responseSubscriber.cancel();
+        // Requests the client is still sending won't be received anymore.
+        FlowServerCall.this.onClose(
+            Status.CANCELLED.withDescription("call already closed").asRuntimeException());
+      }
+
+      @Override
+      public void onReady() {
+        responseSubscriber.requestIfReady();
+      }
+    }
+
+    private final class ResponseSubscriber extends OutboundSubscriber<RespT> {
+      ResponseSubscriber() {
+        super(lock);
+      }
+
+      @Override
+      boolean isReady() {
+        return !callClosed && call.isReady();
+      }
+
+      @Override
+      void send(RespT message) {
+        if (callClosed) {
+          return;
+        }
+        if (!headersSent) {
+          call.sendHeaders(new Metadata());
+          headersSent = true;
+        }
+        call.sendMessage(message);
+      }
+
+      @Override
+      void complete() {
+        closeCall(Status.OK, new Metadata());
+      }
+
+      @Override
+      void fail(Throwable t) {
+        Metadata trailers = Status.trailersFromThrowable(t);
+        closeCall(Status.fromThrowable(t), trailers == null ? new Metadata() : trailers);
+      }
+    }
+  }
+
+  private static final class NoopSubscription implements Flow.Subscription {
+    static final NoopSubscription INSTANCE = new NoopSubscription();
+
+    @Override
+    public void request(long n) {}
+
+    @Override
+    public void cancel() {}
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.flow;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.math.LongMath;
+import java.util.concurrent.Flow;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * The subscription of a subscriber to the messages a call receives. The subscriber's demand is
+ * passed on to the call as is, so the transport reads no more messages than were asked for.
+ *
+ * <p>All signals to the subscriber come from the call's listener, which gRPC already serializes,
+ * except for those that precede the end of {@link #subscribe}.
+ */
+abstract class InboundSubscription<T> implements Flow.Subscription {
+  /** Guards the call, which is not thread-safe, as well as the state of subclasses. */
+  final Object lock = new Object();
+
+  private volatile Flow.Subscriber<? super T> subscriber;
+  /** Whether {@code onSubscribe} returned. Demand is only passed on to the call afterwards. */
+  @GuardedBy("lock")
+  private boolean subscribed;
+  @GuardedBy("lock")
+  private boolean cancelled;
+  /** Set once the call ended, if the subscriber is not told yet. */
+  @GuardedBy("lock")
+  private boolean closed;
+  @GuardedBy("lock")
+  @Nullable
+  private Throwable closeError;
+  /** Why the call was cancelled, for signalling the subscriber once the call ends. */
+  @GuardedBy("lock")
+  @Nullable
+  private Throwable failure;
+  /** Demand not passed on to the call yet, as calls take an {@code int} number of messages. */
+  @GuardedBy("lock")
+  private long pendingDemand;
+  /** Messages requested from the call but not received yet. */
+  @GuardedBy("lock")
+  private int outstandingDemand;
+
+  /** Asks the call for {@code count} more messages. Called with {@link #lock} held. */
+  @GuardedBy("lock")
+  abstract void requestMessages(int count);
+
+  /**
+   * Stops the call from receiving more messages. {@code cause} is null if the subscriber
+   * cancelled, and is otherwise to be signalled to the subscriber through {@link #onClose}. Called
+   * with {@link #lock} held.
+   */
+  @GuardedBy("lock")
+  abstract void cancelCall(@Nullable Throwable cause);
+
+  /** Signals {@code onSubscribe} to the subscriber, and then the messages it asks for. */
+  final void subscribe(Flow.Subscriber<? super T> subscriber) {
+    this.subscriber = checkNotNull(subscriber, "subscriber");
+    subscriber.onSubscribe(this);
+    boolean close;
+    Throwable error;
+    synchronized (lock) {
+      subscribed = true;
+      forwardDemand();
+      close = closed && !cancelled;
+      error = closeError;
+    }
+    if (close) {
+      signalClose(error);
+    }
+  }
+
+  @Override
+  public final void request(long n) {
+    synchronized (lock) {
+      if (cancelled || closed || failure != null) {
+        return;
+      }
+      if (n <= 0) {
+        failure = new IllegalArgumentException("Demand must be positive: " + n);
+        cancelCall(failure);
+        return;
+      }
+      pendingDemand = LongMath.saturatedAdd(pendingDemand, n);
+      if (subscribed) {
+        forwardDemand();
+      }
+    }
+  }
+
+  @Override
+  public final void cancel() {
+    synchronized (lock) {
+      if (cancelled || closed) {
+        return;
+      }
+      cancelled = true;
+      cancelCall(null);
+    }
+  }
+
+  /** Passes on a message the call received. */
+  final void onMessage(T message) {
+    synchronized (lock) {
+      if (cancelled || failure != null) {
+        return;
+      }
+      outstandingDemand--;
+      forwardDemand();
+    }
+    subscriber.onNext(message);
+  }
+
+  /**
+   * Signals the end of the messages to the subscriber, unless it cancelled. {@code error} is null
+   * if the messages ended normally.
+   */
+  final void onClose(@Nullable Throwable error) {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (failure != null) {
+        error = failure;
+      }
+      closeError = error;
+      if (cancelled || !subscribed) {
+        return;
+      }
+    }
+    signalClose(error);
+  }
+
+  @GuardedBy("lock")
+  private void forwardDemand() {
+    int count = (int) Math.min(pendingDemand, Integer.MAX_VALUE - outstandingDemand);
+    if (count > 0) {
+      pendingDemand -= count;
+      outstandingDemand += count;
+      requestMessages(count);
+    }
+  }
+
+  private void signalClose(@Nullable Throwable error) {
+    if (error == null) {
+      subscriber.onComplete();
+    } else {
+      subscriber.onError(error);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.flow;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.Flow;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Subscribes to the messages a call is to send. A message is only requested while the call is
+ * ready and no other is on its way, so the publisher produces messages no faster than the
+ * transport can send them. Subclasses call {@link #requestIfReady} whenever the call becomes
+ * ready.
+ */
+abstract class OutboundSubscriber<T> implements Flow.Subscriber<T> {
+  private final Object lock;
+  @GuardedBy("lock")
+  @Nullable
+  private Flow.Subscription subscription;
+  @GuardedBy("lock")
+  private boolean requested;
+  @GuardedBy("lock")
+  private boolean done;
+
+  /**
+   * Creates a subscriber holding {@code lock} while it uses the call.
+   */
+  OutboundSubscriber(Object lock) {
+    this.lock = checkNotNull(lock, "lock");
+  }
+
+  /** Returns whether the call can send a message without buffering it. */
+  @GuardedBy("lock")
+  abstract boolean isReady();
+
+  @GuardedBy("lock")
+  abstract void send(T message);
+
+  /** Ends the call's messages, as the publisher completed. */
+  @GuardedBy("lock")
+  abstract void complete();
+
+  /** Ends the call with an error, as the publisher failed. */
+  @GuardedBy("lock")
+  abstract void fail(Throwable t);
+
+  @Override
+  public final void onSubscribe(Flow.Subscription subscription) {
+    checkNotNull(subscription, "subscription");
+    boolean cancel;
+    synchronized (lock) {
+      cancel = this.subscription != null || done;
+      if (!cancel) {
+        this.subscription = subscription;
+      }
+    }
+    if (cancel) {
+      subscription.cancel();
+      return;
+    }
+    requestIfReady();
+  }
+
+  @Override
+  public final void onNext(T message) {
+    checkNotNull(message, "message");
+    synchronized (lock) {
+      if (done) {
+        return;
+      }
+      requested = false;
+      send(message);
+    }
+    requestIfReady();
+  }
+
+  @Override
+  public final void onError(Throwable t) {
+    checkNotNull(t, "t");
+    synchronized (lock) {
+      if (done) {
+        return;
+      }
+      done = true;
+      fail(t);
+    }
+  }
+
+  @Override
+  public final void onComplete() {
+    synchronized (lock) {
+      if (done) {
+        return;
+      }
+      done = true;
+      complete();
+    }
+  }
+
+  /** Requests a message if the call is ready for one and none was requested already. */
+  final void requestIfReady() {
+    Flow.Subscription subscription;
+    synchronized (lock) {
+      if (done || this.subscription == null || requested || !isReady()) {
+        return;
+      }
+      requested = true;
+      subscription = this.subscription;
+    }
+    subscription.request(1);
+  }
+
+  /** Cancels the subscription, as the call ended before the publisher did. */
+  final void cancel() {
+    Flow.Subscription subscription;
+    synchronized (lock) {
+      if (done) {
+        return;
+      }
+      done = true;
+      subscription = this.subscription;
+    }
+    if (subscription != null) {
+      subscription.cancel();
+    }
+  }
+}
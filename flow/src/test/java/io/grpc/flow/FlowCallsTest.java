@@ -0,0 +1,386 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.flow;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.StringMarshaller;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link FlowClientCalls} and {@link FlowServerCalls}, against each other. The
+ * in-process transport only reports a call as ready while its peer requested messages, so the
+ * demand of a subscriber on one side shows up at the publisher on the other.
+ */
+@RunWith(JUnit4.class)
+public class FlowCallsTest {
+  @Rule
+  public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final TestPublisher<String> responses = new TestPublisher<>();
+  private final TestSubscriber<String> responseSubscriber = new TestSubscriber<>();
+
+  @Test
+  public void unaryCall() throws Exception {
+    MethodDescriptor<String, String> method = method(MethodType.UNARY);
+    ManagedChannel channel = startServer(method, FlowServerCalls.unaryCall(
+        new FlowServerCalls.UnaryMethod<String, String>() {
+          @Override
+          public Flow.Publisher<String> invoke(String request) {
+            responses.emit(request + "!").complete();
+            return responses;
+          }
+        }));
+
+    FlowClientCalls.unaryCall(channel, method, CallOptions.DEFAULT, "hello")
+        .subscribe(responseSubscriber);
+    responseSubscriber.request(1);
+
+    assertThat(responseSubscriber.values).containsExactly("hello!");
+    assertThat(responseSubscriber.completed).isTrue();
+  }
+
+  @Test
+  public void serverStreamingCall_responsesFollowDemand() throws Exception {
+    MethodDescriptor<String, String> method = method(MethodType.SERVER_STREAMING);
+    ManagedChannel channel = startServer(method, FlowServerCalls.serverStreamingCall(
+        new FlowServerCalls.ServerStreamingMethod<String, String>() {
+          @Override
+          public Flow.Publisher<String> invoke(String request) {
+            responses.emit("a", "b", "c", "d", "e").complete();
+            return responses;
+          }
+        }));
+
+    FlowClientCalls.serverStreamingCall(channel, method, CallOptions.DEFAULT, "hello")
+        .subscribe(responseSubscriber);
+    responseSubscriber.request(2);
+
+    assertThat(responseSubscriber.values).containsExactly("a", "b").inOrder();
+    assertThat(responses.requested).isEqualTo(2);
+
+    responseSubscriber.request(10);
+    assertThat(responseSubscriber.values).containsExactly("a", "b", "c", "d", "e").inOrder();
+    assertThat(responseSubscriber.completed).isTrue();
+  }
+
+  @Test
+  public void clientStreamingCall_requestsFollowDemand() throws Exception {
+    final TestSubscriber<String> requestSubscriber = new TestSubscriber<>();
+    MethodDescriptor<String, String> method = method(MethodType.CLIENT_STREAMING);
+    ManagedChannel channel = startServer(method, FlowServerCalls.clientStreamingCall(
+        new FlowServerCalls.ClientStreamingMethod<String, String>() {
+          @Override
+          public Flow.Publisher<String> invoke(Flow.Publisher<String> requests) {
+            requests.subscribe(requestSubscriber);
+            return responses;
+          }
+        }));
+    TestPublisher<String> requests = new TestPublisher<>();
+    requests.emit("a", "b", "c").complete();
+
+    FlowClientCalls.clientStreamingCall(channel, method, CallOptions.DEFAULT, requests)
+        .subscribe(responseSubscriber);
+    responseSubscriber.request(1);
+    requestSubscriber.request(2);
+
+    assertThat(requestSubscriber.values).containsExactly("a", "b").inOrder();
+    assertThat(requests.requested).isEqualTo(2);
+
+    requestSubscriber.request(10);
+    assertThat(requestSubscriber.values).containsExactly("a", "b", "c").inOrder();
+    assertThat(requestSubscriber.completed).isTrue();
+
+    responses.emit("done").complete();
+    assertThat(responseSubscriber.values).containsExactly("done");
+    assertThat(responseSubscriber.completed).isTrue();
+  }
+
+  @Test
+  public void bidiStreamingCall_subscriberCancels() throws Exception {
+    final TestSubscriber<String> requestSubscriber = new TestSubscriber<>();
+    MethodDescriptor<String, String> method = method(MethodType.BIDI_STREAMING);
+    ManagedChannel channel = startServer(method, bidiHandler(requestSubscriber));
+    TestPublisher<String> requests = new TestPublisher<>();
+
+    FlowClientCalls.bidiStreamingCall(channel, method, CallOptions.DEFAULT, requests)
+        .subscribe(responseSubscriber);
+    responseSubscriber.request(1);
+    requestSubscriber.request(1);
+    responses.emit("response");
+    requests.emit("request");
+    responseSubscriber.subscription.cancel();
+
+    assertThat(responseSubscriber.values).containsExactly("response");
+    assertThat(requestSubscriber.values).containsExactly("request");
+    assertThat(responses.cancelled).isTrue();
+    assertThat(requests.cancelled).isTrue();
+    assertThat(Status.fromThrowable(requestSubscriber.error).getCode())
+        .isEqualTo(Status.Code.CANCELLED);
+    assertThat(responseSubscriber.error).isNull();
+    assertThat(responseSubscriber.completed).isFalse();
+  }
+
+  @Test
+  public void bidiStreamingCall_responsePublisherFails() throws Exception {
+    final TestSubscriber<String> requestSubscriber = new TestSubscriber<>();
+    MethodDescriptor<String, String> method = method(MethodType.BIDI_STREAMING);
+    ManagedChannel channel = startServer(method, bidiHandler(requestSubscriber));
+    TestPublisher<String> requests = new TestPublisher<>();
+
+    FlowClientCalls.bidiStreamingCall(channel, method, CallOptions.DEFAULT, requests)
+        .subscribe(responseSubscriber);
+    responses.fail(Status.INVALID_ARGUMENT.withDescription("bad").asRuntimeException());
+
+    Status status = Status.fromThrowable(responseSubscriber.error);
+    assertThat(status.getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+    assertThat(status.getDescription()).isEqualTo("bad");
+    assertThat(requests.cancelled).isTrue();
+  }
+
+  @Test
+  public void bidiStreamingCall_requestPublisherFails() throws Exception {
+    final TestSubscriber<String> requestSubscriber = new TestSubscriber<>();
+    MethodDescriptor<String, String> method = method(MethodType.BIDI_STREAMING);
+    ManagedChannel channel = startServer(method, bidiHandler(requestSubscriber));
+    TestPublisher<String> requests = new TestPublisher<>();
+    RuntimeException failure = new RuntimeException("failed");
+
+    FlowClientCalls.bidiStreamingCall(channel, method, CallOptions.DEFAULT, requests)
+        .subscribe(responseSubscriber);
+    requests.fail(failure);
+
+    assertThat(responseSubscriber.error).isInstanceOf(StatusRuntimeException.class);
+    assertThat(responseSubscriber.error).hasCauseThat().isSameInstanceAs(failure);
+    assertThat(responses.cancelled).isTrue();
+  }
+
+  @Test
+  public void invalidDemand() throws Exception {
+    MethodDescriptor<String, String> method = method(MethodType.SERVER_STREAMING);
+    ManagedChannel channel = startServer(method, FlowServerCalls.serverStreamingCall(
+        new FlowServerCalls.ServerStreamingMethod<String, String>() {
+          @Override
+          public Flow.Publisher<String> invoke(String request) {
+            return responses;
+          }
+        }));
+
+    FlowClientCalls.serverStreamingCall(channel, method, CallOptions.DEFAULT, "hello")
+        .subscribe(responseSubscriber);
+    responseSubscriber.request(0);
+
+    assertThat(responseSubscriber.error).isInstanceOf(IllegalArgumentException.class);
+    assertThat(responses.cancelled).isTrue();
+  }
+
+  @Test
+  public void unimplemented() throws Exception {
+    MethodDescriptor<String, String> method = method(MethodType.UNARY);
+    final Flow.Publisher<String> unimplemented = FlowServerCalls.unimplemented(method);
+    ManagedChannel channel = startServer(method, FlowServerCalls.unaryCall(
+        new FlowServerCalls.UnaryMethod<String, String>() {
+          @Override
+          public Flow.Publisher<String> invoke(String request) {
+            return unimplemented;
+          }
+        }));
+
+    FlowClientCalls.unaryCall(channel, method, CallOptions.DEFAULT, "hello")
+        .subscribe(responseSubscriber);
+
+    assertThat(Status.fromThrowable(responseSubscriber.error).getCode())
+        .isEqualTo(Status.Code.UNIMPLEMENTED);
+  }
+
+  @Test
+  public void requestsOnlySubscribedOnce() throws Exception {
+    final TestSubscriber<String> secondSubscriber = new TestSubscriber<>();
+    MethodDescriptor<String, String> method = method(MethodType.CLIENT_STREAMING);
+    ManagedChannel channel = startServer(method, FlowServerCalls.clientStreamingCall(
+        new FlowServerCalls.ClientStreamingMethod<String, String>() {
+          @Override
+          public Flow.Publisher<String> invoke(Flow.Publisher<String> requests) {
+            requests.subscribe(new TestSubscriber<String>());
+            requests.subscribe(secondSubscriber);
+            return responses;
+          }
+        }));
+
+    FlowClientCalls.clientStreamingCall(
+        channel, method, CallOptions.DEFAULT, new TestPublisher<String>())
+        .subscribe(responseSubscriber);
+
+    assertThat(secondSubscriber.error).isInstanceOf(IllegalStateException.class);
+    responseSubscriber.subscription.cancel();
+  }
+
+  private ServerCallHandler<String, String> bidiHandler(
+      final TestSubscriber<String> requestSubscriber) {
+    return FlowServerCalls.bidiStreamingCall(
+        new FlowServerCalls.BidiStreamingMethod<String, String>() {
+          @Override
+          public Flow.Publisher<String> invoke(Flow.Publisher<String> requests) {
+            requests.subscribe(requestSubscriber);
+            return responses;
+          }
+        });
+  }
+
+  private ManagedChannel startServer(
+      MethodDescriptor<String, String> method, ServerCallHandler<String, String> handler)
+      throws Exception {
+    String name = InProcessServerBuilder.generateName();
+    grpcCleanup.register(InProcessServerBuilder.forName(name)
+        .directExecutor()
+        .addService(ServerServiceDefinition.builder("service")
+            .addMethod(method, handler)
+            .build())
+        .build()
+        .start());
+    return grpcCleanup.register(InProcessChannelBuilder.forName(name).directExecutor().build());
+  }
+
+  private static MethodDescriptor<String, String> method(MethodType type) {
+    return MethodDescriptor.<String, String>newBuilder()
+        .setType(type)
+        .setFullMethodName("service/method")
+        .setRequestMarshaller(StringMarshaller.INSTANCE)
+        .setResponseMarshaller(StringMarshaller.INSTANCE)
+        .build();
+  }
+
+  /** Publishes the items it is given, as they are requested. */
+  private static final class TestPublisher<T> implements Flow.Publisher<T> {
+    private final Queue<T> items = new ArrayDeque<>();
+    private Flow.Subscriber<? super T> subscriber;
+    private boolean completeWhenDrained;
+    private boolean done;
+    private boolean draining;
+    long requested;
+    long emitted;
+    boolean cancelled;
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+          requested += n;
+          drain();
+        }
+
+        @Override
+        public void cancel() {
+          cancelled = true;
+        }
+      });
+      drain();
+    }
+
+    @SafeVarargs
+    final TestPublisher<T> emit(T... items) {
+      this.items.addAll(Arrays.asList(items));
+      drain();
+      return this;
+    }
+
+    void complete() {
+      completeWhenDrained = true;
+      drain();
+    }
+
+    void fail(Throwable t) {
+      done = true;
+      if (subscriber != null) {
+        subscriber.onError(t);
+      }
+    }
+
+    private void drain() {
+      if (subscriber == null || draining) {
+        return;
+      }
+      draining = true;
+      try {
+        while (!done && !cancelled && emitted < requested && !items.isEmpty()) {
+          emitted++;
+          subscriber.onNext(items.remove());
+        }
+        if (!done && !cancelled && completeWhenDrained && items.isEmpty()) {
+          done = true;
+          subscriber.onComplete();
+        }
+      } finally {
+        draining = false;
+      }
+    }
+  }
+
+  /** Records what it receives, and requests only what the test asks for. */
+  private static final class TestSubscriber<T> implements Flow.Subscriber<T> {
+    final List<T> values = new ArrayList<>();
+    Flow.Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(T item) {
+      values.add(item);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+
+    void request(long n) {
+      subscription.request(n);
+    }
+  }
+}
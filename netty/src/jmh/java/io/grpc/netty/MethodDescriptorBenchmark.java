@@ -60,6 +60,19 @@ public class MethodDescriptorBenchmark {
 
   byte[] directBytes = new AsciiString("/" + method.getFullMethodName()).toByteArray();
 
+  private static volatile MethodDescriptor<Void, Void> lazyMethod;
+
+  private static final MethodDescriptor<Void, Void> EAGER_METHOD = newMethod();
+
+  private static MethodDescriptor<Void, Void> newMethod() {
+    return MethodDescriptor.<Void, Void>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName("Service/Method")
+        .setRequestMarshaller(marshaller)
+        .setResponseMarshaller(marshaller)
+        .build();
+  }
+
   /** Foo bar. */
   @Benchmark
   @BenchmarkMode(Mode.SampleTime)
@@ -88,5 +101,34 @@ public class MethodDescriptorBenchmark {
   public AsciiString direct() {
     return new AsciiString(directBytes, false);
   }
-}
 
+  /**
+   * Gets a descriptor the way generated stubs do by default, building it on first use under
+   * double-checked locking.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public MethodDescriptor<Void, Void> lazyDescriptor() {
+    MethodDescriptor<Void, Void> lazyMethod;
+    if ((lazyMethod = MethodDescriptorBenchmark.lazyMethod) == null) {
+      synchronized (MethodDescriptorBenchmark.class) {
+        if ((lazyMethod = MethodDescriptorBenchmark.lazyMethod) == null) {
+          MethodDescriptorBenchmark.lazyMethod = lazyMethod = newMethod();
+        }
+      }
+    }
+    return lazyMethod;
+  }
+
+  /**
+   * Gets a descriptor the way stubs generated with {@code specialized_handlers} do, from a field
+   * set when the class is loaded.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public MethodDescriptor<Void, Void> eagerDescriptor() {
+    return EAGER_METHOD;
+  }
+}
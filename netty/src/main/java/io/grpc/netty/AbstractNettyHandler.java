@@ -21,15 +21,21 @@ import static io.netty.handler.codec.http2.Http2CodecUtil.getEmbeddedHttp2Except
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import io.grpc.ChannelLogger;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
 import io.netty.handler.codec.http2.Http2ConnectionDecoder;
 import io.netty.handler.codec.http2.Http2ConnectionEncoder;
 import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.Http2LocalFlowController;
 import io.netty.handler.codec.http2.Http2Settings;
 import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.Http2StreamVisitor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Base class for all Netty gRPC handlers. This class standardizes exception handling (always
@@ -40,6 +46,10 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
 
   private final int initialConnectionWindow;
   private final FlowControlPinger flowControlPing;
+  @Nullable
+  private final MemoryAccountant.TransportAccount memoryAccount;
+  @Nullable
+  private final Http2Connection.PropertyKey streamAccountKey;
 
   private boolean autoTuneFlowControlOn;
   private ChannelHandlerContext ctx;
@@ -54,7 +64,8 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
       Http2Settings initialSettings,
       ChannelLogger negotiationLogger,
       boolean autoFlowControl,
-      PingLimiter pingLimiter) {
+      PingLimiter pingLimiter,
+      @Nullable MemoryAccountant memoryAccountant) {
     super(channelUnused, decoder, encoder, initialSettings, negotiationLogger);
 
     // During a graceful shutdown, wait until all streams are closed.
@@ -68,6 +79,24 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
       pingLimiter = new AllowPingLimiter();
     }
     this.flowControlPing = new FlowControlPinger(pingLimiter);
+    if (memoryAccountant == null) {
+      this.memoryAccount = null;
+      this.streamAccountKey = null;
+      return;
+    }
+    this.memoryAccount = memoryAccountant.newTransportAccount(new ResumeReads());
+    this.streamAccountKey = connection().newKey();
+    connection().addListener(new Http2ConnectionAdapter() {
+      @Override
+      public void onStreamClosed(Http2Stream stream) {
+        MemoryAccountant.StreamAccount account = stream.getProperty(streamAccountKey);
+        if (account != null) {
+          // Netty returns the window of closed streams itself.
+          account.deferredBytes = 0;
+          memoryAccount.inboundReleased(account, account.bufferedBytes);
+        }
+      }
+    });
   }
 
   @Override
@@ -85,6 +114,17 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
     sendInitialConnectionWindow();
   }
 
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    try {
+      super.channelInactive(ctx);
+    } finally {
+      if (memoryAccount != null) {
+        memoryAccount.close();
+      }
+    }
+  }
+
   @Override
   public final void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
     Http2Exception embedded = getEmbeddedHttp2Exception(cause);
@@ -115,6 +155,120 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
     }
   }
 
+  /**
+   * Accounts for inbound DATA that is handed to the deframer. The bytes are released once they are
+   * returned with {@link #returnProcessedBytes}.
+   */
+  final void inboundBytesReceived(Http2Stream stream, int bytes) {
+    if (memoryAccount == null) {
+      return;
+    }
+    MemoryAccountant.StreamAccount account = stream.getProperty(streamAccountKey);
+    if (account == null) {
+      account = new MemoryAccountant.StreamAccount();
+      stream.setProperty(streamAccountKey, account);
+    }
+    memoryAccount.inboundReceived(account, bytes);
+  }
+
+  /**
+   * Returns the given processed bytes back to inbound flow control. While the memory budget is
+   * exceeded the window is withheld, which pauses the remote sender, and returned once usage drops
+   * again.
+   */
+  void returnProcessedBytes(Http2Stream stream, int bytes) {
+    if (memoryAccount != null) {
+      bytes = accountProcessedBytes(stream, bytes);
+      if (bytes == 0) {
+        return;
+      }
+    }
+    try {
+      decoder().flowController().consumeBytes(stream, bytes);
+    } catch (Http2Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Releases processed bytes from the memory account and returns how many bytes of window to give
+   * back now, which is zero while reads are paused.
+   */
+  private int accountProcessedBytes(Http2Stream stream, int bytes) {
+    MemoryAccountant.StreamAccount account = stream.getProperty(streamAccountKey);
+    if (account != null) {
+      memoryAccount.inboundReleased(account, bytes);
+      if (memoryAccount.shouldPauseReads()) {
+        account.deferredBytes += bytes;
+        return 0;
+      }
+      bytes += account.deferredBytes;
+      account.deferredBytes = 0;
+    }
+    return bytes;
+  }
+
+  /**
+   * Accounts for an outbound DATA frame until its write completes. Returns the promise to write
+   * the frame with.
+   */
+  final ChannelPromise outboundBytesQueued(final int bytes, ChannelPromise promise) {
+    if (memoryAccount == null || bytes == 0) {
+      return promise;
+    }
+    memoryAccount.outboundQueued(bytes);
+    promise = promise.unvoid();
+    promise.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        memoryAccount.outboundReleased(bytes);
+      }
+    });
+    return promise;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  MemoryAccountant.TransportAccount memoryAccount() {
+    return memoryAccount;
+  }
+
+  /** Returns the window withheld while the memory budget was exceeded. */
+  private void returnDeferredBytes() {
+    if (!ctx.channel().isActive() || memoryAccount.shouldPauseReads()) {
+      return;
+    }
+    try {
+      connection().forEachActiveStream(new Http2StreamVisitor() {
+        @Override
+        public boolean visit(Http2Stream stream) throws Http2Exception {
+          MemoryAccountant.StreamAccount account = stream.getProperty(streamAccountKey);
+          if (account != null && account.deferredBytes > 0) {
+            int bytes = account.deferredBytes;
+            account.deferredBytes = 0;
+            decoder().flowController().consumeBytes(stream, bytes);
+          }
+          return true;
+        }
+      });
+    } catch (Http2Exception e) {
+      onError(ctx, /* outbound= */ false, e);
+      return;
+    }
+    ctx.flush();
+  }
+
+  private final class ResumeReads implements Runnable {
+    @Override
+    public void run() {
+      if (ctx.executor().inEventLoop()) {
+        returnDeferredBytes();
+      } else {
+        ctx.executor().execute(this);
+      }
+    }
+  }
+
   @VisibleForTesting
   FlowControlPinger flowControlPing() {
     return flowControlPing;
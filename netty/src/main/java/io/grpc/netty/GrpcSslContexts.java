@@ -27,6 +27,9 @@ import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
 import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslProvider;
 import io.netty.handler.ssl.SupportedCipherSuiteFilter;
@@ -223,6 +226,27 @@ public class GrpcSslContexts {
         .sslContextProvider(jdkProvider);
   }
 
+  /**
+   * Replaces the keys a server {@link SslContext} uses to encrypt and decrypt TLS session tickets.
+   * New tickets are encrypted with the first key, while tickets encrypted with any of the keys are
+   * still accepted. Calling this periodically with a fresh key first and the previous keys after it
+   * rotates the keys without invalidating tickets that clients already hold. Servers sharing the
+   * same keys can resume each other's sessions.
+   *
+   * <p>Only the OpenSSL provider exposes ticket keys; the JDK provider manages them internally.
+   *
+   * @throws IllegalArgumentException if {@code sslContext} is not an OpenSSL server context
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1784")
+  public static void setSessionTicketKeys(
+      SslContext sslContext, OpenSslSessionTicketKey... keys) {
+    checkArgument(sslContext.isServer(), "Session ticket keys apply to server contexts");
+    checkArgument(sslContext.sessionContext() instanceof OpenSslSessionContext,
+        "Session ticket keys require the OpenSSL provider");
+    checkArgument(keys.length > 0, "At least one key is required");
+    ((OpenSslSessionContext) sslContext.sessionContext()).setTicketKeys(keys);
+  }
+
   /**
    * Returns OpenSSL if available, otherwise returns the JDK provider.
    */
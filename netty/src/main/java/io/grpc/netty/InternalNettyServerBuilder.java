@@ -19,6 +19,7 @@ package io.grpc.netty;
 import io.grpc.Attributes;
 import io.grpc.Internal;
 import io.grpc.ServerStreamTracer;
+import io.grpc.internal.ServerAdmissionController;
 import io.grpc.internal.SharedResourcePool;
 import io.grpc.internal.TransportTracer;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
@@ -60,6 +61,15 @@ public final class InternalNettyServerBuilder {
     builder.setForceHeapBuffer(value);
   }
 
+  /**
+   * Sets the controller that sheds load by rejecting new streams while the server is overloaded,
+   * based on event loop lag, executor backlog and adaptive per-method concurrency limits.
+   */
+  public static void setAdmissionController(NettyServerBuilder builder,
+      ServerAdmissionController admissionController) {
+    builder.setAdmissionController(admissionController);
+  }
+
   /**
    * Sets {@link io.grpc.Channel} and {@link io.netty.channel.EventLoopGroup}s to Nio. A major
    * benefit over using existing setters is gRPC will manage the life cycle of {@link
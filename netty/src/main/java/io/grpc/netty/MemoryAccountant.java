@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.ExperimentalApi;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts for the memory that the servers and channels it is given to hold for their calls. An
+ * accountant may be shared by any number of {@link NettyServerBuilder servers} and {@link
+ * NettyChannelBuilder channels}. It counts:
+ *
+ * <ul>
+ *   <li>inbound DATA bytes that have been received but not consumed by the deframer yet;</li>
+ *   <li>outbound DATA bytes from the time they are handed to HTTP/2 until their write completes,
+ *       which includes bytes waiting for the peer's flow control window;</li>
+ *   <li>bytes that channels keep for retrying and hedging calls.</li>
+ * </ul>
+ *
+ * <p>Only inbound bytes count against the budget. Once it is exceeded, connections stop returning
+ * inbound flow control window, which pauses the remote senders. Windows are returned again once
+ * usage falls to three quarters of the budget. Outbound bytes wait for the peer's window, so
+ * withholding our own window for them could stall two peers that wait on each other. Retry buffers
+ * are bounded by each channel's own {@code retryBufferSize}.
+ *
+ * @since 1.43.0
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1784")
+public final class MemoryAccountant {
+  private final long maxBytes;
+  private final long resumeBytes;
+  private final AtomicLong usedBytes = new AtomicLong();
+  private final AtomicLong outboundBytes = new AtomicLong();
+  private final AtomicLong retryBufferedBytes = new AtomicLong();
+  private final Queue<TransportAccount> pausedAccounts = new ConcurrentLinkedQueue<>();
+
+  MemoryAccountant(long maxBytes) {
+    checkArgument(maxBytes > 0, "maxBytes must be positive: %s", maxBytes);
+    this.maxBytes = maxBytes;
+    this.resumeBytes = maxBytes - maxBytes / 4;
+  }
+
+  /** Creates an accountant that only keeps counts, without a budget. */
+  public static MemoryAccountant create() {
+    return new MemoryAccountant(Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates an accountant that pauses the remote senders while more than {@code
+   * maxInboundBufferedBytes} of received data has not been consumed. The budget should be several
+   * times the flow control window, since every stream may hold up to a window of data.
+   */
+  public static MemoryAccountant create(long maxInboundBufferedBytes) {
+    return new MemoryAccountant(maxInboundBufferedBytes);
+  }
+
+  /** Returns the number of received DATA bytes that have not been consumed yet. */
+  public long getInboundBytes() {
+    return usedBytes.get();
+  }
+
+  /** Returns the number of DATA bytes being sent, including those waiting for flow control. */
+  public long getOutboundBytes() {
+    return outboundBytes.get();
+  }
+
+  /** Returns the number of bytes that channels keep for retrying and hedging calls. */
+  public long getRetryBufferedBytes() {
+    return retryBufferedBytes.get();
+  }
+
+  /** Returns the counter that channels add their retry buffer usage to. */
+  AtomicLong retryBufferedBytesCounter() {
+    return retryBufferedBytes;
+  }
+
+  long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Creates the account of a new transport. {@code onResume} is run, from any thread, when the
+   * transport was paused and usage has fallen back below the resume threshold. The account must
+   * be {@linkplain TransportAccount#close closed} with its transport.
+   */
+  TransportAccount newTransportAccount(Runnable onResume) {
+    return new TransportAccount(onResume);
+  }
+
+  private void add(long bytes) {
+    usedBytes.addAndGet(bytes);
+  }
+
+  private void release(long bytes) {
+    long used = usedBytes.addAndGet(-bytes);
+    if (used <= resumeBytes && !pausedAccounts.isEmpty()) {
+      TransportAccount account;
+      while ((account = pausedAccounts.poll()) != null) {
+        account.resume();
+      }
+    }
+  }
+
+  /** Memory held by a single transport. */
+  final class TransportAccount {
+    private final Runnable onResume;
+    private final AtomicLong inboundBytes = new AtomicLong();
+    private final AtomicLong transportOutboundBytes = new AtomicLong();
+    private final AtomicBoolean paused = new AtomicBoolean();
+    // Only accessed from the transport thread
+    private boolean closed;
+
+    private TransportAccount(Runnable onResume) {
+      this.onResume = checkNotNull(onResume, "onResume");
+    }
+
+    void inboundReceived(StreamAccount stream, int bytes) {
+      if (closed) {
+        return;
+      }
+      stream.bufferedBytes += bytes;
+      inboundBytes.addAndGet(bytes);
+      add(bytes);
+    }
+
+    void inboundReleased(StreamAccount stream, int bytes) {
+      if (closed) {
+        return;
+      }
+      bytes = Math.min(bytes, stream.bufferedBytes);
+      stream.bufferedBytes -= bytes;
+      inboundBytes.addAndGet(-bytes);
+      release(bytes);
+    }
+
+    /**
+     * Accounts for outbound bytes until {@link #outboundReleased}, which is called once their
+     * write completes. Unlike inbound bytes, they stay counted after the account is closed, until
+     * the pending writes fail.
+     */
+    void outboundQueued(int bytes) {
+      transportOutboundBytes.addAndGet(bytes);
+      outboundBytes.addAndGet(bytes);
+    }
+
+    void outboundReleased(int bytes) {
+      transportOutboundBytes.addAndGet(-bytes);
+      outboundBytes.addAndGet(-bytes);
+    }
+
+    long getInboundBytes() {
+      return inboundBytes.get();
+    }
+
+    long getOutboundBytes() {
+      return transportOutboundBytes.get();
+    }
+
+    /**
+     * Returns {@code true} if the transport should withhold inbound flow control window because
+     * the budget is exceeded. The transport is then notified once it may resume.
+     */
+    boolean shouldPauseReads() {
+      if (closed || usedBytes.get() <= maxBytes) {
+        return false;
+      }
+      if (paused.compareAndSet(false, true)) {
+        pausedAccounts.add(this);
+        // Memory may have been released, or the account closed, before it was queued.
+        if ((closed || usedBytes.get() <= resumeBytes) && pausedAccounts.remove(this)) {
+          paused.set(false);
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Releases the bytes still held by the transport and stops tracking it. Called once the
+     * transport has terminated.
+     */
+    void close() {
+      closed = true;
+      if (paused.compareAndSet(true, false)) {
+        pausedAccounts.remove(this);
+      }
+      long bytes = inboundBytes.getAndSet(0);
+      if (bytes != 0) {
+        release(bytes);
+      }
+    }
+
+    private void resume() {
+      if (paused.compareAndSet(true, false)) {
+        onResume.run();
+      }
+    }
+  }
+
+  /**
+   * Inbound bytes of a single stream. Only accessed from the transport thread.
+   */
+  static final class StreamAccount {
+    /** Bytes received and not yet consumed by the deframer. */
+    int bufferedBytes;
+    /** Bytes consumed by the deframer whose flow control window has been withheld. */
+    int deferredBytes;
+  }
+}
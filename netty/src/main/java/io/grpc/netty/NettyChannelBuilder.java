@@ -103,6 +103,11 @@ public final class NettyChannelBuilder extends
   private long keepAliveTimeNanos = KEEPALIVE_TIME_NANOS_DISABLED;
   private long keepAliveTimeoutNanos = DEFAULT_KEEPALIVE_TIMEOUT_NANOS;
   private boolean keepAliveWithoutCalls;
+  private long maxInboundBufferedBytes = Long.MAX_VALUE;
+  @Nullable
+  private MemoryAccountant memoryAccountant;
+  private int tlsSessionCacheSize = -1;
+  private int tlsSessionTimeoutSeconds = -1;
   private ProtocolNegotiator.ClientFactory protocolNegotiatorFactory
       = new DefaultProtocolNegotiator();
   private final boolean freezeProtocolNegotiatorFactory;
@@ -246,6 +251,8 @@ public final class NettyChannelBuilder extends
     if (address instanceof InetSocketAddress) {
       InetSocketAddress inetAddress = (InetSocketAddress) address;
       return GrpcUtil.authorityFromHostAndPort(inetAddress.getHostString(), inetAddress.getPort());
+    } else if (Utils.isDomainSocketAddress(address)) {
+      return UdsNameResolver.AUTHORITY;
     } else {
       return address.toString();
     }
@@ -253,7 +260,9 @@ public final class NettyChannelBuilder extends
 
   /**
    * Specifies the channel type to use, by default we use {@code EpollSocketChannel} if available,
-   * otherwise using {@link NioSocketChannel}.
+   * otherwise using {@link NioSocketChannel}. If epoll is available, the default for addresses
+   * that are Unix domain sockets, like those of {@code "unix:///path/to/socket"} targets, is
+   * {@code EpollDomainSocketChannel}.
    *
    * <p>You either use this or {@link #channelFactory(io.netty.channel.ChannelFactory)} if your
    * {@link Channel} implementation has no no-args constructor.
@@ -415,6 +424,54 @@ public final class NettyChannelBuilder extends
     return this;
   }
 
+  /**
+   * Sets the maximum number of received DATA bytes that all connections of the channel, together,
+   * may hold before the application consumes them. Once exceeded, connections stop returning
+   * HTTP/2 flow control window, which pauses the servers, until usage falls back to three quarters
+   * of the limit. The limit should be several times the flow control window, since every stream
+   * may hold up to a window of data. Defaults to no limit.
+   *
+   * @since 1.43.0
+   */
+  public NettyChannelBuilder maxInboundBufferedBytes(long bytes) {
+    checkArgument(bytes > 0, "bytes must be positive: %s", bytes);
+    this.maxInboundBufferedBytes = bytes;
+    return this;
+  }
+
+  /**
+   * Sets the accountant that the channel's connections report their memory use to, which may be
+   * shared with other servers and channels. If the accountant has a budget, it applies to all of
+   * them together. Overrides {@link #maxInboundBufferedBytes}.
+   *
+   * @since 1.43.0
+   */
+  public NettyChannelBuilder memoryAccountant(MemoryAccountant accountant) {
+    this.memoryAccountant = checkNotNull(accountant, "accountant");
+    managedChannelImplBuilder.setRetryBufferUsageCounter(
+        accountant.retryBufferedBytesCounter());
+    return this;
+  }
+
+  /**
+   * Bounds the TLS session cache of the channel's {@link SslContext}: how many sessions are kept
+   * for resumption, and for how long they may be resumed. {@code 0} means no limit for either.
+   * By default the provider's settings are kept, or those of the context passed to {@link
+   * #sslContext}. The settings belong to the context, so they apply to every channel
+   * sharing it, including channels built from the same {@link io.grpc.TlsChannelCredentials}.
+   *
+   * @since 1.43.0
+   */
+  public NettyChannelBuilder tlsSessionCache(int maxSessions, long timeout, TimeUnit unit) {
+    checkArgument(maxSessions >= 0, "maxSessions must be non-negative: %s", maxSessions);
+    checkArgument(timeout >= 0, "timeout must be non-negative: %s", timeout);
+    this.tlsSessionCacheSize = maxSessions;
+    long seconds = unit.toSeconds(timeout);
+    this.tlsSessionTimeoutSeconds = timeout > 0 && seconds == 0
+        ? 1 : (int) Math.min(seconds, Integer.MAX_VALUE);
+    return this;
+  }
+
   /**
    * Equivalent to using {@link #negotiationType(NegotiationType)} with {@code PLAINTEXT}.
    */
@@ -526,11 +583,17 @@ public final class NettyChannelBuilder extends
     assertEventLoopAndChannelType();
 
     ProtocolNegotiator negotiator = protocolNegotiatorFactory.newNegotiator();
+    ProtocolNegotiators.setSessionCacheLimits(
+        negotiator, tlsSessionCacheSize, tlsSessionTimeoutSeconds);
+    MemoryAccountant memoryAccountant = this.memoryAccountant;
+    if (memoryAccountant == null && maxInboundBufferedBytes != Long.MAX_VALUE) {
+      memoryAccountant = new MemoryAccountant(maxInboundBufferedBytes);
+    }
     return new NettyTransportFactory(
         negotiator, channelFactory, channelOptions,
         eventLoopGroupPool, autoFlowControl, flowControlWindow, maxInboundMessageSize,
         maxHeaderListSize, keepAliveTimeNanos, keepAliveTimeoutNanos, keepAliveWithoutCalls,
-        transportTracerFactory, localSocketPicker, useGetForSafeMethods);
+        transportTracerFactory, localSocketPicker, useGetForSafeMethods, memoryAccountant);
   }
 
   @VisibleForTesting
@@ -667,6 +730,8 @@ public final class NettyChannelBuilder extends
     private final TransportTracer.Factory transportTracerFactory;
     private final LocalSocketPicker localSocketPicker;
     private final boolean useGetForSafeMethods;
+    @Nullable
+    private final MemoryAccountant memoryAccountant;
 
     private boolean closed;
 
@@ -677,7 +742,7 @@ public final class NettyChannelBuilder extends
         boolean autoFlowControl, int flowControlWindow, int maxMessageSize, int maxHeaderListSize,
         long keepAliveTimeNanos, long keepAliveTimeoutNanos, boolean keepAliveWithoutCalls,
         TransportTracer.Factory transportTracerFactory, LocalSocketPicker localSocketPicker,
-        boolean useGetForSafeMethods) {
+        boolean useGetForSafeMethods, @Nullable MemoryAccountant memoryAccountant) {
       this.protocolNegotiator = checkNotNull(protocolNegotiator, "protocolNegotiator");
       this.channelFactory = channelFactory;
       this.channelOptions = new HashMap<ChannelOption<?>, Object>(channelOptions);
@@ -695,6 +760,7 @@ public final class NettyChannelBuilder extends
       this.localSocketPicker =
           localSocketPicker != null ? localSocketPicker : new LocalSocketPicker();
       this.useGetForSafeMethods = useGetForSafeMethods;
+      this.memoryAccountant = memoryAccountant;
     }
 
     @Override
@@ -721,14 +787,21 @@ public final class NettyChannelBuilder extends
         }
       };
 
+      ChannelFactory<? extends Channel> localChannelFactory = channelFactory;
+      if (localChannelFactory == DEFAULT_CHANNEL_FACTORY
+          && Utils.EPOLL_DOMAIN_CLIENT_CHANNEL_FACTORY != null
+          && Utils.isDomainSocketAddress(serverAddress)) {
+        localChannelFactory = Utils.EPOLL_DOMAIN_CLIENT_CHANNEL_FACTORY;
+      }
+
       // TODO(carl-mastrangelo): Pass channelLogger in.
       NettyClientTransport transport = new NettyClientTransport(
-          serverAddress, channelFactory, channelOptions, group,
+          serverAddress, localChannelFactory, channelOptions, group,
           localNegotiator, autoFlowControl, flowControlWindow,
           maxMessageSize, maxHeaderListSize, keepAliveTimeNanosState.get(), keepAliveTimeoutNanos,
           keepAliveWithoutCalls, options.getAuthority(), options.getUserAgent(),
           tooManyPingsRunnable, transportTracerFactory.create(), options.getEagAttributes(),
-          localSocketPicker, channelLogger, useGetForSafeMethods);
+          localSocketPicker, channelLogger, useGetForSafeMethods, memoryAccountant);
       return transport;
     }
 
@@ -748,7 +821,7 @@ public final class NettyChannelBuilder extends
           result.negotiator.newNegotiator(), channelFactory, channelOptions, groupPool,
           autoFlowControl, flowControlWindow, maxMessageSize, maxHeaderListSize, keepAliveTimeNanos,
           keepAliveTimeoutNanos, keepAliveWithoutCalls, transportTracerFactory,  localSocketPicker,
-          useGetForSafeMethods);
+          useGetForSafeMethods, memoryAccountant);
       return new SwapChannelCredentialsResult(factory, result.callCredentials);
     }
 
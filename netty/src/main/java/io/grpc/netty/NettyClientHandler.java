@@ -143,7 +143,8 @@ class NettyClientHandler extends AbstractNettyHandler {
       TransportTracer transportTracer,
       Attributes eagAttributes,
       String authority,
-      ChannelLogger negotiationLogger) {
+      ChannelLogger negotiationLogger,
+      @Nullable MemoryAccountant memoryAccountant) {
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive");
     Http2HeadersDecoder headersDecoder = new GrpcHttp2ClientHeadersDecoder(maxHeaderListSize);
     Http2FrameReader frameReader = new DefaultHttp2FrameReader(headersDecoder);
@@ -169,7 +170,8 @@ class NettyClientHandler extends AbstractNettyHandler {
         transportTracer,
         eagAttributes,
         authority,
-        negotiationLogger);
+        negotiationLogger,
+        memoryAccountant);
   }
 
   @VisibleForTesting
@@ -187,7 +189,8 @@ class NettyClientHandler extends AbstractNettyHandler {
       TransportTracer transportTracer,
       Attributes eagAttributes,
       String authority,
-      ChannelLogger negotiationLogger) {
+      ChannelLogger negotiationLogger,
+      @Nullable MemoryAccountant memoryAccountant) {
     Preconditions.checkNotNull(connection, "connection");
     Preconditions.checkNotNull(frameReader, "frameReader");
     Preconditions.checkNotNull(lifecycleManager, "lifecycleManager");
@@ -237,7 +240,8 @@ class NettyClientHandler extends AbstractNettyHandler {
         eagAttributes,
         authority,
         autoFlowControl,
-        pingCounter);
+        pingCounter,
+        memoryAccountant);
   }
 
   private NettyClientHandler(
@@ -253,9 +257,10 @@ class NettyClientHandler extends AbstractNettyHandler {
       Attributes eagAttributes,
       String authority,
       boolean autoFlowControl,
-      PingLimiter pingLimiter) {
+      PingLimiter pingLimiter,
+      @Nullable MemoryAccountant memoryAccountant) {
     super(/* channelUnused= */ null, decoder, encoder, settings,
-        negotiationLogger, autoFlowControl, pingLimiter);
+        negotiationLogger, autoFlowControl, pingLimiter, memoryAccountant);
     this.lifecycleManager = lifecycleManager;
     this.keepAliveManager = keepAliveManager;
     this.stopwatchFactory = stopwatchFactory;
@@ -353,17 +358,6 @@ class NettyClientHandler extends AbstractNettyHandler {
     return lifecycleManager;
   }
 
-  /**
-   * Returns the given processed bytes back to inbound flow control.
-   */
-  void returnProcessedBytes(Http2Stream stream, int bytes) {
-    try {
-      decoder().flowController().consumeBytes(stream, bytes);
-    } catch (Http2Exception e) {
-      throw new RuntimeException(e);
-    }
-  }
-
   private void onHeadersRead(int streamId, Http2Headers headers, boolean endStream) {
     // Stream 1 is reserved for the Upgrade response, so we should ignore its headers here:
     if (streamId != Http2CodecUtil.HTTP_UPGRADE_STREAM_ID) {
@@ -382,8 +376,10 @@ class NettyClientHandler extends AbstractNettyHandler {
    */
   private void onDataRead(int streamId, ByteBuf data, int padding, boolean endOfStream) {
     flowControlPing().onDataRead(data.readableBytes(), padding);
-    NettyClientStream.TransportState stream = clientStream(requireHttp2Stream(streamId));
+    Http2Stream http2Stream = requireHttp2Stream(streamId);
+    NettyClientStream.TransportState stream = clientStream(http2Stream);
     PerfMark.event("NettyClientHandler.onDataRead", stream.tag());
+    inboundBytesReceived(http2Stream, data.readableBytes());
     stream.transportDataReceived(data, endOfStream);
     if (keepAliveManager != null) {
       keepAliveManager.onDataReceived();
@@ -685,6 +681,7 @@ class NettyClientHandler extends AbstractNettyHandler {
     try {
       // Call the base class to write the HTTP/2 DATA frame.
       // Note: no need to flush since this is handled by the outbound flow controller.
+      promise = outboundBytesQueued(cmd.content().readableBytes(), promise);
       encoder().writeData(ctx, cmd.stream().id(), cmd.content(), 0, cmd.endStream(), promise);
     } finally {
       PerfMark.stopTask("NettyClientHandler.sendGrpcFrame", cmd.stream().tag());
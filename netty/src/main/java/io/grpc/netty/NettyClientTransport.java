@@ -102,6 +102,8 @@ class NettyClientTransport implements ConnectionClientTransport {
   private final LocalSocketPicker localSocketPicker;
   private final ChannelLogger channelLogger;
   private final boolean useGetForSafeMethods;
+  @Nullable
+  private final MemoryAccountant memoryAccountant;
 
   NettyClientTransport(
       SocketAddress address, ChannelFactory<? extends Channel> channelFactory,
@@ -112,7 +114,7 @@ class NettyClientTransport implements ConnectionClientTransport {
       boolean keepAliveWithoutCalls, String authority, @Nullable String userAgent,
       Runnable tooManyPingsRunnable, TransportTracer transportTracer, Attributes eagAttributes,
       LocalSocketPicker localSocketPicker, ChannelLogger channelLogger,
-      boolean useGetForSafeMethods) {
+      boolean useGetForSafeMethods, @Nullable MemoryAccountant memoryAccountant) {
     this.negotiator = Preconditions.checkNotNull(negotiator, "negotiator");
     this.negotiationScheme = this.negotiator.scheme();
     this.remoteAddress = Preconditions.checkNotNull(address, "address");
@@ -137,6 +139,7 @@ class NettyClientTransport implements ConnectionClientTransport {
     this.logId = InternalLogId.allocate(getClass(), remoteAddress.toString());
     this.channelLogger = Preconditions.checkNotNull(channelLogger, "channelLogger");
     this.useGetForSafeMethods = useGetForSafeMethods;
+    this.memoryAccountant = memoryAccountant;
   }
 
   @Override
@@ -225,7 +228,8 @@ class NettyClientTransport implements ConnectionClientTransport {
         transportTracer,
         eagAttributes,
         authorityString,
-        channelLogger);
+        channelLogger,
+        memoryAccountant);
 
     ChannelHandler negotiationHandler = negotiator.newHandler(handler);
 
@@ -233,10 +237,14 @@ class NettyClientTransport implements ConnectionClientTransport {
     b.option(ALLOCATOR, Utils.getByteBufAllocator(false));
     b.group(eventLoop);
     b.channelFactory(channelFactory);
-    // For non-socket based channel, the option will be ignored.
-    b.option(SO_KEEPALIVE, true);
+    // For non-socket based channel, the option will be ignored. Unix domain sockets don't support
+    // these TCP options, so avoid Netty's warning about them.
+    boolean domainSocket = Utils.isDomainSocketAddress(remoteAddress);
+    if (!domainSocket) {
+      b.option(SO_KEEPALIVE, true);
+    }
     // For non-epoll based channel, the option will be ignored.
-    if (keepAliveTimeNanos != KEEPALIVE_TIME_NANOS_DISABLED) {
+    if (keepAliveTimeNanos != KEEPALIVE_TIME_NANOS_DISABLED && !domainSocket) {
       ChannelOption<Integer> tcpUserTimeout = Utils.maybeGetTcpUserTimeoutOption();
       if (tcpUserTimeout != null) {
         b.option(tcpUserTimeout, (int) TimeUnit.NANOSECONDS.toMillis(keepAliveTimeoutNanos));
@@ -67,6 +67,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 
 /**
  * Netty-based server implementation.
@@ -100,6 +101,8 @@ class NettyServer implements InternalServer, InternalWithLogId {
   private final boolean permitKeepAliveWithoutCalls;
   private final long permitKeepAliveTimeInNanos;
   private final Attributes eagAttributes;
+  @Nullable
+  private final MemoryAccountant memoryAccountant;
   private final ReferenceCounted sharedResourceReferenceCounter =
       new SharedResourceReferenceCounter();
   private final List<? extends ServerStreamTracer.Factory> streamTracerFactories;
@@ -127,7 +130,8 @@ class NettyServer implements InternalServer, InternalWithLogId {
       long maxConnectionIdleInNanos,
       long maxConnectionAgeInNanos, long maxConnectionAgeGraceInNanos,
       boolean permitKeepAliveWithoutCalls, long permitKeepAliveTimeInNanos,
-      Attributes eagAttributes, InternalChannelz channelz) {
+      Attributes eagAttributes, @Nullable MemoryAccountant memoryAccountant,
+      InternalChannelz channelz) {
     this.addresses = checkNotNull(addresses, "addresses");
     this.channelFactory = checkNotNull(channelFactory, "channelFactory");
     checkNotNull(channelOptions, "channelOptions");
@@ -157,6 +161,7 @@ class NettyServer implements InternalServer, InternalWithLogId {
     this.permitKeepAliveWithoutCalls = permitKeepAliveWithoutCalls;
     this.permitKeepAliveTimeInNanos = permitKeepAliveTimeInNanos;
     this.eagAttributes = checkNotNull(eagAttributes, "eagAttributes");
+    this.memoryAccountant = memoryAccountant;
     this.channelz = Preconditions.checkNotNull(channelz);
     this.logId = InternalLogId.allocate(getClass(), addresses.isEmpty() ? "No address" :
         String.valueOf(addresses));
@@ -206,8 +211,11 @@ class NettyServer implements InternalServer, InternalWithLogId {
     b.childOption(ALLOCATOR, Utils.getByteBufAllocator(forceHeapBuffer));
     b.group(bossExecutor, workerGroup);
     b.channelFactory(channelFactory);
-    // For non-socket based channel, the option will be ignored.
-    b.childOption(SO_KEEPALIVE, true);
+    // For non-socket based channel, the option will be ignored. Unix domain sockets don't support
+    // it, so avoid Netty's warning about it.
+    if (channelFactory != Utils.EPOLL_DOMAIN_SERVER_CHANNEL_FACTORY) {
+      b.childOption(SO_KEEPALIVE, true);
+    }
 
     if (channelOptions != null) {
       for (Map.Entry<ChannelOption<?>, ?> entry : channelOptions.entrySet()) {
@@ -257,7 +265,8 @@ class NettyServer implements InternalServer, InternalWithLogId {
                 maxConnectionAgeGraceInNanos,
                 permitKeepAliveWithoutCalls,
                 permitKeepAliveTimeInNanos,
-                eagAttributes);
+                eagAttributes,
+                memoryAccountant);
         ServerTransportListener transportListener;
         // This is to order callbacks on the listener, not to guard access to channel.
         synchronized (NettyServer.this) {
@@ -38,6 +38,7 @@ import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.InternalServer;
 import io.grpc.internal.KeepAliveManager;
 import io.grpc.internal.ObjectPool;
+import io.grpc.internal.ServerAdmissionController;
 import io.grpc.internal.ServerImplBuilder;
 import io.grpc.internal.ServerImplBuilder.ClientTransportServersBuilder;
 import io.grpc.internal.SharedResourcePool;
@@ -59,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
 
 /**
@@ -113,6 +115,11 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
   private boolean permitKeepAliveWithoutCalls;
   private long permitKeepAliveTimeInNanos = TimeUnit.MINUTES.toNanos(5);
   private Attributes eagAttributes = Attributes.EMPTY;
+  private long maxInboundBufferedBytes = Long.MAX_VALUE;
+  @Nullable
+  private MemoryAccountant memoryAccountant;
+  private int tlsSessionCacheSize = -1;
+  private int tlsSessionTimeoutSeconds = -1;
 
   /**
    * Creates a server builder that will bind to the given port.
@@ -205,7 +212,9 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
 
   /**
    * Specifies the channel type to use, by default we use {@code EpollServerSocketChannel} if
-   * available, otherwise using {@link NioServerSocketChannel}.
+   * available, otherwise using {@link NioServerSocketChannel}. If epoll is available and all the
+   * listen addresses are Unix domain sockets, the default is {@code
+   * EpollServerDomainSocketChannel}.
    *
    * <p>You either use this or {@link #channelFactory(io.netty.channel.ChannelFactory)} if your
    * {@link ServerChannel} implementation has no no-args constructor.
@@ -390,6 +399,10 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
     this.serverImplBuilder.setStatsRecordRealTimeMetrics(value);
   }
 
+  void setAdmissionController(ServerAdmissionController admissionController) {
+    this.serverImplBuilder.setAdmissionController(admissionController);
+  }
+
   /**
    * The maximum number of concurrent calls permitted for each incoming connection. Defaults to no
    * limit.
@@ -616,6 +629,52 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
     return this;
   }
 
+  /**
+   * Sets the maximum number of received DATA bytes that all connections of the server, together,
+   * may hold before the application consumes them. Once exceeded, connections stop returning
+   * HTTP/2 flow control window, which pauses the clients, until usage falls back to three quarters
+   * of the limit. The limit should be several times the flow control window, since every stream
+   * may hold up to a window of data. Defaults to no limit.
+   *
+   * @since 1.43.0
+   */
+  public NettyServerBuilder maxInboundBufferedBytes(long bytes) {
+    checkArgument(bytes > 0, "bytes must be positive: %s", bytes);
+    this.maxInboundBufferedBytes = bytes;
+    return this;
+  }
+
+  /**
+   * Sets the accountant that the server's connections report their memory use to, which may be
+   * shared with other servers and channels. If the accountant has a budget, it applies to all of
+   * them together. Overrides {@link #maxInboundBufferedBytes}.
+   *
+   * @since 1.43.0
+   */
+  public NettyServerBuilder memoryAccountant(MemoryAccountant accountant) {
+    this.memoryAccountant = checkNotNull(accountant, "accountant");
+    return this;
+  }
+
+  /**
+   * Bounds the TLS session cache of the server's {@link SslContext}: how many sessions are kept
+   * for resumption, and for how long they may be resumed. {@code 0} means no limit for either.
+   * By default the provider's settings are kept, or those of the context passed to {@link
+   * #sslContext}. The settings belong to the context, so they apply to every server
+   * sharing it.
+   *
+   * @since 1.43.0
+   */
+  public NettyServerBuilder tlsSessionCache(int maxSessions, long timeout, TimeUnit unit) {
+    checkArgument(maxSessions >= 0, "maxSessions must be non-negative: %s", maxSessions);
+    checkArgument(timeout >= 0, "timeout must be non-negative: %s", timeout);
+    this.tlsSessionCacheSize = maxSessions;
+    long seconds = unit.toSeconds(timeout);
+    this.tlsSessionTimeoutSeconds = timeout > 0 && seconds == 0
+        ? 1 : (int) Math.min(seconds, Integer.MAX_VALUE);
+    return this;
+  }
+
   /** Sets the EAG attributes available to protocol negotiators. Not for general use. */
   void eagAttributes(Attributes eagAttributes) {
     this.eagAttributes = checkNotNull(eagAttributes, "eagAttributes");
@@ -628,16 +687,39 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
 
     ProtocolNegotiator negotiator = protocolNegotiatorFactory.newNegotiator(
         this.serverImplBuilder.getExecutorPool());
+    ProtocolNegotiators.setSessionCacheLimits(
+        negotiator, tlsSessionCacheSize, tlsSessionTimeoutSeconds);
+
+    ChannelFactory<? extends ServerChannel> serverChannelFactory = channelFactory;
+    if (serverChannelFactory == Utils.DEFAULT_SERVER_CHANNEL_FACTORY
+        && Utils.EPOLL_DOMAIN_SERVER_CHANNEL_FACTORY != null
+        && allDomainSocketAddresses(listenAddresses)) {
+      serverChannelFactory = Utils.EPOLL_DOMAIN_SERVER_CHANNEL_FACTORY;
+    }
 
+    MemoryAccountant memoryAccountant = this.memoryAccountant;
+    if (memoryAccountant == null && maxInboundBufferedBytes != Long.MAX_VALUE) {
+      memoryAccountant = new MemoryAccountant(maxInboundBufferedBytes);
+    }
     return new NettyServer(
-        listenAddresses, channelFactory, channelOptions, childChannelOptions,
+        listenAddresses, serverChannelFactory, channelOptions, childChannelOptions,
         bossEventLoopGroupPool, workerEventLoopGroupPool, forceHeapBuffer, negotiator,
         streamTracerFactories, transportTracerFactory, maxConcurrentCallsPerConnection,
         autoFlowControl, flowControlWindow, maxMessageSize, maxHeaderListSize,
         keepAliveTimeInNanos, keepAliveTimeoutInNanos,
         maxConnectionIdleInNanos, maxConnectionAgeInNanos,
         maxConnectionAgeGraceInNanos, permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos,
-        eagAttributes, this.serverImplBuilder.getChannelz());
+        eagAttributes, memoryAccountant,
+        this.serverImplBuilder.getChannelz());
+  }
+
+  private static boolean allDomainSocketAddresses(List<SocketAddress> addresses) {
+    for (SocketAddress address : addresses) {
+      if (!Utils.isDomainSocketAddress(address)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @VisibleForTesting
@@ -159,7 +159,8 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeGraceInNanos,
       boolean permitKeepAliveWithoutCalls,
       long permitKeepAliveTimeInNanos,
-      Attributes eagAttributes) {
+      Attributes eagAttributes,
+      @Nullable MemoryAccountant memoryAccountant) {
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive: %s",
         maxHeaderListSize);
     Http2FrameLogger frameLogger = new Http2FrameLogger(LogLevel.DEBUG, NettyServerHandler.class);
@@ -187,7 +188,8 @@ class NettyServerHandler extends AbstractNettyHandler {
         maxConnectionAgeGraceInNanos,
         permitKeepAliveWithoutCalls,
         permitKeepAliveTimeInNanos,
-        eagAttributes);
+        eagAttributes,
+        memoryAccountant);
   }
 
   static NettyServerHandler newHandler(
@@ -209,7 +211,8 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeGraceInNanos,
       boolean permitKeepAliveWithoutCalls,
       long permitKeepAliveTimeInNanos,
-      Attributes eagAttributes) {
+      Attributes eagAttributes,
+      @Nullable MemoryAccountant memoryAccountant) {
     Preconditions.checkArgument(maxStreams > 0, "maxStreams must be positive: %s", maxStreams);
     Preconditions.checkArgument(flowControlWindow > 0, "flowControlWindow must be positive: %s",
         flowControlWindow);
@@ -255,7 +258,8 @@ class NettyServerHandler extends AbstractNettyHandler {
         maxConnectionAgeInNanos, maxConnectionAgeGraceInNanos,
         keepAliveEnforcer,
         autoFlowControl,
-        eagAttributes);
+        eagAttributes,
+        memoryAccountant);
   }
 
   private NettyServerHandler(
@@ -275,9 +279,10 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeGraceInNanos,
       final KeepAliveEnforcer keepAliveEnforcer,
       boolean autoFlowControl,
-      Attributes eagAttributes) {
+      Attributes eagAttributes,
+      @Nullable MemoryAccountant memoryAccountant) {
     super(channelUnused, decoder, encoder, settings, new ServerChannelLogger(),
-        autoFlowControl, null);
+        autoFlowControl, null, memoryAccountant);
 
     final MaxConnectionIdleManager maxConnectionIdleManager;
     if (maxConnectionIdleInNanos == MAX_CONNECTION_IDLE_NANOS_DISABLED) {
@@ -502,9 +507,11 @@ class NettyServerHandler extends AbstractNettyHandler {
       throws Http2Exception {
     flowControlPing().onDataRead(data.readableBytes(), padding);
     try {
-      NettyServerStream.TransportState stream = serverStream(requireHttp2Stream(streamId));
+      Http2Stream http2Stream = requireHttp2Stream(streamId);
+      NettyServerStream.TransportState stream = serverStream(http2Stream);
       PerfMark.startTask("NettyServerHandler.onDataRead", stream.tag());
       try {
+        inboundBytesReceived(http2Stream, data.readableBytes());
         stream.inboundDataReceived(data, endOfStream);
       } finally {
         PerfMark.stopTask("NettyServerHandler.onDataRead", stream.tag());
@@ -663,17 +670,6 @@ class NettyServerHandler extends AbstractNettyHandler {
     ctx.flush();
   }
 
-  /**
-   * Returns the given processed bytes back to inbound flow control.
-   */
-  void returnProcessedBytes(Http2Stream http2Stream, int bytes) {
-    try {
-      decoder().flowController().consumeBytes(http2Stream, bytes);
-    } catch (Http2Exception e) {
-      throw new RuntimeException(e);
-    }
-  }
-
   private void closeStreamWhenDone(ChannelPromise promise, int streamId) throws Http2Exception {
     final NettyServerStream.TransportState stream = serverStream(requireHttp2Stream(streamId));
     promise.addListener(new ChannelFutureListener() {
@@ -692,6 +688,7 @@ class NettyServerHandler extends AbstractNettyHandler {
     PerfMark.startTask("NettyServerHandler.sendGrpcFrame", cmd.stream().tag());
     PerfMark.linkIn(cmd.getLink());
     try {
+      promise = outboundBytesQueued(cmd.content().readableBytes(), promise);
       if (cmd.endStream()) {
         closeStreamWhenDone(promise, cmd.stream().id());
       }
@@ -16,13 +16,15 @@
 
 package io.grpc.netty;
 
+import io.grpc.internal.ByteBufferWritableBuffer;
 import io.grpc.internal.WritableBuffer;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 
 /**
  * The {@link WritableBuffer} used by the Netty transport.
  */
-class NettyWritableBuffer implements WritableBuffer {
+class NettyWritableBuffer implements ByteBufferWritableBuffer {
 
   private final ByteBuf bytebuf;
 
@@ -40,6 +42,20 @@ class NettyWritableBuffer implements WritableBuffer {
     bytebuf.writeByte(b);
   }
 
+  @Override
+  public ByteBuffer claimByteBuffer(int length) {
+    if (length > bytebuf.writableBytes()) {
+      throw new IndexOutOfBoundsException("length " + length + " > " + bytebuf.writableBytes());
+    }
+    if (bytebuf.nioBufferCount() != 1) {
+      return null;
+    }
+    int index = bytebuf.writerIndex();
+    ByteBuffer nioBuffer = bytebuf.nioBuffer(index, length);
+    bytebuf.writerIndex(index + length);
+    return nioBuffer;
+  }
+
   @Override
   public int writableBytes() {
     return bytebuf.writableBytes();
@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
 import com.google.errorprone.annotations.ForOverride;
 import io.grpc.Attributes;
 import io.grpc.CallCredentials;
@@ -66,13 +67,18 @@ import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.ssl.SslHandshakeCompletionEvent;
 import io.netty.handler.ssl.SslProvider;
 import io.netty.util.AsciiString;
+import io.netty.util.AttributeKey;
 import java.io.ByteArrayInputStream;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.nio.channels.ClosedChannelException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -81,12 +87,51 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 
 /**
  * Common {@link ProtocolNegotiator}s used by gRPC.
  */
 final class ProtocolNegotiators {
   private static final Logger log = Logger.getLogger(ProtocolNegotiators.class.getName());
+
+  /**
+   * System property bounding the number of TLS sessions cached per {@link SslContext} built from
+   * credentials. Unset or {@code 0} keeps the provider's default. {@code tlsSessionCache()} on
+   * the channel and server builders takes precedence.
+   */
+  static final String TLS_SESSION_CACHE_SIZE_PROPERTY = "io.grpc.netty.tlsSessionCacheSize";
+  /**
+   * System property setting how long, in seconds, cached TLS sessions may be resumed. Unset or
+   * {@code 0} keeps the provider's default. {@code tlsSessionCache()} on the channel and server
+   * builders takes precedence.
+   */
+  static final String TLS_SESSION_TIMEOUT_PROPERTY = "io.grpc.netty.tlsSessionTimeoutSeconds";
+
+  private static final long TLS_SESSION_CACHE_SIZE =
+      parseNonNegativeLong(TLS_SESSION_CACHE_SIZE_PROPERTY);
+  private static final long TLS_SESSION_TIMEOUT_SECONDS =
+      parseNonNegativeLong(TLS_SESSION_TIMEOUT_PROPERTY);
+
+  /**
+   * The outcome of the TLS handshake on a channel, reported as channelz socket options by {@link
+   * Utils#getSocketOptions}.
+   */
+  static final AttributeKey<TlsHandshakeInfo> TLS_HANDSHAKE_INFO =
+      AttributeKey.valueOf("io.grpc.netty.tlsHandshakeInfo");
+
+  /** Resumption bookkeeping per {@link SslContext}, see {@link TlsSessionTracker}. */
+  private static final Map<SslContext, TlsSessionTracker> sessionTrackers =
+      new WeakHashMap<>();
+
+  /**
+   * Client negotiators built from {@link TlsChannelCredentials}, so that all channels using the
+   * same credentials share one {@link SslContext} and thereby its session cache. Sessions are
+   * cached per host and port of the authority.
+   */
+  private static final Map<TlsChannelCredentials, ProtocolNegotiator.ClientFactory>
+      tlsClientFactories = Collections.synchronizedMap(
+          new WeakHashMap<TlsChannelCredentials, ProtocolNegotiator.ClientFactory>());
   private static final EnumSet<TlsChannelCredentials.Feature> understoodTlsFeatures =
       EnumSet.of(
           TlsChannelCredentials.Feature.MTLS, TlsChannelCredentials.Feature.CUSTOM_MANAGERS);
@@ -98,6 +143,34 @@ final class ProtocolNegotiators {
   private ProtocolNegotiators() {
   }
 
+  private static SslContextBuilder configureSessionCache(SslContextBuilder builder) {
+    if (TLS_SESSION_CACHE_SIZE > 0) {
+      builder.sessionCacheSize(TLS_SESSION_CACHE_SIZE);
+    }
+    if (TLS_SESSION_TIMEOUT_SECONDS > 0) {
+      builder.sessionTimeout(TLS_SESSION_TIMEOUT_SECONDS);
+    }
+    return builder;
+  }
+
+  @VisibleForTesting
+  static long parseNonNegativeLong(String property) {
+    String value = System.getProperty(property);
+    if (value == null) {
+      return 0;
+    }
+    try {
+      long parsed = Long.parseLong(value);
+      if (parsed >= 0) {
+        return parsed;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    log.log(Level.WARNING, "Ignoring invalid {0}: {1}", new Object[] {property, value});
+    return 0;
+  }
+
   public static FromChannelCredentialsResult from(ChannelCredentials creds) {
     if (creds instanceof TlsChannelCredentials) {
       TlsChannelCredentials tlsCreds = (TlsChannelCredentials) creds;
@@ -107,7 +180,11 @@ final class ProtocolNegotiators {
         return FromChannelCredentialsResult.error(
             "TLS features not understood: " + incomprehensible);
       }
-      SslContextBuilder builder = GrpcSslContexts.forClient();
+      ProtocolNegotiator.ClientFactory factory = tlsClientFactories.get(tlsCreds);
+      if (factory != null) {
+        return FromChannelCredentialsResult.negotiator(factory);
+      }
+      SslContextBuilder builder = configureSessionCache(GrpcSslContexts.forClient());
       if (tlsCreds.getKeyManagers() != null) {
         builder.keyManager(new FixedKeyManagerFactory(tlsCreds.getKeyManagers()));
       } else if (tlsCreds.getPrivateKey() != null) {
@@ -122,12 +199,14 @@ final class ProtocolNegotiators {
         builder.trustManager(new ByteArrayInputStream(tlsCreds.getRootCertificates()));
       } // else use system default
       try {
-        return FromChannelCredentialsResult.negotiator(tlsClientFactory(builder.build()));
+        factory = tlsClientFactory(builder.build());
       } catch (SSLException ex) {
         log.log(Level.FINE, "Exception building SslContext", ex);
         return FromChannelCredentialsResult.error(
             "Unable to create SslContext: " + ex.getMessage());
       }
+      tlsClientFactories.put(tlsCreds, factory);
+      return FromChannelCredentialsResult.negotiator(factory);
 
     } else if (creds instanceof InsecureChannelCredentials) {
       return FromChannelCredentialsResult.negotiator(plaintextClientFactory());
@@ -216,6 +295,7 @@ final class ProtocolNegotiators {
       } else {
         throw new AssertionError("BUG! No key");
       }
+      configureSessionCache(builder);
       if (tlsCreds.getTrustManagers() != null) {
         builder.trustManager(new FixedTrustManagerFactory(tlsCreds.getTrustManagers()));
       } else if (tlsCreds.getRootCertificates() != null) {
@@ -370,26 +450,7 @@ final class ProtocolNegotiators {
     } else {
       executor = null;
     }
-    return new ProtocolNegotiator() {
-      @Override
-      public ChannelHandler newHandler(GrpcHttp2ConnectionHandler handler) {
-        ChannelHandler gnh = new GrpcNegotiationHandler(handler);
-        ChannelHandler sth = new ServerTlsHandler(gnh, sslContext, executorPool);
-        return new WaitUntilActiveHandler(sth, handler.getNegotiationLogger());
-      }
-
-      @Override
-      public void close() {
-        if (executorPool != null && executor != null) {
-          executorPool.returnObject(executor);
-        }
-      }
-
-      @Override
-      public AsciiString scheme() {
-        return Utils.HTTPS;
-      }
-    };
+    return new ServerTlsProtocolNegotiator(sslContext, executorPool, executor);
   }
 
   /**
@@ -399,12 +460,45 @@ final class ProtocolNegotiators {
     return serverTls(sslContext, null);
   }
 
+  static final class ServerTlsProtocolNegotiator implements ProtocolNegotiator {
+    private final SslContext sslContext;
+    private final ObjectPool<? extends Executor> executorPool;
+    private final Executor executor;
+
+    ServerTlsProtocolNegotiator(SslContext sslContext,
+        ObjectPool<? extends Executor> executorPool, Executor executor) {
+      this.sslContext = sslContext;
+      this.executorPool = executorPool;
+      this.executor = executor;
+    }
+
+    @Override
+    public ChannelHandler newHandler(GrpcHttp2ConnectionHandler handler) {
+      ChannelHandler gnh = new GrpcNegotiationHandler(handler);
+      ChannelHandler sth = new ServerTlsHandler(gnh, sslContext, executorPool);
+      return new WaitUntilActiveHandler(sth, handler.getNegotiationLogger());
+    }
+
+    @Override
+    public void close() {
+      if (executorPool != null && executor != null) {
+        executorPool.returnObject(executor);
+      }
+    }
+
+    @Override
+    public AsciiString scheme() {
+      return Utils.HTTPS;
+    }
+  }
+
   static final class ServerTlsHandler extends ChannelInboundHandlerAdapter {
     private Executor executor;
     private final ChannelHandler next;
     private final SslContext sslContext;
 
     private ProtocolNegotiationEvent pne = ProtocolNegotiationEvent.DEFAULT;
+    private long handshakeStartNanos;
 
     ServerTlsHandler(ChannelHandler next,
         SslContext sslContext,
@@ -420,6 +514,7 @@ final class ProtocolNegotiators {
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
       super.handlerAdded(ctx);
       SSLEngine sslEngine = sslContext.newEngine(ctx.alloc());
+      handshakeStartNanos = System.nanoTime();
       ctx.pipeline().addBefore(ctx.name(), /* name= */ null, this.executor != null
           ? new SslHandler(sslEngine, false, this.executor)
           : new SslHandler(sslEngine, false));
@@ -444,8 +539,10 @@ final class ProtocolNegotiators {
               "Failed protocol negotiation: Unable to find compatible protocol"));
           return;
         }
+        SSLSession session = sslHandler.engine().getSession();
+        recordHandshake(ctx, sslContext, /* authority= */ "", session, handshakeStartNanos);
         ctx.pipeline().replace(ctx.name(), null, next);
-        fireProtocolNegotiationEvent(ctx, sslHandler.engine().getSession());
+        fireProtocolNegotiationEvent(ctx, session);
       } else {
         super.userEventTriggered(ctx, evt);
       }
@@ -580,14 +677,17 @@ final class ProtocolNegotiators {
   static final class ClientTlsHandler extends ProtocolNegotiationHandler {
 
     private final SslContext sslContext;
+    private final String authority;
     private final String host;
     private final int port;
     private Executor executor;
+    private long handshakeStartNanos;
 
     ClientTlsHandler(ChannelHandler next, SslContext sslContext, String authority,
         Executor executor, ChannelLogger negotiationLogger) {
       super(next, negotiationLogger);
       this.sslContext = checkNotNull(sslContext, "sslContext");
+      this.authority = authority;
       HostPort hostPort = parseAuthority(authority);
       this.host = hostPort.host;
       this.port = hostPort.port;
@@ -600,6 +700,7 @@ final class ProtocolNegotiators {
       SSLParameters sslParams = sslEngine.getSSLParameters();
       sslParams.setEndpointIdentificationAlgorithm("HTTPS");
       sslEngine.setSSLParameters(sslParams);
+      handshakeStartNanos = System.nanoTime();
       ctx.pipeline().addBefore(ctx.name(), /* name= */ null, this.executor != null
           ? new SslHandler(sslEngine, false, this.executor)
           : new SslHandler(sslEngine, false));
@@ -615,7 +716,9 @@ final class ProtocolNegotiators {
               .contains(handler.applicationProtocol())) {
             // Successfully negotiated the protocol.
             logSslEngineDetails(Level.FINER, ctx, "TLS negotiation succeeded.", null);
-            propagateTlsComplete(ctx, handler.engine().getSession());
+            SSLSession session = handler.engine().getSession();
+            recordHandshake(ctx, sslContext, authority, session, handshakeStartNanos);
+            propagateTlsComplete(ctx, session);
           } else {
             Exception ex =
                 unavailableException("Failed ALPN negotiation: Unable to find compatible protocol");
@@ -653,6 +756,99 @@ final class ProtocolNegotiators {
     }
   }
 
+  private static void recordHandshake(ChannelHandlerContext ctx, SslContext sslContext,
+      String authority, SSLSession session, long startNanos) {
+    TlsHandshakeInfo info = new TlsHandshakeInfo(
+        System.nanoTime() - startNanos, sessionTracker(sslContext).isResumed(authority, session));
+    ctx.channel().attr(TLS_HANDSHAKE_INFO).set(info);
+    if (log.isLoggable(Level.FINEST)) {
+      log.log(Level.FINEST, "TLS handshake took {0}us, resumed: {1}",
+          new Object[] {info.durationNanos / 1000, info.resumed});
+    }
+  }
+
+  private static TlsSessionTracker sessionTracker(SslContext sslContext) {
+    synchronized (sessionTrackers) {
+      TlsSessionTracker tracker = sessionTrackers.get(sslContext);
+      if (tracker == null) {
+        tracker = new TlsSessionTracker();
+        sessionTrackers.put(sslContext, tracker);
+      }
+      return tracker;
+    }
+  }
+
+  /**
+   * Applies session cache settings from a channel or server builder to the {@link SslContext} of a
+   * TLS negotiator, which makes them apply to every user of that context. Other negotiators are
+   * left unchanged. A negative value keeps the current setting; {@code 0} means no limit.
+   */
+  static void setSessionCacheLimits(
+      ProtocolNegotiator negotiator, int cacheSize, int timeoutSeconds) {
+    SslContext sslContext;
+    if (negotiator instanceof ClientTlsProtocolNegotiator) {
+      sslContext = ((ClientTlsProtocolNegotiator) negotiator).sslContext;
+    } else if (negotiator instanceof ServerTlsProtocolNegotiator) {
+      sslContext = ((ServerTlsProtocolNegotiator) negotiator).sslContext;
+    } else {
+      return;
+    }
+    SSLSessionContext sessionContext = sslContext.sessionContext();
+    if (cacheSize >= 0) {
+      sessionContext.setSessionCacheSize(cacheSize);
+    }
+    if (timeoutSeconds >= 0) {
+      sessionContext.setSessionTimeout(timeoutSeconds);
+    }
+  }
+
+  /**
+   * Recognizes resumed TLS sessions by their ID: a handshake resumed a session if an earlier
+   * handshake through the same {@link SslContext} and for the same authority negotiated that ID.
+   * Neither {@link SSLSession} nor {@link SSLEngine} report resumption directly. Providers that
+   * give a resumed TLS 1.3 session a fresh ID are counted as full handshakes, so the count errs
+   * low rather than reporting a full handshake as resumed. Only the most recently used IDs are
+   * remembered.
+   */
+  @VisibleForTesting
+  static final class TlsSessionTracker {
+    @VisibleForTesting
+    static final int MAX_TRACKED_SESSIONS = 4096;
+
+    @SuppressWarnings("serial")
+    private final Map<String, Boolean> seen = new LinkedHashMap<String, Boolean>(
+        /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > MAX_TRACKED_SESSIONS;
+      }
+    };
+
+    /**
+     * Returns whether {@code session} was negotiated for {@code authority} before, and remembers
+     * it for later handshakes.
+     */
+    synchronized boolean isResumed(String authority, SSLSession session) {
+      byte[] id = session.getId();
+      if (id == null || id.length == 0) {
+        return false;
+      }
+      String key = authority + '/' + BaseEncoding.base16().encode(id);
+      return seen.put(key, Boolean.TRUE) != null;
+    }
+  }
+
+  /** Duration of a completed TLS handshake and whether it resumed a cached session. */
+  static final class TlsHandshakeInfo {
+    final long durationNanos;
+    final boolean resumed;
+
+    TlsHandshakeInfo(long durationNanos, boolean resumed) {
+      this.durationNanos = durationNanos;
+      this.resumed = resumed;
+    }
+  }
+
   @VisibleForTesting
   static HostPort parseAuthority(String authority) {
     URI uri = GrpcUtil.authorityToUri(Preconditions.checkNotNull(authority, "authority"));
@@ -1008,13 +1204,18 @@ final class ProtocolNegotiators {
 
     private void replaceOnActive(ChannelHandlerContext ctx) {
       ProtocolNegotiationEvent existingPne = getProtocolNegotiationEvent();
-      Attributes attrs = existingPne.getAttributes().toBuilder()
-          .set(Grpc.TRANSPORT_ATTR_LOCAL_ADDR, ctx.channel().localAddress())
+      SocketAddress localAddress = ctx.channel().localAddress();
+      if (localAddress == null && ctx.channel().parent() != null) {
+        // Accepted Unix domain sockets don't report the address they were accepted on.
+        localAddress = ctx.channel().parent().localAddress();
+      }
+      Attributes.Builder attrs = existingPne.getAttributes().toBuilder()
+          .set(Grpc.TRANSPORT_ATTR_LOCAL_ADDR, localAddress)
           .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, ctx.channel().remoteAddress())
           // Later handlers are expected to overwrite this.
-          .set(GrpcAttributes.ATTR_SECURITY_LEVEL, SecurityLevel.NONE)
-          .build();
-      replaceProtocolNegotiationEvent(existingPne.withAttributes(attrs));
+          .set(GrpcAttributes.ATTR_SECURITY_LEVEL, SecurityLevel.NONE);
+      Utils.setPeerCredentials(ctx.channel(), attrs);
+      replaceProtocolNegotiationEvent(existingPne.withAttributes(attrs.build()));
     }
   }
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.grpc.Internal;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import java.net.URI;
+
+/**
+ * A provider for {@link UdsNameResolver}.
+ *
+ * <p>It resolves a target URI whose scheme is {@code "unix"} to the Unix domain socket at its
+ * path. Example target URIs:
+ *
+ * <ul>
+ *   <li>{@code "unix:///path/to/socket"}</li>
+ *   <li>{@code "unix:/path/to/socket"}</li>
+ *   <li>{@code "unix:relative/path/to/socket"}</li>
+ * </ul>
+ *
+ * <p>Netty's epoll transport is needed to connect to the resolved addresses.
+ */
+@Internal
+public final class UdsNameResolverProvider extends NameResolverProvider {
+
+  private static final String SCHEME = "unix";
+
+  @Override
+  public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+    if (SCHEME.equals(targetUri.getScheme())) {
+      checkArgument(targetUri.getAuthority() == null,
+          "the target (%s) must not have an authority", targetUri);
+      String path = targetUri.getPath();
+      if (path == null) {
+        // Opaque URIs, like "unix:relative/path", have no path.
+        path = targetUri.getSchemeSpecificPart();
+      }
+      checkArgument(!path.isEmpty(), "the target (%s) must have a path", targetUri);
+      return new UdsNameResolver(path);
+    } else {
+      return null;
+    }
+  }
+
+  @Override
+  public String getDefaultScheme() {
+    return SCHEME;
+  }
+
+  @Override
+  protected boolean isAvailable() {
+    return Utils.isDomainSocketAddressAvailable();
+  }
+
+  @Override
+  public int priority() {
+    return 3;
+  }
+}
@@ -26,6 +26,8 @@ import static io.netty.util.CharsetUtil.UTF_8;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import io.grpc.Attributes;
+import io.grpc.Grpc;
 import io.grpc.InternalChannelz;
 import io.grpc.InternalMetadata;
 import io.grpc.Metadata;
@@ -58,6 +60,9 @@ import io.netty.util.NettyRuntime;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.UnresolvedAddressException;
 import java.util.Map;
@@ -104,9 +109,20 @@ class Utils {
 
   public static final ChannelFactory<? extends ServerChannel> DEFAULT_SERVER_CHANNEL_FACTORY;
   public static final Class<? extends Channel> DEFAULT_CLIENT_CHANNEL_TYPE;
+  /** Channel factory for Unix domain sockets, or {@code null} if epoll is not available. */
+  @Nullable
+  public static final ChannelFactory<? extends ServerChannel> EPOLL_DOMAIN_SERVER_CHANNEL_FACTORY;
+  /** Channel factory for Unix domain sockets, or {@code null} if epoll is not available. */
+  @Nullable
+  public static final ChannelFactory<? extends Channel> EPOLL_DOMAIN_CLIENT_CHANNEL_FACTORY;
 
   @Nullable
   private static final Constructor<? extends EventLoopGroup> EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR;
+  @Nullable
+  private static final Class<? extends SocketAddress> DOMAIN_SOCKET_ADDRESS_TYPE =
+      domainSocketAddressType();
+  @Nullable
+  private static final Method PEER_CREDENTIALS_METHOD;
 
   static {
     // Decide default channel types and EventLoopGroup based on Epoll availability
@@ -114,6 +130,12 @@ class Utils {
       DEFAULT_CLIENT_CHANNEL_TYPE = epollChannelType();
       DEFAULT_SERVER_CHANNEL_FACTORY = new ReflectiveChannelFactory<>(epollServerChannelType());
       EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR = epollEventLoopGroupConstructor();
+      EPOLL_DOMAIN_SERVER_CHANNEL_FACTORY = new ReflectiveChannelFactory<>(
+          epollClass("EpollServerDomainSocketChannel").asSubclass(ServerChannel.class));
+      Class<? extends Channel> domainChannelType =
+          epollClass("EpollDomainSocketChannel").asSubclass(Channel.class);
+      EPOLL_DOMAIN_CLIENT_CHANNEL_FACTORY = new ReflectiveChannelFactory<>(domainChannelType);
+      PEER_CREDENTIALS_METHOD = peerCredentialsMethod(domainChannelType);
       DEFAULT_BOSS_EVENT_LOOP_GROUP
         = new DefaultEventLoopGroupResource(1, "grpc-default-boss-ELG", EventLoopGroupType.EPOLL);
       DEFAULT_WORKER_EVENT_LOOP_GROUP
@@ -125,6 +147,9 @@ class Utils {
       DEFAULT_BOSS_EVENT_LOOP_GROUP = NIO_BOSS_EVENT_LOOP_GROUP;
       DEFAULT_WORKER_EVENT_LOOP_GROUP = NIO_WORKER_EVENT_LOOP_GROUP;
       EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
+      EPOLL_DOMAIN_SERVER_CHANNEL_FACTORY = null;
+      EPOLL_DOMAIN_CLIENT_CHANNEL_FACTORY = null;
+      PEER_CREDENTIALS_METHOD = null;
     }
   }
 
@@ -352,6 +377,87 @@ class Utils {
     }
   }
 
+  // Must call when epoll is available
+  private static Class<?> epollClass(String simpleName) {
+    try {
+      return Class.forName("io.netty.channel.epoll." + simpleName);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Cannot load " + simpleName, e);
+    }
+  }
+
+  // Must call when epoll is available
+  private static Method peerCredentialsMethod(Class<? extends Channel> domainChannelType) {
+    try {
+      return domainChannelType.getMethod("peerCredentials");
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException("EpollDomainSocketChannel.peerCredentials() not found", e);
+    }
+  }
+
+  @Nullable
+  private static Class<? extends SocketAddress> domainSocketAddressType() {
+    try {
+      return Class.forName("io.netty.channel.unix.DomainSocketAddress")
+          .asSubclass(SocketAddress.class);
+    } catch (ClassNotFoundException e) {
+      // this is normal if netty-transport-native-unix-common runtime dependency doesn't exist.
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether Netty's {@code DomainSocketAddress} can be used, which is needed to resolve
+   * {@code unix:} targets.
+   */
+  static boolean isDomainSocketAddressAvailable() {
+    return DOMAIN_SOCKET_ADDRESS_TYPE != null;
+  }
+
+  /**
+   * Returns whether {@code address} is a Unix domain socket address.
+   */
+  static boolean isDomainSocketAddress(SocketAddress address) {
+    return DOMAIN_SOCKET_ADDRESS_TYPE != null && DOMAIN_SOCKET_ADDRESS_TYPE.isInstance(address);
+  }
+
+  /**
+   * Creates a Unix domain socket address for {@code path}. Must only be called if {@link
+   * #isDomainSocketAddressAvailable()}.
+   */
+  static SocketAddress newDomainSocketAddress(String path) {
+    checkState(DOMAIN_SOCKET_ADDRESS_TYPE != null, "DomainSocketAddress is not available");
+    try {
+      return DOMAIN_SOCKET_ADDRESS_TYPE.getConstructor(String.class).newInstance(path);
+    } catch (Exception e) {
+      throw new RuntimeException("Cannot create DomainSocketAddress", e);
+    }
+  }
+
+  /**
+   * Adds the user and process IDs of the peer to {@code attrs} if {@code channel} is an epoll Unix
+   * domain socket. They are those of the process that connected or listened on the socket, as
+   * reported by {@code SO_PEERCRED}.
+   */
+  static void setPeerCredentials(Channel channel, Attributes.Builder attrs) {
+    if (PEER_CREDENTIALS_METHOD == null
+        || !PEER_CREDENTIALS_METHOD.getDeclaringClass().isInstance(channel)) {
+      return;
+    }
+    try {
+      Object credentials = PEER_CREDENTIALS_METHOD.invoke(channel);
+      Class<?> credentialsType = credentials.getClass();
+      attrs.set(Grpc.TRANSPORT_ATTR_PEER_UID,
+          (Integer) credentialsType.getMethod("uid").invoke(credentials));
+      attrs.set(Grpc.TRANSPORT_ATTR_PEER_PID,
+          (Integer) credentialsType.getMethod("pid").invoke(credentials));
+    } catch (InvocationTargetException e) {
+      logger.log(Level.FINE, "Unable to get peer credentials of " + channel, e.getCause());
+    } catch (Exception e) {
+      throw new RuntimeException("Cannot get peer credentials", e);
+    }
+  }
+
   private static EventLoopGroup createEpollEventLoopGroup(
       int parallelism,
       ThreadFactory threadFactory) {
@@ -500,6 +606,13 @@ class Utils {
         b.addOption(entry.getKey(), entry.getValue());
       }
     }
+
+    ProtocolNegotiators.TlsHandshakeInfo handshake =
+        channel.attr(ProtocolNegotiators.TLS_HANDSHAKE_INFO).get();
+    if (handshake != null) {
+      b.addOption("TLS_HANDSHAKE_MICROS", String.valueOf(handshake.durationNanos / 1000));
+      b.addOption("TLS_SESSION_RESUMED", String.valueOf(handshake.resumed));
+    }
     return b.build();
   }
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.netty.MemoryAccountant.StreamAccount;
+import io.grpc.netty.MemoryAccountant.TransportAccount;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MemoryAccountant}. */
+@RunWith(JUnit4.class)
+public class MemoryAccountantTest {
+  private final MemoryAccountant accountant = new MemoryAccountant(1000);
+  private int resumed1;
+  private int resumed2;
+  private final TransportAccount account1 = accountant.newTransportAccount(new Runnable() {
+    @Override
+    public void run() {
+      resumed1++;
+    }
+  });
+  private final TransportAccount account2 = accountant.newTransportAccount(new Runnable() {
+    @Override
+    public void run() {
+      resumed2++;
+    }
+  });
+
+  @Test
+  public void tracksTransportsAndStreams() {
+    StreamAccount stream1 = new StreamAccount();
+    StreamAccount stream2 = new StreamAccount();
+    account1.inboundReceived(stream1, 100);
+    account2.inboundReceived(stream2, 75);
+    assertEquals(100, stream1.bufferedBytes);
+    assertEquals(100, account1.getInboundBytes());
+    assertEquals(75, account2.getInboundBytes());
+    assertEquals(175, accountant.getInboundBytes());
+
+    account1.inboundReleased(stream1, 60);
+    assertEquals(40, stream1.bufferedBytes);
+    assertEquals(115, accountant.getInboundBytes());
+
+    // Can't release more than the stream holds.
+    account1.inboundReleased(stream1, 100);
+    assertEquals(0, stream1.bufferedBytes);
+    assertEquals(0, account1.getInboundBytes());
+    assertEquals(75, accountant.getInboundBytes());
+  }
+
+  @Test
+  public void outboundBytesAreCountedButDoNotPause() {
+    account1.outboundQueued(1500);
+    account2.outboundQueued(100);
+    assertEquals(1500, account1.getOutboundBytes());
+    assertEquals(1600, accountant.getOutboundBytes());
+    assertEquals(0, accountant.getInboundBytes());
+    assertFalse(account1.shouldPauseReads());
+
+    account1.outboundReleased(1500);
+    assertEquals(0, account1.getOutboundBytes());
+    assertEquals(100, accountant.getOutboundBytes());
+  }
+
+  @Test
+  public void pausesUntilBelowResumeThreshold() {
+    StreamAccount stream1 = new StreamAccount();
+    StreamAccount stream2 = new StreamAccount();
+    account1.inboundReceived(stream1, 1000);
+    assertFalse(account1.shouldPauseReads());
+
+    account2.inboundReceived(stream2, 100);
+    assertTrue(account1.shouldPauseReads());
+    assertTrue(account1.shouldPauseReads());
+    assertTrue(account2.shouldPauseReads());
+
+    // Still above three quarters of the budget.
+    account1.inboundReleased(stream1, 300);
+    assertEquals(0, resumed1);
+    assertEquals(0, resumed2);
+
+    account2.inboundReleased(stream2, 100);
+    assertEquals(1, resumed1);
+    assertEquals(1, resumed2);
+    assertFalse(account1.shouldPauseReads());
+
+    account1.inboundReleased(stream1, 100);
+    assertEquals(1, resumed1);
+  }
+
+  @Test
+  public void closeReleasesBytesAndForgetsPausedAccount() {
+    StreamAccount stream1 = new StreamAccount();
+    StreamAccount stream2 = new StreamAccount();
+    account1.inboundReceived(stream1, 1100);
+    account2.inboundReceived(stream2, 100);
+    assertTrue(account1.shouldPauseReads());
+    assertTrue(account2.shouldPauseReads());
+
+    account1.close();
+    assertEquals(100, accountant.getInboundBytes());
+    assertEquals(0, account1.getInboundBytes());
+    assertFalse(account1.shouldPauseReads());
+    // Releasing the closed account's bytes resumed the remaining one only.
+    assertEquals(0, resumed1);
+    assertEquals(1, resumed2);
+
+    // Streams closing after the transport don't release twice.
+    account1.inboundReleased(stream1, 1100);
+    assertEquals(100, accountant.getInboundBytes());
+  }
+
+  @Test
+  public void closedAccountIsNotResumed() {
+    StreamAccount stream1 = new StreamAccount();
+    StreamAccount stream2 = new StreamAccount();
+    account1.inboundReceived(stream1, 1100);
+    assertTrue(account2.shouldPauseReads());
+
+    account2.close();
+    account1.inboundReleased(stream1, 1100);
+    assertEquals(0, resumed2);
+    assertEquals(0, accountant.getInboundBytes());
+    account2.inboundReceived(stream2, 100);
+    assertEquals(0, accountant.getInboundBytes());
+  }
+}
@@ -252,6 +252,15 @@ public class NettyChannelBuilderTest {
     builder.keepAliveTimeout(-1L, TimeUnit.HOURS);
   }
 
+  @Test
+  public void negativeTlsSessionTimeout() {
+    NettyChannelBuilder builder = NettyChannelBuilder.forTarget("fakeTarget");
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("timeout must be non-negative");
+    builder.tlsSessionCache(10, -1L, TimeUnit.HOURS);
+  }
+
   @Test
   public void assertEventLoopAndChannelType_onlyGroupProvided() {
     NettyChannelBuilder builder = NettyChannelBuilder.forTarget("fakeTarget");
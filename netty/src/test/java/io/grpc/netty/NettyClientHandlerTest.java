@@ -913,6 +913,7 @@ public class NettyClientHandlerTest extends NettyHandlerTestBase<NettyClientHand
         transportTracer,
         Attributes.EMPTY,
         "someauthority",
+        null,
         null);
   }
 
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.TruthJUnit.assume;
+
+import io.grpc.Attributes;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.protobuf.SimpleRequest;
+import io.grpc.testing.protobuf.SimpleResponse;
+import io.grpc.testing.protobuf.SimpleServiceGrpc;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for Unix domain socket support, which relies on the builders picking the epoll domain
+ * socket channels by default.
+ */
+@RunWith(JUnit4.class)
+public class NettyDomainSocketTest {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final AtomicReference<Attributes> serverCallAttributes = new AtomicReference<>();
+  private File socket;
+  private Server server;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    assume().that(Utils.isEpollAvailable()).isTrue();
+    socket = new File(tempFolder.getRoot(), "grpc.sock");
+    ServerInterceptor attributesCapturer = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+          ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        serverCallAttributes.set(call.getAttributes());
+        return next.startCall(call, headers);
+      }
+    };
+    server = NettyServerBuilder.forAddress(Utils.newDomainSocketAddress(socket.getPath()))
+        .addService(ServerInterceptors.intercept(new SimpleServiceImpl(), attributesCapturer))
+        .build()
+        .start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (channel != null) {
+      channel.shutdownNow();
+      channel.awaitTermination(5, TimeUnit.SECONDS);
+    }
+    if (server != null) {
+      server.shutdownNow();
+      server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void unixTarget() {
+    channel = Grpc.newChannelBuilder("unix://" + socket.getPath(),
+        InsecureChannelCredentials.create()).build();
+    assertThat(channel.authority()).isEqualTo("localhost");
+
+    SimpleServiceGrpc.newBlockingStub(channel).unaryRpc(SimpleRequest.getDefaultInstance());
+  }
+
+  @Test
+  public void domainSocketAddress() {
+    channel = NettyChannelBuilder.forAddress(Utils.newDomainSocketAddress(socket.getPath()))
+        .usePlaintext()
+        .build();
+    assertThat(channel.authority()).isEqualTo("localhost");
+
+    SimpleServiceGrpc.newBlockingStub(channel).unaryRpc(SimpleRequest.getDefaultInstance());
+  }
+
+  @Test
+  public void serverSeesPeerCredentials() {
+    channel = Grpc.newChannelBuilder("unix://" + socket.getPath(),
+        InsecureChannelCredentials.create()).build();
+    SimpleServiceGrpc.newBlockingStub(channel).unaryRpc(SimpleRequest.getDefaultInstance());
+
+    Attributes attrs = serverCallAttributes.get();
+    assertThat(attrs.get(Grpc.TRANSPORT_ATTR_PEER_UID)).isNotNull();
+    // The name is "pid@hostname" on the JVMs that support Unix domain sockets.
+    String pid = ManagementFactory.getRuntimeMXBean().getName().split("@", -1)[0];
+    assertThat(attrs.get(Grpc.TRANSPORT_ATTR_PEER_PID)).isEqualTo(Integer.parseInt(pid));
+    assertThat(attrs.get(Grpc.TRANSPORT_ATTR_LOCAL_ADDR))
+        .isEqualTo(Utils.newDomainSocketAddress(socket.getPath()));
+  }
+
+  @Test
+  public void serverRemovesSocketOnShutdown() throws Exception {
+    assertThat(socket.exists()).isTrue();
+    server.shutdown();
+    assertThat(server.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(socket.exists()).isFalse();
+  }
+
+  private static class SimpleServiceImpl extends SimpleServiceGrpc.SimpleServiceImplBase {
+    @Override
+    public void unaryRpc(SimpleRequest request, StreamObserver<SimpleResponse> respOb) {
+      respOb.onNext(SimpleResponse.getDefaultInstance());
+      respOb.onCompleted();
+    }
+  }
+}
@@ -100,6 +100,22 @@ public class NettyServerBuilderTest {
     builder.maxInboundMetadataSize(0);
   }
 
+  @Test
+  public void failIfMaxInboundBufferedBytesNonPositive() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("bytes must be positive");
+
+    builder.maxInboundBufferedBytes(0);
+  }
+
+  @Test
+  public void failIfTlsSessionCacheSizeNegative() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("maxSessions must be non-negative");
+
+    builder.tlsSessionCache(-1, 1, TimeUnit.HOURS);
+  }
+
   @Test
   public void failIfMaxConnectionIdleNegative() {
     thrown.expect(IllegalArgumentException.class);
@@ -140,6 +140,7 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
   private long maxConnectionAgeGraceInNanos = MAX_CONNECTION_AGE_GRACE_NANOS_INFINITE;
   private long keepAliveTimeInNanos = DEFAULT_SERVER_KEEPALIVE_TIME_NANOS;
   private long keepAliveTimeoutInNanos = DEFAULT_SERVER_KEEPALIVE_TIMEOUT_NANOS;
+  private MemoryAccountant memoryAccountant;
 
   private class ServerTransportListenerImpl implements ServerTransportListener {
 
@@ -272,6 +273,82 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
     verifyNoMoreInteractions(streamListener);
   }
 
+  @Test
+  public void inboundDataShouldBeAccountedUntilDeframed() throws Exception {
+    memoryAccountant = new MemoryAccountant(1024 * 1024);
+    manualSetUp();
+    createStream();
+
+    ByteBuf frame = grpcDataFrame(STREAM_ID, false, contentAsArray());
+    int frameDataBytes = contentAsArray().length + 5;
+    channelRead(frame);
+    assertEquals(frameDataBytes, handler().memoryAccount().getInboundBytes());
+    assertEquals(frameDataBytes, memoryAccountant.getInboundBytes());
+
+    stream.request(1);
+    assertEquals(0, handler().memoryAccount().getInboundBytes());
+    assertEquals(0, memoryAccountant.getInboundBytes());
+    streamListenerMessageQueue.poll().close();
+  }
+
+  @Test
+  public void inboundWindowShouldBeWithheldWhileOverMemoryBudget() throws Exception {
+    memoryAccountant = new MemoryAccountant(100);
+    manualSetUp();
+    createStream();
+    Http2Stream http2Stream = connection().stream(STREAM_ID);
+    Http2LocalFlowController localFlowController = connection().local().flowController();
+    // Another connection of the server holds more than the budget.
+    MemoryAccountant.TransportAccount otherTransport =
+        memoryAccountant.newTransportAccount(mock(Runnable.class));
+    MemoryAccountant.StreamAccount otherStream = new MemoryAccountant.StreamAccount();
+    otherTransport.inboundReceived(otherStream, 200);
+
+    channelRead(grpcDataFrame(STREAM_ID, false, contentAsArray()));
+    int frameDataBytes = contentAsArray().length + 5;
+    stream.request(1);
+    streamListenerMessageQueue.poll().close();
+    // The message was deframed, but its window is not returned to the client.
+    assertEquals(0, handler().memoryAccount().getInboundBytes());
+    assertEquals(frameDataBytes, localFlowController.unconsumedBytes(http2Stream));
+
+    otherTransport.inboundReleased(otherStream, 200);
+    assertEquals(0, localFlowController.unconsumedBytes(http2Stream));
+  }
+
+  @Test
+  public void outboundDataShouldBeAccountedUntilWritten() throws Exception {
+    memoryAccountant = MemoryAccountant.create();
+    manualSetUp();
+    // The client gives no window, so the frame waits in the flow controller.
+    channelRead(serializeSettings(new Http2Settings().initialWindowSize(0)));
+    createStream();
+
+    enqueue(new SendGrpcFrameCommand(stream.transportState(), content(), false));
+    int frameBytes = content().readableBytes();
+    assertEquals(frameBytes, handler().memoryAccount().getOutboundBytes());
+    assertEquals(frameBytes, memoryAccountant.getOutboundBytes());
+    // Outbound bytes don't count against the budget.
+    assertFalse(handler().memoryAccount().shouldPauseReads());
+
+    channelRead(windowUpdate(STREAM_ID, frameBytes));
+    assertEquals(0, handler().memoryAccount().getOutboundBytes());
+    assertEquals(0, memoryAccountant.getOutboundBytes());
+  }
+
+  @Test
+  public void channelInactiveShouldCloseMemoryAccount() throws Exception {
+    memoryAccountant = new MemoryAccountant(100);
+    manualSetUp();
+    createStream();
+    channelRead(grpcDataFrame(STREAM_ID, false, contentAsArray()));
+    assertEquals(contentAsArray().length + 5, memoryAccountant.getInboundBytes());
+
+    handler().channelInactive(ctx());
+    assertEquals(0, memoryAccountant.getInboundBytes());
+    assertFalse(handler().memoryAccount().shouldPauseReads());
+  }
+
   @Test
   public void clientHalfCloseShouldForwardToStreamListener() throws Exception {
     manualSetUp();
@@ -1267,7 +1344,8 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
         maxConnectionAgeGraceInNanos,
         permitKeepAliveWithoutCalls,
         permitKeepAliveTimeInNanos,
-        Attributes.EMPTY);
+        Attributes.EMPTY,
+        memoryAccountant);
   }
 
   @Override
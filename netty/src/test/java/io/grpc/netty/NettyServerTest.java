@@ -151,6 +151,7 @@ public class NettyServerTest {
         1, 1, // ignore
         true, 0, // ignore
         Attributes.EMPTY,
+        null,
         channelz);
     final SettableFuture<Void> serverShutdownCalled = SettableFuture.create();
     ns.start(new ServerListener() {
@@ -201,6 +202,7 @@ public class NettyServerTest {
         1, 1, // ignore
         true, 0, // ignore
         Attributes.EMPTY,
+        null,
         channelz);
     final SettableFuture<Void> shutdownCompleted = SettableFuture.create();
     ns.start(new ServerListener() {
@@ -274,6 +276,7 @@ public class NettyServerTest {
         1, 1, // ignore
         true, 0, // ignore
         Attributes.EMPTY,
+        null,
         channelz);
     final SettableFuture<Void> shutdownCompleted = SettableFuture.create();
     ns.start(new ServerListener() {
@@ -335,6 +338,7 @@ public class NettyServerTest {
         1, 1, // ignore
         true, 0, // ignore
         Attributes.EMPTY,
+        null,
         channelz);
 
     assertThat(ns.getListenSocketAddress()).isEqualTo(addr);
@@ -409,6 +413,7 @@ public class NettyServerTest {
         1, 1, // ignore
         true, 0, // ignore
         eagAttributes,
+        null,
         channelz);
     ns.start(new ServerListener() {
       @Override
@@ -456,6 +461,7 @@ public class NettyServerTest {
         1, 1, // ignore
         true, 0, // ignore
         Attributes.EMPTY,
+        null,
         channelz);
     final SettableFuture<Void> shutdownCompleted = SettableFuture.create();
     ns.start(new ServerListener() {
@@ -598,6 +604,7 @@ public class NettyServerTest {
         1, 1, // ignore
         true, 0, // ignore
         Attributes.EMPTY,
+        null,
         channelz);
   }
 
@@ -16,12 +16,19 @@
 
 package io.grpc.netty;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 import io.grpc.internal.WritableBuffer;
 import io.grpc.internal.WritableBufferTestBase;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -43,6 +50,28 @@ public class NettyWritableBufferTest extends WritableBufferTestBase {
     buffer.release();
   }
 
+  @Test
+  public void claimByteBuffer() {
+    buffer.write(new byte[] {1, 2}, 0, 2);
+    ByteBuffer claimed = buffer.claimByteBuffer(3);
+
+    assertEquals(3, claimed.remaining());
+    assertEquals(5, buffer.readableBytes());
+    claimed.put(new byte[] {3, 4, 5});
+    buffer.write((byte) 6);
+    assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6}, writtenBytes());
+  }
+
+  @Test
+  public void claimByteBuffer_notContiguous() {
+    ByteBuf composite = Unpooled.wrappedBuffer(new byte[10], new byte[10]).writerIndex(0);
+    NettyWritableBuffer compositeBuffer = new NettyWritableBuffer(composite);
+
+    assertNull(compositeBuffer.claimByteBuffer(5));
+    assertEquals(0, compositeBuffer.readableBytes());
+    compositeBuffer.release();
+  }
+
   @Override
   protected WritableBuffer buffer() {
     return buffer;
@@ -30,6 +30,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import io.grpc.Attributes;
 import io.grpc.CallCredentials;
@@ -230,6 +231,72 @@ public class ProtocolNegotiatorsTest {
         .isInstanceOf(ProtocolNegotiators.TlsProtocolNegotiatorClientFactory.class);
   }
 
+  @Test
+  public void fromClient_tls_sharedBySameCredentials() {
+    TlsChannelCredentials creds = (TlsChannelCredentials) TlsChannelCredentials.create();
+    ProtocolNegotiator.ClientFactory factory = ProtocolNegotiators.from(creds).negotiator;
+    assertThat(ProtocolNegotiators.from(creds).negotiator).isSameInstanceAs(factory);
+    assertThat(ProtocolNegotiators.from(TlsChannelCredentials.create()).negotiator)
+        .isNotSameInstanceAs(factory);
+  }
+
+  @Test
+  public void sessionTracker_resumedOnlyForSameIdAndAuthority() {
+    ProtocolNegotiators.TlsSessionTracker tracker = new ProtocolNegotiators.TlsSessionTracker();
+    SSLSession session = mock(SSLSession.class);
+    when(session.getId()).thenReturn(new byte[] {1, 2, 3});
+    SSLSession other = mock(SSLSession.class);
+    when(other.getId()).thenReturn(new byte[] {4, 5, 6});
+
+    assertThat(tracker.isResumed("a:443", session)).isFalse();
+    assertThat(tracker.isResumed("a:443", session)).isTrue();
+    assertThat(tracker.isResumed("b:443", session)).isFalse();
+    assertThat(tracker.isResumed("a:443", other)).isFalse();
+  }
+
+  @Test
+  public void sessionTracker_emptyIdNeverResumed() {
+    ProtocolNegotiators.TlsSessionTracker tracker = new ProtocolNegotiators.TlsSessionTracker();
+    SSLSession session = mock(SSLSession.class);
+    when(session.getId()).thenReturn(new byte[0]);
+
+    assertThat(tracker.isResumed("a:443", session)).isFalse();
+    assertThat(tracker.isResumed("a:443", session)).isFalse();
+  }
+
+  @Test
+  public void sessionTracker_forgetsLeastRecentlyUsed() {
+    ProtocolNegotiators.TlsSessionTracker tracker = new ProtocolNegotiators.TlsSessionTracker();
+    SSLSession first = mock(SSLSession.class);
+    when(first.getId()).thenReturn(new byte[] {-1});
+    tracker.isResumed("a", first);
+    for (int i = 0; i < ProtocolNegotiators.TlsSessionTracker.MAX_TRACKED_SESSIONS; i++) {
+      SSLSession session = mock(SSLSession.class);
+      when(session.getId()).thenReturn(new byte[] {(byte) i, (byte) (i >> 8)});
+      tracker.isResumed("a", session);
+    }
+
+    assertThat(tracker.isResumed("a", first)).isFalse();
+  }
+
+  @Test
+  public void setSessionCacheLimits_appliesToTlsNegotiators() throws Exception {
+    SelfSignedCertificate cert = new SelfSignedCertificate("authority");
+    SslContext clientSslContext =
+        GrpcSslContexts.configure(SslContextBuilder.forClient().trustManager(cert.cert())).build();
+    SslContext serverSslContext =
+        GrpcSslContexts.configure(SslContextBuilder.forServer(cert.key(), cert.cert())).build();
+
+    ProtocolNegotiators.setSessionCacheLimits(
+        ProtocolNegotiators.tls(clientSslContext), 7, 11);
+    ProtocolNegotiators.setSessionCacheLimits(
+        ProtocolNegotiators.serverTls(serverSslContext), 13, -1);
+
+    assertThat(clientSslContext.sessionContext().getSessionCacheSize()).isEqualTo(7);
+    assertThat(clientSslContext.sessionContext().getSessionTimeout()).isEqualTo(11);
+    assertThat(serverSslContext.sessionContext().getSessionCacheSize()).isEqualTo(13);
+  }
+
   @Test
   public void fromClient_unsupportedTls() {
     ProtocolNegotiators.FromChannelCredentialsResult result =
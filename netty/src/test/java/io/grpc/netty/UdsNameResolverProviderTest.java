@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.grpc.ChannelLogger;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolver.ResolutionResult;
+import io.grpc.NameResolver.ServiceConfigParser;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.GrpcUtil;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link UdsNameResolverProvider}. */
+@RunWith(JUnit4.class)
+public class UdsNameResolverProviderTest {
+  private final SynchronizationContext syncContext = new SynchronizationContext(
+      new Thread.UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+          throw new AssertionError(e);
+        }
+      });
+  private final NameResolver.Args args = NameResolver.Args.newBuilder()
+      .setDefaultPort(8080)
+      .setProxyDetector(GrpcUtil.DEFAULT_PROXY_DETECTOR)
+      .setSynchronizationContext(syncContext)
+      .setServiceConfigParser(mock(ServiceConfigParser.class))
+      .setChannelLogger(mock(ChannelLogger.class))
+      .build();
+
+  private final UdsNameResolverProvider provider = new UdsNameResolverProvider();
+
+  @Test
+  public void isAvailable() {
+    assertThat(provider.isAvailable()).isTrue();
+    assertThat(provider.getDefaultScheme()).isEqualTo("unix");
+  }
+
+  @Test
+  public void newNameResolver_otherScheme() {
+    assertNull(provider.newNameResolver(URI.create("dns:///localhost:443"), args));
+  }
+
+  @Test
+  public void newNameResolver_withAuthority() {
+    try {
+      provider.newNameResolver(URI.create("unix://localhost/tmp/sock"), args);
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessageThat().contains("authority");
+    }
+  }
+
+  @Test
+  public void resolve_absolutePath() {
+    SocketAddress expected = Utils.newDomainSocketAddress("/tmp/grpc.sock");
+    assertThat(resolve("unix:///tmp/grpc.sock")).isEqualTo(expected);
+    assertThat(resolve("unix:/tmp/grpc.sock")).isEqualTo(expected);
+  }
+
+  @Test
+  public void resolve_relativePath() {
+    assertThat(resolve("unix:grpc.sock")).isEqualTo(Utils.newDomainSocketAddress("grpc.sock"));
+  }
+
+  @Test
+  public void serviceAuthority() {
+    NameResolver resolver = provider.newNameResolver(URI.create("unix:///tmp/grpc.sock"), args);
+    assertThat(resolver.getServiceAuthority()).isEqualTo("localhost");
+  }
+
+  @Test
+  public void refresh_resolvesAgain() {
+    NameResolver resolver = provider.newNameResolver(URI.create("unix:///tmp/grpc.sock"), args);
+    NameResolver.Listener2 listener = mock(NameResolver.Listener2.class);
+    resolver.start(listener);
+    resolver.refresh();
+    verify(listener, times(2)).onResult(any(ResolutionResult.class));
+    resolver.shutdown();
+  }
+
+  private SocketAddress resolve(String target) {
+    NameResolver resolver = provider.newNameResolver(URI.create(target), args);
+    NameResolver.Listener2 listener = mock(NameResolver.Listener2.class);
+    resolver.start(listener);
+    ArgumentCaptor<ResolutionResult> result = ArgumentCaptor.forClass(ResolutionResult.class);
+    verify(listener).onResult(result.capture());
+    resolver.shutdown();
+
+    List<EquivalentAddressGroup> servers = result.getValue().getAddresses();
+    assertThat(servers).hasSize(1);
+    assertThat(servers.get(0).getAddresses()).hasSize(1);
+    return servers.get(0).getAddresses().get(0);
+  }
+}
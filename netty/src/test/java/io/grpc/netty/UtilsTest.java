@@ -44,6 +44,7 @@ import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.util.AsciiString;
 import java.nio.channels.UnresolvedAddressException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -142,6 +143,18 @@ public class UtilsTest {
     assertNull(socketOptions.lingerSeconds);
   }
 
+  @Test
+  public void channelOptionsTest_tlsHandshake() {
+    Channel channel = new EmbeddedChannel();
+    assertNull(Utils.getSocketOptions(channel).others.get("TLS_HANDSHAKE_MICROS"));
+
+    channel.attr(ProtocolNegotiators.TLS_HANDSHAKE_INFO)
+        .set(new ProtocolNegotiators.TlsHandshakeInfo(TimeUnit.MILLISECONDS.toNanos(12), true));
+    InternalChannelz.SocketOptions socketOptions = Utils.getSocketOptions(channel);
+    assertEquals("12000", socketOptions.others.get("TLS_HANDSHAKE_MICROS"));
+    assertEquals("true", socketOptions.others.get("TLS_SESSION_RESUMED"));
+  }
+
   @Test
   @SuppressWarnings("deprecation")
   public void channelOptionsTest_oio() {
@@ -47,7 +47,6 @@ final class ExceptionHandlingFrameWriter implements FrameWriter {
         new OkHttpFrameLogger(Level.FINE, OkHttpClientTransport.class));
   }
 
-  @VisibleForTesting
   ExceptionHandlingFrameWriter(
       TransportExceptionHandler transportExceptionHandler,
       FrameWriter frameWriter,
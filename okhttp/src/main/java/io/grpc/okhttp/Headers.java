@@ -41,6 +41,7 @@ class Headers {
   public static final Header CONTENT_TYPE_HEADER =
       new Header(CONTENT_TYPE_KEY.name(), GrpcUtil.CONTENT_TYPE_GRPC);
   public static final Header TE_HEADER = new Header("te", GrpcUtil.TE_TRAILERS);
+  public static final Header HTTP_STATUS_OK_HEADER = new Header(Header.RESPONSE_STATUS, "200");
 
   /**
    * Serializes the given headers and creates a list of OkHttp {@link Header}s to be used when
@@ -59,9 +60,7 @@ class Headers {
     Preconditions.checkNotNull(authority, "authority");
 
     // Discard any application supplied duplicates of the reserved headers
-    headers.discardAll(GrpcUtil.CONTENT_TYPE_KEY);
-    headers.discardAll(GrpcUtil.TE_HEADER);
-    headers.discardAll(GrpcUtil.USER_AGENT_KEY);
+    discardReservedHeaders(headers);
 
     // 7 is the number of explicit add calls below.
     List<Header> okhttpHeaders = new ArrayList<>(7 + InternalMetadata.headerCount(headers));
@@ -89,7 +88,63 @@ class Headers {
     okhttpHeaders.add(TE_HEADER);
 
     // Now add any application-provided headers.
-    byte[][] serializedHeaders = TransportFrameUtil.toHttp2Headers(headers);
+    return addMetadata(okhttpHeaders, headers);
+  }
+
+  /**
+   * Serializes the given headers and creates a list of OkHttp {@link Header}s to be used when
+   * responding to a stream. Since this serializes the headers, this method should be called in the
+   * application thread context.
+   */
+  public static List<Header> createResponseHeaders(Metadata headers) {
+    Preconditions.checkNotNull(headers, "headers");
+
+    discardReservedHeaders(headers);
+
+    // 2 is the number of explicit add calls below.
+    List<Header> okhttpHeaders = new ArrayList<>(2 + InternalMetadata.headerCount(headers));
+    okhttpHeaders.add(HTTP_STATUS_OK_HEADER);
+    okhttpHeaders.add(CONTENT_TYPE_HEADER);
+    return addMetadata(okhttpHeaders, headers);
+  }
+
+  /**
+   * Serializes the given trailers and creates a list of OkHttp {@link Header}s to be used when
+   * closing a stream. If response headers have not been sent yet, the trailers are sent as a
+   * trailers-only response and also carry the response headers.
+   */
+  public static List<Header> createResponseTrailers(Metadata trailers, boolean headersSent) {
+    if (!headersSent) {
+      return createResponseHeaders(trailers);
+    }
+    Preconditions.checkNotNull(trailers, "trailers");
+
+    discardReservedHeaders(trailers);
+
+    List<Header> okhttpTrailers = new ArrayList<>(InternalMetadata.headerCount(trailers));
+    return addMetadata(okhttpTrailers, trailers);
+  }
+
+  /**
+   * Creates the headers of a plain HTTP response, used when a request is rejected before a gRPC
+   * stream could be created.
+   */
+  public static List<Header> createHttpResponseHeaders(
+      int httpCode, String contentType, Metadata headers) {
+    List<Header> okhttpHeaders = new ArrayList<>(2 + InternalMetadata.headerCount(headers));
+    okhttpHeaders.add(new Header(Header.RESPONSE_STATUS, String.valueOf(httpCode)));
+    okhttpHeaders.add(new Header(CONTENT_TYPE_KEY.name(), contentType));
+    return addMetadata(okhttpHeaders, headers);
+  }
+
+  private static void discardReservedHeaders(Metadata headers) {
+    headers.discardAll(GrpcUtil.CONTENT_TYPE_KEY);
+    headers.discardAll(GrpcUtil.TE_HEADER);
+    headers.discardAll(GrpcUtil.USER_AGENT_KEY);
+  }
+
+  private static List<Header> addMetadata(List<Header> okhttpHeaders, Metadata toAdd) {
+    byte[][] serializedHeaders = TransportFrameUtil.toHttp2Headers(toAdd);
     for (int i = 0; i < serializedHeaders.length; i += 2) {
       ByteString key = ByteString.of(serializedHeaders[i]);
       String keyString = key.utf8();
@@ -98,7 +153,6 @@ class Headers {
         okhttpHeaders.add(new Header(key, value));
       }
     }
-
     return okhttpHeaders;
   }
 
@@ -118,7 +118,7 @@ public final class OkHttpChannelBuilder extends
           .build();
 
   private static final long AS_LARGE_AS_INFINITE = TimeUnit.DAYS.toNanos(1000L);
-  private static final Resource<Executor> SHARED_EXECUTOR =
+  static final Resource<Executor> SHARED_EXECUTOR =
       new Resource<Executor>() {
         @Override
         public Executor create() {
@@ -53,7 +53,6 @@ class OkHttpClientStream extends AbstractClientStream {
   private final String userAgent;
   private final StatsTraceContext statsTraceCtx;
   private String authority;
-  private Object outboundFlowState;
   private volatile int id = ABSENT_ID;
   private final TransportState state;
   private final Sink sink = new Sink();
@@ -198,7 +197,8 @@ class OkHttpClientStream extends AbstractClientStream {
     }
   }
 
-  class TransportState extends Http2ClientStreamTransportState {
+  class TransportState extends Http2ClientStreamTransportState
+      implements OutboundFlowController.Stream {
     private final int initialWindowSize;
     private final Object lock;
     @GuardedBy("lock")
@@ -219,6 +219,8 @@ class OkHttpClientStream extends AbstractClientStream {
     private final OutboundFlowController outboundFlow;
     @GuardedBy("lock")
     private final OkHttpClientTransport transport;
+    @GuardedBy("lock")
+    private OutboundFlowController.StreamState outboundFlowState;
     /** True iff neither {@link #cancel} nor {@link #start(int)} have been called. */
     @GuardedBy("lock")
     private boolean canStart = true;
@@ -249,6 +251,7 @@ class OkHttpClientStream extends AbstractClientStream {
     public void start(int streamId) {
       checkState(id == ABSENT_ID, "the stream has been started with id %s", streamId);
       id = streamId;
+      outboundFlowState = outboundFlow.createState(this, streamId);
       // TODO(b/145386688): This access should be guarded by 'OkHttpClientStream.this.state.lock';
       // instead found: 'this.lock'
       state.onStreamAllocated();
@@ -260,7 +263,8 @@ class OkHttpClientStream extends AbstractClientStream {
         requestHeaders = null;
 
         if (pendingData.size() > 0) {
-          outboundFlow.data(pendingDataHasEndOfStream, id, pendingData, flushPendingData);
+          outboundFlow.data(
+              pendingDataHasEndOfStream, outboundFlowState, pendingData, flushPendingData);
         }
         canStart = false;
       }
@@ -394,9 +398,15 @@ class OkHttpClientStream extends AbstractClientStream {
         flushPendingData |= flush;
       } else {
         checkState(id() != ABSENT_ID, "streamId should be set");
+        if (transport.getStream(id()) == null) {
+          // This is possible for a stream that has received end-of-stream from server (but hasn't
+          // sent end-of-stream), and was removed from the transport stream map.
+          // In such case, we just throw away the data.
+          return;
+        }
         // If buffer > frameWriter.maxDataLength() the flow-controller will ensure that it is
         // properly chunked.
-        outboundFlow.data(endOfStream, id(), buffer, flush);
+        outboundFlow.data(endOfStream, outboundFlowState, buffer, flush);
       }
     }
 
@@ -419,13 +429,10 @@ class OkHttpClientStream extends AbstractClientStream {
     Tag tag() {
       return tag;
     }
-  }
 
-  void setOutboundFlowState(Object outboundFlowState) {
-    this.outboundFlowState = outboundFlowState;
-  }
-
-  Object getOutboundFlowState() {
-    return outboundFlowState;
+    @GuardedBy("lock")
+    OutboundFlowController.StreamState getOutboundFlowState() {
+      return outboundFlowState;
+    }
   }
 }
@@ -18,16 +18,25 @@ package io.grpc.okhttp;
 
 import io.grpc.internal.AbstractReadableBuffer;
 import io.grpc.internal.ReadableBuffer;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 /**
  * A {@link ReadableBuffer} implementation that is backed by an {@link okio.Buffer}.
+ *
+ * <p>Read bytes are not removed from the okio buffer until the buffer is closed. okio returns a
+ * segment to its pool once its bytes are removed, so keeping them lets {@link #getByteBuffer}
+ * return views of the segments that stay valid until {@link #close}, and lets {@link #reset} go
+ * back to an earlier position.
  */
 class OkHttpReadableBuffer extends AbstractReadableBuffer {
   private final okio.Buffer buffer;
+  private final okio.Buffer.UnsafeCursor cursor = new okio.Buffer.UnsafeCursor();
+  /** The number of bytes of {@link #buffer} that were read. */
+  private long position;
+  private long markedPosition;
 
   OkHttpReadableBuffer(okio.Buffer buffer) {
     this.buffer = buffer;
@@ -35,62 +44,109 @@ class OkHttpReadableBuffer extends AbstractReadableBuffer {
 
   @Override
   public int readableBytes() {
-    return (int) buffer.size();
+    return (int) (buffer.size() - position);
   }
 
   @Override
   public int readUnsignedByte() {
-    try {
-      fakeEofExceptionMethod(); // Okio 2.x can throw EOFException from readByte()
-      return buffer.readByte() & 0x000000FF;
-    } catch (EOFException e) {
-      throw new IndexOutOfBoundsException(e.getMessage());
-    }
+    checkReadable(1);
+    return buffer.getByte(position++) & 0x000000FF;
   }
 
-  private void fakeEofExceptionMethod() throws EOFException {}
-
   @Override
   public void skipBytes(int length) {
-    try {
-      buffer.skip(length);
-    } catch (EOFException e) {
-      throw new IndexOutOfBoundsException(e.getMessage());
-    }
+    checkReadable(length);
+    position += length;
   }
 
   @Override
   public void readBytes(byte[] dest, int destOffset, int length) {
-    while (length > 0) {
-      int bytesRead = buffer.read(dest, destOffset, length);
-      if (bytesRead == -1) {
-        throw new IndexOutOfBoundsException("EOF trying to read " + length + " bytes");
-      }
-      length -= bytesRead;
-      destOffset += bytesRead;
-    }
+    readBytes(ByteBuffer.wrap(dest, destOffset, length));
   }
 
   @Override
   public void readBytes(ByteBuffer dest) {
-    // We are not using it.
-    throw new UnsupportedOperationException();
+    int length = dest.remaining();
+    checkReadable(length);
+    if (length == 0) {
+      return;
+    }
+    buffer.readUnsafe(cursor);
+    try {
+      cursor.seek(position);
+      while (true) {
+        dest.put(cursor.data, cursor.start, Math.min(dest.remaining(), cursor.end - cursor.start));
+        if (!dest.hasRemaining()) {
+          break;
+        }
+        cursor.next();
+      }
+    } finally {
+      cursor.close();
+    }
+    position += length;
   }
 
   @Override
   public void readBytes(OutputStream dest, int length) throws IOException {
-    buffer.writeTo(dest, length);
+    checkReadable(length);
+    buffer.copyTo(dest, position, length);
+    position += length;
   }
 
   @Override
   public ReadableBuffer readBytes(int length) {
+    checkReadable(length);
     okio.Buffer buf = new okio.Buffer();
-    buf.write(buffer, length);
+    // Shares the segments instead of copying their bytes.
+    buffer.copyTo(buf, position, length);
+    position += length;
     return new OkHttpReadableBuffer(buf);
   }
 
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public void mark() {
+    markedPosition = position;
+  }
+
+  @Override
+  public void reset() {
+    position = markedPosition;
+  }
+
+  @Override
+  public boolean byteBufferSupported() {
+    return true;
+  }
+
+  /**
+   * Returns a view of the bytes next to be read in the current segment, which stays valid until
+   * the buffer is closed.
+   */
+  @Nullable
+  @Override
+  public ByteBuffer getByteBuffer() {
+    if (readableBytes() == 0) {
+      return null;
+    }
+    buffer.readUnsafe(cursor);
+    try {
+      cursor.seek(position);
+      return ByteBuffer.wrap(cursor.data, cursor.start, cursor.end - cursor.start).slice();
+    } finally {
+      cursor.close();
+    }
+  }
+
   @Override
   public void close() {
     buffer.clear();
+    position = 0;
+    markedPosition = 0;
   }
 }
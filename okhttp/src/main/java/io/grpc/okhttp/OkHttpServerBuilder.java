@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import io.grpc.ExperimentalApi;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Internal;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerCredentials;
+import io.grpc.ServerStreamTracer;
+import io.grpc.internal.AbstractServerImplBuilder;
+import io.grpc.internal.FixedObjectPool;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.InternalServer;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.ServerImplBuilder;
+import io.grpc.internal.ServerImplBuilder.ClientTransportServersBuilder;
+import io.grpc.internal.SharedResourcePool;
+import io.grpc.internal.TransportTracer;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.CheckReturnValue;
+import javax.net.ServerSocketFactory;
+
+/**
+ * Build servers with the OkHttp transport. It has a small footprint and no dependency on Netty,
+ * which makes it suitable for sidecars and other lightweight processes. Each connection uses a
+ * thread of the transport executor to read frames.
+ *
+ * <p>Only plaintext connections are currently supported.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1785")
+@CanIgnoreReturnValue
+public final class OkHttpServerBuilder extends AbstractServerImplBuilder<OkHttpServerBuilder> {
+  /** The default flow control window of each stream. */
+  public static final int DEFAULT_FLOW_CONTROL_WINDOW = 65535;
+
+  private static final ObjectPool<Executor> DEFAULT_TRANSPORT_EXECUTOR_POOL =
+      SharedResourcePool.forResource(OkHttpChannelBuilder.SHARED_EXECUTOR);
+
+  /**
+   * Creates a builder for a server listening on {@code port}.
+   *
+   * @param port the port on which the server is to be bound
+   * @param creds the server's credentials. Only {@link InsecureServerCredentials} is supported
+   * @throws IllegalArgumentException if the credentials are not supported
+   */
+  @CheckReturnValue
+  public static OkHttpServerBuilder forPort(int port, ServerCredentials creds) {
+    return forAddress(new InetSocketAddress(port), creds);
+  }
+
+  /**
+   * Creates a builder for a server listening on {@code address}.
+   *
+   * @param address the socket address on which the server is to be bound
+   * @param creds the server's credentials. Only {@link InsecureServerCredentials} is supported
+   * @throws IllegalArgumentException if the credentials are not supported
+   */
+  @CheckReturnValue
+  public static OkHttpServerBuilder forAddress(SocketAddress address, ServerCredentials creds) {
+    checkNotNull(creds, "creds");
+    if (!(creds instanceof InsecureServerCredentials)) {
+      throw new IllegalArgumentException(
+          "Unsupported credential type: " + creds.getClass().getName());
+    }
+    return new OkHttpServerBuilder(address);
+  }
+
+  private final ServerImplBuilder serverImplBuilder;
+  private final SocketAddress listenAddress;
+  TransportTracer.Factory transportTracerFactory = TransportTracer.getDefaultFactory();
+  ObjectPool<Executor> transportExecutorPool = DEFAULT_TRANSPORT_EXECUTOR_POOL;
+  ObjectPool<ScheduledExecutorService> scheduledExecutorServicePool =
+      SharedResourcePool.forResource(GrpcUtil.TIMER_SERVICE);
+  ServerSocketFactory socketFactory = ServerSocketFactory.getDefault();
+  int flowControlWindow = DEFAULT_FLOW_CONTROL_WINDOW;
+  int maxInboundMetadataSize = GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE;
+  int maxInboundMessageSize = GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
+  int maxConcurrentCallsPerConnection = Integer.MAX_VALUE;
+
+  @CheckReturnValue
+  private OkHttpServerBuilder(SocketAddress address) {
+    this.listenAddress = checkNotNull(address, "address");
+    this.serverImplBuilder = new ServerImplBuilder(new ClientTransportServersBuilder() {
+      @Override
+      public InternalServer buildClientTransportServers(
+          List<? extends ServerStreamTracer.Factory> streamTracerFactories) {
+        return buildTransportServers(streamTracerFactories);
+      }
+    });
+  }
+
+  @Internal
+  @Override
+  protected ServerBuilder<?> delegate() {
+    return serverImplBuilder;
+  }
+
+  // @VisibleForTesting
+  OkHttpServerBuilder setTransportTracerFactory(TransportTracer.Factory transportTracerFactory) {
+    this.transportTracerFactory = checkNotNull(transportTracerFactory, "transportTracerFactory");
+    return this;
+  }
+
+  /**
+   * Override the default executor necessary for internal transport use. Each connection holds a
+   * thread of the executor for as long as it is open, and the server holds one more to accept
+   * connections.
+   *
+   * <p>The server does not take ownership of the given executor. It is the caller's
+   * responsibility to shutdown the executor when appropriate.
+   */
+  public OkHttpServerBuilder transportExecutor(Executor transportExecutor) {
+    if (transportExecutor == null) {
+      this.transportExecutorPool = DEFAULT_TRANSPORT_EXECUTOR_POOL;
+    } else {
+      this.transportExecutorPool = new FixedObjectPool<>(transportExecutor);
+    }
+    return this;
+  }
+
+  /**
+   * Override the default {@link ServerSocketFactory} used to listen. If the socket factory is not
+   * set or set to null, a default one will be used.
+   */
+  public OkHttpServerBuilder socketFactory(ServerSocketFactory socketFactory) {
+    if (socketFactory == null) {
+      this.socketFactory = ServerSocketFactory.getDefault();
+    } else {
+      this.socketFactory = socketFactory;
+    }
+    return this;
+  }
+
+  /**
+   * Provides a custom scheduled executor service to the server builder.
+   *
+   * @return this
+   */
+  public OkHttpServerBuilder scheduledExecutorService(
+      ScheduledExecutorService scheduledExecutorService) {
+    this.scheduledExecutorServicePool = new FixedObjectPool<>(
+        checkNotNull(scheduledExecutorService, "scheduledExecutorService"));
+    return this;
+  }
+
+  /**
+   * Sets the flow control window in bytes. If not called, the default value is {@link
+   * #DEFAULT_FLOW_CONTROL_WINDOW}).
+   */
+  public OkHttpServerBuilder flowControlWindow(int flowControlWindow) {
+    checkArgument(flowControlWindow > 0, "flowControlWindow must be positive: %s",
+        flowControlWindow);
+    this.flowControlWindow = flowControlWindow;
+    return this;
+  }
+
+  /**
+   * The maximum number of concurrent calls permitted for each incoming connection. Defaults to no
+   * limit.
+   */
+  public OkHttpServerBuilder maxConcurrentCallsPerConnection(int maxCalls) {
+    checkArgument(maxCalls > 0, "max must be positive: %s", maxCalls);
+    this.maxConcurrentCallsPerConnection = maxCalls;
+    return this;
+  }
+
+  /**
+   * Sets the maximum size of metadata allowed to be received. This is cumulative size of the
+   * entries with some overhead, as defined for
+   * <a href="http://httpwg.org/specs/rfc7540.html#rfc.section.6.5.2">
+   * HTTP/2's SETTINGS_MAX_HEADER_LIST_SIZE</a>. The default is 8 KiB.
+   *
+   * @param bytes the maximum size of received metadata
+   * @return this
+   * @throws IllegalArgumentException if bytes is non-positive
+   */
+  @Override
+  public OkHttpServerBuilder maxInboundMetadataSize(int bytes) {
+    checkArgument(bytes > 0, "maxInboundMetadataSize must be > 0");
+    this.maxInboundMetadataSize = bytes;
+    return this;
+  }
+
+  /**
+   * Sets the maximum message size allowed to be received on the server. If not called,
+   * defaults to {@link io.grpc.internal.GrpcUtil#DEFAULT_MAX_MESSAGE_SIZE}.
+   *
+   * @param bytes the maximum size of received messages
+   * @return this
+   * @throws IllegalArgumentException if bytes is negative
+   */
+  @Override
+  public OkHttpServerBuilder maxInboundMessageSize(int bytes) {
+    checkArgument(bytes >= 0, "negative max bytes");
+    maxInboundMessageSize = bytes;
+    return this;
+  }
+
+  InternalServer buildTransportServers(
+      List<? extends ServerStreamTracer.Factory> streamTracerFactories) {
+    return new OkHttpServer(
+        listenAddress,
+        socketFactory,
+        new OkHttpServerTransport.Config(this, streamTracerFactories),
+        serverImplBuilder.getChannelz());
+  }
+}
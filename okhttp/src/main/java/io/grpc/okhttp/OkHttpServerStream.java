@@ -0,0 +1,328 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import com.google.common.base.Preconditions;
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.AbstractServerStream;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.grpc.internal.WritableBuffer;
+import io.grpc.okhttp.internal.framed.ErrorCode;
+import io.grpc.okhttp.internal.framed.Header;
+import io.perfmark.PerfMark;
+import io.perfmark.Tag;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import okio.Buffer;
+
+/**
+ * Server stream for the okhttp transport.
+ */
+class OkHttpServerStream extends AbstractServerStream {
+  private static final Logger log = Logger.getLogger(OkHttpServerStream.class.getName());
+
+  private final String authority;
+  private final TransportState state;
+  private final Sink sink = new Sink();
+  private final TransportTracer transportTracer;
+  private final Attributes attributes;
+
+  OkHttpServerStream(
+      TransportState state,
+      Attributes transportAttrs,
+      String authority,
+      StatsTraceContext statsTraceCtx,
+      TransportTracer transportTracer) {
+    super(new OkHttpWritableBufferAllocator(), statsTraceCtx);
+    this.state = Preconditions.checkNotNull(state, "state");
+    this.attributes = Preconditions.checkNotNull(transportAttrs, "transportAttrs");
+    this.authority = authority;
+    this.transportTracer = Preconditions.checkNotNull(transportTracer, "transportTracer");
+  }
+
+  @Override
+  protected TransportState transportState() {
+    return state;
+  }
+
+  @Override
+  protected Sink abstractServerStreamSink() {
+    return sink;
+  }
+
+  @Override
+  public int streamId() {
+    return state.streamId;
+  }
+
+  @Override
+  public String getAuthority() {
+    return authority;
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return attributes;
+  }
+
+  class Sink implements AbstractServerStream.Sink {
+    @Override
+    public void writeHeaders(Metadata metadata) {
+      PerfMark.startTask("OkHttpServerStream$Sink.writeHeaders");
+      try {
+        List<Header> responseHeaders = Headers.createResponseHeaders(metadata);
+        synchronized (state.lock) {
+          state.sendHeaders(responseHeaders);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.writeHeaders");
+      }
+    }
+
+    @Override
+    public void writeFrame(WritableBuffer frame, boolean flush, int numMessages) {
+      PerfMark.startTask("OkHttpServerStream$Sink.writeFrame");
+      try {
+        if (frame == null) {
+          if (flush) {
+            synchronized (state.lock) {
+              state.flush();
+            }
+          }
+          return;
+        }
+        Buffer buffer = ((OkHttpWritableBuffer) frame).buffer();
+        int size = (int) buffer.size();
+        if (size > 0) {
+          onSendingBytes(size);
+        }
+        synchronized (state.lock) {
+          state.sendBuffer(buffer, flush);
+          transportTracer.reportMessageSent(numMessages);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.writeFrame");
+      }
+    }
+
+    @Override
+    public void writeTrailers(Metadata trailers, boolean headersSent, Status status) {
+      PerfMark.startTask("OkHttpServerStream$Sink.writeTrailers");
+      try {
+        List<Header> responseTrailers = Headers.createResponseTrailers(trailers, headersSent);
+        synchronized (state.lock) {
+          state.sendTrailers(responseTrailers);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.writeTrailers");
+      }
+    }
+
+    @Override
+    public void cancel(Status reason) {
+      PerfMark.startTask("OkHttpServerStream$Sink.cancel");
+      try {
+        synchronized (state.lock) {
+          state.cancel(ErrorCode.CANCEL, reason);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.cancel");
+      }
+    }
+  }
+
+  /**
+   * Transport side of the stream. Inbound events arrive on the transport's reader thread and all
+   * state is guarded by the transport lock.
+   */
+  static class TransportState extends AbstractServerStream.TransportState
+      implements OutboundFlowController.Stream {
+    private final OkHttpServerTransport transport;
+    private final int streamId;
+    private final int initialWindowSize;
+    private final Object lock;
+    /** True once RST_STREAM or trailers have been sent, or RST_STREAM has been received. */
+    @GuardedBy("lock")
+    private boolean outboundClosed = false;
+    @GuardedBy("lock")
+    private int window;
+    @GuardedBy("lock")
+    private int processedWindow;
+    @GuardedBy("lock")
+    private boolean receivedEndOfStream;
+    @GuardedBy("lock")
+    private final ExceptionHandlingFrameWriter frameWriter;
+    @GuardedBy("lock")
+    private final OutboundFlowController outboundFlow;
+    @GuardedBy("lock")
+    private final OutboundFlowController.StreamState outboundFlowState;
+    private final Tag tag;
+
+    TransportState(
+        OkHttpServerTransport transport,
+        int streamId,
+        int maxMessageSize,
+        StatsTraceContext statsTraceCtx,
+        Object lock,
+        ExceptionHandlingFrameWriter frameWriter,
+        OutboundFlowController outboundFlow,
+        int initialWindowSize,
+        TransportTracer transportTracer,
+        String methodName) {
+      super(maxMessageSize, statsTraceCtx, transportTracer);
+      this.transport = Preconditions.checkNotNull(transport, "transport");
+      this.streamId = streamId;
+      this.lock = Preconditions.checkNotNull(lock, "lock");
+      this.frameWriter = frameWriter;
+      this.outboundFlow = outboundFlow;
+      this.window = initialWindowSize;
+      this.processedWindow = initialWindowSize;
+      this.initialWindowSize = initialWindowSize;
+      tag = PerfMark.createTag(methodName, streamId);
+      outboundFlowState = outboundFlow.createState(this, streamId);
+    }
+
+    @Override
+    @GuardedBy("lock")
+    public void deframeFailed(Throwable cause) {
+      log.log(Level.WARNING, "Exception processing message", cause);
+      cancel(ErrorCode.CANCEL, Status.fromThrowable(cause));
+    }
+
+    @Override
+    @GuardedBy("lock")
+    public void bytesRead(int processedBytes) {
+      processedWindow -= processedBytes;
+      if (processedWindow <= initialWindowSize * Utils.DEFAULT_WINDOW_UPDATE_RATIO) {
+        int delta = initialWindowSize - processedWindow;
+        window += delta;
+        processedWindow += delta;
+        frameWriter.windowUpdate(streamId, delta);
+        frameWriter.flush();
+      }
+    }
+
+    @Override
+    public void runOnTransportThread(Runnable r) {
+      synchronized (lock) {
+        r.run();
+      }
+    }
+
+    /**
+     * Must be called with holding the transport lock.
+     */
+    @GuardedBy("lock")
+    void inboundDataReceived(Buffer frame, int windowConsumed, boolean endOfStream) {
+      window -= windowConsumed;
+      if (window < 0) {
+        cancel(ErrorCode.FLOW_CONTROL_ERROR, Status.INTERNAL.withDescription(
+            "Received data size exceeded our receiving window size"));
+        return;
+      }
+      if (endOfStream) {
+        receivedEndOfStream = true;
+      }
+      super.inboundDataReceived(new OkHttpReadableBuffer(frame), endOfStream);
+    }
+
+    /**
+     * Must be called with holding the transport lock.
+     */
+    @GuardedBy("lock")
+    void inboundRstReceived(Status status) {
+      PerfMark.event("OkHttpServerStream.inboundRstReceived", tag);
+      outboundClosed = true;
+      transportReportStatus(status);
+    }
+
+    /**
+     * Must be called with holding the transport lock.
+     */
+    @GuardedBy("lock")
+    boolean hasReceivedEndOfStream() {
+      return receivedEndOfStream;
+    }
+
+    @GuardedBy("lock")
+    OutboundFlowController.StreamState getOutboundFlowState() {
+      return outboundFlowState;
+    }
+
+    @GuardedBy("lock")
+    private void sendHeaders(List<Header> responseHeaders) {
+      if (outboundClosed) {
+        return;
+      }
+      frameWriter.synReply(false, streamId, responseHeaders);
+      frameWriter.flush();
+    }
+
+    @GuardedBy("lock")
+    private void sendBuffer(Buffer buffer, boolean flush) {
+      if (outboundClosed) {
+        return;
+      }
+      // If buffer > frameWriter.maxDataLength() the flow-controller will ensure that it is
+      // properly chunked.
+      outboundFlow.data(false, outboundFlowState, buffer, flush);
+    }
+
+    @GuardedBy("lock")
+    private void flush() {
+      frameWriter.flush();
+    }
+
+    @GuardedBy("lock")
+    private void sendTrailers(final List<Header> responseTrailers) {
+      outboundFlow.notifyWhenNoPendingData(outboundFlowState, new Runnable() {
+        @Override
+        public void run() {
+          synchronized (lock) {
+            if (outboundClosed) {
+              return;
+            }
+            outboundClosed = true;
+            frameWriter.synReply(true, streamId, responseTrailers);
+            if (!receivedEndOfStream) {
+              // The client may still be sending. Tell it to stop now that the RPC is complete.
+              frameWriter.rstStream(streamId, ErrorCode.NO_ERROR);
+            }
+            transport.streamClosed(streamId, /*flush=*/ true);
+            complete();
+          }
+        }
+      });
+    }
+
+    @GuardedBy("lock")
+    private void cancel(ErrorCode http2Error, Status reason) {
+      if (outboundClosed) {
+        return;
+      }
+      outboundClosed = true;
+      frameWriter.rstStream(streamId, http2Error);
+      transportReportStatus(reason);
+      transport.streamClosed(streamId, /*flush=*/ true);
+    }
+  }
+}
@@ -0,0 +1,887 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static io.grpc.okhttp.Utils.CONNECTION_STREAM_ID;
+import static io.grpc.okhttp.Utils.DEFAULT_WINDOW_SIZE;
+import static io.grpc.okhttp.Utils.DEFAULT_WINDOW_UPDATE_RATIO;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Attributes;
+import io.grpc.Grpc;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.InternalStatus;
+import io.grpc.Metadata;
+import io.grpc.SecurityLevel;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.internal.GrpcAttributes;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.SerializingExecutor;
+import io.grpc.internal.ServerTransport;
+import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.grpc.okhttp.internal.framed.ErrorCode;
+import io.grpc.okhttp.internal.framed.FrameReader;
+import io.grpc.okhttp.internal.framed.FrameWriter;
+import io.grpc.okhttp.internal.framed.Header;
+import io.grpc.okhttp.internal.framed.HeadersMode;
+import io.grpc.okhttp.internal.framed.Http2;
+import io.grpc.okhttp.internal.framed.Settings;
+import io.grpc.okhttp.internal.framed.Variant;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * OkHttp-based server transport. A single thread reads and dispatches inbound frames, while
+ * outbound frames are written through an {@link AsyncSink}.
+ */
+final class OkHttpServerTransport implements ServerTransport,
+    ExceptionHandlingFrameWriter.TransportExceptionHandler, OutboundFlowController.Transport {
+  private static final Logger log = Logger.getLogger(OkHttpServerTransport.class.getName());
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final long GRACEFUL_SHUTDOWN_PING = 0x97ACEF001L;
+  private static final long GRACEFUL_SHUTDOWN_PING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final ByteString HTTP_METHOD = ByteString.encodeUtf8(GrpcUtil.HTTP_METHOD);
+  private static final ByteString CONNECT_HEADER = ByteString.encodeUtf8("connection");
+  private static final ByteString CONTENT_TYPE_HEADER =
+      ByteString.encodeUtf8(GrpcUtil.CONTENT_TYPE_KEY.name());
+  private static final ByteString HOST_HEADER = ByteString.encodeUtf8("host");
+  private static final ByteString TE_HEADER = ByteString.encodeUtf8("te");
+  private static final ByteString TE_TRAILERS = ByteString.encodeUtf8(GrpcUtil.TE_TRAILERS);
+
+  private final Config config;
+  private final Variant variant = new Http2();
+  private final TransportTracer tracer;
+  private final InternalLogId logId;
+  private final Socket socket;
+  private final OkHttpFrameLogger frameLogger =
+      new OkHttpFrameLogger(Level.FINE, OkHttpServerTransport.class);
+  private ServerTransportListener listener;
+  private Executor transportExecutor;
+  private ScheduledExecutorService scheduledExecutorService;
+  private Attributes attributes;
+  private boolean teWarningLogged;
+
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private boolean abruptShutdown;
+  @GuardedBy("lock")
+  private boolean gracefulShutdown;
+  @GuardedBy("lock")
+  private ExceptionHandlingFrameWriter frameWriter;
+  @GuardedBy("lock")
+  private OutboundFlowController outboundFlow;
+  @GuardedBy("lock")
+  private final Map<Integer, OkHttpServerStream.TransportState> streams = new TreeMap<>();
+  @GuardedBy("lock")
+  private int lastStreamId;
+  /** Streams above this id are ignored, as they were created after the final GOAWAY. */
+  @GuardedBy("lock")
+  private int goAwayStreamId = Integer.MAX_VALUE;
+  @GuardedBy("lock")
+  private ScheduledFuture<?> secondGoawayTimer;
+
+  OkHttpServerTransport(Config config, Socket socket) {
+    this.config = Preconditions.checkNotNull(config, "config");
+    this.socket = Preconditions.checkNotNull(socket, "socket");
+    tracer = config.transportTracerFactory.create();
+    logId = InternalLogId.allocate(getClass(), socket.getRemoteSocketAddress().toString());
+    // Needed before start(), as the server uses it to enforce the handshake timeout.
+    scheduledExecutorService = config.scheduledExecutorServicePool.getObject();
+  }
+
+  /**
+   * Starts serving the connection. The frames are read on a thread of the transport executor.
+   */
+  void start(ServerTransportListener listener) {
+    this.listener = Preconditions.checkNotNull(listener, "listener");
+    transportExecutor = config.transportExecutorPool.getObject();
+    final SerializingExecutor serializingExecutor = new SerializingExecutor(transportExecutor);
+    transportExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        startIo(serializingExecutor);
+      }
+    });
+  }
+
+  private void startIo(SerializingExecutor serializingExecutor) {
+    String threadName = Thread.currentThread().getName();
+    Thread.currentThread().setName("OkHttpServerTransport " + socket.getRemoteSocketAddress());
+    try {
+      socket.setTcpNoDelay(true);
+      attributes = Attributes.newBuilder()
+          .set(Grpc.TRANSPORT_ATTR_LOCAL_ADDR, socket.getLocalSocketAddress())
+          .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, socket.getRemoteSocketAddress())
+          .set(GrpcAttributes.ATTR_SECURITY_LEVEL, SecurityLevel.NONE)
+          .build();
+      AsyncSink asyncSink = AsyncSink.sink(serializingExecutor, this);
+      asyncSink.becomeConnected(Okio.sink(socket), socket);
+      FrameWriter rawFrameWriter = variant.newWriter(Okio.buffer(asyncSink), false);
+      BufferedSource source = Okio.buffer(Okio.source(socket));
+      synchronized (lock) {
+        if (gracefulShutdown) {
+          // Shut down before the connection was set up. Nothing to drain.
+          return;
+        }
+        frameWriter = new ExceptionHandlingFrameWriter(this, rawFrameWriter, frameLogger);
+        outboundFlow = new OutboundFlowController(this, frameWriter);
+
+        Settings settings = new Settings();
+        OkHttpSettingsUtil.set(
+            settings, OkHttpSettingsUtil.INITIAL_WINDOW_SIZE, config.flowControlWindow);
+        if (config.maxConcurrentCallsPerConnection != Integer.MAX_VALUE) {
+          OkHttpSettingsUtil.set(settings, OkHttpSettingsUtil.MAX_CONCURRENT_STREAMS,
+              config.maxConcurrentCallsPerConnection);
+        }
+        frameWriter.settings(settings);
+        if (config.flowControlWindow > DEFAULT_WINDOW_SIZE) {
+          frameWriter.windowUpdate(
+              CONNECTION_STREAM_ID, config.flowControlWindow - DEFAULT_WINDOW_SIZE);
+        }
+        frameWriter.flush();
+      }
+      new FrameHandler(variant.newReader(source, false)).run();
+    } catch (IOException ex) {
+      log.log(Level.FINE, "Socket failed to set up the connection", ex);
+    } finally {
+      terminated();
+      Thread.currentThread().setName(threadName);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    synchronized (lock) {
+      if (gracefulShutdown || abruptShutdown) {
+        return;
+      }
+      gracefulShutdown = true;
+      if (frameWriter == null) {
+        // The connection is not set up yet. startIo() will notice and terminate the transport.
+        return;
+      }
+      // RFC7540 §6.8. Begin double-GOAWAY graceful shutdown. To wait one RTT we use a PING, but
+      // we also set a timer to limit the upper bound in case the PING is excessively stalled or
+      // the client is malicious.
+      secondGoawayTimer = scheduledExecutorService.schedule(new Runnable() {
+        @Override
+        public void run() {
+          triggerGracefulSecondGoaway();
+        }
+      }, GRACEFUL_SHUTDOWN_PING_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+      frameWriter.goAway(Integer.MAX_VALUE, ErrorCode.NO_ERROR, new byte[0]);
+      frameWriter.ping(
+          false, (int) (GRACEFUL_SHUTDOWN_PING >>> 32), (int) GRACEFUL_SHUTDOWN_PING);
+      frameWriter.flush();
+    }
+  }
+
+  private void triggerGracefulSecondGoaway() {
+    synchronized (lock) {
+      if (secondGoawayTimer == null) {
+        return;
+      }
+      secondGoawayTimer.cancel(false);
+      secondGoawayTimer = null;
+      frameWriter.goAway(lastStreamId, ErrorCode.NO_ERROR, new byte[0]);
+      goAwayStreamId = lastStreamId;
+      if (streams.isEmpty()) {
+        closeFrameWriter();
+      } else {
+        frameWriter.flush();
+      }
+    }
+  }
+
+  @Override
+  public void shutdownNow(Status reason) {
+    synchronized (lock) {
+      if (frameWriter == null) {
+        gracefulShutdown = true;
+        GrpcUtil.closeQuietly(socket);
+        return;
+      }
+    }
+    abruptShutdown(ErrorCode.NO_ERROR, "", reason, true);
+  }
+
+  /**
+   * Finishes all active streams due to an IOException, and sends the final GOAWAY.
+   */
+  @Override
+  public void onException(Throwable failureCause) {
+    Preconditions.checkNotNull(failureCause, "failureCause");
+    abruptShutdown(ErrorCode.INTERNAL_ERROR, "I/O failure",
+        Status.UNAVAILABLE.withCause(failureCause), false);
+  }
+
+  private void abruptShutdown(
+      ErrorCode errorCode, String moreDetail, Status reason, boolean rstStreams) {
+    synchronized (lock) {
+      if (abruptShutdown) {
+        return;
+      }
+      abruptShutdown = true;
+      if (secondGoawayTimer != null) {
+        secondGoawayTimer.cancel(false);
+        secondGoawayTimer = null;
+      }
+      for (Map.Entry<Integer, OkHttpServerStream.TransportState> entry : streams.entrySet()) {
+        if (rstStreams) {
+          frameWriter.rstStream(entry.getKey(), ErrorCode.CANCEL);
+        }
+        entry.getValue().transportReportStatus(reason);
+      }
+      streams.clear();
+
+      // RFC7540 §5.4.1. Attempt to inform the client what went wrong. We try to write the GOAWAY
+      // after sending the synthetic RST_STREAMs.
+      frameWriter.goAway(lastStreamId, errorCode, moreDetail.getBytes(UTF_8));
+      goAwayStreamId = lastStreamId;
+      closeFrameWriter();
+    }
+  }
+
+  @GuardedBy("lock")
+  private void closeFrameWriter() {
+    // Flush first, as closing the AsyncSink drops anything not yet handed to the socket.
+    frameWriter.flush();
+    frameWriter.close();
+  }
+
+  private void terminated() {
+    synchronized (lock) {
+      if (secondGoawayTimer != null) {
+        secondGoawayTimer.cancel(false);
+        secondGoawayTimer = null;
+      }
+      for (OkHttpServerStream.TransportState stream : streams.values()) {
+        stream.transportReportStatus(Status.UNAVAILABLE.withDescription("Transport closed"));
+      }
+      streams.clear();
+      if (frameWriter != null) {
+        frameWriter.close();
+      } else {
+        GrpcUtil.closeQuietly(socket);
+      }
+    }
+    transportExecutor = config.transportExecutorPool.returnObject(transportExecutor);
+    scheduledExecutorService =
+        config.scheduledExecutorServicePool.returnObject(scheduledExecutorService);
+    listener.transportTerminated();
+  }
+
+  @Override
+  public ScheduledExecutorService getScheduledExecutorService() {
+    return scheduledExecutorService;
+  }
+
+  @Override
+  public ListenableFuture<SocketStats> getStats() {
+    synchronized (lock) {
+      return Futures.immediateFuture(new SocketStats(
+          tracer.getStats(),
+          socket.getLocalSocketAddress(),
+          socket.getRemoteSocketAddress(),
+          Utils.getSocketOptions(socket),
+          /*security=*/ null));
+    }
+  }
+
+  @Override
+  public InternalLogId getLogId() {
+    return logId;
+  }
+
+  @Override
+  public OutboundFlowController.StreamState[] getActiveStreams() {
+    synchronized (lock) {
+      OutboundFlowController.StreamState[] flowStreams =
+          new OutboundFlowController.StreamState[streams.size()];
+      int i = 0;
+      for (OkHttpServerStream.TransportState stream : streams.values()) {
+        flowStreams[i++] = stream.getOutboundFlowState();
+      }
+      return flowStreams;
+    }
+  }
+
+  /**
+   * Notifies that the stream was closed, either by the application or by the remote. Completes a
+   * graceful shutdown once the last stream is gone.
+   */
+  void streamClosed(int streamId, boolean flush) {
+    synchronized (lock) {
+      streams.remove(streamId);
+      if (streams.isEmpty() && gracefulShutdown && goAwayStreamId != Integer.MAX_VALUE
+          && !abruptShutdown) {
+        closeFrameWriter();
+      } else if (flush) {
+        frameWriter.flush();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("logId", logId.getId())
+        .add("socket", socket)
+        .toString();
+  }
+
+  /**
+   * Runnable which reads frames and dispatches them to in flight calls.
+   */
+  class FrameHandler implements FrameReader.Handler, Runnable {
+    private final FrameReader frameReader;
+    private boolean receivedSettings;
+    private int connectionUnacknowledgedBytesRead;
+
+    FrameHandler(FrameReader frameReader) {
+      this.frameReader = frameReader;
+    }
+
+    @Override
+    public void run() {
+      try {
+        frameReader.readConnectionPreface();
+        if (!frameReader.nextFrame(this)) {
+          connectionError(ErrorCode.INTERNAL_ERROR, "Failed to read initial SETTINGS");
+          return;
+        }
+        if (!receivedSettings) {
+          connectionError(ErrorCode.PROTOCOL_ERROR,
+              "First HTTP/2 frame must be SETTINGS. RFC7540 section 3.5");
+          return;
+        }
+        // Read until the underlying socket closes.
+        while (frameReader.nextFrame(this)) {
+          // Frames are dispatched to the handler methods.
+        }
+      } catch (Throwable t) {
+        log.log(Level.FINE, "Error decoding HTTP/2 frames", t);
+        abruptShutdown(ErrorCode.INTERNAL_ERROR, "Error in frame decoder",
+            Status.INTERNAL.withDescription("Error decoding HTTP/2 frames").withCause(t), false);
+      } finally {
+        try {
+          frameReader.close();
+        } catch (IOException ex) {
+          log.log(Level.INFO, "Exception closing frame reader", ex);
+        }
+      }
+    }
+
+    /**
+     * Handle HTTP2 HEADER and CONTINUATION frames.
+     */
+    @Override
+    public void headers(boolean outFinished,
+        boolean inFinished,
+        int streamId,
+        int associatedStreamId,
+        List<Header> headerBlock,
+        HeadersMode headersMode) {
+      frameLogger.logHeaders(OkHttpFrameLogger.Direction.INBOUND, streamId, headerBlock,
+          inFinished);
+      // streamId == 0 checking is in HTTP/2 decoder
+      if ((streamId & 1) == 0) {
+        // The server doesn't use PUSH_PROMISE, so all even streams are IDLE
+        connectionError(ErrorCode.PROTOCOL_ERROR,
+            "Clients cannot open even numbered streams. RFC7540 section 5.1.1");
+        return;
+      }
+      boolean newStream;
+      synchronized (lock) {
+        if (streamId > goAwayStreamId) {
+          return;
+        }
+        newStream = streamId > lastStreamId;
+        if (newStream) {
+          lastStreamId = streamId;
+        }
+      }
+
+      if (!newStream) {
+        synchronized (lock) {
+          OkHttpServerStream.TransportState stream = streams.get(streamId);
+          if (stream == null) {
+            // The stream was closed on our side. RFC7540 section 5.1 allows ignoring such frames.
+            return;
+          }
+          if (stream.hasReceivedEndOfStream()) {
+            streamError(streamId, ErrorCode.STREAM_CLOSED,
+                "Received headers for half-closed (remote) stream. RFC7540 section 5.1");
+            return;
+          }
+          if (!inFinished) {
+            streamError(streamId, ErrorCode.PROTOCOL_ERROR,
+                "Headers disallowed in the middle of the stream. RFC7540 section 8.1");
+            return;
+          }
+          // Client sent trailers. gRPC does not use them, so treat them as end of stream.
+          stream.inboundDataReceived(new Buffer(), 0, true);
+        }
+        return;
+      }
+
+      int metadataSize = headerBlockSize(headerBlock);
+      if (metadataSize > config.maxInboundMetadataSize) {
+        respondWithHttpError(streamId, inFinished, 431, Status.Code.RESOURCE_EXHAUSTED,
+            String.format("Request metadata larger than %d: %d",
+                config.maxInboundMetadataSize, metadataSize));
+        return;
+      }
+
+      ByteString method = null;
+      ByteString path = null;
+      ByteString authority = null;
+      List<Header> httpHeaders = new ArrayList<>(headerBlock.size());
+      int i = 0;
+      for (; i < headerBlock.size(); i++) {
+        Header header = headerBlock.get(i);
+        if (header.name.size() == 0 || header.name.getByte(0) != ':') {
+          break;
+        }
+        if (Header.TARGET_METHOD.equals(header.name) && method == null) {
+          method = header.value;
+        } else if (Header.TARGET_PATH.equals(header.name) && path == null) {
+          path = header.value;
+        } else if (Header.TARGET_AUTHORITY.equals(header.name) && authority == null) {
+          authority = header.value;
+        } else if (!Header.TARGET_SCHEME.equals(header.name)) {
+          streamError(streamId, ErrorCode.PROTOCOL_ERROR,
+              "Unexpected or duplicate pseudo header. RFC7540 section 8.1.2.1");
+          return;
+        }
+      }
+      List<ByteString> hosts = new ArrayList<>(1);
+      ByteString contentType = null;
+      ByteString te = null;
+      for (; i < headerBlock.size(); i++) {
+        Header header = headerBlock.get(i);
+        if (header.name.size() > 0 && header.name.getByte(0) == ':') {
+          streamError(streamId, ErrorCode.PROTOCOL_ERROR,
+              "Pseudo header not before regular headers. RFC7540 section 8.1.2.1");
+          return;
+        }
+        if (CONNECT_HEADER.equals(header.name)) {
+          // Connection-specific header fields makes a request malformed. RFC 7540 section 8.1.2.2
+          streamError(streamId, ErrorCode.PROTOCOL_ERROR,
+              "Connection-specific headers not permitted. RFC7540 section 8.1.2.2");
+          return;
+        }
+        if (HOST_HEADER.equals(header.name)) {
+          hosts.add(header.value);
+          continue;
+        }
+        if (CONTENT_TYPE_HEADER.equals(header.name)) {
+          contentType = header.value;
+        } else if (TE_HEADER.equals(header.name)) {
+          te = header.value;
+        }
+        httpHeaders.add(header);
+      }
+
+      if (authority == null) {
+        if (hosts.size() > 1) {
+          // RFC 7230 section 5.4
+          respondWithHttpError(streamId, inFinished, 400, Status.Code.INTERNAL,
+              "Multiple host headers");
+          return;
+        }
+        if (!hosts.isEmpty()) {
+          authority = hosts.get(0);
+        }
+      }
+
+      if (path == null) {
+        respondWithHttpError(streamId, inFinished, 404, Status.Code.UNIMPLEMENTED,
+            "Expected path but is missing");
+        return;
+      }
+      String pathString = path.utf8();
+      if (!pathString.startsWith("/")) {
+        respondWithHttpError(streamId, inFinished, 404, Status.Code.UNIMPLEMENTED,
+            String.format("Expected path to start with /: %s", pathString));
+        return;
+      }
+      String methodName = pathString.substring(1);
+
+      if (contentType == null) {
+        respondWithHttpError(streamId, inFinished, 415, Status.Code.INTERNAL,
+            "Content-Type is missing from the request");
+        return;
+      }
+      String contentTypeString = contentType.utf8();
+      if (!GrpcUtil.isGrpcContentType(contentTypeString)) {
+        respondWithHttpError(streamId, inFinished, 415, Status.Code.INTERNAL,
+            String.format("Content-Type '%s' is not supported", contentTypeString));
+        return;
+      }
+
+      if (!HTTP_METHOD.equals(method)) {
+        respondWithHttpError(streamId, inFinished, 405, Status.Code.INTERNAL,
+            String.format("Method '%s' is not supported",
+                method == null ? null : method.utf8()));
+        return;
+      }
+
+      if (!teWarningLogged && !TE_TRAILERS.equals(te)) {
+        log.warning(String.format("Expected header TE: %s, but %s is received. This means "
+                + "some intermediate proxy may not support trailers",
+            GrpcUtil.TE_TRAILERS, te == null ? null : te.utf8()));
+        teWarningLogged = true;
+      }
+
+      Metadata metadata = Utils.convertHeaders(httpHeaders);
+      StatsTraceContext statsTraceCtx =
+          StatsTraceContext.newServerContext(config.streamTracerFactories, methodName, metadata);
+      synchronized (lock) {
+        if (streams.size() >= config.maxConcurrentCallsPerConnection) {
+          streamError(streamId, ErrorCode.REFUSED_STREAM,
+              "Exceeded the maximum number of concurrent streams");
+          return;
+        }
+        OkHttpServerStream.TransportState stateTransport = new OkHttpServerStream.TransportState(
+            OkHttpServerTransport.this,
+            streamId,
+            config.maxInboundMessageSize,
+            statsTraceCtx,
+            lock,
+            frameWriter,
+            outboundFlow,
+            config.flowControlWindow,
+            tracer,
+            methodName);
+        OkHttpServerStream stream = new OkHttpServerStream(
+            stateTransport,
+            attributes,
+            authority == null ? null : authority.utf8(),
+            statsTraceCtx,
+            tracer);
+        streams.put(streamId, stateTransport);
+        listener.streamCreated(stream, methodName, metadata);
+        stateTransport.onStreamAllocated();
+        if (inFinished) {
+          stateTransport.inboundDataReceived(new Buffer(), 0, true);
+        }
+      }
+    }
+
+    /**
+     * Handle an HTTP2 DATA frame.
+     */
+    @Override
+    public void data(boolean inFinished, int streamId, BufferedSource in, int length)
+        throws IOException {
+      frameLogger.logData(OkHttpFrameLogger.Direction.INBOUND,
+          streamId, in.getBuffer(), length, inFinished);
+      if (streamId == 0) {
+        connectionError(ErrorCode.PROTOCOL_ERROR,
+            "Stream 0 is reserved for control messages. RFC7540 section 5.1.1");
+        return;
+      }
+      if ((streamId & 1) == 0) {
+        // The server doesn't use PUSH_PROMISE, so all even streams are IDLE
+        connectionError(ErrorCode.PROTOCOL_ERROR,
+            "Clients cannot open even numbered streams. RFC7540 section 5.1.1");
+        return;
+      }
+
+      // Wait until the frame is complete. We only support 16 KiB frames, and the max permitted in
+      // HTTP/2 is 16 MiB. This is verified in OkHttp's Http2 deframer, so we don't need to be
+      // concerned with the window being exceeded at this point.
+      in.require(length);
+
+      synchronized (lock) {
+        OkHttpServerStream.TransportState stream = streams.get(streamId);
+        if (stream == null) {
+          in.skip(length);
+          if (streamId > lastStreamId) {
+            connectionError(ErrorCode.PROTOCOL_ERROR,
+                "Received DATA for idle stream. RFC7540 section 5.1");
+            return;
+          }
+          // The stream was closed on our side. RFC7540 section 5.1 allows ignoring such frames.
+        } else if (stream.hasReceivedEndOfStream()) {
+          in.skip(length);
+          streamError(streamId, ErrorCode.STREAM_CLOSED,
+              "Received DATA for half-closed (remote) stream. RFC7540 section 5.1");
+        } else {
+          Buffer buf = new Buffer();
+          buf.write(in.getBuffer(), length);
+          stream.inboundDataReceived(buf, length, inFinished);
+        }
+
+        // connection window update
+        connectionUnacknowledgedBytesRead += length;
+        if (connectionUnacknowledgedBytesRead
+            >= config.flowControlWindow * DEFAULT_WINDOW_UPDATE_RATIO) {
+          frameWriter.windowUpdate(CONNECTION_STREAM_ID, connectionUnacknowledgedBytesRead);
+          connectionUnacknowledgedBytesRead = 0;
+        }
+      }
+    }
+
+    @Override
+    public void rstStream(int streamId, ErrorCode errorCode) {
+      frameLogger.logRstStream(OkHttpFrameLogger.Direction.INBOUND, streamId, errorCode);
+      // streamId == 0 checking is in HTTP/2 decoder
+
+      if (!(ErrorCode.NO_ERROR.equals(errorCode)
+          || ErrorCode.CANCEL.equals(errorCode)
+          || ErrorCode.STREAM_CLOSED.equals(errorCode))) {
+        log.log(Level.INFO, "Received RST_STREAM: " + errorCode);
+      }
+      Status status = GrpcUtil.Http2Error.statusForCode(errorCode.httpCode)
+          .withDescription("RST_STREAM");
+      synchronized (lock) {
+        OkHttpServerStream.TransportState stream = streams.get(streamId);
+        if (stream != null) {
+          stream.inboundRstReceived(status);
+          streamClosed(streamId, false);
+        }
+      }
+    }
+
+    @Override
+    public void settings(boolean clearPrevious, Settings settings) {
+      frameLogger.logSettings(OkHttpFrameLogger.Direction.INBOUND, settings);
+      boolean firstSettings = !receivedSettings;
+      receivedSettings = true;
+      synchronized (lock) {
+        boolean outboundWindowSizeIncreased = false;
+        if (OkHttpSettingsUtil.isSet(settings, OkHttpSettingsUtil.INITIAL_WINDOW_SIZE)) {
+          int initialWindowSize = OkHttpSettingsUtil.get(
+              settings, OkHttpSettingsUtil.INITIAL_WINDOW_SIZE);
+          outboundWindowSizeIncreased = outboundFlow.initialOutboundWindowSize(initialWindowSize);
+        }
+
+        // The changed settings are not finalized until SETTINGS acknowledgment frame is sent. Any
+        // writes due to update in settings must be sent after SETTINGS acknowledgment frame,
+        // otherwise it will cause a stream error (RST_STREAM).
+        frameWriter.ackSettings(settings);
+        frameWriter.flush();
+
+        // send any pending bytes / streams
+        if (outboundWindowSizeIncreased) {
+          outboundFlow.writeStreams();
+        }
+      }
+      if (firstSettings) {
+        // Streams can only be created by later frames on this thread, so they always see the
+        // attributes returned here.
+        attributes = listener.transportReady(attributes);
+      }
+    }
+
+    @Override
+    public void ping(boolean ack, int payload1, int payload2) {
+      long payload = (((long) payload1) << 32) | (payload2 & 0xffffffffL);
+      frameLogger.logPing(OkHttpFrameLogger.Direction.INBOUND, payload);
+      if (!ack) {
+        synchronized (lock) {
+          frameWriter.ping(true, payload1, payload2);
+        }
+      } else if (payload == GRACEFUL_SHUTDOWN_PING) {
+        triggerGracefulSecondGoaway();
+      } else {
+        log.log(Level.INFO, "Received unexpected ping ack: " + payload);
+      }
+    }
+
+    @Override
+    public void ackSettings() {
+      // Do nothing currently.
+    }
+
+    @Override
+    public void goAway(int lastGoodStreamId, ErrorCode errorCode, ByteString debugData) {
+      frameLogger.logGoAway(
+          OkHttpFrameLogger.Direction.INBOUND, lastGoodStreamId, errorCode, debugData);
+      String description = String.format("Received GOAWAY: %s '%s'", errorCode, debugData.utf8());
+      Status status = GrpcUtil.Http2Error.statusForCode(errorCode.httpCode)
+          .withDescription(description);
+      if (!ErrorCode.NO_ERROR.equals(errorCode)) {
+        log.log(Level.WARNING, "Received GOAWAY: {0} {1}",
+            new Object[] {errorCode, debugData.utf8()});
+        abruptShutdown(ErrorCode.NO_ERROR, "", status, false);
+      }
+      // With NO_ERROR the client just won't create new streams. It closes the connection once
+      // its streams complete.
+    }
+
+    @Override
+    public void pushPromise(int streamId, int promisedStreamId, List<Header> requestHeaders)
+        throws IOException {
+      frameLogger.logPushPromise(OkHttpFrameLogger.Direction.INBOUND,
+          streamId, promisedStreamId, requestHeaders);
+      // streamId == 0 checking is in HTTP/2 decoder.
+      // The server doesn't use PUSH_PROMISE, so all even streams are IDLE, and odd streams are not
+      // peer-initiated.
+      connectionError(ErrorCode.PROTOCOL_ERROR,
+          "PUSH_PROMISE only allowed on peer-initiated streams. RFC7540 section 6.6");
+    }
+
+    @Override
+    public void windowUpdate(int streamId, long delta) {
+      frameLogger.logWindowsUpdate(OkHttpFrameLogger.Direction.INBOUND, streamId, delta);
+      // delta == 0 checking is in HTTP/2 decoder. And it isn't quite right, as it will always
+      // cause a GOAWAY. RFC7540 section 6.9 says to use RST_STREAM if the stream id isn't 0.
+      // Doesn't matter much though.
+      synchronized (lock) {
+        if (streamId == CONNECTION_STREAM_ID) {
+          outboundFlow.windowUpdate(null, (int) delta);
+        } else {
+          OkHttpServerStream.TransportState stream = streams.get(streamId);
+          if (stream != null) {
+            outboundFlow.windowUpdate(stream.getOutboundFlowState(), (int) delta);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void priority(int streamId, int streamDependency, int weight, boolean exclusive) {
+      // streamId == 0 checking is in HTTP/2 decoder.
+      // Ignore priority change.
+    }
+
+    @Override
+    public void alternateService(int streamId, String origin, ByteString protocol, String host,
+        int port, long maxAge) {}
+
+    /**
+     * Send GOAWAY to the server, then finish all streams and close the transport. RFC7540 §5.4.1.
+     */
+    private void connectionError(ErrorCode errorCode, String moreDetail) {
+      Status status = GrpcUtil.Http2Error.statusForCode(errorCode.httpCode)
+          .withDescription(String.format("HTTP2 connection error: %s '%s'", errorCode, moreDetail));
+      abruptShutdown(errorCode, moreDetail, status, false);
+    }
+
+    private int headerBlockSize(List<Header> headerBlock) {
+      // Calculate as defined for SETTINGS_MAX_HEADER_LIST_SIZE in RFC 7540 §6.5.2.
+      long size = 0;
+      for (int i = 0; i < headerBlock.size(); i++) {
+        Header header = headerBlock.get(i);
+        size += 32 + header.name.size() + header.value.size();
+      }
+      size = Math.min(size, Integer.MAX_VALUE);
+      return (int) size;
+    }
+
+    /**
+     * Sends RST_STREAM for the stream and finishes it, if it was created. RFC7540 §5.4.2.
+     */
+    private void streamError(int streamId, ErrorCode errorCode, String reason) {
+      if (errorCode == ErrorCode.PROTOCOL_ERROR) {
+        log.log(Level.FINE, "Responding with RST_STREAM {0}: {1}",
+            new Object[] {errorCode, reason});
+      }
+      synchronized (lock) {
+        frameWriter.rstStream(streamId, errorCode);
+        frameWriter.flush();
+        OkHttpServerStream.TransportState stream = streams.get(streamId);
+        if (stream != null) {
+          stream.transportReportStatus(
+              Status.INTERNAL.withDescription(
+                  String.format("Responded with RST_STREAM %s: %s", errorCode, reason)));
+          streamClosed(streamId, false);
+        }
+      }
+    }
+
+    /**
+     * Rejects a request with a plain HTTP response. The response is small enough to fit in the
+     * initial window, so it bypasses outbound flow control.
+     */
+    private void respondWithHttpError(
+        int streamId, boolean inFinished, int httpCode, Status.Code statusCode, String msg) {
+      Metadata metadata = new Metadata();
+      metadata.put(InternalStatus.CODE_KEY, statusCode.toStatus());
+      metadata.put(InternalStatus.MESSAGE_KEY, msg);
+      List<Header> headers =
+          Headers.createHttpResponseHeaders(httpCode, "text/plain; charset=utf-8", metadata);
+      Buffer data = new Buffer().writeUtf8(msg);
+
+      synchronized (lock) {
+        frameWriter.synReply(false, streamId, headers);
+        frameWriter.data(true, streamId, data, (int) data.size());
+        if (!inFinished) {
+          frameWriter.rstStream(streamId, ErrorCode.NO_ERROR);
+        }
+        frameWriter.flush();
+      }
+    }
+  }
+
+  /** Settings shared by all the transports of an {@link OkHttpServer}. */
+  static final class Config {
+    final List<ServerStreamTracer.Factory> streamTracerFactories;
+    final ObjectPool<Executor> transportExecutorPool;
+    final ObjectPool<ScheduledExecutorService> scheduledExecutorServicePool;
+    final TransportTracer.Factory transportTracerFactory;
+    final int flowControlWindow;
+    final int maxInboundMessageSize;
+    final int maxInboundMetadataSize;
+    final int maxConcurrentCallsPerConnection;
+
+    Config(
+        OkHttpServerBuilder builder,
+        List<? extends ServerStreamTracer.Factory> streamTracerFactories) {
+      this.streamTracerFactories = Collections.unmodifiableList(new ArrayList<>(
+          Preconditions.checkNotNull(streamTracerFactories, "streamTracerFactories")));
+      this.transportExecutorPool = Preconditions.checkNotNull(
+          builder.transportExecutorPool, "transportExecutorPool");
+      this.scheduledExecutorServicePool = Preconditions.checkNotNull(
+          builder.scheduledExecutorServicePool, "scheduledExecutorServicePool");
+      this.transportTracerFactory = Preconditions.checkNotNull(
+          builder.transportTracerFactory, "transportTracerFactory");
+      this.flowControlWindow = builder.flowControlWindow;
+      this.maxInboundMessageSize = builder.maxInboundMessageSize;
+      this.maxInboundMetadataSize = builder.maxInboundMetadataSize;
+      this.maxConcurrentCallsPerConnection = builder.maxConcurrentCallsPerConnection;
+    }
+  }
+}
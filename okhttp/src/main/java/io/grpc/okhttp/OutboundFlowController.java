@@ -30,20 +30,19 @@ import okio.Buffer;
 
 /**
  * Simple outbound flow controller that evenly splits the connection window across all existing
- * streams.
+ * streams. It is shared by the client and server transports.
  */
 class OutboundFlowController {
-  private final OkHttpClientTransport transport;
+  private final Transport transport;
   private final FrameWriter frameWriter;
   private int initialWindowSize;
-  private final OutboundFlowState connectionState;
+  private final StreamState connectionState;
 
-  OutboundFlowController(
-      OkHttpClientTransport transport, FrameWriter frameWriter) {
+  OutboundFlowController(Transport transport, FrameWriter frameWriter) {
     this.transport = Preconditions.checkNotNull(transport, "transport");
     this.frameWriter = Preconditions.checkNotNull(frameWriter, "frameWriter");
     this.initialWindowSize = DEFAULT_WINDOW_SIZE;
-    connectionState = new OutboundFlowState(CONNECTION_STREAM_ID, DEFAULT_WINDOW_SIZE);
+    connectionState = new StreamState(CONNECTION_STREAM_ID, DEFAULT_WINDOW_SIZE, null);
   }
 
   /**
@@ -62,15 +61,8 @@ class OutboundFlowController {
 
     int delta = newWindowSize - initialWindowSize;
     initialWindowSize = newWindowSize;
-    for (OkHttpClientStream stream : transport.getActiveStreams()) {
-      OutboundFlowState state = (OutboundFlowState) stream.getOutboundFlowState();
-      if (state == null) {
-        // Create the OutboundFlowState with the new window size.
-        state = new OutboundFlowState(stream, initialWindowSize);
-        stream.setOutboundFlowState(state);
-      } else {
-        state.incrementStreamWindow(delta);
-      }
+    for (StreamState state : transport.getActiveStreams()) {
+      state.incrementStreamWindow(delta);
     }
 
     return delta > 0;
@@ -82,15 +74,14 @@ class OutboundFlowController {
    *
    * <p>Must be called with holding transport lock.
    */
-  int windowUpdate(@Nullable OkHttpClientStream stream, int delta) {
+  int windowUpdate(@Nullable StreamState state, int delta) {
     final int updatedWindow;
-    if (stream == null) {
+    if (state == null) {
       // Update the connection window and write any pending frames for all streams.
       updatedWindow = connectionState.incrementStreamWindow(delta);
       writeStreams();
     } else {
       // Update the stream window and write any pending frames for the stream.
-      OutboundFlowState state = state(stream);
       updatedWindow = state.incrementStreamWindow(delta);
 
       WriteStatus writeStatus = new WriteStatus();
@@ -105,18 +96,9 @@ class OutboundFlowController {
   /**
    * Must be called with holding transport lock.
    */
-  void data(boolean outFinished, int streamId, Buffer source, boolean flush) {
+  void data(boolean outFinished, StreamState state, Buffer source, boolean flush) {
     Preconditions.checkNotNull(source, "source");
 
-    OkHttpClientStream stream = transport.getStream(streamId);
-    if (stream == null) {
-      // This is possible for a stream that has received end-of-stream from server (but hasn't sent
-      // end-of-stream), and was removed from the transport stream map.
-      // In such case, we just throw away the data.
-      return;
-    }
-
-    OutboundFlowState state = state(stream);
     int window = state.writableWindow();
     boolean framesAlreadyQueued = state.hasPendingData();
     int size = (int) source.size();
@@ -138,6 +120,22 @@ class OutboundFlowController {
     }
   }
 
+  /**
+   * Runs {@code noPendingDataRunnable} once all data queued for the stream has been written, or
+   * immediately if none is queued. Used to order a frame, such as trailers, after the stream's
+   * flow controlled data.
+   *
+   * <p>Must be called with holding transport lock.
+   */
+  void notifyWhenNoPendingData(StreamState state, Runnable noPendingDataRunnable) {
+    Preconditions.checkNotNull(noPendingDataRunnable, "noPendingDataRunnable");
+    if (state.hasPendingData()) {
+      state.notifyWhenNoPendingData(noPendingDataRunnable);
+    } else {
+      noPendingDataRunnable.run();
+    }
+  }
+
   void flush() {
     try {
       frameWriter.flush();
@@ -146,13 +144,14 @@ class OutboundFlowController {
     }
   }
 
-  private OutboundFlowState state(OkHttpClientStream stream) {
-    OutboundFlowState state = (OutboundFlowState) stream.getOutboundFlowState();
-    if (state == null) {
-      state = new OutboundFlowState(stream, initialWindowSize);
-      stream.setOutboundFlowState(state);
-    }
-    return state;
+  /**
+   * Creates the flow control state of a new stream, using the current initial window size.
+   *
+   * <p>Must be called with holding transport lock.
+   */
+  StreamState createState(Stream stream, int streamId) {
+    return new StreamState(
+        streamId, initialWindowSize, Preconditions.checkNotNull(stream, "stream"));
   }
 
   /**
@@ -161,14 +160,13 @@ class OutboundFlowController {
    * <p>Must be called with holding transport lock.
    */
   void writeStreams() {
-    OkHttpClientStream[] streams = transport.getActiveStreams();
+    StreamState[] states = transport.getActiveStreams();
     int connectionWindow = connectionState.window();
-    for (int numStreams = streams.length; numStreams > 0 && connectionWindow > 0;) {
+    for (int numStreams = states.length; numStreams > 0 && connectionWindow > 0;) {
       int nextNumStreams = 0;
       int windowSlice = (int) ceil(connectionWindow / (float) numStreams);
       for (int index = 0; index < numStreams && connectionWindow > 0; ++index) {
-        OkHttpClientStream stream = streams[index];
-        OutboundFlowState state = state(stream);
+        StreamState state = states[index];
 
         int bytesForStream = min(connectionWindow, min(state.unallocatedBytes(), windowSlice));
         if (bytesForStream > 0) {
@@ -179,7 +177,7 @@ class OutboundFlowController {
         if (state.unallocatedBytes() > 0) {
           // There is more data to process for this stream. Add it to the next
           // pass.
-          streams[nextNumStreams++] = stream;
+          states[nextNumStreams++] = state;
         }
       }
       numStreams = nextNumStreams;
@@ -187,8 +185,7 @@ class OutboundFlowController {
 
     // Now take one last pass through all of the streams and write any allocated bytes.
     WriteStatus writeStatus = new WriteStatus();
-    for (OkHttpClientStream stream : transport.getActiveStreams()) {
-      OutboundFlowState state = state(stream);
+    for (StreamState state : transport.getActiveStreams()) {
       state.writeBytes(state.allocatedBytes(), writeStatus);
       state.clearAllocatedBytes();
     }
@@ -198,6 +195,21 @@ class OutboundFlowController {
     }
   }
 
+  /** The transport whose streams share the connection window. */
+  interface Transport {
+    /**
+     * Returns the flow control state of all active streams. Must be called with holding transport
+     * lock.
+     */
+    StreamState[] getActiveStreams();
+  }
+
+  /** A stream whose outbound data is flow controlled. */
+  interface Stream {
+    /** Notifies that {@code numBytes} of the stream's data have been written to the transport. */
+    void onSentBytes(int numBytes);
+  }
+
   /**
    * Simple status that keeps track of the number of writes performed.
    */
@@ -216,23 +228,22 @@ class OutboundFlowController {
   /**
    * The outbound flow control state for a single stream.
    */
-  private final class OutboundFlowState {
-    final Buffer pendingWriteBuffer;
-    final int streamId;
-    int window;
-    int allocatedBytes;
-    OkHttpClientStream stream;
-    boolean pendingBufferHasEndOfStream = false;
-
-    OutboundFlowState(int streamId, int initialWindowSize) {
+  final class StreamState {
+    private final Buffer pendingWriteBuffer;
+    private final int streamId;
+    private int window;
+    private int allocatedBytes;
+    @Nullable
+    private final Stream stream;
+    private boolean pendingBufferHasEndOfStream = false;
+    @Nullable
+    private Runnable noPendingDataRunnable;
+
+    StreamState(int streamId, int initialWindowSize, @Nullable Stream stream) {
       this.streamId = streamId;
       window = initialWindowSize;
-      pendingWriteBuffer = new Buffer();
-    }
-
-    OutboundFlowState(OkHttpClientStream stream, int initialWindowSize) {
-      this(stream.id(), initialWindowSize);
       this.stream = stream;
+      pendingWriteBuffer = new Buffer();
     }
 
     int window() {
@@ -305,6 +316,11 @@ class OutboundFlowController {
         // Update the threshold.
         maxBytes = min(bytes - bytesAttempted, writableWindow());
       }
+      if (!hasPendingData() && noPendingDataRunnable != null) {
+        Runnable runnable = noPendingDataRunnable;
+        noPendingDataRunnable = null;
+        runnable.run();
+      }
       return bytesAttempted;
     }
 
@@ -328,11 +344,17 @@ class OutboundFlowController {
         } catch (IOException e) {
           throw new RuntimeException(e);
         }
-        stream.transportState().onSentBytes(frameBytes);
+        stream.onSentBytes(frameBytes);
         bytesToWrite -= frameBytes;
       } while (bytesToWrite > 0);
     }
 
+    void notifyWhenNoPendingData(Runnable noPendingDataRunnable) {
+      Preconditions.checkState(
+          this.noPendingDataRunnable == null, "pending data notification already requested");
+      this.noPendingDataRunnable = noPendingDataRunnable;
+    }
+
     void enqueue(Buffer buffer, int size, boolean endOfStream) {
       this.pendingWriteBuffer.write(buffer, size);
       this.pendingBufferHasEndOfStream |= endOfStream;
@@ -16,8 +16,14 @@
 
 package io.grpc.okhttp;
 
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import io.grpc.internal.ReadableBuffer;
 import io.grpc.internal.ReadableBufferTestBase;
+import java.nio.ByteBuffer;
 import okio.Buffer;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,28 +50,47 @@ public class OkHttpReadableBufferTest extends ReadableBufferTestBase {
     }
   }
 
-  @Override
   @Test
-  public void readToByteBufferShouldSucceed() {
-    // Not supported.
-  }
+  public void getByteBufferStaysValidUntilClosed() throws Exception {
+    ByteBuffer byteBuffer = buffer.getByteBuffer();
+    byte[] expected = new byte[byteBuffer.remaining()];
+    byteBuffer.duplicate().get(expected);
 
-  @Override
-  @Test
-  public void partialReadToByteBufferShouldSucceed() {
-    // Not supported.
+    buffer.skipBytes(buffer.readableBytes());
+    // Segments read from other buffers must not reuse the viewed one.
+    Buffer other = new Buffer().writeUtf8(msg);
+    other.skip(other.size());
+
+    byte[] actual = new byte[byteBuffer.remaining()];
+    byteBuffer.get(actual);
+    assertArrayEquals(expected, actual);
   }
 
-  @Override
   @Test
-  public void markAndResetWithReadShouldSucceed() {
-    // Not supported.
+  public void getByteBufferReturnsFollowingSegments() {
+    String content = msg + msg;
+    OkHttpReadableBuffer twoSegments = new OkHttpReadableBuffer(new Buffer().writeUtf8(content));
+    int firstLength = twoSegments.getByteBuffer().remaining();
+    assertTrue(firstLength < content.length());
+    twoSegments.skipBytes(firstLength + 1);
+
+    ByteBuffer byteBuffer = twoSegments.getByteBuffer();
+    byte[] bytes = new byte[byteBuffer.remaining()];
+    byteBuffer.get(bytes);
+    assertEquals(content.substring(firstLength + 1, firstLength + 1 + bytes.length),
+        new String(bytes, UTF_8));
   }
 
-  @Override
   @Test
-  public void markAndResetWithReadToReadableBufferShouldSucceed() {
-    // Not supported.
+  public void readBufferOutlivesClose() {
+    buffer.skipBytes(1);
+    ReadableBuffer slice = buffer.readBytes(msg.length() - 2);
+    buffer.close();
+    assertEquals(0, buffer.readableBytes());
+
+    byte[] bytes = new byte[slice.readableBytes()];
+    slice.readBytes(bytes, 0, bytes.length);
+    assertEquals(msg.substring(1, msg.length() - 1), new String(bytes, UTF_8));
   }
 
   @Override
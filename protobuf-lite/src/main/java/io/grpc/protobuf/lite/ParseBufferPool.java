@@ -0,0 +1,238 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.lite;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.MapMaker;
+import com.google.protobuf.MessageLite;
+import io.grpc.ExperimentalApi;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A pool of the arrays that protobuf marshallers read messages into before parsing them. Arrays
+ * come in power of two size classes, from 4 KiB up to the default maximum message size, and the
+ * pool holds on to them until the total size of the pooled arrays reaches a cap. Larger messages
+ * get an array of their own, which is not pooled.
+ *
+ * <p>Messages parsed by an {@link ProtoLiteUtils#aliasingMarshaller aliasing marshaller} keep
+ * their array until they are {@link #release released}, as their {@code bytes} fields share it.
+ * On servers, {@link #newReleasingInterceptor} releases requests once the handler is done with
+ * them. Messages that are never released give their array to the garbage collector instead of
+ * back to the pool.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+public final class ParseBufferPool {
+  private static final int MIN_SIZE_CLASS_SHIFT = 12;
+  private static final int MAX_SIZE_CLASS_SHIFT = 22;
+  @VisibleForTesting
+  static final int MIN_SIZE_CLASS = 1 << MIN_SIZE_CLASS_SHIFT;
+  @VisibleForTesting
+  static final int MAX_SIZE_CLASS = 1 << MAX_SIZE_CLASS_SHIFT;
+  private static final int DEFAULT_MAX_POOLED_BYTES = 4 * 1024 * 1024;
+
+  private static final ParseBufferPool DEFAULT_INSTANCE =
+      new ParseBufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+  private final long maxPooledBytes;
+  private final AtomicLong pooledBytes = new AtomicLong();
+  /** Used as stacks, so that the most recently used arrays, likely still cached, go first. */
+  private final List<Deque<byte[]>> sizeClasses;
+  /** The arrays that messages parsed with aliasing share, until the messages are released. */
+  private final ConcurrentMap<Object, byte[]> aliasedBuffers =
+      new MapMaker().weakKeys().makeMap();
+
+  private ParseBufferPool(long maxPooledBytes) {
+    this.maxPooledBytes = maxPooledBytes;
+    sizeClasses = new ArrayList<>(MAX_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1);
+    for (int shift = MIN_SIZE_CLASS_SHIFT; shift <= MAX_SIZE_CLASS_SHIFT; shift++) {
+      sizeClasses.add(new ConcurrentLinkedDeque<byte[]>());
+    }
+  }
+
+  /**
+   * Returns the pool used by the marshallers of {@link ProtoLiteUtils#marshaller}, which keeps up
+   * to 4 MiB of arrays.
+   */
+  public static ParseBufferPool getDefaultInstance() {
+    return DEFAULT_INSTANCE;
+  }
+
+  /**
+   * Creates a pool that keeps up to {@code maxPooledBytes} of arrays. Zero disables pooling.
+   */
+  public static ParseBufferPool create(long maxPooledBytes) {
+    checkArgument(maxPooledBytes >= 0, "maxPooledBytes must be non-negative: %s", maxPooledBytes);
+    return new ParseBufferPool(maxPooledBytes);
+  }
+
+  /**
+   * Returns the array that {@code message} was parsed into by an aliasing marshaller using this
+   * pool to the pool. Neither the message nor any {@code ByteString} taken from it may be used
+   * afterwards. Does nothing if the message does not hold an array of this pool, or was already
+   * released.
+   */
+  public void release(MessageLite message) {
+    releaseMessage(message);
+  }
+
+  /**
+   * Returns an interceptor that releases the requests of the calls it intercepts once the handler
+   * is done with them: after {@link ServerCall.Listener#onMessage} for methods where the client
+   * streams, and when the call completes or is cancelled for methods with a single request. It
+   * is only safe for handlers that don't keep requests, or {@code ByteString}s taken from them,
+   * past that point.
+   */
+  public ServerInterceptor newReleasingInterceptor() {
+    return new ReleasingInterceptor();
+  }
+
+  /** Returns an array of at least {@code size} bytes, pooled if there is one. */
+  byte[] acquire(int size) {
+    Deque<byte[]> sizeClass = sizeClass(size);
+    if (sizeClass == null) {
+      return new byte[size];
+    }
+    byte[] buf = sizeClass.pollFirst();
+    if (buf == null) {
+      return new byte[sizeClassSize(size)];
+    }
+    pooledBytes.addAndGet(-buf.length);
+    return buf;
+  }
+
+  /** Returns an array obtained from {@link #acquire} to the pool. */
+  void releaseBuffer(byte[] buf) {
+    Deque<byte[]> sizeClass = sizeClass(buf.length);
+    if (sizeClass == null || buf.length != sizeClassSize(buf.length)) {
+      return;
+    }
+    if (pooledBytes.addAndGet(buf.length) > maxPooledBytes) {
+      pooledBytes.addAndGet(-buf.length);
+      return;
+    }
+    sizeClass.offerFirst(buf);
+  }
+
+  /** Records that {@code message} shares {@code buf}, until the message is released. */
+  void aliased(MessageLite message, byte[] buf) {
+    aliasedBuffers.put(checkNotNull(message, "message"), buf);
+  }
+
+  @VisibleForTesting
+  long pooledBytes() {
+    return pooledBytes.get();
+  }
+
+  private void releaseMessage(Object message) {
+    byte[] buf = aliasedBuffers.remove(checkNotNull(message, "message"));
+    if (buf != null) {
+      releaseBuffer(buf);
+    }
+  }
+
+  @Nullable
+  private Deque<byte[]> sizeClass(int size) {
+    if (size > MAX_SIZE_CLASS) {
+      return null;
+    }
+    return sizeClasses.get(sizeClassShift(size) - MIN_SIZE_CLASS_SHIFT);
+  }
+
+  private static int sizeClassSize(int size) {
+    return 1 << sizeClassShift(size);
+  }
+
+  private static int sizeClassShift(int size) {
+    return Math.max(MIN_SIZE_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+  }
+
+  private final class ReleasingInterceptor implements ServerInterceptor {
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      return new ReleasingListener<>(
+          next.startCall(call, headers),
+          call.getMethodDescriptor().getType().clientSendsOneMessage());
+    }
+  }
+
+  private final class ReleasingListener<ReqT> extends SimpleForwardingServerCallListener<ReqT> {
+    private final boolean clientSendsOneMessage;
+    // The request of a single request method, which the handler may use until the call is done.
+    @Nullable
+    private ReqT request;
+
+    ReleasingListener(ServerCall.Listener<ReqT> delegate, boolean clientSendsOneMessage) {
+      super(delegate);
+      this.clientSendsOneMessage = clientSendsOneMessage;
+    }
+
+    @Override
+    public void onMessage(ReqT message) {
+      if (clientSendsOneMessage) {
+        releaseRequest();
+        request = message;
+        super.onMessage(message);
+        return;
+      }
+      try {
+        super.onMessage(message);
+      } finally {
+        releaseMessage(message);
+      }
+    }
+
+    @Override
+    public void onCancel() {
+      try {
+        super.onCancel();
+      } finally {
+        releaseRequest();
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      try {
+        super.onComplete();
+      } finally {
+        releaseRequest();
+      }
+    }
+
+    private void releaseRequest() {
+      if (request != null) {
+        releaseMessage(request);
+        request = null;
+      }
+    }
+  }
+}
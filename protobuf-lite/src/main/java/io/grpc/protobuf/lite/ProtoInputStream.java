@@ -20,17 +20,24 @@ import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 import io.grpc.Drainable;
+import io.grpc.HasWritableByteBuffer;
 import io.grpc.KnownLength;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import javax.annotation.Nullable;
 
 /**
  * An {@link InputStream} backed by a protobuf.
  */
 final class ProtoInputStream extends InputStream implements Drainable, KnownLength {
+  /**
+   * Larger messages are written through protobuf's own buffering, as a pooled buffer would not
+   * save much.
+   */
+  private static final int MAX_SCRATCH_SIZE = 64 * 1024;
 
   // ProtoInputStream is first initialized with a *message*. *partial* is initially null.
   // Once there has been a read operation on this stream, *message* is serialized to *partial* and
@@ -49,7 +56,7 @@ final class ProtoInputStream extends InputStream implements Drainable, KnownLeng
     int written;
     if (message != null) {
       written = message.getSerializedSize();
-      message.writeTo(target);
+      writeMessage(target, written);
       message = null;
     } else if (partial != null) {
       written = (int) ProtoLiteUtils.copy(partial, target);
@@ -60,6 +67,42 @@ final class ProtoInputStream extends InputStream implements Drainable, KnownLeng
     return written;
   }
 
+  /**
+   * Serializes the message with a single write to {@code target}. If {@code target} can provide a
+   * {@link ByteBuffer} for the whole message, the message is serialized straight into it.
+   * Otherwise it is serialized into a buffer borrowed from the {@link ParseBufferPool}, instead of
+   * a new buffer each time as {@link MessageLite#writeTo(OutputStream)} does.
+   */
+  private void writeMessage(OutputStream target, int size) throws IOException {
+    if (size == 0) {
+      return;
+    }
+    if (target instanceof HasWritableByteBuffer) {
+      ByteBuffer buffer = ((HasWritableByteBuffer) target).getWritableByteBuffer(size);
+      if (buffer != null) {
+        CodedOutputStream stream = CodedOutputStream.newInstance(buffer);
+        message.writeTo(stream);
+        stream.flush();
+        stream.checkNoSpaceLeft();
+        return;
+      }
+    }
+    if (size > MAX_SCRATCH_SIZE) {
+      message.writeTo(target);
+      return;
+    }
+    ParseBufferPool pool = ParseBufferPool.getDefaultInstance();
+    byte[] buf = pool.acquire(size);
+    try {
+      CodedOutputStream stream = CodedOutputStream.newInstance(buf, 0, size);
+      message.writeTo(stream);
+      stream.checkNoSpaceLeft();
+      target.write(buf, 0, size);
+    } finally {
+      pool.releaseBuffer(buf);
+    }
+  }
+
   @Override
   public int read() {
     if (message != null) {
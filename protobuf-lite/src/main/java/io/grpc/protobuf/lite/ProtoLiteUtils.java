@@ -24,6 +24,7 @@ import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.ExperimentalApi;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
@@ -33,8 +34,6 @@ import io.grpc.Status;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
 
 /**
  * Utility methods for using protobuf with grpc.
@@ -81,7 +80,36 @@ public final class ProtoLiteUtils {
    */
   public static <T extends MessageLite> Marshaller<T> marshaller(T defaultInstance) {
     // TODO(ejona): consider changing return type to PrototypeMarshaller (assuming ABI safe)
-    return new MessageMarshaller<>(defaultInstance);
+    return new MessageMarshaller<>(defaultInstance, ParseBufferPool.getDefaultInstance(), false);
+  }
+
+  /**
+   * Creates a {@link Marshaller} for protos of the same type as {@code defaultInstance}, that
+   * reads messages to parse into arrays of {@code parseBufferPool} instead of the default pool.
+   *
+   * @since 1.43.0
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+  public static <T extends MessageLite> Marshaller<T> marshaller(
+      T defaultInstance, ParseBufferPool parseBufferPool) {
+    return new MessageMarshaller<>(
+        defaultInstance, checkNotNull(parseBufferPool, "parseBufferPool"), false);
+  }
+
+  /**
+   * Creates a {@link Marshaller} for protos of the same type as {@code defaultInstance}, whose
+   * parsed messages share the array of {@code parseBufferPool} they were read into for their
+   * {@code bytes} fields, instead of copying them. Messages must be {@link
+   * ParseBufferPool#release released} once they are no longer used, for the array to go back to
+   * the pool, for instance with {@link ParseBufferPool#newReleasingInterceptor}.
+   *
+   * @since 1.43.0
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+  public static <T extends MessageLite> Marshaller<T> aliasingMarshaller(
+      T defaultInstance, ParseBufferPool parseBufferPool) {
+    return new MessageMarshaller<>(
+        defaultInstance, checkNotNull(parseBufferPool, "parseBufferPool"), true);
   }
 
   /**
@@ -117,14 +145,16 @@ public final class ProtoLiteUtils {
 
   private static final class MessageMarshaller<T extends MessageLite>
       implements PrototypeMarshaller<T> {
-    private static final ThreadLocal<Reference<byte[]>> bufs = new ThreadLocal<>();
-
     private final Parser<T> parser;
     private final T defaultInstance;
+    private final ParseBufferPool parseBufferPool;
+    private final boolean aliasing;
 
     @SuppressWarnings("unchecked")
-    MessageMarshaller(T defaultInstance) {
+    MessageMarshaller(T defaultInstance, ParseBufferPool parseBufferPool, boolean aliasing) {
       this.defaultInstance = defaultInstance;
+      this.parseBufferPool = parseBufferPool;
+      this.aliasing = aliasing;
       parser = (Parser<T>) defaultInstance.getParserForType();
     }
 
@@ -170,17 +200,13 @@ public final class ProtoLiteUtils {
         }
       }
       CodedInputStream cis = null;
+      // Unless aliased by the message, buf goes back to the pool once this method returns.
+      byte[] buf = null;
       try {
         if (stream instanceof KnownLength) {
           int size = stream.available();
           if (size > 0 && size <= DEFAULT_MAX_MESSAGE_SIZE) {
-            Reference<byte[]> ref;
-            // buf should not be used after this method has returned.
-            byte[] buf;
-            if ((ref = bufs.get()) == null || (buf = ref.get()) == null || buf.length < size) {
-              buf = new byte[size];
-              bufs.set(new WeakReference<>(buf));
-            }
+            buf = parseBufferPool.acquire(size);
 
             int remaining = size;
             while (remaining > 0) {
@@ -196,26 +222,40 @@ public final class ProtoLiteUtils {
               int position = size - remaining;
               throw new RuntimeException("size inaccurate: " + size + " != " + position);
             }
-            cis = CodedInputStream.newInstance(buf, 0, size);
+            if (aliasing) {
+              // Only a CodedInputStream over a ByteString considers the bytes immutable, which
+              // aliasing needs.
+              cis = UnsafeByteOperations.unsafeWrap(buf, 0, size).newCodedInput();
+              cis.enableAliasing(true);
+            } else {
+              cis = CodedInputStream.newInstance(buf, 0, size);
+            }
           } else if (size == 0) {
             return defaultInstance;
           }
         }
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
-      if (cis == null) {
-        cis = CodedInputStream.newInstance(stream);
-      }
-      // Pre-create the CodedInputStream so that we can remove the size limit restriction
-      // when parsing.
-      cis.setSizeLimit(Integer.MAX_VALUE);
+        if (cis == null) {
+          cis = CodedInputStream.newInstance(stream);
+        }
+        // Pre-create the CodedInputStream so that we can remove the size limit restriction
+        // when parsing.
+        cis.setSizeLimit(Integer.MAX_VALUE);
 
-      try {
-        return parseFrom(cis);
+        T message = parseFrom(cis);
+        if (aliasing && buf != null) {
+          parseBufferPool.aliased(message, buf);
+          buf = null;
+        }
+        return message;
       } catch (InvalidProtocolBufferException ipbe) {
         throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence")
             .withCause(ipbe).asRuntimeException();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      } finally {
+        if (buf != null) {
+          parseBufferPool.releaseBuffer(buf);
+        }
       }
     }
 
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.lite;
+
+import static io.grpc.protobuf.lite.ParseBufferPool.MAX_SIZE_CLASS;
+import static io.grpc.protobuf.lite.ParseBufferPool.MIN_SIZE_CLASS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import io.grpc.KnownLength;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import java.io.ByteArrayInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ParseBufferPool}. */
+@RunWith(JUnit4.class)
+public class ParseBufferPoolTest {
+  private static final BytesValue MESSAGE =
+      BytesValue.newBuilder().setValue(ByteString.copyFromUtf8("value")).build();
+
+  private final ParseBufferPool pool = ParseBufferPool.create(64 * 1024);
+  private final Marshaller<BytesValue> marshaller =
+      ProtoLiteUtils.aliasingMarshaller(BytesValue.getDefaultInstance(), pool);
+
+  @Test
+  public void acquireRoundsUpToSizeClass() {
+    assertEquals(MIN_SIZE_CLASS, pool.acquire(1).length);
+    assertEquals(MIN_SIZE_CLASS, pool.acquire(MIN_SIZE_CLASS).length);
+    assertEquals(2 * MIN_SIZE_CLASS, pool.acquire(MIN_SIZE_CLASS + 1).length);
+    assertEquals(MAX_SIZE_CLASS + 1, pool.acquire(MAX_SIZE_CLASS + 1).length);
+  }
+
+  @Test
+  public void releasedBufferReused() {
+    byte[] buf = pool.acquire(100);
+    pool.releaseBuffer(buf);
+
+    assertEquals(buf.length, pool.pooledBytes());
+    assertSame(buf, pool.acquire(200));
+    assertEquals(0, pool.pooledBytes());
+    assertNotSame(buf, pool.acquire(200));
+  }
+
+  @Test
+  public void sizeClassesKeptApart() {
+    byte[] small = pool.acquire(100);
+    pool.releaseBuffer(small);
+
+    assertNotSame(small, pool.acquire(MIN_SIZE_CLASS + 1));
+    assertSame(small, pool.acquire(100));
+  }
+
+  @Test
+  public void pooledBytesCapped() {
+    byte[] first = pool.acquire(32 * 1024);
+    byte[] second = pool.acquire(32 * 1024);
+    byte[] third = pool.acquire(32 * 1024);
+    pool.releaseBuffer(first);
+    pool.releaseBuffer(second);
+    pool.releaseBuffer(third);
+
+    assertEquals(64 * 1024, pool.pooledBytes());
+  }
+
+  @Test
+  public void buffersNotFromPoolIgnored() {
+    pool.releaseBuffer(new byte[100]);
+    pool.releaseBuffer(new byte[MAX_SIZE_CLASS + 1]);
+
+    assertEquals(0, pool.pooledBytes());
+  }
+
+  @Test
+  public void copyingMarshallerReleasesBufferAfterParse() {
+    Marshaller<BytesValue> copying =
+        ProtoLiteUtils.marshaller(BytesValue.getDefaultInstance(), pool);
+    BytesValue parsed = copying.parse(new KnownLengthStream(MESSAGE.toByteArray()));
+
+    assertEquals(MESSAGE, parsed);
+    assertEquals(MIN_SIZE_CLASS, pool.pooledBytes());
+  }
+
+  @Test
+  public void aliasingMarshallerSharesBuffer() {
+    BytesValue parsed = parse();
+    assertEquals(MESSAGE, parsed);
+    assertEquals(0, pool.pooledBytes());
+
+    // Shows why messages must not be used once released.
+    pool.release(parsed);
+    byte[] buf = pool.acquire(1);
+    int offset = MESSAGE.getSerializedSize() - MESSAGE.getValue().size();
+    buf[offset] = 'V';
+    assertEquals("Value", parsed.getValue().toStringUtf8());
+  }
+
+  @Test
+  public void aliasedBufferReleasedWithMessage() {
+    BytesValue parsed = parse();
+    assertEquals(0, pool.pooledBytes());
+
+    pool.release(parsed);
+    assertEquals(MIN_SIZE_CLASS, pool.pooledBytes());
+    pool.release(parsed);
+    assertEquals(MIN_SIZE_CLASS, pool.pooledBytes());
+  }
+
+  @Test
+  public void interceptor_singleRequestReleasedWhenCallCompletes() {
+    ServerCall.Listener<BytesValue> delegate = mockListener();
+    ServerCall.Listener<BytesValue> listener =
+        interceptCall(MethodDescriptor.MethodType.UNARY, delegate);
+    BytesValue request = parse();
+
+    listener.onMessage(request);
+    listener.onHalfClose();
+    assertEquals(0, pool.pooledBytes());
+
+    listener.onComplete();
+    verify(delegate).onComplete();
+    assertEquals(MIN_SIZE_CLASS, pool.pooledBytes());
+  }
+
+  @Test
+  public void interceptor_singleRequestReleasedWhenCallCancelled() {
+    ServerCall.Listener<BytesValue> delegate = mockListener();
+    ServerCall.Listener<BytesValue> listener =
+        interceptCall(MethodDescriptor.MethodType.SERVER_STREAMING, delegate);
+
+    listener.onMessage(parse());
+    listener.onCancel();
+
+    verify(delegate).onCancel();
+    assertEquals(MIN_SIZE_CLASS, pool.pooledBytes());
+  }
+
+  @Test
+  public void interceptor_streamedRequestReleasedAfterOnMessage() {
+    ServerCall.Listener<BytesValue> delegate = mockListener();
+    ServerCall.Listener<BytesValue> listener =
+        interceptCall(MethodDescriptor.MethodType.BIDI_STREAMING, delegate);
+    BytesValue request = parse();
+
+    listener.onMessage(request);
+
+    verify(delegate).onMessage(request);
+    assertEquals(MIN_SIZE_CLASS, pool.pooledBytes());
+  }
+
+  private BytesValue parse() {
+    return marshaller.parse(new KnownLengthStream(MESSAGE.toByteArray()));
+  }
+
+  private static final class KnownLengthStream extends ByteArrayInputStream
+      implements KnownLength {
+    KnownLengthStream(byte[] buf) {
+      super(buf);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ServerCall.Listener<BytesValue> mockListener() {
+    return mock(ServerCall.Listener.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ServerCall.Listener<BytesValue> interceptCall(
+      MethodDescriptor.MethodType type, ServerCall.Listener<BytesValue> delegate) {
+    MethodDescriptor<BytesValue, BytesValue> method =
+        MethodDescriptor.<BytesValue, BytesValue>newBuilder()
+            .setType(type)
+            .setFullMethodName("service/method")
+            .setRequestMarshaller(marshaller)
+            .setResponseMarshaller(marshaller)
+            .build();
+    ServerCall<BytesValue, BytesValue> call = mock(ServerCall.class);
+    when(call.getMethodDescriptor()).thenReturn(method);
+    ServerCallHandler<BytesValue, BytesValue> handler = mock(ServerCallHandler.class);
+    when(handler.startCall(any(ServerCall.class), any(Metadata.class))).thenReturn(delegate);
+    return pool.newReleasingInterceptor().interceptCall(call, new Metadata(), handler);
+  }
+}
@@ -29,6 +29,7 @@ import com.google.protobuf.Enum;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Type;
 import io.grpc.Drainable;
+import io.grpc.HasWritableByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
@@ -40,6 +41,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.Rule;
 import org.junit.Test;
@@ -191,6 +193,44 @@ public class ProtoLiteUtilsTest {
     assertEquals(0, is.available());
   }
 
+  @Test
+  public void testDrainTo_heapByteBuffer() throws Exception {
+    assertDrainsToByteBuffer(ByteBuffer.allocate(100));
+  }
+
+  @Test
+  public void testDrainTo_directByteBuffer() throws Exception {
+    assertDrainsToByteBuffer(ByteBuffer.allocateDirect(100));
+  }
+
+  @Test
+  public void testDrainTo_byteBufferUnavailable() throws Exception {
+    byte[] golden = ByteStreams.toByteArray(marshaller.stream(proto));
+    ByteBufferOutputStream target = new ByteBufferOutputStream(null);
+    Drainable d = (Drainable) marshaller.stream(proto);
+
+    assertEquals(golden.length, d.drainTo(target));
+
+    assertEquals(golden.length, target.requestedLength);
+    assertArrayEquals(golden, target.toByteArray());
+  }
+
+  private void assertDrainsToByteBuffer(ByteBuffer buffer) throws Exception {
+    byte[] golden = ByteStreams.toByteArray(marshaller.stream(proto));
+    buffer.position(10);
+    buffer.limit(10 + golden.length);
+    ByteBufferOutputStream target = new ByteBufferOutputStream(buffer.slice());
+    Drainable d = (Drainable) marshaller.stream(proto);
+
+    assertEquals(golden.length, d.drainTo(target));
+
+    assertEquals(golden.length, target.requestedLength);
+    assertEquals(0, target.size());
+    byte[] written = new byte[golden.length];
+    buffer.get(written);
+    assertArrayEquals(golden, written);
+  }
+
   @Test
   public void metadataMarshaller_roundtrip() {
     Metadata.BinaryMarshaller<Type> metadataMarshaller =
@@ -232,6 +272,22 @@ public class ProtoLiteUtilsTest {
     assertEquals(GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE, ProtoLiteUtils.DEFAULT_MAX_MESSAGE_SIZE);
   }
 
+  private static final class ByteBufferOutputStream extends ByteArrayOutputStream
+      implements HasWritableByteBuffer {
+    private final ByteBuffer buffer;
+    int requestedLength = -1;
+
+    ByteBufferOutputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public ByteBuffer getWritableByteBuffer(int length) {
+      requestedLength = length;
+      return buffer;
+    }
+  }
+
   private static class CustomKnownLengthInputStream extends InputStream implements KnownLength {
     private int position = 0;
     private byte[] source;
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import io.grpc.internal.ByteBufferWritableBuffer;
+import io.grpc.internal.WritableBuffer;
+import io.grpc.internal.WritableBufferAllocator;
+import java.nio.ByteBuffer;
+
+/**
+ * Heap buffer holding outbound message bytes until the event loop copies them into the ring.
+ */
+final class ByteArrayWritableBuffer implements ByteBufferWritableBuffer {
+  static final WritableBufferAllocator ALLOCATOR = new WritableBufferAllocator() {
+    // Messages of known length ask for exactly their size, so keep the minimum small.
+    private static final int MIN_BUFFER = 256;
+    private static final int MAX_BUFFER = 1024 * 1024;
+
+    @Override
+    public WritableBuffer allocate(int capacityHint) {
+      return new ByteArrayWritableBuffer(Math.min(MAX_BUFFER, Math.max(MIN_BUFFER, capacityHint)));
+    }
+  };
+
+  private final byte[] array;
+  private int size;
+
+  ByteArrayWritableBuffer(int capacity) {
+    this.array = new byte[capacity];
+  }
+
+  byte[] array() {
+    return array;
+  }
+
+  @Override
+  public void write(byte[] src, int srcIndex, int length) {
+    System.arraycopy(src, srcIndex, array, size, length);
+    size += length;
+  }
+
+  @Override
+  public void write(byte b) {
+    array[size++] = b;
+  }
+
+  @Override
+  public ByteBuffer claimByteBuffer(int length) {
+    if (length > array.length - size) {
+      throw new IndexOutOfBoundsException("length " + length + " > " + (array.length - size));
+    }
+    ByteBuffer claimed = ByteBuffer.wrap(array, size, length);
+    size += length;
+    return claimed;
+  }
+
+  @Override
+  public int writableBytes() {
+    return array.length - size;
+  }
+
+  @Override
+  public int readableBytes() {
+    return size;
+  }
+
+  @Override
+  public void release() {}
+}
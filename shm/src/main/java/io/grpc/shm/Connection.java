@@ -0,0 +1,650 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.InternalMetadata;
+import io.grpc.Metadata;
+import io.grpc.internal.AbstractStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.unix.FileDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import javax.annotation.Nullable;
+
+/**
+ * The framing shared by the client and server transports. Each connection is a Unix domain socket
+ * plus a file mapped by both processes that holds two {@link RingBuffer}s, one per direction.
+ *
+ * <p>The socket first carries the handshake. The client creates the file with mode 0600, maps it,
+ * unlinks it and sends {@code MAGIC, VERSION, ringSize} (big-endian ints). The server replies
+ * with a single {@link #SEND_FD} byte, after which the client passes the file descriptor with
+ * {@code SCM_RIGHTS}. The server maps the file through that descriptor, without opening any path
+ * the client names or changing the file's size, and replies with a single {@link #ACK} byte. The
+ * first {@code ringSize} bytes carry client-to-server frames, the rest server-to-client frames.
+ *
+ * <p>After the handshake the socket only carries 9-byte control messages, a type byte followed by
+ * a ring index: {@link #CONTROL_WRITTEN} announces frames written up to the index, and {@link
+ * #CONTROL_READ} that the ring has been consumed up to the index. Frames never straddle an
+ * announced index.
+ *
+ * <p>A frame is {@code type, flags, streamId, length} (1, 1, 4 and 4 bytes) followed by the
+ * payload. Frames are small enough to always fit in an empty ring; those that don't fit yet wait,
+ * in order, for the peer to read. A frame whose length is out of range for its type closes the
+ * connection.
+ *
+ * <p>Like HTTP/2, each stream may have at most {@link #STREAM_WINDOW} bytes of DATA payload in
+ * flight per direction. The receiver returns window with WINDOW_UPDATE frames as the application
+ * consumes the data, and a sender exceeding the window closes the connection. Frames of a stream
+ * that is out of window wait without holding back other streams.
+ *
+ * <p>Must only be used from the channel's event loop.
+ */
+final class Connection {
+  static final int MAGIC = 0x4753484d; // "GSHM"
+  static final int VERSION = 2;
+  static final byte SEND_FD = 2;
+  static final byte ACK = 1;
+  static final int HANDSHAKE_LENGTH = 12;
+
+  static final byte CONTROL_WRITTEN = 'W';
+  static final byte CONTROL_READ = 'R';
+  static final int CONTROL_MESSAGE_LENGTH = 9;
+
+  static final byte TYPE_DATA = 0;
+  static final byte TYPE_HEADERS = 1;
+  static final byte TYPE_TRAILERS = 2;
+  static final byte TYPE_RST_STREAM = 3;
+  static final byte TYPE_GOAWAY = 4;
+  static final byte TYPE_PING = 5;
+  static final byte TYPE_WINDOW_UPDATE = 6;
+  static final byte FLAG_END_STREAM = 1;
+  static final int FRAME_HEADER_LENGTH = 10;
+  /** Length of the payload of RST_STREAM, GOAWAY, PING and WINDOW_UPDATE frames. */
+  static final int INT_PAYLOAD_LENGTH = 4;
+
+  /** DATA payload bytes a stream may have in flight in each direction. */
+  static final int STREAM_WINDOW = 1024 * 1024;
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Receives the frames read from the inbound ring. */
+  interface FrameHandler {
+    void frameReceived(byte type, byte flags, int streamId, byte[] payload);
+
+    /** Called when the last frame waiting for room in the ring has been written. */
+    void pendingFramesWritten();
+  }
+
+  private final Channel channel;
+  private final RingBuffer outbound;
+  private final RingBuffer inbound;
+  private final FrameHandler handler;
+  private final int maxDataLength;
+  private final Queue<Frame> pendingFrames = new ArrayDeque<>();
+  /** Send-side state of the streams that may still send frames. */
+  private final Map<Integer, OutboundStream> outboundStreams = new HashMap<>();
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flushScheduled = false;
+      flush();
+    }
+  };
+  private boolean processingInbound;
+  private boolean flushRequested;
+  private boolean flushScheduled;
+  private long announcedWriteIndex;
+
+  Connection(Channel channel, RingBuffer outbound, RingBuffer inbound, FrameHandler handler) {
+    this.channel = checkNotNull(channel, "channel");
+    this.outbound = checkNotNull(outbound, "outbound");
+    this.inbound = checkNotNull(inbound, "inbound");
+    this.handler = checkNotNull(handler, "handler");
+    // Leave room for other streams to interleave with a large message.
+    this.maxDataLength = outbound.capacity() / 4 - FRAME_HEADER_LENGTH;
+  }
+
+  /**
+   * Sizes {@code file} for two rings of {@code ringSize} bytes each and maps them. The first
+   * carries client-to-server frames. Only the client, which owns the file, calls this.
+   */
+  static RingBuffer[] create(File file, int ringSize) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(2L * ringSize);
+      return map(raf, ringSize);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Maps the rings of a file created by {@link #create}, given the descriptor the client passed.
+   * The file must be a regular file owned by {@code peerUid} and exactly the size of the two rings.
+   * It is opened through {@code /proc/self/fd}, so no path chosen by the client is ever opened.
+   */
+  static RingBuffer[] mapPeerFile(FileDescriptor fd, int ringSize, int peerUid)
+      throws IOException {
+    Path path = Paths.get("/proc/self/fd", String.valueOf(fd.intValue()));
+    if (!Files.isRegularFile(path)) {
+      throw new IOException("Not a regular file");
+    }
+    int owner = (Integer) Files.getAttribute(path, "unix:uid");
+    if (owner != peerUid) {
+      throw new IOException("File owned by uid " + owner + ", peer is uid " + peerUid);
+    }
+    RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw");
+    try {
+      if (raf.length() != 2L * ringSize) {
+        throw new IOException("File is " + raf.length() + " bytes, expected " + 2L * ringSize);
+      }
+      return map(raf, ringSize);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static RingBuffer[] map(RandomAccessFile raf, int ringSize) throws IOException {
+    MappedByteBuffer mapped =
+        raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2L * ringSize);
+    ((Buffer) mapped).limit(ringSize);
+    RingBuffer clientToServer = new RingBuffer(mapped.slice());
+    ((Buffer) mapped).limit(2 * ringSize);
+    ((Buffer) mapped).position(ringSize);
+    RingBuffer serverToClient = new RingBuffer(mapped.slice());
+    return new RingBuffer[] {clientToServer, serverToClient};
+  }
+
+  Channel channel() {
+    return channel;
+  }
+
+  /**
+   * Whether a frame with a payload of {@code length} bytes can ever be written. Only DATA frames
+   * are split.
+   */
+  boolean fits(int length) {
+    return FRAME_HEADER_LENGTH + length <= outbound.capacity();
+  }
+
+  /** Starts send-side flow control for a new stream. */
+  void streamStarted(int streamId) {
+    outboundStreams.put(streamId, new OutboundStream());
+  }
+
+  /**
+   * Forgets a stream that will not send anything more, dropping frames still waiting for window.
+   * Streams whose last frame has been written, or that were reset, are forgotten automatically.
+   */
+  void streamClosed(int streamId) {
+    outboundStreams.remove(streamId);
+  }
+
+  /**
+   * Queues a frame; it is announced to the peer on the next {@link #flush}. HEADERS and TRAILERS
+   * frames wait behind DATA frames of the same stream that are out of window.
+   */
+  void writeFrame(
+      byte type, byte flags, int streamId, byte[] payload,
+      @Nullable AbstractStream.TransportState sentListener) {
+    Frame frame = new Frame(type, flags, streamId, payload, 0, payload.length, sentListener);
+    if (type == TYPE_HEADERS || type == TYPE_TRAILERS) {
+      send(frame);
+      return;
+    }
+    if (type == TYPE_RST_STREAM) {
+      outboundStreams.remove(streamId);
+    }
+    enqueue(frame);
+  }
+
+  /**
+   * Queues a DATA frame, split as needed. {@code sentListener} is notified of the payload bytes as
+   * they are written to the ring.
+   */
+  void writeData(
+      int streamId, byte[] payload, int length, boolean endOfStream,
+      @Nullable AbstractStream.TransportState sentListener) {
+    int offset = 0;
+    do {
+      int chunk = Math.min(length - offset, maxDataLength);
+      boolean last = offset + chunk == length;
+      send(new Frame(
+          TYPE_DATA, last && endOfStream ? FLAG_END_STREAM : 0, streamId, payload, offset, chunk,
+          sentListener));
+      offset += chunk;
+    } while (offset < length);
+  }
+
+  /** Returns {@code increment} bytes of a stream's window to the peer. */
+  void writeWindowUpdate(int streamId, int increment) {
+    enqueue(new Frame(
+        TYPE_WINDOW_UPDATE, (byte) 0, streamId, encodeInt(increment), 0, INT_PAYLOAD_LENGTH,
+        null));
+    flush();
+  }
+
+  /** Queues a frame of a stream, once the stream's window allows. */
+  private void send(Frame frame) {
+    OutboundStream stream = outboundStreams.get(frame.streamId);
+    if (stream == null) {
+      // The stream was reset or closed.
+      return;
+    }
+    stream.blocked.add(frame);
+    releaseBlocked(frame.streamId, stream);
+  }
+
+  /** Queues the frames of a stream that its window allows, in order. */
+  private void releaseBlocked(int streamId, OutboundStream stream) {
+    Frame frame;
+    while ((frame = stream.blocked.peek()) != null) {
+      if (frame.type == TYPE_DATA && frame.length > stream.window) {
+        if (stream.window > 0) {
+          stream.blocked.poll();
+          stream.blocked.addFirst(frame.suffix(stream.window));
+          frame = frame.prefix(stream.window);
+          stream.window = 0;
+          enqueue(frame);
+        }
+        return;
+      }
+      stream.blocked.poll();
+      if (frame.type == TYPE_DATA) {
+        stream.window -= frame.length;
+      }
+      if (frame.type == TYPE_TRAILERS
+          || (frame.type == TYPE_DATA && (frame.flags & FLAG_END_STREAM) != 0)) {
+        outboundStreams.remove(streamId);
+      }
+      enqueue(frame);
+    }
+  }
+
+  private void windowUpdateReceived(int streamId, int increment) {
+    if (increment <= 0) {
+      throw new IllegalArgumentException("Invalid window increment " + increment);
+    }
+    OutboundStream stream = outboundStreams.get(streamId);
+    if (stream == null) {
+      return;
+    }
+    if (stream.window > Integer.MAX_VALUE - increment) {
+      throw new IllegalArgumentException("Window overflow for stream " + streamId);
+    }
+    stream.window += increment;
+    releaseBlocked(streamId, stream);
+    flush();
+    if (!hasPendingFrames()) {
+      handler.pendingFramesWritten();
+    }
+  }
+
+  private void enqueue(Frame frame) {
+    if (pendingFrames.isEmpty() && outbound.writableBytes() >= frame.size()) {
+      frame.writeTo(outbound);
+    } else {
+      pendingFrames.add(frame);
+    }
+  }
+
+  /** Whether there are frames waiting for the peer to make room in the ring or window. */
+  boolean hasPendingFrames() {
+    if (!pendingFrames.isEmpty()) {
+      return true;
+    }
+    for (OutboundStream stream : outboundStreams.values()) {
+      if (!stream.blocked.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Announces the frames written so far to the peer. */
+  void flush() {
+    if (processingInbound) {
+      // Sent along with the read announcement once all inbound frames are processed.
+      flushRequested = true;
+      return;
+    }
+    if (outbound.writeIndex() == announcedWriteIndex) {
+      return;
+    }
+    ByteBuf buf = channel.alloc().buffer(CONTROL_MESSAGE_LENGTH);
+    appendWriteAnnouncement(buf);
+    channel.writeAndFlush(buf);
+  }
+
+  /**
+   * Flushes once the event loop has run the tasks already queued, which typically include the
+   * first message of a stream whose headers were just written.
+   */
+  void flushLater() {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      channel.eventLoop().execute(flushTask);
+    }
+  }
+
+  private void appendWriteAnnouncement(ByteBuf buf) {
+    if (outbound.writeIndex() == announcedWriteIndex) {
+      return;
+    }
+    announcedWriteIndex = outbound.writeIndex();
+    buf.writeByte(CONTROL_WRITTEN);
+    buf.writeLong(announcedWriteIndex);
+  }
+
+  /** Processes all complete control messages in {@code in}. */
+  void controlReceived(ByteBuf in) {
+    while (in.readableBytes() >= CONTROL_MESSAGE_LENGTH) {
+      byte type = in.readByte();
+      long index = in.readLong();
+      switch (type) {
+        case CONTROL_WRITTEN:
+          inbound.writerAdvanced(index);
+          readFrames();
+          break;
+        case CONTROL_READ:
+          outbound.readerAdvanced(index);
+          writePendingFrames();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown control message " + type);
+      }
+    }
+  }
+
+  private void readFrames() {
+    processingInbound = true;
+    try {
+      while (inbound.readableBytes() > 0) {
+        if (inbound.readableBytes() < FRAME_HEADER_LENGTH) {
+          throw new IllegalArgumentException("Truncated frame header");
+        }
+        byte type = (byte) inbound.readByte();
+        byte flags = (byte) inbound.readByte();
+        int streamId = inbound.readInt();
+        int length = inbound.readInt();
+        checkFrameLength(type, length);
+        byte[] payload = new byte[length];
+        inbound.read(payload, 0, length);
+        if (type == TYPE_WINDOW_UPDATE) {
+          windowUpdateReceived(streamId, decodeInt(payload));
+          continue;
+        }
+        if (type == TYPE_RST_STREAM) {
+          outboundStreams.remove(streamId);
+        }
+        handler.frameReceived(type, flags, streamId, payload);
+      }
+    } finally {
+      processingInbound = false;
+    }
+    ByteBuf buf = channel.alloc().buffer(2 * CONTROL_MESSAGE_LENGTH);
+    buf.writeByte(CONTROL_READ);
+    buf.writeLong(inbound.readIndex());
+    if (flushRequested) {
+      flushRequested = false;
+      appendWriteAnnouncement(buf);
+    }
+    channel.writeAndFlush(buf);
+  }
+
+  /**
+   * Rejects a length the peer could not have written: beyond the announced bytes, or larger than
+   * the peer may send for the frame type. DATA frames are split to a quarter of the ring.
+   */
+  private void checkFrameLength(byte type, int length) {
+    int max;
+    switch (type) {
+      case TYPE_DATA:
+        max = inbound.capacity() / 4 - FRAME_HEADER_LENGTH;
+        break;
+      case TYPE_RST_STREAM:
+      case TYPE_GOAWAY:
+      case TYPE_PING:
+      case TYPE_WINDOW_UPDATE:
+        max = INT_PAYLOAD_LENGTH;
+        break;
+      default:
+        max = inbound.capacity() - FRAME_HEADER_LENGTH;
+    }
+    if (length < 0 || length > max || length > inbound.readableBytes()) {
+      throw new IllegalArgumentException(
+          "Invalid length " + length + " for frame type " + type);
+    }
+  }
+
+  private void writePendingFrames() {
+    if (pendingFrames.isEmpty()) {
+      return;
+    }
+    Frame frame;
+    while ((frame = pendingFrames.peek()) != null && outbound.writableBytes() >= frame.size()) {
+      pendingFrames.poll().writeTo(outbound);
+    }
+    flush();
+    if (pendingFrames.isEmpty()) {
+      handler.pendingFramesWritten();
+    }
+  }
+
+  /** Encodes metadata, preceded by {@code prefix} strings such as the method name. */
+  static byte[] encodeMetadata(Metadata metadata, String... prefix) {
+    byte[][] serialized = InternalMetadata.serialize(metadata);
+    byte[][] prefixBytes = new byte[prefix.length][];
+    int size = 4;
+    for (int i = 0; i < prefixBytes.length; i++) {
+      prefixBytes[i] = prefix[i].getBytes(UTF_8);
+      size += 4 + prefixBytes[i].length;
+    }
+    for (byte[] entry : serialized) {
+      size += 4 + entry.length;
+    }
+    Fields writer = new Fields(size);
+    for (byte[] entry : prefixBytes) {
+      writer.writeBytes(entry);
+    }
+    writer.writeInt(serialized.length);
+    for (byte[] entry : serialized) {
+      writer.writeBytes(entry);
+    }
+    return writer.array;
+  }
+
+  /**
+   * Decodes metadata written by {@link #encodeMetadata}, filling {@code prefix} with the strings
+   * preceding it.
+   */
+  static Metadata decodeMetadata(byte[] payload, String[] prefix) {
+    Fields reader = new Fields(payload);
+    for (int i = 0; i < prefix.length; i++) {
+      prefix[i] = new String(reader.readBytes(), UTF_8);
+    }
+    int count = reader.readInt();
+    if (count < 0 || count > reader.remaining() / 4) {
+      throw new IllegalArgumentException("Invalid metadata entry count " + count);
+    }
+    byte[][] serialized = new byte[count][];
+    for (int i = 0; i < serialized.length; i++) {
+      serialized[i] = reader.readBytes();
+    }
+    return InternalMetadata.newMetadata(serialized);
+  }
+
+  static byte[] encodeInt(int value) {
+    Fields writer = new Fields(4);
+    writer.writeInt(value);
+    return writer.array;
+  }
+
+  static int decodeInt(byte[] payload) {
+    return new Fields(payload).readInt();
+  }
+
+  /** Length-prefixed fields over a byte array. */
+  private static final class Fields {
+    final byte[] array;
+    int position;
+
+    Fields(int size) {
+      this.array = new byte[size];
+    }
+
+    Fields(byte[] array) {
+      this.array = array;
+    }
+
+    void writeInt(int value) {
+      array[position++] = (byte) (value >>> 24);
+      array[position++] = (byte) (value >>> 16);
+      array[position++] = (byte) (value >>> 8);
+      array[position++] = (byte) value;
+    }
+
+    void writeBytes(byte[] bytes) {
+      writeInt(bytes.length);
+      System.arraycopy(bytes, 0, array, position, bytes.length);
+      position += bytes.length;
+    }
+
+    int remaining() {
+      return array.length - position;
+    }
+
+    int readInt() {
+      if (remaining() < 4) {
+        throw new IllegalArgumentException("Truncated field");
+      }
+      return (array[position++] & 0xff) << 24 | (array[position++] & 0xff) << 16
+          | (array[position++] & 0xff) << 8 | (array[position++] & 0xff);
+    }
+
+    byte[] readBytes() {
+      int length = readInt();
+      if (length < 0 || length > remaining()) {
+        throw new IllegalArgumentException("Invalid field length " + length);
+      }
+      byte[] bytes = new byte[length];
+      System.arraycopy(array, position, bytes, 0, bytes.length);
+      position += bytes.length;
+      return bytes;
+    }
+  }
+
+  private static final class Frame {
+    final byte type;
+    final byte flags;
+    final int streamId;
+    final byte[] payload;
+    final int offset;
+    final int length;
+    @Nullable
+    final AbstractStream.TransportState sentListener;
+
+    Frame(
+        byte type, byte flags, int streamId, byte[] payload, int offset, int length,
+        @Nullable AbstractStream.TransportState sentListener) {
+      this.type = type;
+      this.flags = flags;
+      this.streamId = streamId;
+      this.payload = payload;
+      this.offset = offset;
+      this.length = length;
+      this.sentListener = sentListener;
+    }
+
+    int size() {
+      return FRAME_HEADER_LENGTH + length;
+    }
+
+    /** The first {@code n} payload bytes, without the end of stream flag. */
+    Frame prefix(int n) {
+      return new Frame(type, (byte) 0, streamId, payload, offset, n, sentListener);
+    }
+
+    /** The payload after the first {@code n} bytes. */
+    Frame suffix(int n) {
+      return new Frame(type, flags, streamId, payload, offset + n, length - n, sentListener);
+    }
+
+    void writeTo(RingBuffer ring) {
+      ring.writeByte(type);
+      ring.writeByte(flags);
+      ring.writeInt(streamId);
+      ring.writeInt(length);
+      ring.write(payload, offset, length);
+      if (sentListener != null && length > 0) {
+        sentListener.onSentBytes(length);
+      }
+    }
+  }
+
+  /** Send-side flow control of a stream. */
+  private static final class OutboundStream {
+    int window = STREAM_WINDOW;
+    /** Frames waiting for window, in order. */
+    final Deque<Frame> blocked = new ArrayDeque<>();
+  }
+
+  /** Receive-side flow control of a stream. */
+  static final class InboundWindow {
+    private int window = STREAM_WINDOW;
+    private int processed;
+
+    /** Accounts for a DATA frame, failing the connection if the peer overran the window. */
+    void dataReceived(int length) {
+      window -= length;
+      if (window < 0) {
+        throw new IllegalArgumentException("Stream window exceeded");
+      }
+    }
+
+    /**
+     * Accounts for bytes the application consumed. Returns the window increment to send to the
+     * peer, or 0 while less than half the window is waiting to be returned.
+     */
+    int bytesRead(int processedBytes) {
+      processed += processedBytes;
+      if (processed < STREAM_WINDOW / 2) {
+        return 0;
+      }
+      int increment = processed;
+      window += increment;
+      processed = 0;
+      return increment;
+    }
+  }
+}
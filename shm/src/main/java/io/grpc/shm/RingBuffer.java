@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * One direction of a connection: a byte ring in memory shared with the peer process. One side
+ * only writes and the other only reads.
+ *
+ * <p>The indices are not stored in the shared memory. Each side tracks its own index and learns
+ * the peer's from the control socket, so bytes are only ever read after the writer has announced
+ * them and only overwritten after the reader has announced it is done with them. The socket
+ * round trip orders the memory accesses; no atomics are needed.
+ *
+ * <p>Not thread-safe. Each connection only touches its rings from its event loop.
+ */
+final class RingBuffer {
+  private final ByteBuffer buffer;
+  private final int capacity;
+  private long writeIndex;
+  private long readIndex;
+
+  /**
+   * Creates a ring over the whole of {@code region}, which must not be used by anything else in
+   * this process.
+   */
+  RingBuffer(ByteBuffer region) {
+    this.buffer = region.duplicate();
+    ((Buffer) this.buffer).clear();
+    this.capacity = buffer.capacity();
+    checkArgument(capacity > 0, "empty region");
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  long writeIndex() {
+    return writeIndex;
+  }
+
+  long readIndex() {
+    return readIndex;
+  }
+
+  /** Called on the reading side when the writer announces that it has written up to index. */
+  void writerAdvanced(long index) {
+    checkArgument(index >= writeIndex && index - readIndex <= capacity,
+        "invalid write index %s, read index %s", index, readIndex);
+    writeIndex = index;
+  }
+
+  /** Called on the writing side when the reader announces that it has read up to index. */
+  void readerAdvanced(long index) {
+    checkArgument(index >= readIndex && index <= writeIndex,
+        "invalid read index %s, write index %s", index, writeIndex);
+    readIndex = index;
+  }
+
+  int readableBytes() {
+    return (int) (writeIndex - readIndex);
+  }
+
+  int writableBytes() {
+    return capacity - readableBytes();
+  }
+
+  void writeByte(int value) {
+    checkState(writableBytes() >= 1, "ring full");
+    buffer.put(offset(writeIndex), (byte) value);
+    writeIndex++;
+  }
+
+  void writeInt(int value) {
+    writeByte(value >>> 24);
+    writeByte(value >>> 16);
+    writeByte(value >>> 8);
+    writeByte(value);
+  }
+
+  void write(byte[] src, int off, int len) {
+    checkState(writableBytes() >= len, "ring full");
+    while (len > 0) {
+      int pos = offset(writeIndex);
+      int chunk = Math.min(len, capacity - pos);
+      ((Buffer) buffer).position(pos);
+      buffer.put(src, off, chunk);
+      off += chunk;
+      len -= chunk;
+      writeIndex += chunk;
+    }
+  }
+
+  int readByte() {
+    checkState(readableBytes() >= 1, "ring empty");
+    int value = buffer.get(offset(readIndex)) & 0xff;
+    readIndex++;
+    return value;
+  }
+
+  int readInt() {
+    return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+  }
+
+  void read(byte[] dst, int off, int len) {
+    checkState(readableBytes() >= len, "ring empty");
+    while (len > 0) {
+      int pos = offset(readIndex);
+      int chunk = Math.min(len, capacity - pos);
+      ((Buffer) buffer).position(pos);
+      buffer.get(dst, off, chunk);
+      off += chunk;
+      len -= chunk;
+      readIndex += chunk;
+    }
+  }
+
+  private int offset(long index) {
+    return (int) (index % capacity);
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.errorprone.annotations.DoNotCall;
+import io.grpc.ChannelCredentials;
+import io.grpc.ChannelLogger;
+import io.grpc.ExperimentalApi;
+import io.grpc.Internal;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.internal.AbstractManagedChannelImplBuilder;
+import io.grpc.internal.ClientTransportFactory;
+import io.grpc.internal.ConnectionClientTransport;
+import io.grpc.internal.FixedObjectPool;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ManagedChannelImplBuilder;
+import io.grpc.internal.ManagedChannelImplBuilder.ClientTransportFactoryBuilder;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.SharedResourcePool;
+import io.grpc.internal.TransportTracer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.io.File;
+import java.net.SocketAddress;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builder for a channel that talks to a {@link SharedMemoryServerBuilder} server on the same host.
+ * Messages are exchanged through memory shared by both processes; a Unix domain socket at the
+ * given path is only used to set up the connection and to wake up the peer.
+ *
+ * <p>Requires Linux and Netty's native epoll transport.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1783")
+public final class SharedMemoryChannelBuilder extends
+    AbstractManagedChannelImplBuilder<SharedMemoryChannelBuilder> {
+  /**
+   * Creates a channel connecting to the server listening on the Unix domain socket {@code path}.
+   */
+  public static SharedMemoryChannelBuilder forPath(String path) {
+    return new SharedMemoryChannelBuilder(path);
+  }
+
+  /**
+   * Always fails. Call {@link #forPath} instead.
+   */
+  @DoNotCall("Unsupported. Use forPath() instead")
+  public static SharedMemoryChannelBuilder forTarget(String target) {
+    throw new UnsupportedOperationException("call forPath() instead");
+  }
+
+  /**
+   * Always fails. Call {@link #forPath} instead.
+   */
+  @DoNotCall("Unsupported. Use forPath() instead")
+  public static SharedMemoryChannelBuilder forAddress(String name, int port) {
+    throw new UnsupportedOperationException("call forPath() instead");
+  }
+
+  private final ManagedChannelImplBuilder managedChannelImplBuilder;
+  private final DomainSocketAddress address;
+  private ObjectPool<? extends EventLoopGroup> eventLoopGroupPool =
+      SharedResourcePool.forResource(Utils.DEFAULT_EVENT_LOOP_GROUP);
+  private File sharedMemoryDirectory;
+  private int ringSize = Utils.DEFAULT_RING_SIZE;
+  private int maxInboundMetadataSize = GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE;
+
+  private SharedMemoryChannelBuilder(String path) {
+    this.address = new DomainSocketAddress(checkNotNull(path, "path"));
+
+    final class SharedMemoryChannelTransportFactoryBuilder
+        implements ClientTransportFactoryBuilder {
+      @Override
+      public ClientTransportFactory buildClientTransportFactory() {
+        return buildTransportFactory();
+      }
+    }
+
+    managedChannelImplBuilder = new ManagedChannelImplBuilder(
+        address, "localhost", new SharedMemoryChannelTransportFactoryBuilder(), null);
+  }
+
+  @Internal
+  @Override
+  protected ManagedChannelBuilder<?> delegate() {
+    return managedChannelImplBuilder;
+  }
+
+  /**
+   * Sets the size in bytes of each of the two rings shared with the server, one per direction.
+   * Larger rings let more data be in flight before the sender has to wait for the receiver. The
+   * server may reject sizes above its own limit. Defaults to 1 MiB.
+   */
+  public SharedMemoryChannelBuilder ringSize(int bytes) {
+    checkArgument(bytes >= 4096, "ringSize must be >= 4096");
+    this.ringSize = bytes;
+    return this;
+  }
+
+  /**
+   * Sets the directory in which the shared memory is created. It should be backed by memory, like
+   * {@code /dev/shm}, which is the default when it is writable. The file is only readable by the
+   * current user, is removed as soon as it has been created and mapped, and reaches the server as
+   * a file descriptor passed over the socket.
+   */
+  public SharedMemoryChannelBuilder sharedMemoryDirectory(File directory) {
+    this.sharedMemoryDirectory = checkNotNull(directory, "directory");
+    return this;
+  }
+
+  /**
+   * Provides an epoll EventLoopGroup to be used by the transport. The caller remains responsible
+   * for shutting it down once the channel is terminated.
+   */
+  public SharedMemoryChannelBuilder eventLoopGroup(EventLoopGroup eventLoopGroup) {
+    this.eventLoopGroupPool = new FixedObjectPool<>(checkNotNull(eventLoopGroup, "eventLoopGroup"));
+    return this;
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder maxInboundMetadataSize(int bytes) {
+    checkArgument(bytes > 0, "maxInboundMetadataSize must be > 0");
+    this.maxInboundMetadataSize = bytes;
+    return this;
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder useTransportSecurity() {
+    throw new UnsupportedOperationException("TLS not supported by the shared memory transport");
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder usePlaintext() {
+    return this;
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder keepAliveTime(long keepAliveTime, TimeUnit timeUnit) {
+    return this;
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder keepAliveTimeout(long keepAliveTimeout, TimeUnit timeUnit) {
+    return this;
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder keepAliveWithoutCalls(boolean enable) {
+    return this;
+  }
+
+  ClientTransportFactory buildTransportFactory() {
+    File directory = sharedMemoryDirectory;
+    if (directory == null) {
+      directory = Utils.defaultSharedMemoryDirectory();
+    }
+    return new SharedMemoryClientTransportFactory(
+        eventLoopGroupPool, directory, ringSize, maxInboundMessageSize, maxInboundMetadataSize);
+  }
+
+  private static final class SharedMemoryClientTransportFactory
+      implements ClientTransportFactory {
+    private final ObjectPool<? extends EventLoopGroup> eventLoopGroupPool;
+    private final EventLoopGroup eventLoopGroup;
+    private final ScheduledExecutorService timerService;
+    private final File sharedMemoryDirectory;
+    private final int ringSize;
+    private final int maxMessageSize;
+    private final int maxInboundMetadataSize;
+    private boolean closed;
+
+    SharedMemoryClientTransportFactory(
+        ObjectPool<? extends EventLoopGroup> eventLoopGroupPool, File sharedMemoryDirectory,
+        int ringSize, int maxMessageSize, int maxInboundMetadataSize) {
+      this.eventLoopGroupPool = eventLoopGroupPool;
+      this.eventLoopGroup = eventLoopGroupPool.getObject();
+      this.timerService = eventLoopGroup;
+      this.sharedMemoryDirectory = sharedMemoryDirectory;
+      this.ringSize = ringSize;
+      this.maxMessageSize = maxMessageSize;
+      this.maxInboundMetadataSize = maxInboundMetadataSize;
+    }
+
+    @Override
+    public ConnectionClientTransport newClientTransport(
+        SocketAddress addr, ClientTransportOptions options, ChannelLogger channelLogger) {
+      if (closed) {
+        throw new IllegalStateException("The transport factory is closed.");
+      }
+      return new SharedMemoryClientTransport(
+          (DomainSocketAddress) addr, options.getAuthority(), options.getUserAgent(),
+          options.getEagAttributes(), eventLoopGroup, sharedMemoryDirectory, ringSize,
+          maxMessageSize, maxInboundMetadataSize, new TransportTracer());
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduledExecutorService() {
+      return timerService;
+    }
+
+    @Override
+    public SwapChannelCredentialsResult swapChannelCredentials(ChannelCredentials channelCreds) {
+      return null;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      eventLoopGroupPool.returnObject(eventLoopGroup);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import io.grpc.ChannelCredentials;
+import io.grpc.ExperimentalApi;
+
+/**
+ * Credentials selecting the shared memory transport, for use with {@code
+ * Grpc.newChannelBuilder("unix:///path/to/socket", SharedMemoryChannelCredentials.create())}.
+ * The connection is not encrypted; access is controlled by the permissions of the socket.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1783")
+public final class SharedMemoryChannelCredentials extends ChannelCredentials {
+  public static ChannelCredentials create() {
+    return new SharedMemoryChannelCredentials();
+  }
+
+  private SharedMemoryChannelCredentials() {}
+
+  @Override
+  public ChannelCredentials withoutBearerTokens() {
+    return this;
+  }
+}
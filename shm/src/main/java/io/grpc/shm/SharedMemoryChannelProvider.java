@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import io.grpc.ChannelCredentials;
+import io.grpc.Internal;
+import io.grpc.ManagedChannelProvider;
+import io.netty.channel.epoll.Epoll;
+
+/**
+ * Provider for {@link SharedMemoryChannelBuilder} instances. Only used for {@link
+ * SharedMemoryChannelCredentials}, so it never takes over targets meant for other transports.
+ */
+@Internal
+public final class SharedMemoryChannelProvider extends ManagedChannelProvider {
+  private static final String UNIX_SCHEME = "unix://";
+
+  @Override
+  public boolean isAvailable() {
+    return Epoll.isAvailable();
+  }
+
+  @Override
+  public int priority() {
+    return 3;
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder builderForAddress(String name, int port) {
+    throw new UnsupportedOperationException("Use SharedMemoryChannelCredentials");
+  }
+
+  @Override
+  public SharedMemoryChannelBuilder builderForTarget(String target) {
+    throw new UnsupportedOperationException("Use SharedMemoryChannelCredentials");
+  }
+
+  @Override
+  public NewChannelBuilderResult newChannelBuilder(String target, ChannelCredentials creds) {
+    if (!(creds instanceof SharedMemoryChannelCredentials)) {
+      return NewChannelBuilderResult.error("Only SharedMemoryChannelCredentials are supported");
+    }
+    String path = target;
+    if (path.startsWith(UNIX_SCHEME)) {
+      path = path.substring(UNIX_SCHEME.length());
+    }
+    if (!path.startsWith("/")) {
+      return NewChannelBuilderResult.error(
+          "Target must be an absolute path or a unix:///path URI: " + target);
+    }
+    return NewChannelBuilderResult.channelBuilder(SharedMemoryChannelBuilder.forPath(path));
+  }
+}
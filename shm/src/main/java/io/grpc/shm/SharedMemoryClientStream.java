@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.InternalStatus;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.AbstractClientStream;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.grpc.internal.WritableBuffer;
+
+/**
+ * Client stream for the shared memory transport. All transport state is touched only from the
+ * connection's event loop.
+ */
+final class SharedMemoryClientStream extends AbstractClientStream {
+  private static final byte[] EMPTY = new byte[0];
+
+  private final SharedMemoryClientTransport transport;
+  private final MethodDescriptor<?, ?> method;
+  private final Attributes attributes;
+  private final TransportState state;
+  private final Sink sink = new Sink();
+  private volatile String authority;
+
+  SharedMemoryClientStream(
+      SharedMemoryClientTransport transport,
+      MethodDescriptor<?, ?> method,
+      Metadata headers,
+      CallOptions callOptions,
+      String authority,
+      int maxMessageSize,
+      StatsTraceContext statsTraceCtx,
+      TransportTracer transportTracer) {
+    super(
+        ByteArrayWritableBuffer.ALLOCATOR, statsTraceCtx, transportTracer, headers, callOptions,
+        /*useGet=*/ false);
+    this.transport = checkNotNull(transport, "transport");
+    this.method = checkNotNull(method, "method");
+    this.authority = checkNotNull(authority, "authority");
+    this.attributes = transport.getAttributes();
+    this.state = new TransportState(maxMessageSize, statsTraceCtx, transportTracer);
+  }
+
+  @Override
+  protected TransportState transportState() {
+    return state;
+  }
+
+  @Override
+  protected Sink abstractClientStreamSink() {
+    return sink;
+  }
+
+  @Override
+  public void setAuthority(String authority) {
+    this.authority = checkNotNull(authority, "authority");
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return attributes;
+  }
+
+  private final class Sink implements AbstractClientStream.Sink {
+    @Override
+    public void writeHeaders(final Metadata headers, byte[] payload) {
+      final byte[] encoded =
+          Connection.encodeMetadata(headers, method.getFullMethodName(), authority);
+      transport.runOnEventLoop(new Runnable() {
+        @Override
+        public void run() {
+          transport.startStream(SharedMemoryClientStream.this, encoded);
+        }
+      });
+    }
+
+    @Override
+    public void writeFrame(
+        WritableBuffer frame, final boolean endOfStream, final boolean flush, int numMessages) {
+      final byte[] payload;
+      final int length;
+      if (frame == null) {
+        payload = EMPTY;
+        length = 0;
+      } else {
+        payload = ((ByteArrayWritableBuffer) frame).array();
+        length = frame.readableBytes();
+        onSendingBytes(length);
+      }
+      getTransportTracer().reportMessageSent(numMessages);
+      transport.runOnEventLoop(new Runnable() {
+        @Override
+        public void run() {
+          state.sendData(payload, length, endOfStream, flush);
+        }
+      });
+    }
+
+    @Override
+    public void cancel(final Status reason) {
+      transport.runOnEventLoop(new Runnable() {
+        @Override
+        public void run() {
+          state.cancel(reason);
+        }
+      });
+    }
+  }
+
+  final class TransportState extends AbstractClientStream.TransportState {
+    private final Connection.InboundWindow inboundWindow = new Connection.InboundWindow();
+    private int id = -1;
+
+    TransportState(
+        int maxMessageSize, StatsTraceContext statsTraceCtx, TransportTracer transportTracer) {
+      super(maxMessageSize, statsTraceCtx, transportTracer);
+    }
+
+    int id() {
+      return id;
+    }
+
+    void start(int id) {
+      this.id = id;
+      getStatsTraceContext().clientOutboundHeaders();
+      onStreamAllocated();
+    }
+
+    @Override
+    public void runOnTransportThread(Runnable r) {
+      transport.runOnEventLoop(r);
+    }
+
+    @Override
+    public void bytesRead(int processedBytes) {
+      int increment = inboundWindow.bytesRead(processedBytes);
+      if (increment > 0 && transport.isActive(id)) {
+        transport.connection().writeWindowUpdate(id, increment);
+      }
+    }
+
+    @Override
+    public void deframeFailed(Throwable cause) {
+      cancel(Status.fromThrowable(cause));
+    }
+
+    void headersReceived(Metadata headers) {
+      inboundHeadersReceived(headers);
+    }
+
+    void dataReceived(byte[] payload) {
+      inboundWindow.dataReceived(payload.length);
+      inboundDataReceived(ReadableBuffers.wrap(payload));
+    }
+
+    void trailersReceived(Metadata trailers) {
+      Status status = trailers.get(InternalStatus.CODE_KEY);
+      if (status == null) {
+        status = Status.INTERNAL.withDescription("missing GRPC status in response");
+      } else {
+        status = status.withDescription(trailers.get(InternalStatus.MESSAGE_KEY));
+      }
+      trailers.discardAll(InternalStatus.CODE_KEY);
+      trailers.discardAll(InternalStatus.MESSAGE_KEY);
+      inboundTrailersReceived(trailers, status);
+    }
+
+    private void sendData(byte[] payload, int length, boolean endOfStream, boolean flush) {
+      if (!transport.isActive(id)) {
+        return;
+      }
+      transport.connection().writeData(id, payload, length, endOfStream, this);
+      if (flush) {
+        transport.connection().flush();
+      }
+    }
+
+    private void cancel(Status reason) {
+      if (transport.isActive(id)) {
+        transport.cancelStream(id);
+      } else if (id == -1) {
+        transport.removePendingStream(SharedMemoryClientStream.this);
+      }
+      transportReportStatus(reason, true, new Metadata());
+    }
+
+    /** Fails the stream because the transport can no longer carry it. */
+    void transportFailed(Status status, RpcProgress rpcProgress) {
+      transportReportStatus(status, rpcProgress, true, new Metadata());
+    }
+  }
+}
@@ -0,0 +1,564 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Grpc;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.SecurityLevel;
+import io.grpc.Status;
+import io.grpc.internal.ClientStream;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
+import io.grpc.internal.ConnectionClientTransport;
+import io.grpc.internal.FailingClientStream;
+import io.grpc.internal.GrpcAttributes;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.Http2Ping;
+import io.grpc.internal.InUseStateAggregator;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Client side of a shared memory connection. See {@link Connection} for the protocol.
+ */
+final class SharedMemoryClientTransport
+    implements ConnectionClientTransport, Connection.FrameHandler {
+  private static final Logger log = Logger.getLogger(SharedMemoryClientTransport.class.getName());
+
+  private final InternalLogId logId;
+  private final DomainSocketAddress address;
+  private final String authority;
+  private final String userAgent;
+  private final EventLoopGroup eventLoopGroup;
+  private final File sharedMemoryDirectory;
+  private final int ringSize;
+  private final int maxMessageSize;
+  private final int maxInboundMetadataSize;
+  private final TransportTracer transportTracer;
+  private final Attributes attributes;
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private Status shutdownStatus;
+  private Listener listener;
+  private Channel channel;
+
+  // The rest is only accessed from the event loop.
+  private final Map<Integer, SharedMemoryClientStream> streams = new HashMap<>();
+  /** Streams started before the handshake completed, with their encoded headers. */
+  private final Map<SharedMemoryClientStream, byte[]> pendingStreams = new LinkedHashMap<>();
+  private final InUseStateAggregator<SharedMemoryClientStream> inUseState =
+      new InUseStateAggregator<SharedMemoryClientStream>() {
+        @Override
+        protected void handleInUse() {
+          listener.transportInUse(true);
+        }
+
+        @Override
+        protected void handleNotInUse() {
+          listener.transportInUse(false);
+        }
+      };
+  /** The ring file, open until the server has mapped it. */
+  private FileDescriptor sharedMemoryFd;
+  private RingBuffer[] rings;
+  private Connection connection;
+  private int nextStreamId = 1;
+  private int nextPingId;
+  private Http2Ping ping;
+  private int lastStreamIdAllowed = Integer.MAX_VALUE;
+  private Status failureStatus;
+
+  SharedMemoryClientTransport(
+      DomainSocketAddress address,
+      String authority,
+      String userAgent,
+      Attributes eagAttrs,
+      EventLoopGroup eventLoopGroup,
+      File sharedMemoryDirectory,
+      int ringSize,
+      int maxMessageSize,
+      int maxInboundMetadataSize,
+      TransportTracer transportTracer) {
+    this.address = checkNotNull(address, "address");
+    this.authority = checkNotNull(authority, "authority");
+    this.userAgent = GrpcUtil.getGrpcUserAgent("shm", userAgent);
+    this.eventLoopGroup = checkNotNull(eventLoopGroup, "eventLoopGroup");
+    this.sharedMemoryDirectory = checkNotNull(sharedMemoryDirectory, "sharedMemoryDirectory");
+    this.ringSize = ringSize;
+    this.maxMessageSize = maxMessageSize;
+    this.maxInboundMetadataSize = maxInboundMetadataSize;
+    this.transportTracer = checkNotNull(transportTracer, "transportTracer");
+    this.attributes = Attributes.newBuilder()
+        .set(GrpcAttributes.ATTR_SECURITY_LEVEL, SecurityLevel.NONE)
+        .set(GrpcAttributes.ATTR_CLIENT_EAG_ATTRS, checkNotNull(eagAttrs, "eagAttrs"))
+        .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, address)
+        .build();
+    this.logId = InternalLogId.allocate(getClass(), address.toString());
+  }
+
+  @Override
+  public Runnable start(Listener listener) {
+    this.listener = checkNotNull(listener, "listener");
+    ChannelFuture connectFuture = new Bootstrap()
+        .group(eventLoopGroup)
+        .channel(EpollDomainSocketChannel.class)
+        .handler(new ControlHandler())
+        .connect(address);
+    channel = connectFuture.channel();
+    channel.closeFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        channelClosed();
+      }
+    });
+    connectFuture.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        if (future.isSuccess()) {
+          sendHandshake();
+        } else {
+          failureStatus = Status.UNAVAILABLE.withDescription("Failed to connect to " + address)
+              .withCause(future.cause());
+        }
+      }
+    });
+    return null;
+  }
+
+  private void sendHandshake() {
+    File file = null;
+    try {
+      file = Files.createTempFile(
+          sharedMemoryDirectory.toPath(), "grpc-shm-", null,
+          PosixFilePermissions.asFileAttribute(
+              EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)))
+          .toFile();
+      // Opening truncates the file, so it must happen before the file is sized.
+      sharedMemoryFd = FileDescriptor.from(file);
+      rings = Connection.create(file, ringSize);
+    } catch (IOException ex) {
+      failureStatus = Status.UNAVAILABLE.withDescription("Failed to map shared memory")
+          .withCause(ex);
+      channel.close();
+      return;
+    } finally {
+      // The server gets the file through the descriptor, so its name is no longer needed.
+      if (file != null && !file.delete()) {
+        log.log(Level.WARNING, "Failed to delete {0}", file);
+      }
+    }
+    ByteBuf buf = channel.alloc().buffer(Connection.HANDSHAKE_LENGTH);
+    buf.writeInt(Connection.MAGIC);
+    buf.writeInt(Connection.VERSION);
+    buf.writeInt(ringSize);
+    channel.writeAndFlush(buf);
+  }
+
+  private void handshakeAcknowledged() {
+    closeSharedMemoryFd();
+    connection = new Connection(channel, rings[0], rings[1], this);
+    rings = null;
+    listener.transportReady();
+    for (Map.Entry<SharedMemoryClientStream, byte[]> entry : pendingStreams.entrySet()) {
+      createStream(entry.getKey(), entry.getValue());
+    }
+    pendingStreams.clear();
+  }
+
+  private void closeSharedMemoryFd() {
+    if (sharedMemoryFd != null) {
+      try {
+        sharedMemoryFd.close();
+      } catch (IOException ex) {
+        log.log(Level.FINE, "Failed to close the shared memory file", ex);
+      }
+      sharedMemoryFd = null;
+    }
+  }
+
+  @Override
+  public ClientStream newStream(
+      MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+      ClientStreamTracer[] tracers) {
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newClientContext(tracers, getAttributes(), headers);
+    synchronized (lock) {
+      if (shutdownStatus != null) {
+        return new FailingClientStream(shutdownStatus, tracers);
+      }
+    }
+    headers.discardAll(GrpcUtil.USER_AGENT_KEY);
+    headers.put(GrpcUtil.USER_AGENT_KEY, userAgent);
+    return new SharedMemoryClientStream(
+        this, method, headers, callOptions, authority, maxMessageSize, statsTraceCtx,
+        transportTracer);
+  }
+
+  void runOnEventLoop(Runnable r) {
+    if (channel.eventLoop().inEventLoop()) {
+      r.run();
+    } else {
+      channel.eventLoop().execute(r);
+    }
+  }
+
+  Connection connection() {
+    return connection;
+  }
+
+  boolean isActive(int streamId) {
+    return streams.containsKey(streamId);
+  }
+
+  void startStream(SharedMemoryClientStream stream, byte[] encodedHeaders) {
+    // Streams created before shutdown() are still allowed to start, as long as the server hasn't
+    // said it won't process them.
+    if (!channel.isOpen() || lastStreamIdAllowed != Integer.MAX_VALUE) {
+      Status status;
+      synchronized (lock) {
+        status = shutdownStatus;
+      }
+      if (status == null) {
+        status = Status.UNAVAILABLE.withDescription("Connection closed");
+      }
+      stream.transportState().transportFailed(status, RpcProgress.REFUSED);
+      return;
+    }
+    if (connection == null) {
+      pendingStreams.put(stream, encodedHeaders);
+      return;
+    }
+    createStream(stream, encodedHeaders);
+  }
+
+  /** Forgets a stream cancelled before the handshake completed. */
+  void removePendingStream(SharedMemoryClientStream stream) {
+    pendingStreams.remove(stream);
+  }
+
+  private void createStream(SharedMemoryClientStream stream, byte[] encodedHeaders) {
+    if (!connection.fits(encodedHeaders.length)) {
+      stream.transportState().transportFailed(
+          Status.RESOURCE_EXHAUSTED.withDescription("Request metadata larger than the ring"),
+          RpcProgress.PROCESSED);
+      return;
+    }
+    int id = nextStreamId;
+    nextStreamId += 2;
+    streams.put(id, stream);
+    if (stream.shouldBeCountedForInUse()) {
+      inUseState.updateObjectInUse(stream, true);
+    }
+    connection.streamStarted(id);
+    connection.writeFrame(Connection.TYPE_HEADERS, (byte) 0, id, encodedHeaders, null);
+    connection.flushLater();
+    stream.transportState().start(id);
+  }
+
+  void cancelStream(int id) {
+    connection.writeFrame(
+        Connection.TYPE_RST_STREAM, (byte) 0, id,
+        Connection.encodeInt(Status.Code.CANCELLED.value()), null);
+    connection.flush();
+    removeStream(id);
+  }
+
+  private void removeStream(int id) {
+    SharedMemoryClientStream stream = streams.remove(id);
+    if (stream != null) {
+      connection.streamClosed(id);
+      inUseState.updateObjectInUse(stream, false);
+      closeIfShutdownAndIdle();
+    }
+  }
+
+  private void closeIfShutdownAndIdle() {
+    synchronized (lock) {
+      if (shutdownStatus == null) {
+        return;
+      }
+    }
+    if (streams.isEmpty() && pendingStreams.isEmpty()
+        && (connection == null || !connection.hasPendingFrames())) {
+      channel.close();
+    }
+  }
+
+  @Override
+  public void frameReceived(byte type, byte flags, int streamId, byte[] payload) {
+    if (type == Connection.TYPE_GOAWAY) {
+      goAwayReceived(Connection.decodeInt(payload));
+      return;
+    }
+    if (type == Connection.TYPE_PING) {
+      pingAckReceived(Connection.decodeInt(payload));
+      return;
+    }
+    SharedMemoryClientStream stream = streams.get(streamId);
+    if (stream == null) {
+      // The stream was cancelled locally.
+      return;
+    }
+    SharedMemoryClientStream.TransportState state = stream.transportState();
+    if ((type == Connection.TYPE_HEADERS || type == Connection.TYPE_TRAILERS)
+        && payload.length > maxInboundMetadataSize) {
+      cancelStream(streamId);
+      state.transportFailed(
+          Status.RESOURCE_EXHAUSTED.withDescription(String.format(
+              "Response header metadata larger than %d: %d",
+              maxInboundMetadataSize, payload.length)),
+          RpcProgress.PROCESSED);
+      return;
+    }
+    switch (type) {
+      case Connection.TYPE_HEADERS:
+        state.headersReceived(Connection.decodeMetadata(payload, new String[0]));
+        break;
+      case Connection.TYPE_DATA:
+        state.dataReceived(payload);
+        break;
+      case Connection.TYPE_TRAILERS:
+        removeStream(streamId);
+        state.trailersReceived(Connection.decodeMetadata(payload, new String[0]));
+        break;
+      case Connection.TYPE_RST_STREAM:
+        removeStream(streamId);
+        state.transportFailed(
+            Status.fromCodeValue(Connection.decodeInt(payload))
+                .withDescription("Stream reset by server"),
+            RpcProgress.PROCESSED);
+        break;
+      default:
+        throw new IllegalArgumentException("Unexpected frame type " + type);
+    }
+  }
+
+  @Override
+  public void pendingFramesWritten() {
+    closeIfShutdownAndIdle();
+  }
+
+  private void goAwayReceived(int lastStreamId) {
+    lastStreamIdAllowed = lastStreamId;
+    Status status = Status.UNAVAILABLE.withDescription("Server is shutting down");
+    startShutdown(status);
+    List<Integer> refused = new ArrayList<>();
+    for (Integer id : streams.keySet()) {
+      if (id > lastStreamIdAllowed) {
+        refused.add(id);
+      }
+    }
+    for (Integer id : refused) {
+      streams.get(id).transportState().transportFailed(status, RpcProgress.REFUSED);
+      removeStream(id);
+    }
+    closeIfShutdownAndIdle();
+  }
+
+  private boolean startShutdown(Status status) {
+    synchronized (lock) {
+      if (shutdownStatus != null) {
+        return false;
+      }
+      shutdownStatus = status;
+    }
+    listener.transportShutdown(status);
+    return true;
+  }
+
+  private void channelClosed() {
+    closeSharedMemoryFd();
+    Status status = failureStatus;
+    if (status == null) {
+      status = Status.UNAVAILABLE.withDescription("Connection closed");
+    }
+    startShutdown(status);
+    synchronized (lock) {
+      status = shutdownStatus;
+    }
+    if (ping != null) {
+      ping.failed(status.asException());
+      ping = null;
+    }
+    for (SharedMemoryClientStream stream : pendingStreams.keySet()) {
+      stream.transportState().transportFailed(status, RpcProgress.REFUSED);
+    }
+    pendingStreams.clear();
+    failStreams(status);
+    listener.transportTerminated();
+  }
+
+  @Override
+  public void shutdown(Status reason) {
+    if (!startShutdown(reason)) {
+      return;
+    }
+    runOnEventLoop(new Runnable() {
+      @Override
+      public void run() {
+        closeIfShutdownAndIdle();
+      }
+    });
+  }
+
+  @Override
+  public void shutdownNow(final Status reason) {
+    shutdown(reason);
+    runOnEventLoop(new Runnable() {
+      @Override
+      public void run() {
+        failStreams(reason);
+        channel.close();
+      }
+    });
+  }
+
+  private void failStreams(Status status) {
+    for (SharedMemoryClientStream stream : new ArrayList<>(streams.values())) {
+      removeStream(stream.transportState().id());
+      stream.transportState().transportFailed(status, RpcProgress.PROCESSED);
+    }
+  }
+
+  @Override
+  public void ping(final PingCallback callback, final Executor executor) {
+    runOnEventLoop(new Runnable() {
+      @Override
+      public void run() {
+        if (connection == null || !channel.isActive()) {
+          Status status;
+          synchronized (lock) {
+            status = shutdownStatus;
+          }
+          if (status == null) {
+            status = Status.UNAVAILABLE.withDescription("Transport is not ready");
+          }
+          Http2Ping.notifyFailed(callback, executor, status.asException());
+          return;
+        }
+        if (ping == null) {
+          int id = nextPingId++;
+          ping = new Http2Ping(id, Stopwatch.createStarted());
+          transportTracer.reportKeepAliveSent();
+          connection.writeFrame(
+              Connection.TYPE_PING, (byte) 0, 0, Connection.encodeInt(id), null);
+          connection.flush();
+        }
+        ping.addCallback(callback, executor);
+      }
+    });
+  }
+
+  private void pingAckReceived(int id) {
+    if (ping != null && ping.payload() == id) {
+      ping.complete();
+      ping = null;
+    }
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public InternalLogId getLogId() {
+    return logId;
+  }
+
+  @Override
+  public ListenableFuture<SocketStats> getStats() {
+    SettableFuture<SocketStats> ret = SettableFuture.create();
+    ret.set(null);
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    return logId + "(" + address + ")";
+  }
+
+  /**
+   * Passes the ring file when the server asks for it and waits for the handshake acknowledgement,
+   * then hands control messages to the connection.
+   */
+  private final class ControlHandler extends ByteToMessageDecoder {
+    private boolean fileSent;
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+      if (connection == null) {
+        byte reply = in.readByte();
+        if (reply == Connection.SEND_FD && !fileSent && sharedMemoryFd != null) {
+          fileSent = true;
+          ctx.writeAndFlush(sharedMemoryFd);
+          return;
+        }
+        if (reply != Connection.ACK || !fileSent) {
+          throw new IllegalStateException("Handshake rejected: " + reply);
+        }
+        handshakeAcknowledged();
+      }
+      connection.controlReceived(in);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      log.log(Level.FINE, "Connection failed", cause);
+      if (failureStatus == null) {
+        failureStatus = Status.UNAVAILABLE.withDescription("Connection failed").withCause(cause);
+      }
+      ctx.close();
+    }
+  }
+}
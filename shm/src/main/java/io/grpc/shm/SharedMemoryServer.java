@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalInstrumented;
+import io.grpc.ServerStreamTracer;
+import io.grpc.internal.InternalServer;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.ServerListener;
+import io.grpc.internal.TransportTracer;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Accepts shared memory connections on a Unix domain socket.
+ */
+final class SharedMemoryServer implements InternalServer {
+  private static final Logger log = Logger.getLogger(SharedMemoryServer.class.getName());
+
+  private final DomainSocketAddress address;
+  private final ObjectPool<? extends EventLoopGroup> eventLoopGroupPool;
+  private final List<? extends ServerStreamTracer.Factory> streamTracerFactories;
+  private final TransportTracer.Factory transportTracerFactory;
+  private final int maxMessageSize;
+  private final int maxInboundMetadataSize;
+  private final int maxRingSize;
+  private EventLoopGroup eventLoopGroup;
+  private Channel channel;
+
+  SharedMemoryServer(
+      DomainSocketAddress address,
+      ObjectPool<? extends EventLoopGroup> eventLoopGroupPool,
+      List<? extends ServerStreamTracer.Factory> streamTracerFactories,
+      TransportTracer.Factory transportTracerFactory,
+      int maxMessageSize,
+      int maxInboundMetadataSize,
+      int maxRingSize) {
+    this.address = checkNotNull(address, "address");
+    this.eventLoopGroupPool = checkNotNull(eventLoopGroupPool, "eventLoopGroupPool");
+    this.streamTracerFactories =
+        Collections.unmodifiableList(checkNotNull(streamTracerFactories, "streamTracerFactories"));
+    this.transportTracerFactory = checkNotNull(transportTracerFactory, "transportTracerFactory");
+    this.maxMessageSize = maxMessageSize;
+    this.maxInboundMetadataSize = maxInboundMetadataSize;
+    this.maxRingSize = maxRingSize;
+  }
+
+  @Override
+  public void start(final ServerListener serverListener) throws IOException {
+    checkNotNull(serverListener, "serverListener");
+    // Binding would silently replace the socket of a server already listening on the path.
+    if (new File(address.path()).exists()) {
+      throw new IOException("Failed to bind to " + address + ": file exists");
+    }
+    eventLoopGroup = eventLoopGroupPool.getObject();
+    ChannelFuture future = new ServerBootstrap()
+        .group(eventLoopGroup)
+        .channel(EpollServerDomainSocketChannel.class)
+        .childHandler(new ChannelInitializer<Channel>() {
+          @Override
+          protected void initChannel(Channel ch) {
+            SharedMemoryServerTransport transport = new SharedMemoryServerTransport(
+                ch, streamTracerFactories, maxMessageSize, maxInboundMetadataSize, maxRingSize,
+                transportTracerFactory.create());
+            transport.start(serverListener.transportCreated(transport));
+          }
+        })
+        .bind(address)
+        .awaitUninterruptibly();
+    if (!future.isSuccess()) {
+      eventLoopGroup = eventLoopGroupPool.returnObject(eventLoopGroup);
+      throw new IOException("Failed to bind to " + address, future.cause());
+    }
+    channel = future.channel();
+    channel.closeFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        File socket = new File(address.path());
+        if (socket.exists() && !socket.delete()) {
+          log.log(Level.WARNING, "Failed to delete {0}", socket);
+        }
+        eventLoopGroup = eventLoopGroupPool.returnObject(eventLoopGroup);
+        serverListener.serverShutdown();
+      }
+    });
+  }
+
+  @Override
+  public SocketAddress getListenSocketAddress() {
+    return address;
+  }
+
+  @Override
+  public List<? extends SocketAddress> getListenSocketAddresses() {
+    return Collections.singletonList(address);
+  }
+
+  @Override
+  public InternalInstrumented<SocketStats> getListenSocketStats() {
+    return null;
+  }
+
+  @Override
+  public List<InternalInstrumented<SocketStats>> getListenSocketStatsList() {
+    return null;
+  }
+
+  @Override
+  public void shutdown() {
+    if (channel == null || !channel.isOpen()) {
+      return;
+    }
+    channel.close();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("address", address).toString();
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.errorprone.annotations.DoNotCall;
+import io.grpc.ExperimentalApi;
+import io.grpc.Internal;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerStreamTracer;
+import io.grpc.internal.AbstractServerImplBuilder;
+import io.grpc.internal.FixedObjectPool;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.InternalServer;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.ServerImplBuilder;
+import io.grpc.internal.ServerImplBuilder.ClientTransportServersBuilder;
+import io.grpc.internal.SharedResourcePool;
+import io.grpc.internal.TransportTracer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.unix.DomainSocketAddress;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Builder for a server that accepts {@link SharedMemoryChannelBuilder} channels from processes on
+ * the same host. The server listens on a Unix domain socket at the given path, which is removed
+ * when the server shuts down. Clients must run as the same user as the server, which only maps
+ * memory the connecting user owns.
+ *
+ * <p>Requires Linux and Netty's native epoll transport.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1783")
+public final class SharedMemoryServerBuilder extends
+    AbstractServerImplBuilder<SharedMemoryServerBuilder> {
+  /**
+   * Creates a server listening on the Unix domain socket {@code path}, which must not exist when
+   * the server is started.
+   */
+  public static SharedMemoryServerBuilder forPath(String path) {
+    return new SharedMemoryServerBuilder(path);
+  }
+
+  /**
+   * Always fails. Call {@link #forPath} instead.
+   */
+  @DoNotCall("Unsupported. Use forPath() instead")
+  public static SharedMemoryServerBuilder forPort(int port) {
+    throw new UnsupportedOperationException("call forPath() instead");
+  }
+
+  private final ServerImplBuilder serverImplBuilder;
+  private final DomainSocketAddress address;
+  private ObjectPool<? extends EventLoopGroup> eventLoopGroupPool =
+      SharedResourcePool.forResource(Utils.DEFAULT_EVENT_LOOP_GROUP);
+  private final TransportTracer.Factory transportTracerFactory =
+      TransportTracer.getDefaultFactory();
+  private int maxInboundMessageSize = GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
+  private int maxInboundMetadataSize = GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE;
+  private int maxRingSize = 16 * Utils.DEFAULT_RING_SIZE;
+
+  private SharedMemoryServerBuilder(String path) {
+    this.address = new DomainSocketAddress(checkNotNull(path, "path"));
+
+    final class SharedMemoryClientTransportServersBuilder
+        implements ClientTransportServersBuilder {
+      @Override
+      public InternalServer buildClientTransportServers(
+          List<? extends ServerStreamTracer.Factory> streamTracerFactories) {
+        return buildTransportServers(streamTracerFactories);
+      }
+    }
+
+    serverImplBuilder = new ServerImplBuilder(new SharedMemoryClientTransportServersBuilder());
+  }
+
+  @Internal
+  @Override
+  protected ServerBuilder<?> delegate() {
+    return serverImplBuilder;
+  }
+
+  /**
+   * Sets the largest ring, in bytes, that a client may ask the server to map. Defaults to 16 MiB.
+   */
+  public SharedMemoryServerBuilder maxRingSize(int bytes) {
+    checkArgument(bytes >= 4096, "maxRingSize must be >= 4096");
+    this.maxRingSize = bytes;
+    return this;
+  }
+
+  /**
+   * Provides an epoll EventLoopGroup to be used by the transport. The caller remains responsible
+   * for shutting it down once the server is terminated.
+   */
+  public SharedMemoryServerBuilder eventLoopGroup(EventLoopGroup eventLoopGroup) {
+    this.eventLoopGroupPool = new FixedObjectPool<>(checkNotNull(eventLoopGroup, "eventLoopGroup"));
+    return this;
+  }
+
+  @Override
+  public SharedMemoryServerBuilder maxInboundMessageSize(int bytes) {
+    checkArgument(bytes >= 0, "bytes must be non-negative: %s", bytes);
+    this.maxInboundMessageSize = bytes;
+    return this;
+  }
+
+  @Override
+  public SharedMemoryServerBuilder maxInboundMetadataSize(int bytes) {
+    checkArgument(bytes > 0, "maxInboundMetadataSize must be > 0");
+    this.maxInboundMetadataSize = bytes;
+    return this;
+  }
+
+  @Override
+  public SharedMemoryServerBuilder useTransportSecurity(File certChain, File privateKey) {
+    throw new UnsupportedOperationException("TLS not supported by the shared memory transport");
+  }
+
+  SharedMemoryServer buildTransportServers(
+      List<? extends ServerStreamTracer.Factory> streamTracerFactories) {
+    return new SharedMemoryServer(
+        address, eventLoopGroupPool, streamTracerFactories, transportTracerFactory,
+        maxInboundMessageSize, maxInboundMetadataSize, maxRingSize);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.AbstractServerStream;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.grpc.internal.WritableBuffer;
+
+/**
+ * Server stream for the shared memory transport. All transport state is touched only from the
+ * connection's event loop.
+ */
+final class SharedMemoryServerStream extends AbstractServerStream {
+  private final SharedMemoryServerTransport transport;
+  private final TransportTracer transportTracer;
+  private final TransportState state;
+  private final Sink sink = new Sink();
+  private final Attributes attributes;
+  private final String authority;
+
+  SharedMemoryServerStream(
+      SharedMemoryServerTransport transport,
+      int id,
+      String authority,
+      Attributes attributes,
+      int maxMessageSize,
+      StatsTraceContext statsTraceCtx,
+      TransportTracer transportTracer) {
+    super(ByteArrayWritableBuffer.ALLOCATOR, statsTraceCtx);
+    this.transport = checkNotNull(transport, "transport");
+    this.transportTracer = checkNotNull(transportTracer, "transportTracer");
+    this.authority = authority;
+    this.attributes = checkNotNull(attributes, "attributes");
+    this.state = new TransportState(id, maxMessageSize, statsTraceCtx, transportTracer);
+  }
+
+  @Override
+  protected TransportState transportState() {
+    return state;
+  }
+
+  @Override
+  protected Sink abstractServerStreamSink() {
+    return sink;
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public String getAuthority() {
+    return authority;
+  }
+
+  @Override
+  public int streamId() {
+    return state.id;
+  }
+
+  private final class Sink implements AbstractServerStream.Sink {
+    @Override
+    public void writeHeaders(Metadata headers) {
+      final byte[] encoded = Connection.encodeMetadata(headers);
+      transport.runOnEventLoop(new Runnable() {
+        @Override
+        public void run() {
+          state.sendHeaders(encoded);
+        }
+      });
+    }
+
+    @Override
+    public void writeFrame(WritableBuffer frame, final boolean flush, final int numMessages) {
+      if (frame == null) {
+        return;
+      }
+      final byte[] payload = ((ByteArrayWritableBuffer) frame).array();
+      final int length = frame.readableBytes();
+      onSendingBytes(length);
+      transport.runOnEventLoop(new Runnable() {
+        @Override
+        public void run() {
+          state.sendData(payload, length, flush);
+          transportTracer.reportMessageSent(numMessages);
+        }
+      });
+    }
+
+    @Override
+    public void writeTrailers(Metadata trailers, boolean headersSent, Status status) {
+      final byte[] encoded = Connection.encodeMetadata(trailers);
+      transport.runOnEventLoop(new Runnable() {
+        @Override
+        public void run() {
+          state.sendTrailers(encoded);
+        }
+      });
+    }
+
+    @Override
+    public void cancel(final Status status) {
+      transport.runOnEventLoop(new Runnable() {
+        @Override
+        public void run() {
+          state.cancel(status);
+        }
+      });
+    }
+  }
+
+  final class TransportState extends AbstractServerStream.TransportState {
+    private final int id;
+    private final Connection.InboundWindow inboundWindow = new Connection.InboundWindow();
+
+    TransportState(
+        int id, int maxMessageSize, StatsTraceContext statsTraceCtx,
+        TransportTracer transportTracer) {
+      super(maxMessageSize, statsTraceCtx, transportTracer);
+      this.id = id;
+    }
+
+    @Override
+    public void runOnTransportThread(Runnable r) {
+      transport.runOnEventLoop(r);
+    }
+
+    @Override
+    public void bytesRead(int processedBytes) {
+      int increment = inboundWindow.bytesRead(processedBytes);
+      if (increment > 0 && transport.isActive(id)) {
+        transport.connection().writeWindowUpdate(id, increment);
+      }
+    }
+
+    @Override
+    public void deframeFailed(Throwable cause) {
+      cancel(Status.fromThrowable(cause));
+    }
+
+    void dataReceived(byte[] payload, boolean endOfStream) {
+      inboundWindow.dataReceived(payload.length);
+      inboundDataReceived(ReadableBuffers.wrap(payload), endOfStream);
+    }
+
+    private void sendFrame(byte type, byte[] payload) {
+      if (!transport.isActive(id)) {
+        return;
+      }
+      if (!transport.connection().fits(payload.length)) {
+        cancel(Status.RESOURCE_EXHAUSTED.withDescription("Response metadata larger than the ring"));
+        return;
+      }
+      transport.connection().writeFrame(type, (byte) 0, id, payload, null);
+    }
+
+    private void sendHeaders(byte[] encoded) {
+      sendFrame(Connection.TYPE_HEADERS, encoded);
+      if (transport.isActive(id)) {
+        // Usually followed by a message, so give it a chance to be announced along with it.
+        transport.connection().flushLater();
+      }
+    }
+
+    private void sendData(byte[] payload, int length, boolean flush) {
+      if (!transport.isActive(id)) {
+        return;
+      }
+      transport.connection().writeData(id, payload, length, false, this);
+      if (flush) {
+        transport.connection().flush();
+      }
+    }
+
+    private void sendTrailers(byte[] encoded) {
+      if (!transport.isActive(id)) {
+        return;
+      }
+      sendFrame(Connection.TYPE_TRAILERS, encoded);
+      transport.connection().flush();
+      if (transport.isActive(id)) {
+        transport.removeStream(id);
+        complete();
+      }
+    }
+
+    private void cancel(Status reason) {
+      if (transport.isActive(id)) {
+        transport.cancelStream(id);
+      }
+      transportReportStatus(reason);
+    }
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.grpc.Attributes;
+import io.grpc.Grpc;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.SecurityLevel;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.internal.GrpcAttributes;
+import io.grpc.internal.ServerTransport;
+import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.DomainSocketChannel;
+import io.netty.channel.unix.DomainSocketReadMode;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server side of a shared memory connection. See {@link Connection} for the protocol.
+ */
+final class SharedMemoryServerTransport implements ServerTransport, Connection.FrameHandler {
+  private static final Logger log = Logger.getLogger(SharedMemoryServerTransport.class.getName());
+
+  private final InternalLogId logId;
+  private final Channel channel;
+  private final List<? extends ServerStreamTracer.Factory> streamTracerFactories;
+  private final int maxMessageSize;
+  private final int maxInboundMetadataSize;
+  private final int maxRingSize;
+  private final TransportTracer transportTracer;
+
+  // The rest is only accessed from the event loop.
+  private final Map<Integer, SharedMemoryServerStream> streams = new HashMap<>();
+  private ServerTransportListener listener;
+  private Attributes attributes;
+  private Connection connection;
+  private int lastStreamId;
+  private boolean shutdown;
+
+  SharedMemoryServerTransport(
+      Channel channel,
+      List<? extends ServerStreamTracer.Factory> streamTracerFactories,
+      int maxMessageSize,
+      int maxInboundMetadataSize,
+      int maxRingSize,
+      TransportTracer transportTracer) {
+    this.channel = checkNotNull(channel, "channel");
+    this.streamTracerFactories = checkNotNull(streamTracerFactories, "streamTracerFactories");
+    this.maxMessageSize = maxMessageSize;
+    this.maxInboundMetadataSize = maxInboundMetadataSize;
+    this.maxRingSize = maxRingSize;
+    this.transportTracer = checkNotNull(transportTracer, "transportTracer");
+    this.logId = InternalLogId.allocate(getClass(), String.valueOf(channel.remoteAddress()));
+  }
+
+  /** Must be called from the event loop, before the channel is registered. */
+  void start(ServerTransportListener listener) {
+    this.listener = checkNotNull(listener, "listener");
+    channel.pipeline().addLast(new ControlHandler());
+    channel.closeFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        channelClosed();
+      }
+    });
+  }
+
+  void runOnEventLoop(Runnable r) {
+    if (channel.eventLoop().inEventLoop()) {
+      r.run();
+    } else {
+      channel.eventLoop().execute(r);
+    }
+  }
+
+  Connection connection() {
+    return connection;
+  }
+
+  boolean isActive(int streamId) {
+    return streams.containsKey(streamId);
+  }
+
+  void removeStream(int id) {
+    if (streams.remove(id) != null) {
+      closeIfShutdownAndIdle();
+    }
+  }
+
+  void cancelStream(int id) {
+    resetStream(id, Status.Code.CANCELLED);
+    removeStream(id);
+  }
+
+  private void resetStream(int id, Status.Code code) {
+    connection.writeFrame(
+        Connection.TYPE_RST_STREAM, (byte) 0, id, Connection.encodeInt(code.value()), null);
+    connection.flush();
+  }
+
+  private boolean isValidRingSize(int ringSize) {
+    if (ringSize <= Connection.FRAME_HEADER_LENGTH * 4 || ringSize > maxRingSize) {
+      log.log(Level.FINE, "Rejecting ring size {0}", ringSize);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Maps the file the client passed. Returns {@code false} if the handshake must be rejected.
+   */
+  private boolean fileReceived(FileDescriptor fd, int ringSize) {
+    RingBuffer[] rings;
+    try {
+      int peerUid = ((EpollDomainSocketChannel) channel).peerCredentials().uid();
+      rings = Connection.mapPeerFile(fd, ringSize, peerUid);
+    } catch (IOException ex) {
+      log.log(Level.FINE, "Failed to map the client's file", ex);
+      return false;
+    }
+    connection = new Connection(channel, rings[1], rings[0], this);
+    SocketAddress localAddress = channel.localAddress();
+    if (localAddress == null) {
+      // Accepted domain sockets don't report the path they were accepted on.
+      localAddress = channel.parent().localAddress();
+    }
+    SocketAddress remoteAddress = channel.remoteAddress();
+    if (remoteAddress == null) {
+      // Clients don't bind their sockets, so the peer is unnamed.
+      remoteAddress = new DomainSocketAddress("");
+    }
+    attributes = listener.transportReady(Attributes.newBuilder()
+        .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, remoteAddress)
+        .set(Grpc.TRANSPORT_ATTR_LOCAL_ADDR, localAddress)
+        .set(GrpcAttributes.ATTR_SECURITY_LEVEL, SecurityLevel.NONE)
+        .build());
+    return true;
+  }
+
+  @Override
+  public void frameReceived(byte type, byte flags, int streamId, byte[] payload) {
+    if (type == Connection.TYPE_HEADERS) {
+      headersReceived(streamId, payload);
+      return;
+    }
+    if (type == Connection.TYPE_PING) {
+      // Echo the payload back; the client only ever has one ping outstanding.
+      connection.writeFrame(Connection.TYPE_PING, (byte) 0, 0, payload, null);
+      connection.flush();
+      return;
+    }
+    SharedMemoryServerStream stream = streams.get(streamId);
+    if (stream == null) {
+      // The stream was cancelled locally.
+      return;
+    }
+    SharedMemoryServerStream.TransportState state = stream.transportState();
+    switch (type) {
+      case Connection.TYPE_DATA:
+        state.dataReceived(payload, (flags & Connection.FLAG_END_STREAM) != 0);
+        break;
+      case Connection.TYPE_RST_STREAM:
+        removeStream(streamId);
+        state.transportReportStatus(Status.CANCELLED.withDescription("Stream reset by client"));
+        break;
+      default:
+        throw new IllegalArgumentException("Unexpected frame type " + type);
+    }
+  }
+
+  private void headersReceived(int streamId, byte[] payload) {
+    if (streamId <= lastStreamId || (streamId & 1) == 0) {
+      throw new IllegalArgumentException("Unexpected stream id " + streamId);
+    }
+    if (shutdown) {
+      resetStream(streamId, Status.Code.UNAVAILABLE);
+      return;
+    }
+    lastStreamId = streamId;
+    if (payload.length > maxInboundMetadataSize) {
+      resetStream(streamId, Status.Code.RESOURCE_EXHAUSTED);
+      return;
+    }
+    String[] methodAndAuthority = new String[2];
+    Metadata headers = Connection.decodeMetadata(payload, methodAndAuthority);
+    String method = methodAndAuthority[0];
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(streamTracerFactories, method, headers);
+    SharedMemoryServerStream stream = new SharedMemoryServerStream(
+        this, streamId, methodAndAuthority[1], attributes, maxMessageSize, statsTraceCtx,
+        transportTracer);
+    streams.put(streamId, stream);
+    connection.streamStarted(streamId);
+    listener.streamCreated(stream, method, headers);
+    stream.transportState().onStreamAllocated();
+  }
+
+  @Override
+  public void pendingFramesWritten() {
+    closeIfShutdownAndIdle();
+  }
+
+  private void closeIfShutdownAndIdle() {
+    if (shutdown && streams.isEmpty() && !connection.hasPendingFrames()) {
+      channel.close();
+    }
+  }
+
+  private void channelClosed() {
+    if (!streams.isEmpty()) {
+      Status status = Status.UNAVAILABLE.withDescription("Connection closed");
+      for (SharedMemoryServerStream stream : new ArrayList<>(streams.values())) {
+        stream.transportState().transportReportStatus(status);
+      }
+      streams.clear();
+    }
+    if (listener != null) {
+      listener.transportTerminated();
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    runOnEventLoop(new Runnable() {
+      @Override
+      public void run() {
+        if (shutdown) {
+          return;
+        }
+        shutdown = true;
+        if (connection == null) {
+          channel.close();
+          return;
+        }
+        connection.writeFrame(
+            Connection.TYPE_GOAWAY, (byte) 0, 0, Connection.encodeInt(lastStreamId), null);
+        connection.flush();
+        closeIfShutdownAndIdle();
+      }
+    });
+  }
+
+  @Override
+  public void shutdownNow(final Status reason) {
+    runOnEventLoop(new Runnable() {
+      @Override
+      public void run() {
+        shutdown = true;
+        for (SharedMemoryServerStream stream : new ArrayList<>(streams.values())) {
+          stream.transportState().transportReportStatus(reason);
+        }
+        streams.clear();
+        channel.close();
+      }
+    });
+  }
+
+  @Override
+  public ScheduledExecutorService getScheduledExecutorService() {
+    return channel.eventLoop();
+  }
+
+  @Override
+  public InternalLogId getLogId() {
+    return logId;
+  }
+
+  @Override
+  public ListenableFuture<SocketStats> getStats() {
+    SettableFuture<SocketStats> ret = SettableFuture.create();
+    ret.set(null);
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    return logId + "(" + channel + ")";
+  }
+
+  /** Maps the client's memory, then hands control messages to the connection. */
+  private final class ControlHandler extends ByteToMessageDecoder {
+    /** The ring size the client asked for, once its handshake arrived. */
+    private int ringSize;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+      if (msg instanceof FileDescriptor) {
+        fileDescriptorReceived(ctx, (FileDescriptor) msg);
+        return;
+      }
+      super.channelRead(ctx, msg);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+      if (connection == null) {
+        if (ringSize != 0) {
+          throw new IllegalArgumentException("Expected a file descriptor");
+        }
+        if (in.readableBytes() < Connection.HANDSHAKE_LENGTH) {
+          return;
+        }
+        int magic = in.readInt();
+        int version = in.readInt();
+        int requestedRingSize = in.readInt();
+        if (magic != Connection.MAGIC || version != Connection.VERSION) {
+          throw new IllegalArgumentException("Invalid handshake");
+        }
+        if (!isValidRingSize(requestedRingSize)) {
+          in.skipBytes(in.readableBytes());
+          ctx.close();
+          return;
+        }
+        ringSize = requestedRingSize;
+        // The descriptor is only received in this mode; in BYTES mode the kernel would drop it.
+        ((DomainSocketChannel) ctx.channel()).config()
+            .setReadMode(DomainSocketReadMode.FILE_DESCRIPTORS);
+        ctx.writeAndFlush(ctx.alloc().buffer(1).writeByte(Connection.SEND_FD));
+        return;
+      }
+      connection.controlReceived(in);
+    }
+
+    private void fileDescriptorReceived(ChannelHandlerContext ctx, FileDescriptor fd)
+        throws IOException {
+      try {
+        if (connection != null || ringSize == 0) {
+          throw new IllegalArgumentException("Unexpected file descriptor");
+        }
+        ((DomainSocketChannel) ctx.channel()).config().setReadMode(DomainSocketReadMode.BYTES);
+        if (!fileReceived(fd, ringSize)) {
+          ctx.close();
+          return;
+        }
+      } finally {
+        // The mapping stays valid after the descriptor is closed.
+        fd.close();
+      }
+      ctx.writeAndFlush(ctx.alloc().buffer(1).writeByte(Connection.ACK));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      log.log(Level.FINE, "Connection failed", cause);
+      ctx.close();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import io.grpc.internal.SharedResourceHolder.Resource;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/** Common utility methods. */
+final class Utils {
+  /** Default size of each of the two rings of a connection. */
+  static final int DEFAULT_RING_SIZE = 1024 * 1024;
+
+  static final Resource<EventLoopGroup> DEFAULT_EVENT_LOOP_GROUP =
+      new Resource<EventLoopGroup>() {
+        private static final String NAME = "grpc-shm-ELG";
+
+        @Override
+        public EventLoopGroup create() {
+          // The event loops only move control messages and copy frames, so fewer threads than
+          // Netty's default are enough.
+          return new EpollEventLoopGroup(
+              NettyRuntime.availableProcessors(),
+              new DefaultThreadFactory(NAME, /* daemon= */ true));
+        }
+
+        @Override
+        public void close(EventLoopGroup instance) {
+          instance.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public String toString() {
+          return NAME;
+        }
+      };
+
+  /**
+   * Returns the directory for the files backing the rings. {@code /dev/shm} is preferred, since it
+   * is never written back to disk.
+   */
+  static File defaultSharedMemoryDirectory() {
+    File devShm = new File("/dev/shm");
+    if (devShm.isDirectory() && devShm.canWrite()) {
+      return devShm;
+    }
+    return new File(System.getProperty("java.io.tmpdir"));
+  }
+
+  private Utils() {}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.FileDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Connection}. */
+@RunWith(JUnit4.class)
+public class ConnectionTest {
+  private static final int RING_SIZE = 4096;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private FileDescriptor fd;
+
+  @After
+  public void closeFd() throws IOException {
+    if (fd != null) {
+      fd.close();
+    }
+  }
+
+  @Test
+  public void mapPeerFile() throws Exception {
+    int uid = createRingFile(RING_SIZE);
+
+    RingBuffer[] rings = Connection.mapPeerFile(fd, RING_SIZE, uid);
+
+    assertThat(rings[0].capacity()).isEqualTo(RING_SIZE);
+    assertThat(rings[1].capacity()).isEqualTo(RING_SIZE);
+  }
+
+  @Test
+  public void mapPeerFile_rejectsWrongSizeWithoutResizing() throws Exception {
+    int uid = createRingFile(RING_SIZE);
+    try {
+      Connection.mapPeerFile(fd, 2 * RING_SIZE, uid);
+      fail("Expected IOException");
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("expected " + 4 * RING_SIZE);
+    }
+    assertThat(Files.size(procPath())).isEqualTo(2L * RING_SIZE);
+  }
+
+  @Test
+  public void mapPeerFile_rejectsOtherOwner() throws Exception {
+    int uid = createRingFile(RING_SIZE);
+    try {
+      Connection.mapPeerFile(fd, RING_SIZE, uid + 1);
+      fail("Expected IOException");
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("owned by uid " + uid);
+    }
+  }
+
+  @Test
+  public void inboundWindow_returnsHalfWindowAtATime() {
+    Connection.InboundWindow window = new Connection.InboundWindow();
+    window.dataReceived(Connection.STREAM_WINDOW);
+
+    assertThat(window.bytesRead(Connection.STREAM_WINDOW / 2 - 1)).isEqualTo(0);
+    assertThat(window.bytesRead(1)).isEqualTo(Connection.STREAM_WINDOW / 2);
+
+    window.dataReceived(Connection.STREAM_WINDOW / 2);
+    try {
+      window.dataReceived(1);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessageThat().contains("window exceeded");
+    }
+  }
+
+  /** Creates a ring file the way the client does, returning its owner. */
+  private int createRingFile(int ringSize) throws IOException {
+    assumeTrue("epoll is not available", Epoll.isAvailable());
+    File file = tempFolder.newFile();
+    fd = FileDescriptor.from(file);
+    Connection.create(file, ringSize);
+    assertThat(file.delete()).isTrue();
+    return (Integer) Files.getAttribute(procPath(), "unix:uid");
+  }
+
+  private Path procPath() {
+    return new File("/proc/self/fd/" + fd.intValue()).toPath();
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RingBuffer}. */
+@RunWith(JUnit4.class)
+public class RingBufferTest {
+  private final ByteBuffer region = ByteBuffer.allocate(16);
+  private final RingBuffer writer = new RingBuffer(region);
+  private final RingBuffer reader = new RingBuffer(region);
+
+  @Test
+  public void writeAndRead_wrapsAround() {
+    byte[] data = new byte[12];
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) (round * data.length + i);
+      }
+      writer.write(data, 0, data.length);
+      writer.writeInt(0x01020304);
+      assertThat(writer.writableBytes()).isEqualTo(0);
+
+      reader.writerAdvanced(writer.writeIndex());
+      byte[] read = new byte[data.length];
+      reader.read(read, 0, read.length);
+      assertArrayEquals(data, read);
+      assertThat(reader.readInt()).isEqualTo(0x01020304);
+      assertThat(reader.readableBytes()).isEqualTo(0);
+
+      writer.readerAdvanced(reader.readIndex());
+      assertThat(writer.writableBytes()).isEqualTo(16);
+    }
+  }
+
+  @Test
+  public void write_full() {
+    writer.write(new byte[10], 0, 10);
+    try {
+      writer.write(new byte[7], 0, 7);
+      fail("Expected exception");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void read_beyondAnnouncedIndex() {
+    writer.write(new byte[8], 0, 8);
+    reader.writerAdvanced(4);
+    reader.read(new byte[4], 0, 4);
+    try {
+      reader.readByte();
+      fail("Expected exception");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void writerAdvanced_beyondCapacity() {
+    try {
+      reader.writerAdvanced(17);
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.CallOptions;
+import io.grpc.Grpc;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServerStreamTracer;
+import io.grpc.internal.AbstractTransportTest;
+import io.grpc.internal.ClientTransportFactory;
+import io.grpc.internal.InternalServer;
+import io.grpc.internal.ManagedClientTransport;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.netty.channel.epoll.Epoll;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for the shared memory transport. */
+@RunWith(JUnit4.class)
+public class SharedMemoryTransportTest extends AbstractTransportTest {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final ClientTransportFactory clientFactory = SharedMemoryChannelBuilder
+      // Although specified here, the path is ignored because we never call build.
+      .forPath("/unused")
+      .ringSize(64 * 1024)
+      .buildTransportFactory();
+  private String path;
+
+  @BeforeClass
+  public static void checkEpoll() {
+    assumeTrue("epoll is not available", Epoll.isAvailable());
+  }
+
+  @After
+  public void releaseClientFactory() {
+    clientFactory.close();
+  }
+
+  @Override
+  protected InternalServer newServer(
+      List<ServerStreamTracer.Factory> streamTracerFactories) {
+    path = new File(tempFolder.getRoot(), "server.sock").getAbsolutePath();
+    return SharedMemoryServerBuilder.forPath(path).buildTransportServers(streamTracerFactories);
+  }
+
+  @Override
+  protected InternalServer newServer(
+      int port, List<ServerStreamTracer.Factory> streamTracerFactories) {
+    return SharedMemoryServerBuilder.forPath(path).buildTransportServers(streamTracerFactories);
+  }
+
+  @Override
+  protected String testAuthority(InternalServer server) {
+    return "localhost";
+  }
+
+  @Test
+  @Ignore
+  @Override
+  public void socketStats() throws Exception {
+    // Socket stats are not collected for shared memory connections.
+  }
+
+  @Test
+  public void messagesLargerThanRing() throws Exception {
+    server = null;
+    String path = new File(tempFolder.getRoot(), "large.sock").getAbsolutePath();
+    MethodDescriptor<byte[], byte[]> method = MethodDescriptor.<byte[], byte[]>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName("service/echo")
+        .setRequestMarshaller(new ByteArrayMarshaller())
+        .setResponseMarshaller(new ByteArrayMarshaller())
+        .build();
+    Server echoServer = SharedMemoryServerBuilder.forPath(path)
+        .maxInboundMessageSize(Integer.MAX_VALUE)
+        .addService(ServerServiceDefinition.builder("service")
+            .addMethod(method, ServerCalls.asyncUnaryCall(
+                new ServerCalls.UnaryMethod<byte[], byte[]>() {
+                  @Override
+                  public void invoke(byte[] request, StreamObserver<byte[]> responseObserver) {
+                    responseObserver.onNext(request);
+                    responseObserver.onCompleted();
+                  }
+                }))
+            .build())
+        .build()
+        .start();
+    ManagedChannel channel = Grpc.newChannelBuilder(
+            "unix://" + path, SharedMemoryChannelCredentials.create())
+        .maxInboundMessageSize(Integer.MAX_VALUE)
+        .build();
+    try {
+      // Larger than a stream's window too, so it needs window updates.
+      byte[] request = new byte[3 * Connection.STREAM_WINDOW];
+      new Random(1).nextBytes(request);
+      byte[] response =
+          ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, request);
+      assertThat(response).isEqualTo(request);
+    } finally {
+      channel.shutdownNow();
+      echoServer.shutdownNow();
+      assertThat(channel.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(echoServer.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+    assertThat(new File(path).exists()).isFalse();
+  }
+
+  @Override
+  protected ManagedClientTransport newClientTransport(InternalServer server) {
+    return clientFactory.newClientTransport(
+        server.getListenSocketAddress(),
+        new ClientTransportFactory.ClientTransportOptions()
+            .setAuthority(testAuthority(server))
+            .setEagAttributes(eagAttrs()),
+        transportLogger());
+  }
+
+  private static final class ByteArrayMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+    @Override
+    public InputStream stream(byte[] value) {
+      return new ByteArrayInputStream(value);
+    }
+
+    @Override
+    public byte[] parse(InputStream stream) {
+      try {
+        return ByteStreams.toByteArray(stream);
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ package io.grpc.stub;
 
 import io.grpc.CallOptions;
 import io.grpc.Channel;
+import io.grpc.ExperimentalApi;
 import io.grpc.stub.ClientCalls.StubType;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.concurrent.ThreadSafe;
@@ -39,6 +40,28 @@ public abstract class AbstractBlockingStub<S extends AbstractBlockingStub<S>>
     super(channel, callOptions);
   }
 
+  /**
+   * Returns a new stub whose server-streaming calls request responses ahead in batches rather than
+   * one at a time. Up to {@code highWatermark} responses are requested when the call starts, and
+   * the window is topped up to {@code highWatermark} again once no more than {@code lowWatermark}
+   * responses are outstanding. Up to {@code highWatermark} responses may be buffered per call.
+   *
+   * <p>Combined with {@link BlockingResponseIterator#nextBatch}, this lets the calling thread
+   * consume several responses per wakeup.
+   *
+   * @since 1.43.0
+   * @param lowWatermark the number of outstanding responses at which more are requested
+   * @param highWatermark the number of responses to keep requested, greater than
+   *     {@code lowWatermark}
+   */
+  @ExperimentalApi("There is no plan to make this API stable, as the prefetch depth may become "
+      + "automatic")
+  public final S withResponsePrefetch(int lowWatermark, int highWatermark) {
+    return build(getChannel(), getCallOptions().withOption(
+        ClientCalls.RESPONSE_PREFETCH_OPTION,
+        new ClientCalls.ResponsePrefetch(lowWatermark, highWatermark)));
+  }
+
   /**
    * Returns a new blocking stub with the given channel for the provided method configurations.
    *
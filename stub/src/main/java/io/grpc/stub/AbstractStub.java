@@ -255,6 +255,17 @@ public abstract class AbstractStub<S extends AbstractStub<S>> {
     return build(channel, callOptions.withMaxOutboundMessageSize(maxSize));
   }
 
+  /**
+   * Returns a new stub whose calls stop being ready once {@code highWatermark} outbound bytes are
+   * queued, and become ready again once the queue drains below {@code lowWatermark}.
+   *
+   * @see CallOptions#withOnReadyThreshold(int, int)
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public final S withOnReadyThreshold(int lowWatermark, int highWatermark) {
+    return build(channel, callOptions.withOnReadyThreshold(lowWatermark, highWatermark));
+  }
+
   /**
    * A factory class for stub.
    *
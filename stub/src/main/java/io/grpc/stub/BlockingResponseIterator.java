@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.stub;
+
+import io.grpc.ExperimentalApi;
+import io.grpc.StatusRuntimeException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The {@link Iterator} over the response stream returned by blocking server-streaming calls, such
+ * as {@link ClientCalls#blockingServerStreamingCall}. Generated blocking stubs return it as a plain
+ * {@code Iterator}; cast to this class to consume the responses in batches.
+ *
+ * <p>Like the iterator, the class is not thread-safe.
+ *
+ * <p>DO NOT MOCK: Use InProcessChannelBuilder to create "real" RPCs suitable for testing.
+ *
+ * @param <T> type of the responses.
+ * @since 1.43.0
+ */
+@ExperimentalApi("There is no plan to make this API stable, as the prefetch depth may become "
+    + "automatic")
+public abstract class BlockingResponseIterator<T> implements Iterator<T> {
+
+  /**
+   * Returns the responses that already arrived, up to {@code maxResponses} of them, blocking only
+   * until the first one is available. Taking several responses at once saves a wakeup of the
+   * calling thread per response, and is most effective with a prefetch window configured through
+   * {@link AbstractBlockingStub#withResponsePrefetch}.
+   *
+   * <p>An empty list is returned once the response stream ended successfully; like {@link #next},
+   * this throws {@link StatusRuntimeException} if the call failed. The error is only thrown after
+   * the responses received before it were returned.
+   *
+   * @param maxResponses the maximum number of responses to return, which must be positive.
+   * @return the next responses, in order, or an empty list at the end of the stream.
+   */
+  public abstract List<T> nextBatch(int maxResponses);
+}
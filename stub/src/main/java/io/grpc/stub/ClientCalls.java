@@ -31,7 +31,10 @@ import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -39,6 +42,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -172,7 +176,8 @@ public final class ClientCalls {
    * response stream.  The {@code call} should not be already started.  After calling this method,
    * {@code call} should no longer be used.
    *
-   * <p>The returned iterator may throw {@link StatusRuntimeException} on error.
+   * <p>The returned iterator may throw {@link StatusRuntimeException} on error. It is a
+   * {@link BlockingResponseIterator}, which can also return the responses in batches.
    *
    * @return an iterator over the response stream.
    */
@@ -189,7 +194,13 @@ public final class ClientCalls {
    * response stream.  The {@code call} should not be already started.  After calling this method,
    * {@code call} should no longer be used.
    *
-   * <p>The returned iterator may throw {@link StatusRuntimeException} on error.
+   * <p>The returned iterator may throw {@link StatusRuntimeException} on error. It is a
+   * {@link BlockingResponseIterator}, which can also return the responses in batches.
+   *
+   * <p>By default one response is requested at a time, ahead of it being consumed. If the call
+   * options carry a prefetch window, as set by {@link AbstractBlockingStub#withResponsePrefetch},
+   * up to its high watermark of responses are requested at once, and more are only requested once
+   * no more than its low watermark are outstanding.
    *
    * @return an iterator over the response stream.
    */
@@ -200,7 +211,8 @@ public final class ClientCalls {
     ClientCall<ReqT, RespT> call = channel.newCall(method,
         callOptions.withOption(ClientCalls.STUB_TYPE_OPTION, StubType.BLOCKING)
             .withExecutor(executor));
-    BlockingResponseStream<RespT> result = new BlockingResponseStream<>(call, executor);
+    BlockingResponseStream<RespT> result = new BlockingResponseStream<>(
+        call, executor, callOptions.getOption(RESPONSE_PREFETCH_OPTION));
     asyncUnaryRequestCall(call, req, result.listener());
     return result;
   }
@@ -577,26 +589,39 @@ public final class ClientCalls {
    * separate thread from {@link Iterator} calls.
    */
   // TODO(ejona86): determine how to allow ClientCall.cancel() in case of application error.
-  private static final class BlockingResponseStream<T> implements Iterator<T> {
+  private static final class BlockingResponseStream<T> extends BlockingResponseIterator<T> {
     // Due to flow control, only needs to hold up to 3 items: 2 for value, 1 for close.
     // (2 for value, not 1, because of early request() in next())
-    private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(3);
+    // With a prefetch window, up to its high watermark of values and 1 for close.
+    private final BlockingQueue<Object> buffer;
     private final StartableListener<T> listener = new QueuingListener();
     private final ClientCall<?, T> call;
     /** May be null. */
     private final ThreadlessExecutor threadless;
+    /** May be null, in which case responses are requested one at a time. */
+    private final ResponsePrefetch prefetch;
+    // Only accessed when iterating, or before from onStart().
+    private int outstanding;
     // Only accessed when iterating.
     private Object last;
 
     // Non private to avoid synthetic class
     BlockingResponseStream(ClientCall<?, T> call) {
-      this(call, null);
+      this(call, null, null);
     }
 
     // Non private to avoid synthetic class
-    BlockingResponseStream(ClientCall<?, T> call, ThreadlessExecutor threadless) {
+    BlockingResponseStream(
+        ClientCall<?, T> call, ThreadlessExecutor threadless, ResponsePrefetch prefetch) {
       this.call = call;
       this.threadless = threadless;
+      this.prefetch = prefetch;
+      if (prefetch == null) {
+        buffer = new ArrayBlockingQueue<>(3);
+      } else {
+        // Not an ArrayBlockingQueue, which would allocate for the whole window upfront.
+        buffer = new LinkedBlockingQueue<>(prefetch.highWatermark + 1);
+      }
     }
 
     StartableListener<T> listener() {
@@ -653,22 +678,77 @@ public final class ClientCalls {
 
     @Override
     public T next() {
-      // Eagerly call request(1) so it can be processing the next message while we wait for the
-      // current one, which reduces latency for the next message. With MigratingThreadDeframer and
-      // if the data has already been recieved, every other message can be delivered instantly. This
-      // can be run after hasNext(), but just would be slower.
-      if (!(last instanceof StatusRuntimeException) && last != this) {
-        call.request(1);
-      }
+      requestAhead();
       if (!hasNext()) {
         throw new NoSuchElementException();
       }
       @SuppressWarnings("unchecked")
       T tmp = (T) last;
       last = null;
+      consumed(1);
       return tmp;
     }
 
+    @Override
+    public List<T> nextBatch(int maxResponses) {
+      Preconditions.checkArgument(maxResponses > 0, "maxResponses must be positive");
+      requestAhead();
+      if (!hasNext()) {
+        return Collections.emptyList();
+      }
+      List<T> batch = new ArrayList<>(Math.min(maxResponses, buffer.size() + 1));
+      if (threadless != null) {
+        // Deliver what the transport already has, without waiting for more.
+        threadless.drain();
+      }
+      while (true) {
+        @SuppressWarnings("unchecked")
+        T tmp = (T) last;
+        batch.add(tmp);
+        last = null;
+        if (batch.size() == maxResponses) {
+          break;
+        }
+        Object next = buffer.peek();
+        if (next == null || next == this || next instanceof StatusRuntimeException) {
+          // The end of the stream is left for the next call to report.
+          break;
+        }
+        last = buffer.poll();
+      }
+      consumed(batch.size());
+      return batch;
+    }
+
+    /**
+     * Without a prefetch window, eagerly calls request(1) so it can be processing the next message
+     * while we wait for the current one.
+     */
+    private void requestAhead() {
+      // This reduces latency for the next message. With MigratingThreadDeframer and if the data
+      // has already been recieved, every other message can be delivered instantly. This can be run
+      // after hasNext(), but just would be slower.
+      if (prefetch == null && !(last instanceof StatusRuntimeException) && last != this) {
+        call.request(1);
+      }
+    }
+
+    /** Requests more messages after {@code count} of them were returned. */
+    private void consumed(int count) {
+      if (prefetch == null) {
+        // requestAhead() already asked for the first of them.
+        if (count > 1) {
+          call.request(count - 1);
+        }
+        return;
+      }
+      outstanding -= count;
+      if (outstanding <= prefetch.lowWatermark) {
+        call.request(prefetch.highWatermark - outstanding);
+        outstanding = prefetch.highWatermark;
+      }
+    }
+
     @Override
     public void remove() {
       throw new UnsupportedOperationException();
@@ -703,7 +783,12 @@ public final class ClientCalls {
 
       @Override
       void onStart() {
-        call.request(1);
+        if (prefetch == null) {
+          call.request(1);
+        } else {
+          outstanding = prefetch.highWatermark;
+          call.request(outstanding);
+        }
       }
     }
   }
@@ -736,13 +821,27 @@ public final class ClientCalls {
           waiter = null;
         }
       }
-      do {
-        try {
-          runnable.run();
-        } catch (Throwable t) {
-          log.log(Level.WARNING, "Runnable threw exception", t);
-        }
-      } while ((runnable = poll()) != null);
+      run(runnable);
+      drain();
+    }
+
+    /**
+     * Executes the queued Runnables, without waiting for any. Must only be called by one thread at
+     * a time.
+     */
+    public void drain() {
+      Runnable runnable;
+      while ((runnable = poll()) != null) {
+        run(runnable);
+      }
+    }
+
+    private static void run(Runnable runnable) {
+      try {
+        runnable.run();
+      } catch (Throwable t) {
+        log.log(Level.WARNING, "Runnable threw exception", t);
+      }
     }
 
     private static void throwIfInterrupted() throws InterruptedException {
@@ -767,4 +866,35 @@ public final class ClientCalls {
    */
   static final CallOptions.Key<StubType> STUB_TYPE_OPTION =
       CallOptions.Key.create("internal-stub-type");
+
+  /**
+   * Internal {@link CallOptions.Key} for the prefetch window of blocking server-streaming calls.
+   */
+  static final CallOptions.Key<ResponsePrefetch> RESPONSE_PREFETCH_OPTION =
+      CallOptions.Key.create("internal-response-prefetch");
+
+  /**
+   * How many responses a blocking server-streaming call keeps requested: it tops up to
+   * {@code highWatermark} once no more than {@code lowWatermark} are outstanding.
+   */
+  static final class ResponsePrefetch {
+    final int lowWatermark;
+    final int highWatermark;
+
+    ResponsePrefetch(int lowWatermark, int highWatermark) {
+      Preconditions.checkArgument(lowWatermark >= 0, "lowWatermark must be non-negative");
+      Preconditions.checkArgument(
+          highWatermark > lowWatermark, "highWatermark must be greater than lowWatermark");
+      this.lowWatermark = lowWatermark;
+      this.highWatermark = highWatermark;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("lowWatermark", lowWatermark)
+          .add("highWatermark", highWatermark)
+          .toString();
+    }
+  }
 }
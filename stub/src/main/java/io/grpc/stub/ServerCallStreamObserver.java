@@ -129,6 +129,19 @@ public abstract class ServerCallStreamObserver<RespT> extends CallStreamObserver
   @Override
   public abstract void setOnReadyHandler(Runnable onReadyHandler);
 
+  /**
+   * Sets the onReady watermarks of the call, tuning how much the transport may buffer before
+   * {@link #isReady()} returns {@code false}. See {@link
+   * io.grpc.ServerCall#setOnReadyThreshold(int, int)}.
+   *
+   * @param lowWatermark the number of queued bytes below which the call becomes ready again
+   * @param highWatermark the number of queued bytes at which the call stops being ready
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/11021")
+  public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Requests the peer to produce {@code count} more messages to be delivered to the 'inbound'
    * {@link StreamObserver}.
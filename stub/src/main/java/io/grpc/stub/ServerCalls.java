@@ -21,11 +21,18 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import io.grpc.ExperimentalApi;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallHandler;
 import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * Utility functions for adapting {@link ServerCallHandler}s to application service implementation,
@@ -358,6 +365,25 @@ public final class ServerCalls {
 
     @Override
     public void onNext(RespT response) {
+      checkCanSend();
+      if (!sentHeaders) {
+        call.sendHeaders(new Metadata());
+        sentHeaders = true;
+      }
+      call.sendMessage(response);
+    }
+
+    /** Sends several responses, with a single flush if the call supports it. */
+    void onNextBatch(List<RespT> responses) {
+      checkCanSend();
+      if (!sentHeaders) {
+        call.sendHeaders(new Metadata());
+        sentHeaders = true;
+      }
+      call.sendMessages(responses);
+    }
+
+    void checkCanSend() {
       if (cancelled) {
         if (serverStreamingOrBidi) {
           throw Status.CANCELLED
@@ -373,11 +399,6 @@ public final class ServerCalls {
       }
       checkState(!aborted, "Stream was terminated by error, no further calls are allowed");
       checkState(!completed, "Stream is already completed, no further calls are allowed");
-      if (!sentHeaders) {
-        call.sendHeaders(new Metadata());
-        sentHeaders = true;
-      }
-      call.sendMessage(response);
     }
 
     @Override
@@ -401,6 +422,11 @@ public final class ServerCalls {
       return call.isReady();
     }
 
+    @Override
+    public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+      call.setOnReadyThreshold(lowWatermark, highWatermark);
+    }
+
     @Override
     public void setOnReadyHandler(Runnable r) {
       checkState(!frozen, "Cannot alter onReadyHandler after initialization. May only be called "
@@ -448,6 +474,275 @@ public final class ServerCalls {
     }
   }
 
+  /**
+   * Holds responses and sends them through {@link ServerCall#sendMessages} in batches. The
+   * underlying call is only used with {@link #lock} held, as the delayed flushes run on the
+   * scheduler while the service may be sending responses from its own thread.
+   */
+  private static final class BatchingResponseObserver<RespT>
+      extends ServerCallStreamObserver<RespT> {
+    private final ServerCallStreamObserverImpl<?, RespT> delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Object lock = new Object();
+    private final Runnable delegateOnReadyHandler = new Runnable() {
+      @Override
+      public void run() {
+        onDelegateReady();
+      }
+    };
+    @GuardedBy("lock")
+    private final List<RespT> batch = new ArrayList<>();
+    @GuardedBy("lock")
+    private ScheduledFuture<?> flushTimer;
+    // Incremented whenever the batch is emptied, so a delayed flush that was waiting for the lock
+    // while its batch was sent can tell.
+    @GuardedBy("lock")
+    private long batchNumber;
+    // Only set during the initial call to the service, like the delegate's handlers.
+    private Runnable onReadyHandler;
+
+    // Non private to avoid synthetic class
+    BatchingResponseObserver(
+        ServerCallStreamObserverImpl<?, RespT> delegate, int maxBatchSize, long maxDelayNanos,
+        ScheduledExecutorService scheduler) {
+      this.delegate = delegate;
+      this.maxBatchSize = maxBatchSize;
+      this.maxDelayNanos = maxDelayNanos;
+      this.scheduler = scheduler;
+      this.onReadyHandler = delegate.onReadyHandler;
+      // Throws if the service method already returned.
+      delegate.setOnReadyHandler(delegateOnReadyHandler);
+    }
+
+    @Override
+    public void onNext(RespT response) {
+      synchronized (lock) {
+        delegate.checkCanSend();
+        batch.add(response);
+        if (batch.size() >= maxBatchSize) {
+          // Otherwise onDelegateReady() sends the batch.
+          if (delegate.isReady()) {
+            flush();
+          }
+        } else if (flushTimer == null) {
+          flushTimer = scheduler.schedule(
+              new FlushTimerTask(batchNumber), maxDelayNanos, TimeUnit.NANOSECONDS);
+        }
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      synchronized (lock) {
+        flushBeforeClose();
+        delegate.onError(t);
+      }
+    }
+
+    @Override
+    public void onCompleted() {
+      synchronized (lock) {
+        flushBeforeClose();
+        delegate.onCompleted();
+      }
+    }
+
+    @GuardedBy("lock")
+    private void flushBeforeClose() {
+      if (delegate.isCancelled()) {
+        cancelFlushTimer();
+        clearBatch();
+      } else {
+        // The call buffers what it isn't ready for, which is fine as nothing follows.
+        flush();
+      }
+    }
+
+    @GuardedBy("lock")
+    private void flush() {
+      cancelFlushTimer();
+      if (batch.isEmpty()) {
+        return;
+      }
+      try {
+        delegate.onNextBatch(batch);
+      } finally {
+        clearBatch();
+      }
+    }
+
+    @GuardedBy("lock")
+    private void clearBatch() {
+      batch.clear();
+      batchNumber++;
+    }
+
+    @GuardedBy("lock")
+    private void cancelFlushTimer() {
+      if (flushTimer != null) {
+        flushTimer.cancel(false);
+        flushTimer = null;
+      }
+    }
+
+    private final class FlushTimerTask implements Runnable {
+      private final long batchNumber;
+
+      FlushTimerTask(long batchNumber) {
+        this.batchNumber = batchNumber;
+      }
+
+      @Override
+      public void run() {
+        onFlushDelayElapsed(batchNumber);
+      }
+    }
+
+    // Non private to avoid synthetic method
+    void onFlushDelayElapsed(long batchNumber) {
+      synchronized (lock) {
+        if (batchNumber != this.batchNumber) {
+          // The batch was sent, or dropped, while this flush was waiting for the lock.
+          return;
+        }
+        flushTimer = null;
+        if (delegate.isCancelled()) {
+          clearBatch();
+        } else if (delegate.isReady()) {
+          flush();
+        }
+      }
+    }
+
+    // Non private to avoid synthetic method
+    void onDelegateReady() {
+      synchronized (lock) {
+        if (!batch.isEmpty() && delegate.isReady()) {
+          flush();
+        }
+      }
+      Runnable handler = onReadyHandler;
+      if (handler != null) {
+        handler.run();
+      }
+    }
+
+    /**
+     * Also false while a full batch is held, so that a service following flow control doesn't
+     * grow the batch further. A service that ignores it keeps growing the batch until the call is
+     * ready, much like the call itself buffers what it isn't ready for.
+     */
+    @Override
+    public boolean isReady() {
+      synchronized (lock) {
+        return batch.size() < maxBatchSize && delegate.isReady();
+      }
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+      // Throws if the service method already returned.
+      delegate.setOnReadyHandler(delegateOnReadyHandler);
+      this.onReadyHandler = onReadyHandler;
+    }
+
+    @Override
+    public void setOnReadyThreshold(int lowWatermark, int highWatermark) {
+      delegate.setOnReadyThreshold(lowWatermark, highWatermark);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return delegate.isCancelled();
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+      delegate.setOnCancelHandler(onCancelHandler);
+    }
+
+    @Override
+    public void setOnCloseHandler(Runnable onCloseHandler) {
+      delegate.setOnCloseHandler(onCloseHandler);
+    }
+
+    @Override
+    public void setCompression(String compression) {
+      delegate.setCompression(compression);
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+      synchronized (lock) {
+        // Applies to the messages sent from now on, so not to those still held.
+        flush();
+        delegate.setMessageCompression(enable);
+      }
+    }
+
+    @Deprecated
+    @Override
+    public void disableAutoInboundFlowControl() {
+      delegate.disableAutoRequest();
+    }
+
+    @Override
+    public void disableAutoRequest() {
+      delegate.disableAutoRequest();
+    }
+
+    @Override
+    public void request(int count) {
+      delegate.request(count);
+    }
+  }
+
+  /**
+   * Returns a response observer that sends the responses given to {@code responseObserver} in
+   * batches, each written to the transport with a single flush. This saves a transport write per
+   * message for calls streaming many small responses.
+   *
+   * <p>A batch is sent once it has {@code maxBatchSize} responses, or once {@code maxDelay} passed
+   * since its first response, whichever comes first. While the call is not {@link
+   * ServerCallStreamObserver#isReady ready}, responses are held instead, and sent once it becomes
+   * ready again. The returned observer is not ready either while it holds a full batch; like with
+   * any response observer, the service should then wait for the {@link
+   * ServerCallStreamObserver#setOnReadyHandler onReady handler} to run before sending more, as
+   * the batch otherwise keeps growing. Pending responses are always sent before {@code
+   * onCompleted()} or {@code onError()}.
+   *
+   * <p>Like the onReady handler, this must be called during the initial call to the service
+   * method, before it returns, with the response observer gRPC passed to it. The returned observer
+   * is thread-safe, and replaces the given one for the rest of the call. {@code scheduler} is only
+   * used to run the delayed flushes, and is not shut down.
+   *
+   * @param responseObserver the response observer passed to the service method
+   * @param maxBatchSize the number of responses at which a batch is sent right away
+   * @param maxDelay how long a response may wait for its batch to fill up
+   * @param unit the unit of {@code maxDelay}
+   * @param scheduler the executor on which batches are sent once {@code maxDelay} passed
+   * @since 1.43.0
+   */
+  @ExperimentalApi("There is no plan to make this API stable, as it depends on the experimental "
+      + "ServerCall.sendMessages")
+  public static <RespT> ServerCallStreamObserver<RespT> batchingResponseObserver(
+      StreamObserver<RespT> responseObserver, int maxBatchSize, long maxDelay, TimeUnit unit,
+      ScheduledExecutorService scheduler) {
+    checkNotNull(responseObserver, "responseObserver");
+    Preconditions.checkArgument(
+        responseObserver instanceof ServerCallStreamObserverImpl,
+        "responseObserver must be the one passed to the service method");
+    Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+    Preconditions.checkArgument(maxDelay >= 0, "maxDelay must be non-negative");
+    @SuppressWarnings("unchecked")
+    ServerCallStreamObserverImpl<?, RespT> delegate =
+        (ServerCallStreamObserverImpl<?, RespT>) responseObserver;
+    return new BatchingResponseObserver<>(
+        delegate, maxBatchSize, unit.toNanos(maxDelay), checkNotNull(scheduler, "scheduler"));
+  }
+
   /**
    * Sets unimplemented status for method on given response stream for unary call.
    *
@@ -51,6 +51,16 @@ public class AbstractBlockingStubTest extends BaseAbstractStubTest<NoopBlockingS
         .isEqualTo(StubType.BLOCKING);
   }
 
+  @Test
+  public void withResponsePrefetch() {
+    NoopBlockingStub stub = create(channel, CallOptions.DEFAULT).withResponsePrefetch(4, 16);
+
+    ClientCalls.ResponsePrefetch prefetch =
+        stub.getCallOptions().getOption(ClientCalls.RESPONSE_PREFETCH_OPTION);
+    assertThat(prefetch.lowWatermark).isEqualTo(4);
+    assertThat(prefetch.highWatermark).isEqualTo(16);
+  }
+
   @Test
   @SuppressWarnings("AssertionFailureIgnored")
   public void newStub_asyncStub_throwsException() {
@@ -855,6 +855,122 @@ public class ClientCallsTest {
     assertTrue("context not cancelled", methodImpl.observer.isCancelled());
   }
 
+  @Test
+  public void blockingServerStreamingCall_prefetchRequestsInBatches() {
+    RecordingClientCall call = new RecordingClientCall();
+    when(mockChannel.newCall(
+            ArgumentMatchers.<MethodDescriptor<Integer, Integer>>any(), any(CallOptions.class)))
+        .thenReturn(call);
+    CallOptions callOptions = CallOptions.DEFAULT.withOption(
+        ClientCalls.RESPONSE_PREFETCH_OPTION, new ClientCalls.ResponsePrefetch(2, 8));
+
+    Iterator<Integer> iter = ClientCalls.blockingServerStreamingCall(
+        mockChannel, SERVER_STREAMING_METHOD, callOptions, 1);
+    assertThat(call.requests).containsExactly(8);
+    for (int i = 0; i < 8; i++) {
+      call.listener.onMessage(i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Integer.valueOf(i), iter.next());
+    }
+    assertThat(call.requests).containsExactly(8);
+    assertEquals(Integer.valueOf(5), iter.next());
+    assertThat(call.requests).containsExactly(8, 6).inOrder();
+
+    call.listener.onClose(Status.OK, new Metadata());
+    assertEquals(Integer.valueOf(6), iter.next());
+    assertEquals(Integer.valueOf(7), iter.next());
+    assertFalse(iter.hasNext());
+  }
+
+  @Test
+  public void blockingServerStreamingCall_nextBatchReturnsArrivedResponses() {
+    RecordingClientCall call = new RecordingClientCall();
+    when(mockChannel.newCall(
+            ArgumentMatchers.<MethodDescriptor<Integer, Integer>>any(), any(CallOptions.class)))
+        .thenReturn(call);
+    CallOptions callOptions = CallOptions.DEFAULT.withOption(
+        ClientCalls.RESPONSE_PREFETCH_OPTION, new ClientCalls.ResponsePrefetch(0, 5));
+
+    BlockingResponseIterator<Integer> iter =
+        (BlockingResponseIterator<Integer>) ClientCalls.blockingServerStreamingCall(
+            mockChannel, SERVER_STREAMING_METHOD, callOptions, 1);
+    for (int i = 0; i < 5; i++) {
+      call.listener.onMessage(i);
+    }
+    call.listener.onClose(Status.OK, new Metadata());
+
+    assertThat(iter.nextBatch(3)).containsExactly(0, 1, 2).inOrder();
+    assertThat(call.requests).containsExactly(5);
+    assertThat(iter.nextBatch(10)).containsExactly(3, 4).inOrder();
+    assertThat(call.requests).containsExactly(5, 5).inOrder();
+    assertThat(iter.nextBatch(10)).isEmpty();
+    assertFalse(iter.hasNext());
+  }
+
+  @Test
+  public void blockingServerStreamingCall_nextBatchWithoutPrefetch() {
+    RecordingClientCall call = new RecordingClientCall();
+    BlockingResponseIterator<Integer> iter =
+        (BlockingResponseIterator<Integer>) ClientCalls.blockingServerStreamingCall(call, 1);
+    assertThat(call.requests).containsExactly(1);
+    call.listener.onMessage(0);
+
+    assertThat(iter.nextBatch(10)).containsExactly(0);
+    assertThat(call.requests).containsExactly(1, 1).inOrder();
+    call.listener.onMessage(1);
+    call.listener.onMessage(2);
+    assertThat(iter.nextBatch(10)).containsExactly(1, 2).inOrder();
+    // One was requested ahead, and one more replaces the second response.
+    assertThat(call.requests).containsExactly(1, 1, 1, 1).inOrder();
+  }
+
+  @Test
+  public void blockingServerStreamingCall_nextBatchThrowsAfterResponses() {
+    RecordingClientCall call = new RecordingClientCall();
+    BlockingResponseIterator<Integer> iter =
+        (BlockingResponseIterator<Integer>) ClientCalls.blockingServerStreamingCall(call, 1);
+    call.listener.onMessage(0);
+    call.listener.onClose(Status.INTERNAL, new Metadata());
+
+    assertThat(iter.nextBatch(10)).containsExactly(0);
+    try {
+      iter.nextBatch(10);
+      fail("Should fail");
+    } catch (StatusRuntimeException e) {
+      assertEquals(Status.Code.INTERNAL, e.getStatus().getCode());
+    }
+  }
+
+  @Test
+  public void responsePrefetch_rejectsInvalidWatermarks() {
+    try {
+      new ClientCalls.ResponsePrefetch(-1, 2);
+      fail("Should fail");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new ClientCalls.ResponsePrefetch(2, 2);
+      fail("Should fail");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private static final class RecordingClientCall extends NoopClientCall<Integer, Integer> {
+    final List<Integer> requests = new ArrayList<>();
+    ClientCall.Listener<Integer> listener;
+
+    @Override
+    public void start(ClientCall.Listener<Integer> listener, Metadata headers) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void request(int numMessages) {
+      requests.add(numMessages);
+    }
+  }
+
   // Used for blocking tests to check interrupt behavior and make sure onClose is still called.
   class InterruptInterceptor implements ClientInterceptor {
     boolean onCloseCalled;
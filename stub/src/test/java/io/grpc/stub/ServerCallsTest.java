@@ -22,6 +22,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import io.grpc.CallOptions;
 import io.grpc.ClientCall;
@@ -43,8 +49,11 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -53,6 +62,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 
 
 /**
@@ -81,6 +91,9 @@ public class ServerCallsTest {
           .build();
 
   private final ServerCallRecorder serverCall = new ServerCallRecorder(UNARY_METHOD);
+  private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+  private final ScheduledFuture<?> flushTimer = mock(ScheduledFuture.class);
+  private ServerCall.Listener<Integer> callListener;
 
   @Test
   public void runtimeStreamObserverIsServerCallStreamObserver() throws Exception {
@@ -530,6 +543,172 @@ public class ServerCallsTest {
     listener.onHalfClose();
   }
 
+  @Test
+  public void batchingResponseObserver_sendsFullBatchAtOnce() {
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    serverCall.isReady = true;
+    ServerCallStreamObserver<Integer> responseObserver = startBatchingCall(serverCall, 3, null);
+
+    responseObserver.onNext(1);
+    responseObserver.onNext(2);
+    assertThat(serverCall.batches).isEmpty();
+    responseObserver.onNext(3);
+
+    assertThat(serverCall.batches).containsExactly(Arrays.asList(1, 2, 3));
+    verify(scheduler).schedule(any(Runnable.class), eq(5L), eq(TimeUnit.NANOSECONDS));
+    verify(flushTimer).cancel(false);
+  }
+
+  @Test
+  public void batchingResponseObserver_sendsBatchOnceDelayElapsed() {
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    serverCall.isReady = true;
+    ServerCallStreamObserver<Integer> responseObserver = startBatchingCall(serverCall, 10, null);
+
+    responseObserver.onNext(1);
+    responseObserver.onNext(2);
+    assertThat(serverCall.batches).isEmpty();
+    ArgumentCaptor<Runnable> flushTask = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).schedule(flushTask.capture(), anyLong(), any(TimeUnit.class));
+    flushTask.getValue().run();
+
+    assertThat(serverCall.batches).containsExactly(Arrays.asList(1, 2));
+  }
+
+  @Test
+  public void batchingResponseObserver_holdsBatchUntilReady() {
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    final AtomicInteger onReadyCalls = new AtomicInteger();
+    ServerCallStreamObserver<Integer> responseObserver =
+        startBatchingCall(serverCall, 2, new Runnable() {
+          @Override
+          public void run() {
+            onReadyCalls.incrementAndGet();
+          }
+        });
+
+    responseObserver.onNext(1);
+    responseObserver.onNext(2);
+    responseObserver.onNext(3);
+    assertThat(serverCall.batches).isEmpty();
+    assertFalse(responseObserver.isReady());
+
+    serverCall.isReady = true;
+    callListener.onReady();
+    assertThat(serverCall.batches).containsExactly(Arrays.asList(1, 2, 3));
+    assertEquals(1, onReadyCalls.get());
+  }
+
+  @Test
+  public void batchingResponseObserver_notReadyWhileFullBatchHeld() {
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    ServerCallStreamObserver<Integer> responseObserver = startBatchingCall(serverCall, 2, null);
+
+    responseObserver.onNext(1);
+    assertFalse(responseObserver.isReady());
+    serverCall.isReady = true;
+    assertTrue(responseObserver.isReady());
+    serverCall.isReady = false;
+    responseObserver.onNext(2);
+
+    // The call became ready, but the batch is only sent once onReady() runs.
+    serverCall.isReady = true;
+    assertFalse(responseObserver.isReady());
+    callListener.onReady();
+    assertThat(serverCall.batches).containsExactly(Arrays.asList(1, 2));
+    assertTrue(responseObserver.isReady());
+  }
+
+  @Test
+  public void batchingResponseObserver_delayedFlushSkipsLaterBatch() {
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    serverCall.isReady = true;
+    ServerCallStreamObserver<Integer> responseObserver = startBatchingCall(serverCall, 2, null);
+
+    responseObserver.onNext(1);
+    ArgumentCaptor<Runnable> flushTask = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).schedule(flushTask.capture(), anyLong(), any(TimeUnit.class));
+    // The batch fills up after the delay elapsed, but before the delayed flush got the lock.
+    responseObserver.onNext(2);
+    responseObserver.onNext(3);
+    flushTask.getValue().run();
+
+    assertThat(serverCall.batches).containsExactly(Arrays.asList(1, 2));
+  }
+
+  @Test
+  public void batchingResponseObserver_sendsPendingResponsesBeforeCompleting() {
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    ServerCallStreamObserver<Integer> responseObserver = startBatchingCall(serverCall, 10, null);
+
+    responseObserver.onNext(1);
+    responseObserver.onCompleted();
+
+    assertThat(serverCall.batches).containsExactly(Arrays.asList(1));
+    assertEquals(Status.Code.OK, serverCall.status.getCode());
+    verify(flushTimer).cancel(false);
+  }
+
+  @Test
+  public void batchingResponseObserver_dropsPendingResponsesOnceCancelled() {
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    serverCall.isReady = true;
+    ServerCallStreamObserver<Integer> responseObserver = startBatchingCall(serverCall, 10, null);
+
+    responseObserver.onNext(1);
+    serverCall.isCancelled = true;
+    ArgumentCaptor<Runnable> flushTask = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).schedule(flushTask.capture(), anyLong(), any(TimeUnit.class));
+    flushTask.getValue().run();
+
+    assertThat(serverCall.batches).isEmpty();
+  }
+
+  @Test
+  public void batchingResponseObserver_onlyDuringInitialCall() {
+    final AtomicReference<StreamObserver<Integer>> responseObserver = new AtomicReference<>();
+    ServerCallRecorder serverCall = new ServerCallRecorder(STREAMING_METHOD);
+    ServerCalls.asyncBidiStreamingCall(
+        new ServerCalls.BidiStreamingMethod<Integer, Integer>() {
+          @Override
+          public StreamObserver<Integer> invoke(StreamObserver<Integer> observer) {
+            responseObserver.set(observer);
+            return new ServerCalls.NoopStreamObserver<>();
+          }
+        }).startCall(serverCall, new Metadata());
+
+    try {
+      ServerCalls.batchingResponseObserver(
+          responseObserver.get(), 10, 5, TimeUnit.NANOSECONDS, scheduler);
+      fail("Should have thrown");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private ServerCallStreamObserver<Integer> startBatchingCall(
+      ServerCallRecorder serverCall, final int maxBatchSize, final Runnable onReadyHandler) {
+    doReturn(flushTimer).when(scheduler)
+        .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    final AtomicReference<ServerCallStreamObserver<Integer>> responseObserver =
+        new AtomicReference<>();
+    ServerCallHandler<Integer, Integer> callHandler = ServerCalls.asyncBidiStreamingCall(
+        new ServerCalls.BidiStreamingMethod<Integer, Integer>() {
+          @Override
+          public StreamObserver<Integer> invoke(StreamObserver<Integer> observer) {
+            ServerCallStreamObserver<Integer> batchingObserver =
+                ServerCalls.batchingResponseObserver(
+                    observer, maxBatchSize, 5, TimeUnit.NANOSECONDS, scheduler);
+            if (onReadyHandler != null) {
+              batchingObserver.setOnReadyHandler(onReadyHandler);
+            }
+            responseObserver.set(batchingObserver);
+            return new ServerCalls.NoopStreamObserver<>();
+          }
+        });
+    callListener = callHandler.startCall(serverCall, new Metadata());
+    return responseObserver.get();
+  }
+
   @Test
   public void inprocessTransportManualFlow() throws Exception {
     final Semaphore semaphore = new Semaphore(1);
@@ -623,6 +802,7 @@ public class ServerCallsTest {
     private final MethodDescriptor<Integer, Integer> methodDescriptor;
     private final List<Integer> requestCalls = new ArrayList<>();
     private final List<Integer> responses = new ArrayList<>();
+    private final List<List<Integer>> batches = new ArrayList<>();
     private Status status;
     private boolean isCancelled;
     private boolean isReady;
@@ -645,6 +825,16 @@ public class ServerCallsTest {
       this.responses.add(message);
     }
 
+    @Override
+    public void sendMessages(Iterable<Integer> messages) {
+      List<Integer> batch = new ArrayList<>();
+      for (Integer message : messages) {
+        batch.add(message);
+      }
+      this.batches.add(batch);
+      this.responses.addAll(batch);
+    }
+
     @Override
     public void close(Status status, Metadata trailers) {
       this.status = status;
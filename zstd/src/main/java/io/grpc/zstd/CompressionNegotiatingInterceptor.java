@@ -0,0 +1,364 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.zstd;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Deadline;
+import io.grpc.ExperimentalApi;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Compresses requests of each configured method with its own message encoding, once the server
+ * has listed that encoding in {@code grpc-accept-encoding}. Until then, and whenever the server
+ * stops listing it, requests are sent uncompressed.
+ *
+ * <p>This lets a client pick, say, a zstd dictionary per method without knowing in advance which
+ * servers have it. The codec must also be in the channel's {@link io.grpc.CompressorRegistry}.
+ * Calls that already have a compressor set in their {@link CallOptions} are left alone.
+ *
+ * <p>A channel may talk to several servers, and only some of them may have the encoding. So each
+ * server's answer is kept separately, by its remote address, and forgotten once that server has
+ * not answered for a few minutes, as happens when it is gone. The server a call goes to is only
+ * known once its request headers are sent, so the choice is made from the current servers'
+ * answers:
+ * <ul>
+ *   <li>Calls that send a single request are compressed while any current server accepts the
+ *       encoding. If the call's own server rejects it, the call is retried uncompressed.</li>
+ *   <li>Other calls can't be retried, so they are only compressed while every current server
+ *       accepts the encoding. A server seen for the first time may still reject such a call, which
+ *       then fails with {@link Status.Code#UNIMPLEMENTED}.</li>
+ * </ul>
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class CompressionNegotiatingInterceptor implements ClientInterceptor {
+  private static final Metadata.Key<String> MESSAGE_ACCEPT_ENCODING_KEY =
+      Metadata.Key.of("grpc-accept-encoding", Metadata.ASCII_STRING_MARSHALLER);
+  private static final Splitter ACCEPT_ENCODING_SPLITTER = Splitter.on(',').trimResults();
+  /** Stands in for the address of servers whose transport doesn't report one. */
+  private static final Object UNKNOWN_SERVER = new Object();
+  /** How long a server's answer is kept, unless a later call refreshes it. */
+  @VisibleForTesting
+  static final long ANSWER_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+  /** The most servers whose answers are kept for a method. */
+  @VisibleForTesting
+  static final int MAX_SERVERS_PER_METHOD = 64;
+
+  private final Map<String, String> encodingsByMethod;
+  private final Map<String, Acceptance> acceptanceByMethod;
+  private final Deadline.Ticker ticker;
+
+  private CompressionNegotiatingInterceptor(
+      Map<String, String> encodingsByMethod, Deadline.Ticker ticker) {
+    this.encodingsByMethod = ImmutableMap.copyOf(encodingsByMethod);
+    ImmutableMap.Builder<String, Acceptance> acceptanceByMethod = ImmutableMap.builder();
+    for (String methodName : this.encodingsByMethod.keySet()) {
+      acceptanceByMethod.put(methodName, new Acceptance());
+    }
+    this.acceptanceByMethod = acceptanceByMethod.build();
+    this.ticker = ticker;
+  }
+
+  /**
+   * Creates an interceptor that compresses with the encoding given for each method, keyed by
+   * {@link MethodDescriptor#getFullMethodName full method name}.
+   */
+  public static CompressionNegotiatingInterceptor create(Map<String, String> encodingsByMethod) {
+    return new CompressionNegotiatingInterceptor(encodingsByMethod, Deadline.getSystemTicker());
+  }
+
+  @VisibleForTesting
+  static CompressionNegotiatingInterceptor create(
+      Map<String, String> encodingsByMethod, Deadline.Ticker ticker) {
+    return new CompressionNegotiatingInterceptor(encodingsByMethod, ticker);
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    String encoding = encodingsByMethod.get(method.getFullMethodName());
+    if (encoding == null || callOptions.getCompressor() != null) {
+      return next.newCall(method, callOptions);
+    }
+    return new NegotiatingCall<>(method, callOptions, next, encoding);
+  }
+
+  private boolean shouldCompress(MethodDescriptor<?, ?> method) {
+    return acceptanceByMethod.get(method.getFullMethodName())
+        .shouldCompress(method.getType().clientSendsOneMessage(), ticker.nanoTime());
+  }
+
+  private void recordAcceptance(String methodName, Attributes attributes, boolean accepted) {
+    Object server = attributes.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+    acceptanceByMethod.get(methodName)
+        .record(server != null ? server : UNKNOWN_SERVER, accepted, ticker.nanoTime());
+  }
+
+  private static boolean accepts(Metadata headers, String encoding) {
+    String acceptEncoding = headers.get(MESSAGE_ACCEPT_ENCODING_KEY);
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String accepted : ACCEPT_ENCODING_SPLITTER.split(acceptEncoding)) {
+      if (accepted.equals(encoding)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Whether the server failed a call because it lacks the call's encoding. */
+  private static boolean rejectsEncoding(Status status, String encoding) {
+    // The status ServerImpl closes such calls with.
+    return status.getCode() == Status.Code.UNIMPLEMENTED
+        && ("Can't find decompressor for " + encoding).equals(status.getDescription());
+  }
+
+  /** The latest answers of the current servers to whether they accept a method's encoding. */
+  private static final class Acceptance {
+    /** Whether each server, by remote address, accepted the encoding, least recent first. */
+    @GuardedBy("this")
+    private final Map<Object, Answer> answers =
+        new LinkedHashMap<Object, Answer>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Object, Answer> eldest) {
+            return size() > MAX_SERVERS_PER_METHOD;
+          }
+        };
+
+    synchronized boolean shouldCompress(boolean retryable, long nowNanos) {
+      boolean anyAccepts = false;
+      boolean anyRejects = false;
+      Iterator<Answer> iterator = answers.values().iterator();
+      while (iterator.hasNext()) {
+        Answer answer = iterator.next();
+        if (nowNanos - answer.nanoTime > ANSWER_TTL_NANOS) {
+          iterator.remove();
+        } else if (answer.accepted) {
+          anyAccepts = true;
+        } else {
+          anyRejects = true;
+        }
+      }
+      return anyAccepts && (retryable || !anyRejects);
+    }
+
+    synchronized void record(Object server, boolean accepted, long nowNanos) {
+      answers.put(server, new Answer(accepted, nowNanos));
+    }
+  }
+
+  private static final class Answer {
+    final boolean accepted;
+    final long nanoTime;
+
+    Answer(boolean accepted, long nanoTime) {
+      this.accepted = accepted;
+      this.nanoTime = nanoTime;
+    }
+  }
+
+  /**
+   * Passes a call on to an attempt, compressed if the current servers accept the encoding. A
+   * rejected compressed attempt is replaced with an uncompressed one, when the call sends a single
+   * request.
+   */
+  private final class NegotiatingCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final CallOptions callOptions;
+    private final Channel next;
+    private final String encoding;
+    private final Object lock = new Object();
+
+    @GuardedBy("lock")
+    private ClientCall<ReqT, RespT> attempt;
+    // What was done to the call so far, to replay on a new attempt.
+    @GuardedBy("lock")
+    private Listener<RespT> listener;
+    @GuardedBy("lock")
+    private Metadata headers;
+    @GuardedBy("lock")
+    private int requested;
+    @GuardedBy("lock")
+    @Nullable
+    private ReqT request;
+    @GuardedBy("lock")
+    private Boolean messageCompression;
+    @GuardedBy("lock")
+    private boolean halfClosed;
+    @GuardedBy("lock")
+    private boolean cancelled;
+
+    NegotiatingCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next,
+        String encoding) {
+      this.method = method;
+      this.callOptions = callOptions;
+      this.next = next;
+      this.encoding = encoding;
+    }
+
+    @Override
+    public void start(Listener<RespT> listener, Metadata headers) {
+      boolean compressed = shouldCompress(method);
+      synchronized (lock) {
+        this.listener = listener;
+        if (compressed && method.getType().clientSendsOneMessage()) {
+          // The call may be retried, and the attempt adds its own headers.
+          this.headers = new Metadata();
+          this.headers.merge(headers);
+        }
+        attempt = next.newCall(
+            method, compressed ? callOptions.withCompression(encoding) : callOptions);
+        attempt.start(new AttemptListener(listener, attempt, compressed), headers);
+      }
+    }
+
+    @Override
+    public void request(int numMessages) {
+      synchronized (lock) {
+        requested += numMessages;
+        attempt.request(numMessages);
+      }
+    }
+
+    @Override
+    public void cancel(@Nullable String message, @Nullable Throwable cause) {
+      synchronized (lock) {
+        cancelled = true;
+        if (attempt != null) {
+          attempt.cancel(message, cause);
+        }
+      }
+    }
+
+    @Override
+    public void halfClose() {
+      synchronized (lock) {
+        halfClosed = true;
+        attempt.halfClose();
+      }
+    }
+
+    @Override
+    public void sendMessage(ReqT message) {
+      synchronized (lock) {
+        if (headers != null) {
+          request = message;
+        }
+        attempt.sendMessage(message);
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      synchronized (lock) {
+        return attempt.isReady();
+      }
+    }
+
+    @Override
+    public void setMessageCompression(boolean enabled) {
+      synchronized (lock) {
+        messageCompression = enabled;
+        attempt.setMessageCompression(enabled);
+      }
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      synchronized (lock) {
+        return attempt.getAttributes();
+      }
+    }
+
+    /** Starts an uncompressed attempt in place of a rejected one. Returns false if it can't. */
+    private boolean retryUncompressed() {
+      synchronized (lock) {
+        if (cancelled || headers == null) {
+          return false;
+        }
+        Metadata retryHeaders = headers;
+        headers = null;
+        attempt = next.newCall(method, callOptions);
+        attempt.start(new AttemptListener(listener, attempt, false), retryHeaders);
+        if (messageCompression != null) {
+          attempt.setMessageCompression(messageCompression);
+        }
+        if (requested > 0) {
+          attempt.request(requested);
+        }
+        if (request != null) {
+          attempt.sendMessage(request);
+          request = null;
+        }
+        if (halfClosed) {
+          attempt.halfClose();
+        }
+        return true;
+      }
+    }
+
+    private final class AttemptListener extends SimpleForwardingClientCallListener<RespT> {
+      private final ClientCall<ReqT, RespT> call;
+      private final boolean compressed;
+      private boolean receivedHeaders;
+
+      AttemptListener(
+          Listener<RespT> listener, ClientCall<ReqT, RespT> call, boolean compressed) {
+        super(listener);
+        this.call = call;
+        this.compressed = compressed;
+      }
+
+      @Override
+      public void onHeaders(Metadata headers) {
+        receivedHeaders = true;
+        recordAcceptance(
+            method.getFullMethodName(), call.getAttributes(), accepts(headers, encoding));
+        super.onHeaders(headers);
+      }
+
+      @Override
+      public void onClose(Status status, Metadata trailers) {
+        if (compressed && !receivedHeaders && rejectsEncoding(status, encoding)) {
+          recordAcceptance(method.getFullMethodName(), call.getAttributes(), false);
+          if (retryUncompressed()) {
+            return;
+          }
+        }
+        super.onClose(status, trailers);
+      }
+    }
+  }
+}
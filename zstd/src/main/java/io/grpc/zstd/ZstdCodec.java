@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.zstd;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.github.luben.zstd.util.Native;
+import io.grpc.Codec;
+import io.grpc.ExperimentalApi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * A Zstandard compressor and decompressor. At its default level, zstd compresses about as well
+ * as gzip for a fraction of the CPU.
+ *
+ * <p>The plain codec, with message encoding {@code "zstd"}, is registered in {@link
+ * io.grpc.CompressorRegistry#getDefaultInstance} and {@link
+ * io.grpc.DecompressorRegistry#getDefaultInstance} whenever this artifact is on the classpath.
+ *
+ * <p>Small messages compress much better with a dictionary trained on similar messages (see
+ * {@code zstd --train}). A codec created {@link #withDictionary with a dictionary} has its own
+ * message encoding, {@code "zstd-dict-<id>"} where id is the dictionary's ID, so that both
+ * sides can tell whether they have the same dictionary. Register it in the registries of both
+ * the client and the server. Then, for each method that benefits from the dictionary, select it
+ * with {@link io.grpc.CallOptions#withCompression} on the client, or with {@link
+ * io.grpc.ServerCall#setCompression} on the server. The server only uses it for responses if
+ * the client listed it in {@code grpc-accept-encoding}; {@link CompressionNegotiatingInterceptor}
+ * does the same on the client.
+ *
+ * <p>This uses zstd-jni, whose jar includes the native library for most platforms. It needs Java
+ * 8 or later.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class ZstdCodec implements Codec {
+  public static final String MESSAGE_ENCODING = "zstd";
+  /** The default level of the zstd library, which balances speed and ratio well. */
+  public static final int DEFAULT_LEVEL = 3;
+
+  private final String messageEncoding;
+  private final int level;
+  @Nullable
+  private final ZstdDictCompress compressDictionary;
+  @Nullable
+  private final ZstdDictDecompress decompressDictionary;
+
+  private ZstdCodec(
+      String messageEncoding,
+      int level,
+      @Nullable ZstdDictCompress compressDictionary,
+      @Nullable ZstdDictDecompress decompressDictionary) {
+    this.messageEncoding = messageEncoding;
+    this.level = level;
+    this.compressDictionary = compressDictionary;
+    this.decompressDictionary = decompressDictionary;
+  }
+
+  /**
+   * Creates a codec compressing at {@link #DEFAULT_LEVEL}.
+   *
+   * @throws UnsatisfiedLinkError if the native library isn't available on this platform
+   */
+  public static ZstdCodec create() {
+    return create(DEFAULT_LEVEL);
+  }
+
+  /**
+   * Creates a codec compressing at {@code level}, from 1 (fastest) to 22 (smallest). Negative
+   * levels trade even more ratio for speed.
+   *
+   * @throws UnsatisfiedLinkError if the native library isn't available on this platform
+   */
+  public static ZstdCodec create(int level) {
+    Native.load();
+    return new ZstdCodec(MESSAGE_ENCODING, level, null, null);
+  }
+
+  /**
+   * Creates a codec using a dictionary trained by zstd, compressing at {@link #DEFAULT_LEVEL}.
+   *
+   * @throws IllegalArgumentException if {@code dictionary} has no dictionary ID, as is the case
+   *     for raw content dictionaries
+   * @throws UnsatisfiedLinkError if the native library isn't available on this platform
+   */
+  public static ZstdCodec withDictionary(byte[] dictionary) {
+    return withDictionary(dictionary, DEFAULT_LEVEL);
+  }
+
+  /**
+   * Creates a codec using a dictionary trained by zstd, compressing at {@code level}.
+   *
+   * @throws IllegalArgumentException if {@code dictionary} has no dictionary ID, as is the case
+   *     for raw content dictionaries
+   * @throws UnsatisfiedLinkError if the native library isn't available on this platform
+   */
+  public static ZstdCodec withDictionary(byte[] dictionary, int level) {
+    checkNotNull(dictionary, "dictionary");
+    Native.load();
+    long id = Zstd.getDictIdFromDict(dictionary);
+    checkArgument(id != 0, "Dictionary has no ID. Train it with zstd --train");
+    // The dictionaries are digested once here, rather than for each message.
+    return new ZstdCodec(
+        dictionaryEncoding(id),
+        level,
+        new ZstdDictCompress(dictionary, level),
+        new ZstdDictDecompress(dictionary));
+  }
+
+  static String dictionaryEncoding(long dictionaryId) {
+    return MESSAGE_ENCODING + "-dict-" + dictionaryId;
+  }
+
+  @Override
+  public String getMessageEncoding() {
+    return messageEncoding;
+  }
+
+  @Override
+  public OutputStream compress(OutputStream os) throws IOException {
+    ZstdOutputStream out = new ZstdOutputStream(os, RecyclingBufferPool.INSTANCE);
+    if (compressDictionary != null) {
+      out.setDict(compressDictionary);
+    } else {
+      out.setLevel(level);
+    }
+    return out;
+  }
+
+  @Override
+  public InputStream decompress(InputStream is) throws IOException {
+    ZstdInputStream in = new ZstdInputStream(is, RecyclingBufferPool.INSTANCE);
+    if (decompressDictionary != null) {
+      in.setDict(decompressDictionary);
+    }
+    return in;
+  }
+}
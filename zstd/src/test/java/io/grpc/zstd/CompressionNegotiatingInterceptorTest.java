@@ -0,0 +1,265 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.zstd;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Codec;
+import io.grpc.Deadline;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.internal.testing.StreamRecorder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import io.grpc.testing.protobuf.SimpleRequest;
+import io.grpc.testing.protobuf.SimpleResponse;
+import io.grpc.testing.protobuf.SimpleServiceGrpc;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CompressionNegotiatingInterceptor}. */
+@RunWith(JUnit4.class)
+public class CompressionNegotiatingInterceptorTest {
+  private static final Metadata.Key<String> MESSAGE_ENCODING_KEY =
+      Metadata.Key.of("grpc-encoding", Metadata.ASCII_STRING_MARSHALLER);
+
+  @Rule
+  public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final List<String> servers = new ArrayList<>();
+  private final List<String> requestEncodings = new ArrayList<>();
+  private final List<ManagedChannel> route = new ArrayList<>();
+
+  @Test
+  public void compressesOnceServerAcceptsEncoding() throws Exception {
+    SimpleServiceGrpc.SimpleServiceBlockingStub stub =
+        startServer(DecompressorRegistry.getDefaultInstance());
+
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+
+    assertThat(requestEncodings).containsExactly(null, "zstd", "zstd").inOrder();
+  }
+
+  @Test
+  public void doesNotCompressWhenServerDoesNotAcceptEncoding() throws Exception {
+    SimpleServiceGrpc.SimpleServiceBlockingStub stub =
+        startServer(DecompressorRegistry.emptyInstance().with(new Codec.Gzip(), true));
+
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+
+    assertThat(requestEncodings).containsExactly(null, null).inOrder();
+  }
+
+  @Test
+  public void leavesCallsWithCompressionAlone() throws Exception {
+    SimpleServiceGrpc.SimpleServiceBlockingStub stub =
+        startServer(DecompressorRegistry.getDefaultInstance()).withCompression("gzip");
+
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+
+    assertThat(requestEncodings).containsExactly("gzip", "gzip").inOrder();
+  }
+
+  @Test
+  public void compressesUnaryCallsWhileAnyServerAcceptsEncoding() throws Exception {
+    ManagedChannel accepting = startServer("accepting", DecompressorRegistry.getDefaultInstance());
+    ManagedChannel rejecting = startServer(
+        "rejecting", DecompressorRegistry.emptyInstance().with(new Codec.Gzip(), true));
+    // The second call is rejected by the second server, then retried there.
+    route.addAll(Arrays.asList(accepting, rejecting, rejecting, accepting));
+    SimpleServiceGrpc.SimpleServiceBlockingStub stub =
+        SimpleServiceGrpc.newBlockingStub(newRoutingChannel(accepting));
+
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+    // The rejecting server doesn't stop calls to the accepting one from being compressed.
+    stub.unaryRpc(SimpleRequest.getDefaultInstance());
+
+    // Rejected calls never reach the service.
+    assertThat(servers).containsExactly("accepting", "rejecting", "accepting").inOrder();
+    assertThat(requestEncodings).containsExactly(null, null, "zstd").inOrder();
+    assertThat(route).isEmpty();
+  }
+
+  @Test
+  public void doesNotCompressStreamingCallsWhileAnyServerRejectsEncoding() throws Exception {
+    ManagedChannel accepting = startServer("accepting", DecompressorRegistry.getDefaultInstance());
+    ManagedChannel rejecting = startServer(
+        "rejecting", DecompressorRegistry.emptyInstance().with(new Codec.Gzip(), true));
+    route.addAll(Arrays.asList(rejecting, accepting, accepting));
+    SimpleServiceGrpc.SimpleServiceStub stub =
+        SimpleServiceGrpc.newStub(newRoutingChannel(accepting));
+
+    clientStreamingRpc(stub);
+    clientStreamingRpc(stub);
+    clientStreamingRpc(stub);
+
+    assertThat(servers).containsExactly("rejecting", "accepting", "accepting").inOrder();
+    assertThat(requestEncodings).containsExactly(null, null, null).inOrder();
+  }
+
+  @Test
+  public void compressesStreamingCallsOnceRejectingServerIsGone() throws Exception {
+    ManagedChannel accepting = startServer("accepting", DecompressorRegistry.getDefaultInstance());
+    ManagedChannel rejecting = startServer(
+        "rejecting", DecompressorRegistry.emptyInstance().with(new Codec.Gzip(), true));
+    route.addAll(Arrays.asList(rejecting, accepting, accepting, accepting));
+    SimpleServiceGrpc.SimpleServiceStub stub =
+        SimpleServiceGrpc.newStub(newRoutingChannel(accepting));
+
+    clientStreamingRpc(stub);
+    clientStreamingRpc(stub);
+    // The rejecting server no longer gets calls, while the accepting server keeps answering.
+    ticker.forwardNanos(CompressionNegotiatingInterceptor.ANSWER_TTL_NANOS / 2);
+    clientStreamingRpc(stub);
+    ticker.forwardNanos(CompressionNegotiatingInterceptor.ANSWER_TTL_NANOS / 2 + 1);
+    clientStreamingRpc(stub);
+
+    assertThat(servers)
+        .containsExactly("rejecting", "accepting", "accepting", "accepting").inOrder();
+    assertThat(requestEncodings).containsExactly(null, null, null, "zstd").inOrder();
+  }
+
+  private SimpleServiceGrpc.SimpleServiceBlockingStub startServer(
+      DecompressorRegistry decompressorRegistry) throws Exception {
+    ManagedChannel channel = startServer("server", decompressorRegistry);
+    return SimpleServiceGrpc.newBlockingStub(
+        ClientInterceptors.intercept(channel, newInterceptor()));
+  }
+
+  private ManagedChannel startServer(
+      final String label, DecompressorRegistry decompressorRegistry) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    ServerInterceptor recordEncoding = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+          ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        servers.add(label);
+        requestEncodings.add(headers.get(MESSAGE_ENCODING_KEY));
+        return next.startCall(call, headers);
+      }
+    };
+    grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+        .directExecutor()
+        .decompressorRegistry(decompressorRegistry)
+        .addService(ServerInterceptors.intercept(new SimpleServiceImpl(), recordEncoding))
+        .build()
+        .start());
+    return grpcCleanup.register(InProcessChannelBuilder.forName(serverName)
+        .directExecutor()
+        .build());
+  }
+
+  /** Returns a channel that sends each call to the next channel in {@link #route}. */
+  private Channel newRoutingChannel(final ManagedChannel authorityChannel) {
+    return ClientInterceptors.intercept(
+        new Channel() {
+          @Override
+          public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+              MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+            return route.remove(0).newCall(method, callOptions);
+          }
+
+          @Override
+          public String authority() {
+            return authorityChannel.authority();
+          }
+        },
+        newInterceptor());
+  }
+
+  private CompressionNegotiatingInterceptor newInterceptor() {
+    return CompressionNegotiatingInterceptor.create(
+        ImmutableMap.of(
+            SimpleServiceGrpc.getUnaryRpcMethod().getFullMethodName(), "zstd",
+            SimpleServiceGrpc.getClientStreamingRpcMethod().getFullMethodName(), "zstd"),
+        ticker);
+  }
+
+  private static void clientStreamingRpc(SimpleServiceGrpc.SimpleServiceStub stub)
+      throws Exception {
+    StreamRecorder<SimpleResponse> responses = StreamRecorder.create();
+    StreamObserver<SimpleRequest> requests = stub.clientStreamingRpc(responses);
+    requests.onNext(SimpleRequest.getDefaultInstance());
+    requests.onCompleted();
+    assertThat(responses.awaitCompletion(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(responses.getError()).isNull();
+  }
+
+  private static final class SimpleServiceImpl extends SimpleServiceGrpc.SimpleServiceImplBase {
+    @Override
+    public void unaryRpc(SimpleRequest request, StreamObserver<SimpleResponse> responseObserver) {
+      responseObserver.onNext(SimpleResponse.getDefaultInstance());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<SimpleRequest> clientStreamingRpc(
+        final StreamObserver<SimpleResponse> responseObserver) {
+      return new StreamObserver<SimpleRequest>() {
+        @Override
+        public void onNext(SimpleRequest request) {}
+
+        @Override
+        public void onError(Throwable t) {}
+
+        @Override
+        public void onCompleted() {
+          responseObserver.onNext(SimpleResponse.getDefaultInstance());
+          responseObserver.onCompleted();
+        }
+      };
+    }
+  }
+
+  private static final class FakeTicker extends Deadline.Ticker {
+    private long nanoTime;
+
+    void forwardNanos(long nanos) {
+      nanoTime += nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+      return nanoTime;
+    }
+  }
+}
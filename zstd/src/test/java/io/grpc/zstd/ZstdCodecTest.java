@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.zstd;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.google.common.io.ByteStreams;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ZstdCodec}. */
+@RunWith(JUnit4.class)
+public class ZstdCodecTest {
+
+  @Test
+  public void registeredByDefault() {
+    assertThat(CompressorRegistry.getDefaultInstance().lookupCompressor("zstd"))
+        .isInstanceOf(ZstdCodec.class);
+    assertThat(DecompressorRegistry.getDefaultInstance().lookupDecompressor("zstd"))
+        .isInstanceOf(ZstdCodec.class);
+    assertThat(DecompressorRegistry.getDefaultInstance().getAdvertisedMessageEncodings())
+        .contains("zstd");
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    Random random = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      messages.write(message(random));
+    }
+    byte[] data = messages.toByteArray();
+    ZstdCodec codec = ZstdCodec.create();
+
+    byte[] compressed = compress(codec, data);
+
+    assertThat(compressed.length).isLessThan(data.length / 2);
+    assertArrayEquals(data, decompress(codec, compressed));
+  }
+
+  @Test
+  public void roundTrip_empty() throws IOException {
+    ZstdCodec codec = ZstdCodec.create();
+    assertArrayEquals(new byte[0], decompress(codec, compress(codec, new byte[0])));
+  }
+
+  @Test
+  public void dictionary_namedAfterItsId() {
+    ZstdCodec codec = ZstdCodec.withDictionary(trainDictionary());
+    assertThat(codec.getMessageEncoding()).startsWith("zstd-dict-");
+    assertThat(codec.getMessageEncoding()).isNotEqualTo("zstd-dict-0");
+  }
+
+  @Test
+  public void dictionary_compressesSmallMessagesBetter() throws IOException {
+    ZstdCodec plain = ZstdCodec.create();
+    ZstdCodec withDictionary = ZstdCodec.withDictionary(trainDictionary());
+    byte[] data = message(new Random(12345));
+
+    byte[] compressed = compress(withDictionary, data);
+
+    assertThat(compressed.length).isLessThan(compress(plain, data).length);
+    assertArrayEquals(data, decompress(withDictionary, compressed));
+  }
+
+  @Test
+  public void dictionary_requiredToDecompress() throws IOException {
+    ZstdCodec withDictionary = ZstdCodec.withDictionary(trainDictionary());
+    byte[] compressed = compress(withDictionary, message(new Random()));
+    try {
+      decompress(ZstdCodec.create(), compressed);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void dictionary_rawContentRejected() {
+    try {
+      ZstdCodec.withDictionary("no header here".getBytes(StandardCharsets.UTF_8));
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      assertEquals("Dictionary has no ID. Train it with zstd --train", expected.getMessage());
+    }
+  }
+
+  /** Returns a small message, like the ones a service would send. */
+  private static byte[] message(Random random) {
+    return ("{\"user\": \"user-" + random.nextInt(1000) + "\", \"status\": \"ACTIVE\", "
+        + "\"region\": \"us-east-" + random.nextInt(4) + "\", \"count\": " + random.nextInt() + "}")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] trainDictionary() {
+    ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 16 * 1024);
+    Random random = new Random(1);
+    for (int i = 0; i < 2000; i++) {
+      trainer.addSample(message(random));
+    }
+    return trainer.trainSamples();
+  }
+
+  private static byte[] compress(Codec codec, byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream os = codec.compress(out);
+    os.write(data);
+    os.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] decompress(Codec codec, byte[] data) throws IOException {
+    return ByteStreams.toByteArray(codec.decompress(new ByteArrayInputStream(data)));
+  }
+}